@@ -0,0 +1,306 @@
+package com.georgev22.libraryloader.classpath;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.module.Configuration;
+import java.lang.module.FindException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/**
+ * The {@link ModuleLayerClassPath} of Java 9 and later. Only created reflectively, by
+ * {@link ModuleLayerClassPath#create(ClassLoader, Logger)}, so that no class of the loader refers to the module
+ * system on Java 8.
+ */
+final class JdkModuleLayerClassPath extends ModuleLayerClassPath {
+
+    private static final String SERVICES = "META-INF/services/";
+
+    private final ClassLoader parent;
+    private final Logger logger;
+    private final List<Layer> layers = new ArrayList<>();
+    private volatile Map<String, ClassLoader> packages = Collections.emptyMap();
+
+    JdkModuleLayerClassPath(@NotNull ClassLoader parent, @NotNull Logger logger) {
+        this.parent = parent;
+        this.logger = logger;
+    }
+
+    @Override
+    public synchronized void define(@NotNull List<Dependency> dependencies, @NotNull List<File> jars) {
+        long start = System.nanoTime();
+        Map<String, ModuleReference> references = new LinkedHashMap<>();
+        for (int i = 0; i < jars.size(); i++) {
+            for (ModuleReference reference : find(dependencies.get(i), jars.get(i))) {
+                references.putIfAbsent(reference.descriptor().name(), reference);
+            }
+        }
+        ModuleFinder finder = new ModuleFinder() {
+            @Override
+            public Optional<ModuleReference> find(String name) {
+                return Optional.ofNullable(references.get(name));
+            }
+
+            @Override
+            public Set<ModuleReference> findAll() {
+                return new HashSet<>(references.values());
+            }
+        };
+        Set<String> roots = new LinkedHashSet<>(references.keySet());
+
+        ModuleLayer parentLayer = layers.isEmpty() ? ModuleLayer.boot() : layers.get(layers.size() - 1).layer;
+        Configuration configuration = Configuration.resolve(finder, Collections.singletonList(parentLayer.configuration()), ModuleFinder.of(), roots);
+        ModuleLayer layer = ModuleLayer.defineModulesWithOneLoader(configuration, Collections.singletonList(parentLayer), parent).layer();
+
+        ClassLoader loader = roots.isEmpty() ? parent : layer.findLoader(roots.iterator().next());
+        layers.add(new Layer(layer, loader, dependencies));
+        index();
+        logger.info("Defined a module layer of " + roots.size() + " modules " + roots + " in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+    }
+
+    @Override
+    public synchronized boolean release(@NotNull Dependency d) {
+        boolean found = false;
+        for (Layer layer : layers) {
+            found |= layer.dependencies.remove(d);
+        }
+        int dropped = 0;
+        while (!layers.isEmpty() && layers.get(layers.size() - 1).dependencies.isEmpty()) {
+            layers.remove(layers.size() - 1);
+            dropped++;
+        }
+        if (dropped > 0) {
+            index();
+            logger.info("Dropped " + dropped + " module layers, " + layers.size() + " are left");
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized boolean contains(@NotNull Dependency d) {
+        for (Layer layer : layers) {
+            if (layer.dependencies.contains(d)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public @NotNull Class<?> loadClass(@NotNull String name) throws ClassNotFoundException {
+        int dot = name.lastIndexOf('.');
+        ClassLoader loader = packages.get(dot < 0 ? "" : name.substring(0, dot));
+        if (loader == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return Class.forName(name, false, loader);
+    }
+
+    @Override
+    public synchronized @NotNull @Unmodifiable List<ModuleLayer> getLayers() {
+        List<ModuleLayer> result = new ArrayList<>();
+        for (Layer layer : layers) {
+            result.add(layer.layer);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public synchronized @Nullable ModuleLayer getLayer() {
+        return layers.isEmpty() ? null : layers.get(layers.size() - 1).layer;
+    }
+
+    /**
+     * Finds the module of a jar. A jar without a module descriptor whose file name does not give a valid automatic
+     * module name, e.g. {@code lib-0-1.0.0.jar}, becomes an automatic module named after its coordinates.
+     *
+     * @param d   the library
+     * @param jar the jar of the library
+     * @return the module of the jar
+     * @throws FindException if the jar cannot be read
+     */
+    private @NotNull Set<ModuleReference> find(@NotNull Dependency d, @NotNull File jar) {
+        try {
+            return ModuleFinder.of(jar.toPath()).findAll();
+        } catch (FindException e) {
+            try {
+                return Collections.singleton(automaticModule(automaticModuleName(d), jar));
+            } catch (IOException | IllegalArgumentException suppressed) {
+                e.addSuppressed(suppressed);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Creates an automatic module of a jar the way the JDK does, with the packages of its classes and the services
+     * it provides, but with the given name.
+     */
+    private static @NotNull ModuleReference automaticModule(@NotNull String name, @NotNull File jar) throws IOException {
+        Set<String> packages = new HashSet<>();
+        Map<String, List<String>> services = new LinkedHashMap<>();
+        try (JarFile jarFile = new JarFile(jar, true, ZipFile.OPEN_READ, JarFile.runtimeVersion())) {
+            if (jarFile.getJarEntry("module-info.class") != null) {
+                throw new IllegalArgumentException(jar + " has an invalid module descriptor");
+            }
+            Iterator<JarEntry> entries = jarFile.versionedStream().iterator();
+            while (entries.hasNext()) {
+                JarEntry entry = entries.next();
+                String entryName = entry.getName();
+                if (entryName.startsWith(SERVICES) && entryName.length() > SERVICES.length() && !entry.isDirectory()) {
+                    List<String> providers = new ArrayList<>();
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(jarFile.getInputStream(entry), StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            int comment = line.indexOf('#');
+                            String provider = (comment < 0 ? line : line.substring(0, comment)).trim();
+                            if (!provider.isEmpty()) {
+                                providers.add(provider);
+                            }
+                        }
+                    }
+                    services.put(entryName.substring(SERVICES.length()), providers);
+                } else if (entryName.endsWith(".class") && !entryName.startsWith("META-INF/") && !entryName.endsWith("module-info.class")) {
+                    int slash = entryName.lastIndexOf('/');
+                    if (slash > 0) {
+                        packages.add(entryName.substring(0, slash).replace('/', '.'));
+                    }
+                }
+            }
+        }
+
+        ModuleDescriptor.Builder builder = ModuleDescriptor.newAutomaticModule(name).packages(packages);
+        for (Map.Entry<String, List<String>> service : services.entrySet()) {
+            List<String> providers = new ArrayList<>();
+            for (String provider : service.getValue()) {
+                int dot = provider.lastIndexOf('.');
+                if (dot > 0 && packages.contains(provider.substring(0, dot))) {
+                    providers.add(provider);
+                }
+            }
+            if (!providers.isEmpty()) {
+                builder.provides(service.getKey(), providers);
+            }
+        }
+        ModuleDescriptor descriptor = builder.build();
+        return new ModuleReference(descriptor, jar.toURI()) {
+            @Override
+            public ModuleReader open() throws IOException {
+                return new JarModuleReader(jar);
+            }
+        };
+    }
+
+    /**
+     * Derives a module name from the coordinates of a library, e.g. {@code bench.synthetic.lib_0}.
+     */
+    private static @NotNull String automaticModuleName(@NotNull Dependency d) {
+        StringBuilder name = new StringBuilder();
+        for (String segment : (d.groupId + "." + d.artifactId).split("\\.")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (name.length() > 0) {
+                name.append('.');
+            }
+            if (!Character.isJavaIdentifierStart(segment.charAt(0))) {
+                name.append('_');
+            }
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                name.append(Character.isJavaIdentifierPart(c) ? c : '_');
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * Rebuilds the package map, newer layers shadowing older ones.
+     */
+    private void index() {
+        Map<String, ClassLoader> packages = new HashMap<>();
+        for (Layer layer : layers) {
+            for (Module module : layer.layer.modules()) {
+                for (String name : module.getPackages()) {
+                    packages.put(name, layer.loader);
+                }
+            }
+        }
+        this.packages = packages;
+    }
+
+    /**
+     * Reads the entries of a jar, as of the version of this runtime.
+     */
+    private static final class JarModuleReader implements ModuleReader {
+        private final JarFile jarFile;
+        private final URI location;
+
+        private JarModuleReader(@NotNull File jar) throws IOException {
+            this.jarFile = new JarFile(jar, true, ZipFile.OPEN_READ, JarFile.runtimeVersion());
+            this.location = jar.toURI();
+        }
+
+        @Override
+        public Optional<URI> find(String name) {
+            JarEntry entry = jarFile.getJarEntry(name);
+            return entry == null ? Optional.empty() : Optional.of(URI.create("jar:" + location + "!/" + entry.getName()));
+        }
+
+        @Override
+        public Optional<InputStream> open(String name) throws IOException {
+            JarEntry entry = jarFile.getJarEntry(name);
+            return entry == null ? Optional.empty() : Optional.of(jarFile.getInputStream(entry));
+        }
+
+        @Override
+        public Stream<String> list() {
+            return jarFile.versionedStream().map(JarEntry::getName);
+        }
+
+        @Override
+        public void close() throws IOException {
+            jarFile.close();
+        }
+    }
+
+    private static final class Layer {
+        private final ModuleLayer layer;
+        private final ClassLoader loader;
+        private final Set<Dependency> dependencies;
+
+        private Layer(@NotNull ModuleLayer layer, @NotNull ClassLoader loader, @NotNull List<Dependency> dependencies) {
+            this.layer = layer;
+            this.loader = loader;
+            this.dependencies = new HashSet<>(dependencies);
+        }
+    }
+}
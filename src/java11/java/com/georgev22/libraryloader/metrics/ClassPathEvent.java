@@ -0,0 +1,45 @@
+package com.georgev22.libraryloader.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URL;
+
+/**
+ * Java Flight Recorder event for a URL added to or removed from a class loader.
+ */
+@Name("com.georgev22.libraryloader.ClassPathChange")
+@Label("Class Path Change")
+@Category({"LibraryLoader"})
+@StackTrace(false)
+public final class ClassPathEvent extends Event {
+
+    @Label("Action")
+    String action;
+
+    @Label("URL")
+    String url;
+
+    @Label("Class Loader")
+    String classLoader;
+
+    static @NotNull ClassPathEvent start() {
+        ClassPathEvent event = new ClassPathEvent();
+        event.begin();
+        return event;
+    }
+
+    void commit(@NotNull String action, @NotNull URL url, @NotNull ClassLoader classLoader) {
+        end();
+        if (shouldCommit()) {
+            this.action = action;
+            this.url = url.toString();
+            this.classLoader = classLoader.getClass().getName();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.georgev22.libraryloader.metrics;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Java Flight Recorder event for a single {@link Phase} of a dependency load.
+ */
+@Name("com.georgev22.libraryloader.DependencyPhase")
+@Label("Dependency Phase")
+@Category({"LibraryLoader"})
+@Description("A phase of loading a dependency, parented to the dependency that requested it")
+@StackTrace(false)
+public final class DependencyPhaseEvent extends Event {
+
+    @Label("Dependency")
+    String dependency;
+
+    @Label("Parent")
+    @Description("The dependency that requested this dependency, empty if it was requested directly")
+    String parent;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Repository")
+    String repository;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Failure")
+    @Description("Why the phase failed, empty if it completed")
+    String failure;
+
+    static @NotNull DependencyPhaseEvent start() {
+        DependencyPhaseEvent event = new DependencyPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    void commit(@NotNull Dependency dependency, @Nullable Dependency parent, @NotNull String repository, @NotNull Phase phase, long bytes, @Nullable Throwable failure) {
+        end();
+        if (shouldCommit()) {
+            this.dependency = dependency.groupId + ":" + dependency.artifactId + ":" + dependency.version;
+            this.parent = parent == null ? "" : parent.groupId + ":" + parent.artifactId + ":" + parent.version;
+            this.phase = phase.name();
+            this.repository = repository;
+            this.bytes = bytes;
+            this.failure = failure == null ? "" : failure.toString();
+            commit();
+        }
+    }
+}
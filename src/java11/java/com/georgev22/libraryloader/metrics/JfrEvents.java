@@ -0,0 +1,34 @@
+package com.georgev22.libraryloader.metrics;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URL;
+
+/**
+ * The {@link FlightRecorderSupport.Events} of {@code jdk.jfr}. Only created reflectively, by
+ * {@link FlightRecorderSupport}, once {@code jdk.jfr} is known to be present.
+ */
+final class JfrEvents implements FlightRecorderSupport.Events {
+
+    @Override
+    public @NotNull Object beginPhase() {
+        return DependencyPhaseEvent.start();
+    }
+
+    @Override
+    public void commitPhase(@NotNull Object event, @NotNull Dependency dependency, @Nullable Dependency parent, @NotNull String repository, @NotNull Phase phase, long bytes, @Nullable Throwable failure) {
+        ((DependencyPhaseEvent) event).commit(dependency, parent, repository, phase, bytes, failure);
+    }
+
+    @Override
+    public @NotNull Object beginClassPathChange() {
+        return ClassPathEvent.start();
+    }
+
+    @Override
+    public void commitClassPathChange(@NotNull Object event, @NotNull String action, @NotNull URL url, @NotNull ClassLoader classLoader) {
+        ((ClassPathEvent) event).commit(action, url, classLoader);
+    }
+}
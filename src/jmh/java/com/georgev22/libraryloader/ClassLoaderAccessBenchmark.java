@@ -0,0 +1,92 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link ClassLoaderAccess} operations against class loaders with 10, 100 and 1000 class path entries.
+ *
+ * <p>The class path entries point to jars that do not exist, the class loader never opens them.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassLoaderAccessBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int entries;
+
+    private URLClassLoader classLoader;
+    private ClassLoaderAccess classLoaderAccess;
+
+    private URL lastEntry;
+    private URL missingEntry;
+    private Dependency missingDependency;
+    private URL addedEntry;
+
+    @Setup
+    public void setup() throws MalformedURLException {
+        File root = new File(System.getProperty("java.io.tmpdir"), "libraryloader-bench-classpath");
+        URL[] urls = new URL[entries];
+        for (int i = 0; i < entries; i++) {
+            urls[i] = new File(root, "library-" + i + "/library-" + i + "-1.0.0.jar").toURI().toURL();
+        }
+        classLoader = new URLClassLoader(urls, null);
+        classLoaderAccess = new ClassLoaderAccess(classLoader);
+
+        lastEntry = urls[entries - 1];
+        missingEntry = new File(root, "missing/missing-1.0.0.jar").toURI().toURL();
+        missingDependency = new Dependency("com.example", "missing", "1.0.0", "https://repo1.maven.org/maven2");
+        addedEntry = new File(root, "added/added-1.0.0.jar").toURI().toURL();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        classLoader.close();
+    }
+
+    @Benchmark
+    public boolean containsUrlHit() {
+        return classLoaderAccess.contains(lastEntry);
+    }
+
+    @Benchmark
+    public boolean containsUrlMiss() {
+        return classLoaderAccess.contains(missingEntry);
+    }
+
+    @Benchmark
+    public boolean containsDependencyMiss() throws Exception {
+        return classLoaderAccess.contains(missingDependency);
+    }
+
+    /**
+     * Adds an entry and removes it again, so the class path size stays constant between invocations.
+     */
+    @Benchmark
+    public void addAndRemove() {
+        classLoaderAccess.add(addedEntry);
+        classLoaderAccess.remove(addedEntry);
+    }
+}
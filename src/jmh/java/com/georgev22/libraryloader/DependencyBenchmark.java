@@ -0,0 +1,69 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Dependency#url()} for release and snapshot artifacts of a local repository,
+ * and the {@link Dependency#toString()}/{@link Dependency#fromString(String)} round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DependencyBenchmark {
+
+    private Path repository;
+    private Dependency release;
+    private Dependency snapshot;
+    private String serialized;
+
+    @Setup
+    public void setup() throws Exception {
+        repository = Fixtures.createRepository(1);
+        String repositoryUrl = Fixtures.repositoryUrl(repository);
+        release = new Dependency(Fixtures.GROUP_ID, "release-artifact", "1.0.0", repositoryUrl);
+        snapshot = new Dependency(Fixtures.GROUP_ID, "snapshot-artifact", "1.0.0-SNAPSHOT", repositoryUrl);
+        serialized = release.toString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.delete(repository);
+    }
+
+    /**
+     * Release versions have no version level metadata, so this measures the failed lookup and the fallback.
+     */
+    @Benchmark
+    public URL urlRelease() throws Exception {
+        return release.url();
+    }
+
+    @Benchmark
+    public URL urlSnapshot() throws Exception {
+        return snapshot.url();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Dependency fromString() {
+        return Dependency.fromString(serialized);
+    }
+}
@@ -0,0 +1,83 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.io.FileTransfers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the stream copy the loader used before with the channel transfers of {@link FileTransfers},
+ * with and without a SHA-1 digest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileTransferBenchmark {
+
+    @Param({"65536", "8388608"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean digest;
+
+    private Path folder;
+    private Path source;
+    private Path target;
+
+    @Setup
+    public void setup() throws Exception {
+        folder = Files.createTempDirectory("libraryloader-bench-transfer");
+        source = folder.resolve("source.jar");
+        target = folder.resolve("target.jar");
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        Files.write(source, bytes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.delete(folder);
+    }
+
+    @Benchmark
+    public long streamCopy() throws Exception {
+        try (InputStream is = Files.newInputStream(source)) {
+            InputStream in = digest ? new DigestInputStream(is, MessageDigest.getInstance("SHA-1")) : is;
+            return Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Benchmark
+    public long channelCopy() throws Exception {
+        try (InputStream is = Files.newInputStream(source)) {
+            return FileTransfers.copy(Channels.newChannel(is), size, target, digest ? MessageDigest.getInstance("SHA-1") : null);
+        }
+    }
+
+    @Benchmark
+    public long fileCopy() throws Exception {
+        return FileTransfers.copy(source, target, digest ? MessageDigest.getInstance("SHA-1") : null);
+    }
+}
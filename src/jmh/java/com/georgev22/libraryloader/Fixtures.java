@@ -0,0 +1,115 @@
+package com.georgev22.libraryloader;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Local fixtures shared by the benchmarks. Nothing here touches the network.
+ */
+final class Fixtures {
+
+    static final String GROUP_ID = "com.example.bench";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates a {@code file://} Maven repository with a release and a snapshot artifact whose poms
+     * declare {@code dependencies} dependencies each.
+     *
+     * @param dependencies the number of dependencies declared by each pom
+     * @return the root of the repository
+     */
+    static @NotNull Path createRepository(int dependencies) throws IOException {
+        Path root = Files.createTempDirectory("libraryloader-bench-repo");
+        writeArtifact(root, "release-artifact", "1.0.0", dependencies);
+        writeArtifact(root, "snapshot-artifact", "1.0.0-SNAPSHOT", dependencies);
+
+        Path snapshotDir = versionDir(root, "snapshot-artifact", "1.0.0-SNAPSHOT");
+        write(snapshotDir.resolve("maven-metadata.xml"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<metadata>\n" +
+                "  <groupId>" + GROUP_ID + "</groupId>\n" +
+                "  <artifactId>snapshot-artifact</artifactId>\n" +
+                "  <version>1.0.0-SNAPSHOT</version>\n" +
+                "  <versioning>\n" +
+                "    <snapshot><timestamp>20240101.000000</timestamp><buildNumber>1</buildNumber></snapshot>\n" +
+                "    <snapshotVersions>\n" +
+                "      <snapshotVersion><extension>pom</extension><value>1.0.0-20240101.000000-1</value></snapshotVersion>\n" +
+                "      <snapshotVersion><extension>jar</extension><value>1.0.0-20240101.000000-1</value></snapshotVersion>\n" +
+                "    </snapshotVersions>\n" +
+                "  </versioning>\n" +
+                "</metadata>\n");
+        return root;
+    }
+
+    static @NotNull String repositoryUrl(@NotNull Path root) {
+        return root.toUri().toString();
+    }
+
+    /**
+     * Returns a real jar from the benchmark class path, used as relocation input.
+     *
+     * @param type a class contained in the jar
+     * @return the jar file
+     */
+    static @NotNull File jarOf(@NotNull Class<?> type) {
+        try {
+            return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void delete(@NotNull Path root) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeArtifact(Path root, String artifactId, String version, int dependencies) throws IOException {
+        StringBuilder pom = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n")
+                .append("  <groupId>").append(GROUP_ID).append("</groupId>\n")
+                .append("  <artifactId>").append(artifactId).append("</artifactId>\n")
+                .append("  <version>").append(version).append("</version>\n")
+                .append("  <dependencies>\n");
+        for (int i = 0; i < dependencies; i++) {
+            pom.append("    <dependency>\n")
+                    .append("      <groupId>").append(GROUP_ID).append(".transitive</groupId>\n")
+                    .append("      <artifactId>transitive-").append(i).append("</artifactId>\n")
+                    .append("      <version>2.").append(i).append(".0</version>\n")
+                    .append("    </dependency>\n");
+        }
+        pom.append("  </dependencies>\n</project>\n");
+        write(versionDir(root, artifactId, version).resolve(artifactId + "-" + version + ".pom"), pom.toString());
+    }
+
+    private static Path versionDir(Path root, String artifactId, String version) throws IOException {
+        Path dir = root.resolve(GROUP_ID.replace('.', '/')).resolve(artifactId).resolve(version);
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
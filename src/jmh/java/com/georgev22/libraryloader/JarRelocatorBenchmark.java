@@ -0,0 +1,65 @@
+package com.georgev22.libraryloader;
+
+import me.lucko.jarrelocator.JarRelocator;
+import me.lucko.jarrelocator.Relocation;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.commons.Remapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JarRelocator} on the ASM jars from the benchmark class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JarRelocatorBenchmark {
+
+    @Param({"asm", "asm-commons"})
+    public String jar;
+
+    private File input;
+    private Path outputFolder;
+    private File output;
+    private List<Relocation> relocations;
+
+    @Setup
+    public void setup() throws Exception {
+        input = Fixtures.jarOf("asm".equals(jar) ? ClassReader.class : Remapper.class);
+        outputFolder = Files.createTempDirectory("libraryloader-bench-relocation");
+        output = outputFolder.resolve("relocated.jar").toFile();
+        relocations = Collections.singletonList(new Relocation("org.objectweb.asm", "com.example.relocated.asm"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.delete(outputFolder);
+    }
+
+    @Benchmark
+    public File relocate() throws Exception {
+        Files.deleteIfExists(output.toPath());
+        new JarRelocator(input, output, relocations).run();
+        return output;
+    }
+}
@@ -0,0 +1,63 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures {@link LibraryLoader#parsePomDependencies} against poms of different sizes in a local repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PomParsingBenchmark {
+
+    @Param({"5", "50", "500"})
+    public int dependencies;
+
+    private Path repository;
+    private Path dataFolder;
+    private LibraryLoader libraryLoader;
+    private Dependency dependency;
+
+    @Setup
+    public void setup() throws Exception {
+        repository = Fixtures.createRepository(dependencies);
+        dataFolder = Files.createTempDirectory("libraryloader-bench-data");
+        Logger logger = Logger.getLogger("PomParsingBenchmark");
+        logger.setLevel(Level.OFF);
+        libraryLoader = new LibraryLoader(getClass().getClassLoader(), dataFolder.toFile(), logger);
+        dependency = new Dependency(Fixtures.GROUP_ID, "release-artifact", "1.0.0", Fixtures.repositoryUrl(repository));
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.delete(repository);
+        Fixtures.delete(dataFolder);
+    }
+
+    @Benchmark
+    public List<Dependency> parsePomDependencies() throws Exception {
+        return libraryLoader.parsePomDependencies(dependency, null, dependency.repoUrl);
+    }
+}
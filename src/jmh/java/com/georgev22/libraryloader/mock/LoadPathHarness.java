@@ -0,0 +1,132 @@
+package com.georgev22.libraryloader.mock;
+
+import com.georgev22.libraryloader.LibraryLoader;
+import com.georgev22.libraryloader.LoadPipeline;
+import com.georgev22.libraryloader.annotations.MavenLibrary;
+import com.georgev22.libraryloader.metrics.LoaderMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end benchmark of {@link LibraryLoader#loadAll(Class, boolean)} against a {@link MockMavenRepository}
+ * serving a {@link SyntheticGraph}.
+ *
+ * <p>A cold run starts with an empty data folder, a warm run reuses the data folder of the previous run
+ * with a fresh class loader, like a server restart. Every run reports wall time, request count and bytes.</p>
+ *
+ * <p>Options are passed as {@code key=value} arguments, e.g. {@code artifacts=300 latency=20 bandwidth=10000000
+ * errors=0.01 runs=5 merged=true moduleLayer=true pipeline=8}, where {@code pipeline} loads the graph with a
+ * {@link LoadPipeline} of that parallelism. Run it with {@code ./gradlew loadPathBenchmark -PbenchArgs="latency=20"}.</p>
+ */
+public final class LoadPathHarness {
+
+    /**
+     * The port of the mock repository, fixed because annotation values must be constants.
+     */
+    public static final int PORT = 18765;
+
+    @MavenLibrary(value = SyntheticGraph.GROUP_ID + ":" + SyntheticGraph.ROOT_ARTIFACT + ":" + SyntheticGraph.VERSION + ":http://127.0.0.1:" + PORT + "/")
+    private static final class Libraries {
+    }
+
+    private LoadPathHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        int artifacts = Integer.parseInt(options.getOrDefault("artifacts", "300"));
+        int layers = Integer.parseInt(options.getOrDefault("layers", "6"));
+        int fanOut = Integer.parseInt(options.getOrDefault("fanOut", "4"));
+        int classes = Integer.parseInt(options.getOrDefault("classes", "20"));
+        int padding = Integer.parseInt(options.getOrDefault("padding", "32768"));
+        long latency = Long.parseLong(options.getOrDefault("latency", "0"));
+        long bandwidth = Long.parseLong(options.getOrDefault("bandwidth", "0"));
+        double errors = Double.parseDouble(options.getOrDefault("errors", "0"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        boolean merged = Boolean.parseBoolean(options.getOrDefault("merged", "false"));
+        boolean moduleLayer = Boolean.parseBoolean(options.getOrDefault("moduleLayer", "false"));
+        int pipeline = Integer.parseInt(options.getOrDefault("pipeline", "0"));
+
+        Logger logger = Logger.getLogger("LoadPathHarness");
+        logger.setLevel(Level.parse(options.getOrDefault("logLevel", "SEVERE")));
+
+        SyntheticGraph graph = SyntheticGraph.generate(artifacts, layers, fanOut, classes, padding, seed);
+        System.out.printf("Synthetic graph: %d artifacts, %d files, %d jar bytes%n",
+                graph.getEdges().size(), graph.getFiles().size(), graph.getJarBytes());
+        System.out.printf("Repository: latency=%dms bandwidth=%s errors=%.2f%%%n",
+                latency, bandwidth > 0 ? bandwidth + "B/s" : "unlimited", errors * 100);
+
+        try (MockMavenRepository repository = MockMavenRepository.builder(graph.getFiles())
+                .port(PORT)
+                .latency(latency, TimeUnit.MILLISECONDS)
+                .bandwidth(bandwidth)
+                .errorRate(errors)
+                .start()) {
+            for (int run = 1; run <= runs; run++) {
+                Path dataFolder = Files.createTempDirectory("libraryloader-harness");
+                try {
+                    run("cold #" + run, repository, dataFolder.toFile(), merged, moduleLayer, pipeline, logger);
+                    run("warm #" + run, repository, dataFolder.toFile(), merged, moduleLayer, pipeline, logger);
+                } finally {
+                    delete(dataFolder);
+                }
+            }
+        }
+    }
+
+    private static void run(String name, MockMavenRepository repository, File dataFolder, boolean merged, boolean moduleLayer, int pipeline, Logger logger) throws IOException {
+        repository.resetCounters();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[0], LoadPathHarness.class.getClassLoader())) {
+            LibraryLoader libraryLoader = new LibraryLoader(classLoader, dataFolder, logger);
+            libraryLoader.getMergedClassPath().setEnabled(merged);
+            if (moduleLayer && libraryLoader.getModuleLayerClassPath() != null) {
+                libraryLoader.getModuleLayerClassPath().setEnabled(true);
+            }
+            long start = System.nanoTime();
+            String result = "ok";
+            try {
+                if (pipeline > 0) {
+                    LoadPipeline loadPipeline = libraryLoader.pipeline(false, pipeline);
+                    loadPipeline.add(Libraries.class, 0);
+                    loadPipeline.await();
+                } else {
+                    libraryLoader.loadAll(Libraries.class, false);
+                }
+            } catch (Exception e) {
+                result = "failed: " + e;
+            }
+            long wall = System.nanoTime() - start;
+
+            LoaderMetrics metrics = libraryLoader.getMetrics();
+            System.out.printf("%-9s wall=%6dms loaded=%4d jars=%4d requests=%5d 404=%4d 503=%4d bytes=%10d cacheHits=%4d cacheMisses=%4d %s%n",
+                    name, TimeUnit.NANOSECONDS.toMillis(wall), libraryLoader.getDependencyList().size(), classLoader.getURLs().length,
+                    repository.getRequests(), repository.getNotFound(), repository.getErrors(), repository.getBytesServed(),
+                    metrics.getCacheHits(), metrics.getCacheMisses(), result);
+        }
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
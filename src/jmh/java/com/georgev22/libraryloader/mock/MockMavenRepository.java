@@ -0,0 +1,219 @@
+package com.georgev22.libraryloader.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory Maven repository served over HTTP with the JDK's {@link HttpServer}.
+ *
+ * <p>Every request can be delayed by a fixed latency, responses are throttled to a bandwidth cap,
+ * and a share of the requests can be answered with {@code 503 Service Unavailable}.</p>
+ */
+public final class MockMavenRepository implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    static {
+        // without TCP_NODELAY, Nagle and delayed ACKs add ~40ms to every request on a reused connection,
+        // which real repositories do not, read once by the JDK server
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Map<String, byte[]> files;
+    private final long latencyMillis;
+    private final long bytesPerSecond;
+    private final double errorRate;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+
+    private MockMavenRepository(Builder builder) throws IOException {
+        this.files = builder.files;
+        this.latencyMillis = builder.latencyMillis;
+        this.bytesPerSecond = builder.bytesPerSecond;
+        this.errorRate = builder.errorRate;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-maven-repository-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 128);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public static @NotNull Builder builder(@NotNull Map<String, byte[]> files) {
+        return new Builder(files);
+    }
+
+    /**
+     * Returns the base URL of the repository, ending with a slash.
+     *
+     * @return the repository URL
+     */
+    public @NotNull String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getNotFound() {
+        return notFound.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getBytesServed() {
+        return bytesServed.sum();
+    }
+
+    /**
+     * Resets the request counters.
+     */
+    public void resetCounters() {
+        requests.reset();
+        notFound.reset();
+        errors.reset();
+        bytesServed.reset();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.increment();
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.increment();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            // the loader sometimes requests paths with a double slash, which URI would parse as an authority
+            String path = exchange.getRequestURI().toString();
+            int query = path.indexOf('?');
+            if (query != -1) {
+                path = path.substring(0, query);
+            }
+            while (path.contains("//")) {
+                path = path.replace("//", "/");
+            }
+            if (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            byte[] content = files.get(path);
+            if (content == null) {
+                notFound.increment();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", Integer.toString(content.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+                    int length = Math.min(CHUNK_SIZE, content.length - offset);
+                    out.write(content, offset, length);
+                    bytesServed.add(length);
+                    if (bytesPerSecond > 0) {
+                        TimeUnit.NANOSECONDS.sleep(length * 1_000_000_000L / bytesPerSecond);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Builder of a {@link MockMavenRepository}.
+     */
+    public static final class Builder {
+
+        private final Map<String, byte[]> files;
+        private int port;
+        private long latencyMillis;
+        private long bytesPerSecond;
+        private double errorRate;
+
+        private Builder(Map<String, byte[]> files) {
+            this.files = files;
+        }
+
+        /**
+         * Sets the port to listen on, {@code 0} picks a free port.
+         */
+        public @NotNull Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Sets the latency added to every request.
+         */
+        public @NotNull Builder latency(long latency, @NotNull TimeUnit unit) {
+            this.latencyMillis = unit.toMillis(latency);
+            return this;
+        }
+
+        /**
+         * Sets the bandwidth cap of every response, {@code 0} disables the cap.
+         */
+        public @NotNull Builder bandwidth(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the share of requests, between {@code 0} and {@code 1}, answered with {@code 503}.
+         */
+        public @NotNull Builder errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        public @NotNull MockMavenRepository start() throws IOException {
+            return new MockMavenRepository(this);
+        }
+    }
+}
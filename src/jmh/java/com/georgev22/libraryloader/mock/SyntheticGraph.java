@@ -0,0 +1,213 @@
+package com.georgev22.libraryloader.mock;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A generated, deterministic dependency graph laid out as a Maven repository.
+ *
+ * <p>The graph has a single {@link #ROOT_ARTIFACT root} artifact that depends on the first layer.
+ * Every other artifact depends on a few artifacts of deeper layers, so the graph is acyclic and
+ * shares transitive dependencies like real-world graphs do.</p>
+ */
+public final class SyntheticGraph {
+
+    public static final String GROUP_ID = "bench.synthetic";
+    public static final String ROOT_ARTIFACT = "root";
+    public static final String VERSION = "1.0.0";
+
+    private final Map<String, byte[]> files = new LinkedHashMap<>();
+    private final Map<String, List<String>> edges = new LinkedHashMap<>();
+
+    private SyntheticGraph() {
+    }
+
+    /**
+     * Generates a graph.
+     *
+     * @param artifacts     the number of artifacts, excluding the root
+     * @param layers        the depth of the graph
+     * @param fanOut        the maximum number of dependencies per artifact
+     * @param classesPerJar the number of classes generated into every jar
+     * @param padding       extra bytes stored into every jar to simulate bigger libraries
+     * @param seed          the seed of the generator
+     * @return the generated graph
+     */
+    public static @NotNull SyntheticGraph generate(int artifacts, int layers, int fanOut, int classesPerJar, int padding, long seed) {
+        SyntheticGraph graph = new SyntheticGraph();
+        Random random = new Random(seed);
+
+        List<List<String>> layered = new ArrayList<>();
+        for (int layer = 0; layer < layers; layer++) {
+            layered.add(new ArrayList<>());
+        }
+        for (int i = 0; i < artifacts; i++) {
+            layered.get(i % layers).add("lib-" + i);
+        }
+
+        graph.edges.put(ROOT_ARTIFACT, new ArrayList<>(layered.get(0)));
+        for (int layer = 0; layer < layers; layer++) {
+            for (String artifactId : layered.get(layer)) {
+                List<String> dependencies = new ArrayList<>();
+                if (layer + 1 < layers) {
+                    int count = random.nextInt(fanOut + 1);
+                    for (int i = 0; i < count; i++) {
+                        int target = layer + 1 + random.nextInt(layers - layer - 1);
+                        List<String> candidates = layered.get(target);
+                        String dependency = candidates.get(random.nextInt(candidates.size()));
+                        if (!dependencies.contains(dependency)) {
+                            dependencies.add(dependency);
+                        }
+                    }
+                }
+                graph.edges.put(artifactId, dependencies);
+            }
+        }
+
+        for (Map.Entry<String, List<String>> entry : graph.edges.entrySet()) {
+            graph.addArtifact(entry.getKey(), entry.getValue(), classesPerJar, padding, random);
+        }
+        return graph;
+    }
+
+    /**
+     * Returns every file of the repository, keyed by its path relative to the repository root.
+     *
+     * @return the repository files
+     */
+    public @NotNull Map<String, byte[]> getFiles() {
+        return Collections.unmodifiableMap(files);
+    }
+
+    /**
+     * Returns the artifacts of the graph, including the root.
+     *
+     * @return artifact id to the artifact ids it depends on
+     */
+    public @NotNull Map<String, List<String>> getEdges() {
+        return Collections.unmodifiableMap(edges);
+    }
+
+    /**
+     * Returns the total size of all jars of the graph.
+     *
+     * @return the size in bytes
+     */
+    public long getJarBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            if (file.getKey().endsWith(".jar")) {
+                bytes += file.getValue().length;
+            }
+        }
+        return bytes;
+    }
+
+    private void addArtifact(String artifactId, List<String> dependencies, int classesPerJar, int padding, Random random) {
+        String directory = GROUP_ID.replace('.', '/') + "/" + artifactId + "/";
+        String base = directory + VERSION + "/" + artifactId + "-" + VERSION;
+
+        StringBuilder pom = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n")
+                .append("  <groupId>").append(GROUP_ID).append("</groupId>\n")
+                .append("  <artifactId>").append(artifactId).append("</artifactId>\n")
+                .append("  <version>").append(VERSION).append("</version>\n")
+                .append("  <dependencies>\n");
+        for (String dependency : dependencies) {
+            pom.append("    <dependency>\n")
+                    .append("      <groupId>").append(GROUP_ID).append("</groupId>\n")
+                    .append("      <artifactId>").append(dependency).append("</artifactId>\n")
+                    .append("      <version>").append(VERSION).append("</version>\n")
+                    .append("    </dependency>\n");
+        }
+        pom.append("  </dependencies>\n</project>\n");
+
+        String metadata = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<metadata>\n" +
+                "  <groupId>" + GROUP_ID + "</groupId>\n" +
+                "  <artifactId>" + artifactId + "</artifactId>\n" +
+                "  <versioning>\n" +
+                "    <latest>" + VERSION + "</latest>\n" +
+                "    <release>" + VERSION + "</release>\n" +
+                "    <versions><version>" + VERSION + "</version></versions>\n" +
+                "  </versioning>\n" +
+                "</metadata>\n";
+
+        put(base + ".pom", pom.toString().getBytes(StandardCharsets.UTF_8));
+        put(base + ".jar", jar(artifactId, classesPerJar, padding, random));
+        put(directory + "maven-metadata.xml", metadata.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void put(String path, byte[] content) {
+        files.put(path, content);
+        files.put(path + ".sha1", sha1(content).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] jar(String artifactId, int classes, int padding, Random random) {
+        String packageName = GROUP_ID.replace('.', '/') + "/" + artifactId.replace('-', '_');
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream jar = new JarOutputStream(bytes)) {
+            for (int i = 0; i < classes; i++) {
+                String name = packageName + "/Generated" + i;
+                jar.putNextEntry(new JarEntry(name + ".class"));
+                jar.write(emptyClass(name));
+                jar.closeEntry();
+            }
+            if (padding > 0) {
+                byte[] data = new byte[padding];
+                random.nextBytes(data);
+                jar.putNextEntry(new JarEntry(packageName + "/padding.bin"));
+                jar.write(data);
+                jar.closeEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] emptyClass(String internalName) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(1, 1);
+        constructor.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static String sha1(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.georgev22.libraryloader;
 
+import com.georgev22.libraryloader.metrics.FlightRecorderSupport;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.Closeable;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -9,6 +12,9 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,6 +28,8 @@ import java.util.logging.Logger;
 public class ClassLoaderAccess {
     private final Collection<URL> unopenedURLs;
     private final Collection<URL> pathURLs;
+    private final Object ucp;
+    private final LongAdder releasedLoaders = new LongAdder();
 
     private final ClassLoader classLoader;
 
@@ -59,16 +67,18 @@ public class ClassLoaderAccess {
         this.classLoader = classLoader;
         Collection<URL> unopenedURLs;
         Collection<URL> pathURLs;
+        Object ucp = null;
         try {
-            Object ucp = fetchField(classLoader.getClass(), classLoader, "ucp");
+            ucp = fetchField(classLoader.getClass(), classLoader, "ucp");
             unopenedURLs = (Collection<URL>) fetchField(ucp.getClass(), ucp, "unopenedUrls");
             pathURLs = (Collection<URL>) fetchField(ucp.getClass(), ucp, "path");
         } catch (Throwable e) {
             try {
-                Object ucp = fetchField(classLoader.getClass(), classLoader, "ucp");
+                ucp = fetchField(classLoader.getClass(), classLoader, "ucp");
                 unopenedURLs = (Collection<URL>) fetchField(ucp.getClass(), ucp, "urls");
                 pathURLs = (Collection<URL>) fetchField(ucp.getClass(), ucp, "path");
             } catch (Throwable e1) {
+                ucp = null;
                 unopenedURLs = null;
                 pathURLs = null;
                 if (this.logger != null) {
@@ -82,6 +92,7 @@ public class ClassLoaderAccess {
         }
         this.unopenedURLs = unopenedURLs;
         this.pathURLs = pathURLs;
+        this.ucp = ucp;
     }
 
     /**
@@ -94,16 +105,18 @@ public class ClassLoaderAccess {
         this.classLoader = classLoader;
         Collection<URL> unopenedURLs;
         Collection<URL> pathURLs;
+        Object ucp = null;
         try {
-            Object ucp = fetchField(classLoader.getClass().getSuperclass(), classLoader, "ucp");
+            ucp = fetchField(classLoader.getClass().getSuperclass(), classLoader, "ucp");
             unopenedURLs = (Collection<URL>) fetchField(ucp.getClass(), ucp, "unopenedUrls");
             pathURLs = (Collection<URL>) fetchField(ucp.getClass(), ucp, "path");
         } catch (Throwable e) {
             try {
-                Object ucp = fetchField(classLoader.getClass().getSuperclass(), classLoader, "ucp");
+                ucp = fetchField(classLoader.getClass().getSuperclass(), classLoader, "ucp");
                 unopenedURLs = (Collection<URL>) fetchField(ucp.getClass(), ucp, "urls");
                 pathURLs = (Collection<URL>) fetchField(ucp.getClass(), ucp, "path");
             } catch (Throwable e1) {
+                ucp = null;
                 unopenedURLs = null;
                 pathURLs = null;
                 if (this.logger != null) {
@@ -117,6 +130,7 @@ public class ClassLoaderAccess {
         }
         this.unopenedURLs = unopenedURLs;
         this.pathURLs = pathURLs;
+        this.ucp = ucp;
     }
 
     /**
@@ -125,21 +139,146 @@ public class ClassLoaderAccess {
      * @param url the URL to add
      */
     public void add(@NotNull URL url) throws RuntimeException {
-        if (this.unopenedURLs.contains(url) || this.pathURLs.contains(url)) {
-            throw new RuntimeException("URL " + url + " already exists in the path");
+        // URLClassPath guards both collections with the lock of unopenedURLs
+        synchronized (this.unopenedURLs) {
+            if (this.unopenedURLs.contains(url) || this.pathURLs.contains(url)) {
+                throw new RuntimeException("URL " + url + " already exists in the path");
+            }
+            Object event = FlightRecorderSupport.beginClassPathChange();
+            this.unopenedURLs.add(url);
+            this.pathURLs.add(url);
+            FlightRecorderSupport.commitClassPathChange(event, "add", url, this.classLoader);
         }
-        this.unopenedURLs.add(url);
-        this.pathURLs.add(url);
     }
 
     /**
      * Removes the given URL from the class loader.
+     * If the class loader already opened the URL, its loader is closed, which releases the open jar file.
      *
      * @param url the URL to remove
+     * @see #removeAndClose(URL)
      */
     public void remove(@NotNull URL url) {
-        this.unopenedURLs.remove(url);
-        this.pathURLs.remove(url);
+        removeAndClose(url);
+    }
+
+    /**
+     * Removes the given URL from the class loader, like {@link #remove(URL)}, and reports whether the loader of
+     * the URL was closed.
+     *
+     * @param url the URL to remove
+     * @return {@code true} if an opened loader was closed, {@code false} if the class loader never opened the URL
+     */
+    public boolean removeAndClose(@NotNull URL url) {
+        synchronized (this.unopenedURLs) {
+            Object event = FlightRecorderSupport.beginClassPathChange();
+            this.unopenedURLs.remove(url);
+            this.pathURLs.remove(url);
+            FlightRecorderSupport.commitClassPathChange(event, "remove", url, this.classLoader);
+        }
+        return closeLoader(url);
+    }
+
+    /**
+     * Closes the loader URLClassPath created for a URL and removes it from its loaders and lookup map.
+     * Classes that were already loaded from the URL stay usable, resources of the URL can no longer be found.
+     *
+     * @param url the URL
+     * @return {@code true} if a loader was closed
+     */
+    @SuppressWarnings("unchecked")
+    private boolean closeLoader(@NotNull URL url) {
+        if (this.ucp == null) {
+            return false;
+        }
+        Object loader = null;
+        try {
+            // URLClassPath creates and looks up its loaders while holding its own lock
+            synchronized (this.ucp) {
+                List<Object> loaders = (List<Object>) fetchField(this.ucp.getClass(), this.ucp, "loaders");
+                Map<String, Object> lmap = (Map<String, Object>) fetchField(this.ucp.getClass(), this.ucp, "lmap");
+                for (Object candidate : loaders) {
+                    if (url.equals(loaderURL(candidate))) {
+                        loader = candidate;
+                        break;
+                    }
+                }
+                if (loader == null) {
+                    return false;
+                }
+                loaders.remove(loader);
+                lmap.values().remove(loader);
+            }
+            Object event = FlightRecorderSupport.beginClassPathChange();
+            if (loader instanceof Closeable) {
+                ((Closeable) loader).close();
+            }
+            FlightRecorderSupport.commitClassPathChange(event, "close", url, this.classLoader);
+        } catch (Throwable e) {
+            if (this.logger != null) {
+                this.logger.log(Level.WARNING, "Unable to close the loader of " + url, e);
+            }
+            return loader != null;
+        }
+        this.releasedLoaders.increment();
+        if (this.logger != null) {
+            this.logger.info("Closed the loader of " + url + " and released its open files");
+        }
+        return true;
+    }
+
+    /**
+     * Returns the URL a URLClassPath loader was created for, {@code csu} for jar loaders and {@code base} otherwise.
+     */
+    private @Nullable URL loaderURL(@NotNull Object loader) {
+        for (String name : new String[]{"csu", "base"}) {
+            for (Class<?> clazz = loader.getClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                try {
+                    return (URL) fetchField(clazz, loader, name);
+                } catch (NoSuchFieldException | UnsupportedOperationException e) {
+                    // declared by a super class, or not at all
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether a class loader, or one of its super classes, declares the URL class path this class accesses.
+     *
+     * @param classLoader the class loader
+     * @return {@code true} if URLs can be added to the class loader
+     */
+    static boolean hasURLClassPath(@NotNull ClassLoader classLoader) {
+        for (Class<?> clazz = classLoader.getClass(); clazz != null && clazz != ClassLoader.class; clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredField("ucp");
+                return true;
+            } catch (NoSuchFieldException e) {
+                // declared by a super class, or not at all
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the class loader URLs are added to.
+     *
+     * @return the class loader
+     */
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * Returns the number of loaders closed by {@link #remove(URL)}, each of which released an open jar file.
+     *
+     * @return the number of released loaders
+     */
+    public long getReleasedLoaders() {
+        return releasedLoaders.sum();
     }
 
     public Collection<URL> getPathURLs() {
@@ -157,9 +296,11 @@ public class ClassLoaderAccess {
      * @return if the URL is present to the unopenedURLs or pathURLs.
      */
     public boolean contains(URL url) {
-        if (unopenedURLs.contains(url)) {
-            return true;
-        } else return pathURLs.contains(url);
+        synchronized (unopenedURLs) {
+            if (unopenedURLs.contains(url)) {
+                return true;
+            } else return pathURLs.contains(url);
+        }
     }
 
     /**
@@ -170,7 +311,9 @@ public class ClassLoaderAccess {
      * @throws URISyntaxException if the dependency is invalid@
      */
     public boolean contains(LibraryLoader.@NotNull Dependency dependency) throws URISyntaxException {
-        return contains(dependency, unopenedURLs) | contains(dependency, pathURLs);
+        synchronized (unopenedURLs) {
+            return contains(dependency, unopenedURLs) | contains(dependency, pathURLs);
+        }
     }
 
     /**
@@ -185,6 +328,17 @@ public class ClassLoaderAccess {
     private boolean contains(LibraryLoader.@NotNull Dependency dependency, @NotNull Collection<URL> urls) throws URISyntaxException {
         for (URL url : urls) {
             String fileName = url.toURI().getPath().substring(url.toURI().getPath().lastIndexOf("\\") + 1);
+            if (dependency.classifier != null) {
+                // the main and the classified artifacts only differ by the classifier
+                if (fileName.endsWith("/" + dependency.getBaseName() + ".jar") || fileName.equalsIgnoreCase(dependency.getBaseName() + ".jar")) {
+                    return true;
+                }
+                continue;
+            }
+            if (fileName.contains("/" + dependency.artifactId + "-" + dependency.version + "-") && !fileName.contains("-slim-")) {
+                // a classified artifact of the dependency
+                continue;
+            }
             if (fileName.equalsIgnoreCase(dependency.artifactId + "-" + dependency.version + ".jar")) {
                 return true;
             } else if (fileName.replace("-" + dependency.version, "").equalsIgnoreCase(dependency.artifactId + ".jar")) {
@@ -0,0 +1,123 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe registry of the dependencies loaded by a {@link LibraryLoader}.
+ *
+ * <p>Loaded dependencies are indexed by their coordinates and keep their load order. The repository of a dependency
+ * is only a hint of where to find it, so a dependency loaded through one repository is loaded for every repository.
+ * Resolutions in progress are tracked per coordinate as well, so concurrent loads of one coordinate share a single
+ * resolution and download: the first caller becomes the leader of the flight, later callers wait for its result.</p>
+ */
+final class DependencyRegistry {
+
+    private final Map<String, Loaded> loaded = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<List<Dependency>>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Returns whether a dependency with the coordinates of the given one is loaded, from any repository.
+     *
+     * @param dependency the dependency
+     * @return {@code true} if the coordinates are loaded
+     */
+    boolean contains(@NotNull Dependency dependency) {
+        return loaded.containsKey(dependency.getCoordinates());
+    }
+
+    /**
+     * Returns the loaded dependency with the coordinates of the given one, which may name another repository.
+     *
+     * @param dependency the dependency
+     * @return the loaded dependency, or {@code null} if the coordinates are not loaded
+     */
+    @Nullable Dependency get(@NotNull Dependency dependency) {
+        Loaded entry = loaded.get(dependency.getCoordinates());
+        return entry == null ? null : entry.dependency;
+    }
+
+    /**
+     * Registers a loaded dependency.
+     *
+     * @param dependency the dependency
+     * @return {@code true} if the coordinates were not registered yet
+     */
+    boolean add(@NotNull Dependency dependency) {
+        return loaded.putIfAbsent(dependency.getCoordinates(), new Loaded(dependency, sequence.incrementAndGet())) == null;
+    }
+
+    boolean remove(@NotNull Dependency dependency) {
+        return loaded.remove(dependency.getCoordinates()) != null;
+    }
+
+    int size() {
+        return loaded.size();
+    }
+
+    /**
+     * Returns a snapshot of the loaded dependencies in load order.
+     *
+     * @return the loaded dependencies
+     */
+    @NotNull @Unmodifiable List<Dependency> list() {
+        List<Loaded> entries = new ArrayList<>(loaded.values());
+        entries.sort(Comparator.comparingLong(entry -> entry.sequence));
+        List<Dependency> dependencies = new ArrayList<>(entries.size());
+        for (Loaded entry : entries) {
+            dependencies.add(entry.dependency);
+        }
+        return Collections.unmodifiableList(dependencies);
+    }
+
+    /**
+     * Joins the flight of a coordinate.
+     *
+     * @param coordinate the coordinate, e.g. {@code groupId:artifactId:version}
+     * @param flight     the flight to lead if none is in progress
+     * @return the flight in progress, or {@code null} if the caller leads {@code flight}
+     */
+    @Nullable CompletableFuture<List<Dependency>> join(@NotNull String coordinate, @NotNull CompletableFuture<List<Dependency>> flight) {
+        return flights.putIfAbsent(coordinate, flight);
+    }
+
+    /**
+     * Ends a flight led by the caller. The flight must be completed before.
+     *
+     * @param coordinate the coordinate
+     * @param flight     the flight
+     */
+    void land(@NotNull String coordinate, @NotNull CompletableFuture<List<Dependency>> flight) {
+        flights.remove(coordinate, flight);
+    }
+
+    private static final class Loaded {
+        private final Dependency dependency;
+        private final long sequence;
+
+        private Loaded(@NotNull Dependency dependency, long sequence) {
+            this.dependency = dependency;
+            this.sequence = sequence;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DependencyRegistry{" +
+                "loaded=" + loaded.size() +
+                ", inFlight=" + flights.size() +
+                '}';
+    }
+}
@@ -26,13 +26,40 @@
 package com.georgev22.libraryloader;
 
 import com.georgev22.libraryloader.annotations.MavenLibrary;
+import com.georgev22.libraryloader.annotations.Relocate;
+import com.georgev22.libraryloader.annotations.Repository;
+import com.georgev22.libraryloader.bundle.LibraryBundle;
+import com.georgev22.libraryloader.cache.LibraryCache;
+import com.georgev22.libraryloader.classpath.ClassConflictAnalyzer;
+import com.georgev22.libraryloader.classpath.ClassConflicts;
+import com.georgev22.libraryloader.classpath.ClassIndex;
+import com.georgev22.libraryloader.classpath.JarSlimmer;
+import com.georgev22.libraryloader.classpath.MergedClassPath;
+import com.georgev22.libraryloader.classpath.ModuleLayerClassPath;
 import com.georgev22.libraryloader.exceptions.InvalidDependencyException;
 import com.georgev22.libraryloader.exceptions.UnknownDependencyException;
+import com.georgev22.libraryloader.io.Bytes;
+import com.georgev22.libraryloader.io.FileTransfers;
+import com.georgev22.libraryloader.lock.LibraryLock;
+import com.georgev22.libraryloader.metrics.ChromeTraceExporter;
+import com.georgev22.libraryloader.metrics.LoaderMetrics;
+import com.georgev22.libraryloader.metrics.Phase;
+import com.georgev22.libraryloader.metrics.Span;
+import com.georgev22.libraryloader.platform.Platform;
+import com.georgev22.libraryloader.repository.ConnectionSettings;
+import com.georgev22.libraryloader.repository.MetadataCache;
+import com.georgev22.libraryloader.repository.RemoteRepository;
+import com.georgev22.libraryloader.repository.RepositoryConnector;
+import com.georgev22.libraryloader.repository.RepositoryRouter;
+import com.georgev22.libraryloader.scanner.LibraryScanner;
+import com.georgev22.libraryloader.version.VersionRange;
+import com.georgev22.libraryloader.version.VersionResolver;
 import me.lucko.jarrelocator.JarRelocator;
 import me.lucko.jarrelocator.Relocation;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.UnmodifiableView;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -42,20 +69,32 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -85,7 +124,88 @@ public final class LibraryLoader {
     /**
      * List of loaded dependencies.
      */
-    private final List<Dependency> dependencyList = new ArrayList<>();
+    private final DependencyRegistry dependencies = new DependencyRegistry();
+
+    /**
+     * Per-phase timers and counters of this loader.
+     */
+    private final LoaderMetrics metrics;
+
+    /**
+     * Exporter of the startup timeline, or {@code null} if trace export is disabled.
+     */
+    private volatile ChromeTraceExporter traceExporter;
+
+    /**
+     * Routes requests over the repositories and mirrors of this loader.
+     */
+    private final RepositoryRouter repositoryRouter = new RepositoryRouter();
+
+    /**
+     * Timeouts, retries and hedging of the repository requests.
+     */
+    private final ConnectionSettings connectionSettings = new ConnectionSettings();
+
+    /**
+     * Sends the repository requests of this loader.
+     */
+    private final RepositoryConnector repositoryConnector;
+
+    /**
+     * Cache of the {@code maven-metadata.xml} lookups.
+     */
+    private final MetadataCache metadataCache;
+
+    /**
+     * Detects classes and packages shared by the loaded libraries.
+     */
+    private final ClassConflictAnalyzer classConflicts = new ClassConflictAnalyzer();
+
+    /**
+     * Removes the unused classes of the libraries that declare entry points.
+     */
+    private final JarSlimmer jarSlimmer = new JarSlimmer();
+
+    /**
+     * Merges the libraries of a load into one jar when enabled.
+     */
+    private final MergedClassPath mergedClassPath;
+    private final @Nullable ModuleLayerClassPath moduleLayerClassPath;
+
+    /**
+     * The outermost load call of the current thread.
+     */
+    private final ThreadLocal<LoadBatch> currentLoad = new ThreadLocal<>();
+
+    /**
+     * The injection of each batched dependency whose batch is not injected yet, by coordinates.
+     */
+    private final Map<String, CompletableFuture<Void>> pendingInjections = new ConcurrentHashMap<>();
+
+    /**
+     * The merged jar each merged dependency was loaded from.
+     */
+    private final Map<Dependency, File> mergedJars = new ConcurrentHashMap<>();
+
+    /**
+     * Last use and quota of the library folder.
+     */
+    private final LibraryCache libraryCache;
+
+    /**
+     * Resolves the version ranges and dynamic versions of the dependencies.
+     */
+    private final VersionResolver versionResolver;
+
+    /**
+     * The class loader this loader's consumer reaches its shared libraries through.
+     */
+    private final SharedLibraryRegistry.SharedClassLoader sharedClassLoader;
+
+    /**
+     * Whether libraries are shared with the other loaders of this JVM.
+     */
+    private volatile boolean shareLibraries = false;
 
     /**
      * Constructs a LibraryLoader instance with the specified class, class loader, data folder, and logger.
@@ -96,10 +216,7 @@ public final class LibraryLoader {
      */
     public LibraryLoader(@NotNull URLClassLoader classLoader,
                          @NotNull File dataFolder, @NotNull Logger logger) {
-        this.classLoaderAccess = new ClassLoaderAccess(classLoader);
-        this.classLoaderAccess.registerLogger(logger);
-        this.logger = logger;
-        this.dataFolder = dataFolder;
+        this(new ClassLoaderAccess(classLoader), dataFolder, logger);
     }
 
     /**
@@ -111,10 +228,7 @@ public final class LibraryLoader {
      */
     public LibraryLoader(@NotNull ClassLoader classLoader,
                          @NotNull File dataFolder, @NotNull Logger logger) {
-        this.classLoaderAccess = new ClassLoaderAccess(classLoader);
-        this.classLoaderAccess.registerLogger(logger);
-        this.logger = logger;
-        this.dataFolder = dataFolder;
+        this(new ClassLoaderAccess(classLoader), dataFolder, logger);
     }
 
     /**
@@ -125,10 +239,7 @@ public final class LibraryLoader {
      * @param dataFolder  the folder where the libraries are stored
      */
     public LibraryLoader(@NotNull URLClassLoader classLoader, @NotNull File dataFolder) {
-        this.classLoaderAccess = new ClassLoaderAccess(classLoader);
-        this.logger = Logger.getLogger(this.getClass().getSimpleName());
-        this.classLoaderAccess.registerLogger(this.logger);
-        this.dataFolder = dataFolder;
+        this(classLoader, dataFolder, Logger.getLogger(LibraryLoader.class.getSimpleName()));
     }
 
     /**
@@ -139,10 +250,7 @@ public final class LibraryLoader {
      * @param dataFolder  the folder where the libraries are stored
      */
     public LibraryLoader(@NotNull ClassLoader classLoader, @NotNull File dataFolder) {
-        this.classLoaderAccess = new ClassLoaderAccess(classLoader);
-        this.logger = Logger.getLogger(this.getClass().getSimpleName());
-        this.classLoaderAccess.registerLogger(this.logger);
-        this.dataFolder = dataFolder;
+        this(classLoader, dataFolder, Logger.getLogger(LibraryLoader.class.getSimpleName()));
     }
 
     /**
@@ -153,10 +261,22 @@ public final class LibraryLoader {
      * @param dataFolder the folder where the libraries are stored
      */
     public LibraryLoader(@NotNull File dataFolder) {
-        this.classLoaderAccess = new ClassLoaderAccess(this.getClass().getClassLoader());
-        this.logger = Logger.getLogger(this.getClass().getSimpleName());
-        this.classLoaderAccess.registerLogger(this.logger);
+        this(LibraryLoader.class.getClassLoader(), dataFolder);
+    }
+
+    private LibraryLoader(@NotNull ClassLoaderAccess classLoaderAccess, @NotNull File dataFolder, @NotNull Logger logger) {
+        this.classLoaderAccess = classLoaderAccess;
+        this.classLoaderAccess.registerLogger(logger);
+        this.logger = logger;
         this.dataFolder = dataFolder;
+        this.metrics = new LoaderMetrics(this.logger);
+        this.repositoryConnector = new RepositoryConnector(this.connectionSettings, this.repositoryRouter, this.logger);
+        this.metadataCache = new MetadataCache(new File(dataFolder, "metadata"), this.connectionSettings, this.logger);
+        this.mergedClassPath = new MergedClassPath(new File(dataFolder, "merged"), this.logger);
+        this.moduleLayerClassPath = ModuleLayerClassPath.create(this.classLoaderAccess.getClassLoader(), this.logger);
+        this.libraryCache = new LibraryCache(new File(dataFolder, "libraries"), this.logger);
+        this.versionResolver = new VersionResolver(new File(dataFolder, "libraries"), this.metadataCache, this.repositoryRouter, this.logger);
+        this.sharedClassLoader = new SharedLibraryRegistry.SharedClassLoader(this.classLoaderAccess.getClassLoader());
     }
 
     /**
@@ -181,26 +301,100 @@ public final class LibraryLoader {
      * @throws UnknownDependencyException if the dependency cannot be downloaded or loaded
      */
     public <T> void loadAll(@NotNull Class<T> clazz, boolean pathCheck) throws InvalidDependencyException, UnknownDependencyException {
+        outermost(() -> loadAllOf(clazz, pathCheck));
+    }
+
+    /**
+     * Loads the libraries declared by the classes a scanner has read, every library once, in declaration order.
+     * Unlike {@link #loadAll(Class, boolean)}, none of the declaring classes has to be loaded.
+     *
+     * @param scanner   the scanner
+     * @param pathCheck flag indicating whether to check if the dependency is already in the class path
+     * @throws InvalidDependencyException if the dependency is already loaded or in the class path
+     * @throws UnknownDependencyException if the dependency cannot be downloaded or loaded
+     */
+    public void loadAll(@NotNull LibraryScanner scanner, boolean pathCheck) throws InvalidDependencyException, UnknownDependencyException {
+        MavenLibrary[] libs = scanner.getLibraries().toArray(new MavenLibrary[0]);
+        outermost(() -> {
+            addRoots(libs);
+            loadAllOf(libs, pathCheck);
+        });
+    }
+
+    private void loadAllOf(@NotNull Class<?> clazz, boolean pathCheck) throws InvalidDependencyException, UnknownDependencyException {
         MavenLibrary[] libs = clazz.getDeclaredAnnotationsByType(MavenLibrary.class);
+        addRoots(libs);
+
+        LibraryLock lock;
+        try {
+            lock = LibraryLock.find(clazz);
+        } catch (IOException e) {
+            logger.warning("Ignoring unreadable library lock of " + clazz.getName() + ": " + e);
+            lock = null;
+        }
+        if (lock != null) {
+            load(lock, pathCheck);
+            return;
+        }
+        loadAllOf(libs, pathCheck);
+    }
 
+    /**
+     * Registers the repositories and entry points of some declarations, for a {@link LoadPipeline}.
+     *
+     * @param libs the declarations
+     * @return the declared libraries
+     */
+    @NotNull List<Dependency> declare(@NotNull MavenLibrary @NotNull [] libs) {
+        addRoots(libs);
+        List<Dependency> declared = new ArrayList<>(libs.length);
         for (MavenLibrary lib : libs) {
-            if (
-                    !lib.groupId().equalsIgnoreCase("") ||
-                            !lib.artifactId().equalsIgnoreCase("") ||
-                            !lib.version().equalsIgnoreCase("")
-            )
-                load(lib.groupId(), lib.artifactId(), lib.version(), lib.repo().value(), pathCheck);
-            else {
-                String[] dependency = lib.value().split(":", 4);
-                if (dependency.length < 4) {
-                    load(dependency[0], dependency[1], dependency[2], lib.repo().value(), pathCheck);
-                } else {
-                    load(dependency[0], dependency[1], dependency[2], dependency[3], pathCheck);
-                }
+            for (Repository repository : lib.repositories()) {
+                repositoryRouter.addRepository(repository.value());
+            }
+            declared.add(Dependency.fromAnnotation(lib));
+        }
+        return declared;
+    }
+
+    private void addRoots(@NotNull MavenLibrary @NotNull [] libs) {
+        for (MavenLibrary lib : libs) {
+            if (lib.keep().length > 0) {
+                jarSlimmer.addRoots(Dependency.fromAnnotation(lib), lib.keep());
+            }
+        }
+    }
+
+    private void loadAllOf(@NotNull MavenLibrary @NotNull [] libs, boolean pathCheck) throws InvalidDependencyException, UnknownDependencyException {
+        for (MavenLibrary lib : libs) {
+            for (Repository repository : lib.repositories()) {
+                repositoryRouter.addRepository(repository.value());
             }
+            load(Dependency.fromAnnotation(lib), pathCheck);
         }
     }
 
+    /**
+     * Loads the libraries of a lock generated at build time, in lock order.
+     * No pom is resolved, every library of the runtime closure is listed in the lock.
+     *
+     * @param lock      the lock
+     * @param pathCheck flag indicating whether to check if the dependencies are already in the class path
+     * @throws InvalidDependencyException if a dependency is already in the class path
+     * @throws UnknownDependencyException if a dependency cannot be downloaded or does not match its checksum
+     */
+    public void load(@NotNull LibraryLock lock, boolean pathCheck) throws InvalidDependencyException, UnknownDependencyException {
+        outermost(() -> {
+            Map<String, Dependency> parents = new HashMap<>();
+            for (LibraryLock.Entry entry : lock.getEntries()) {
+                Dependency d = entry.toDependency();
+                parents.put(entry.getCoordinates(), d);
+                libraryCache.pin(d);
+                load(d, entry.getParent() == null ? null : parents.get(entry.getParent()), pathCheck, entry);
+            }
+        });
+    }
+
     /**
      * Loads a dependency with the specified group ID, artifact ID, version, and repository URL.
      *
@@ -225,9 +419,11 @@ public final class LibraryLoader {
      * @throws UnknownDependencyException if a dependency cannot be downloaded or loaded
      */
     public void load(@NotNull List<Dependency> dependencies, boolean pathCheck) throws InvalidDependencyException, UnknownDependencyException {
-        for (Dependency d : dependencies) {
-            load(d, pathCheck);
-        }
+        outermost(() -> {
+            for (Dependency d : dependencies) {
+                load(d, pathCheck);
+            }
+        });
     }
 
     /**
@@ -239,16 +435,236 @@ public final class LibraryLoader {
      * @throws UnknownDependencyException if the dependency cannot be downloaded or loaded
      */
     public void load(@NotNull Dependency d, boolean pathCheck) throws InvalidDependencyException, UnknownDependencyException {
-        if (dependencyList.contains(d)) {
+        outermost(() -> load(d, null, pathCheck, null));
+    }
+
+    /**
+     * Creates a pipeline that loads a dependency graph progressively, with the default parallelism.
+     *
+     * @param pathCheck flag indicating whether to check if the dependencies are already in the class path
+     * @return the pipeline, to {@link LoadPipeline#start() start} once its libraries are added
+     * @see #pipeline(boolean, int)
+     */
+    public @NotNull LoadPipeline pipeline(boolean pathCheck) {
+        return pipeline(pathCheck, LoadPipeline.DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Creates a pipeline that loads a dependency graph progressively: every library is injected as soon as it and
+     * its dependencies are downloaded, and can be waited for on its own.
+     *
+     * @param pathCheck   flag indicating whether to check if the dependencies are already in the class path
+     * @param parallelism the number of libraries fetched at the same time
+     * @return the pipeline, to {@link LoadPipeline#start() start} once its libraries are added
+     */
+    public @NotNull LoadPipeline pipeline(boolean pathCheck, int parallelism) {
+        return new LoadPipeline(this, dependencies, logger, pathCheck, parallelism);
+    }
+
+    /**
+     * Runs a load. When the outermost load call of the thread returns, also when it fails part way, the jars it
+     * resolved are added to the class path as one merged jar if the merged class path is enabled, or defined as one
+     * module layer if the module layer class path is enabled, and the quota of the library cache is enforced.
+     * Then it waits until the dependencies it found in the batches of other threads are injected too.
+     *
+     * @param load the load
+     */
+    private void outermost(@NotNull LoadAction load) throws InvalidDependencyException, UnknownDependencyException {
+        if (currentLoad.get() != null) {
+            load.run();
+            return;
+        }
+        boolean layer = moduleLayerClassPath != null && moduleLayerClassPath.isEnabled();
+        LoadBatch batch = new LoadBatch(!layer && mergedClassPath.isEnabled(), layer);
+        currentLoad.set(batch);
+        try {
+            load.run();
+        } catch (InvalidDependencyException | UnknownDependencyException | RuntimeException e) {
+            currentLoad.remove();
+            try {
+                finish(batch);
+            } catch (InvalidDependencyException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        currentLoad.remove();
+        finish(batch);
+    }
+
+    private void finish(@NotNull LoadBatch batch) throws InvalidDependencyException {
+        try {
+            inject(batch);
+        } finally {
+            libraryCache.enforce();
+            // merged jars share the size quota, they are rebuilt more cheaply than libraries are downloaded
+            long maxBytes = libraryCache.getMaxBytes() > 0 ? Math.max(0, libraryCache.getMaxBytes() - libraryCache.getSizeBytes()) : Long.MAX_VALUE;
+            mergedClassPath.evict(maxBytes, libraryCache.getMaxAgeMillis());
+        }
+        for (Map.Entry<Dependency, CompletableFuture<Void>> injection : batch.followed.entrySet()) {
+            awaitInjection(injection.getKey(), injection.getValue());
+        }
+    }
+
+    /**
+     * Injects the jars of a batch, see {@link #injectJars(LoadBatch)}. If they cannot be injected, their classes are
+     * unregistered from the conflict analyzer again.
+     *
+     * @param batch the batch
+     */
+    private void inject(@NotNull LoadBatch batch) throws InvalidDependencyException {
+        try {
+            injectJars(batch);
+            batch.injected.complete(null);
+        } catch (InvalidDependencyException | RuntimeException e) {
+            for (Dependency d : batch.indexed) {
+                classConflicts.unregister(d);
+            }
+            batch.injected.completeExceptionally(e);
+            throw e;
+        } finally {
+            for (Dependency d : batch.dependencies) {
+                pendingInjections.remove(d.getCoordinates(), batch.injected);
+            }
+        }
+    }
+
+    /**
+     * Adds the jars of a merging batch to the class path, merged into one jar if there is more than one.
+     * If the jars cannot be merged they are added one by one. The jars of a layered batch become a module layer.
+     *
+     * @param batch the batch
+     */
+    private void injectJars(@NotNull LoadBatch batch) throws InvalidDependencyException {
+        if (batch.jars.isEmpty()) {
+            return;
+        }
+        if (batch.layer) {
+            try {
+                moduleLayerClassPath.define(batch.dependencies, batch.jars);
+            } catch (RuntimeException e) {
+                // FindException, ResolutionException or LayerInstantiationException
+                throw new InvalidDependencyException("Unable to define a module layer of " + batch.dependencies + ".", e);
+            }
+            return;
+        }
+        if (!batch.merge) {
+            return;
+        }
+        File merged = null;
+        if (batch.jars.size() > 1) {
+            try {
+                merged = mergedClassPath.merge(batch.jars);
+            } catch (IOException e) {
+                logger.warning("Unable to merge " + batch.jars.size() + " libraries, adding them one by one: " + e);
+            }
+        }
+        List<File> jars = merged == null ? batch.jars : Collections.singletonList(merged);
+        for (File jar : jars) {
+            try {
+                this.classLoaderAccess.add(jar.toURI().toURL());
+            } catch (Exception e) {
+                throw new InvalidDependencyException("Unable to load '" + jar + "'.", e);
+            }
+        }
+        if (merged != null) {
+            for (Dependency d : batch.dependencies) {
+                mergedJars.put(d, merged);
+            }
+        }
+    }
+
+    private void load(@NotNull Dependency d, @Nullable Dependency parent, boolean pathCheck, @Nullable LibraryLock.Entry locked) throws InvalidDependencyException, UnknownDependencyException {
+        if (locked == null && VersionRange.isDynamic(d.version)) {
+            load(resolveVersion(d, parent), parent, pathCheck, null);
+            return;
+        }
+        if (dependencies.contains(d)) {
             logger.warning(String.format("Dependency %s:%s:%s is already loaded!", d.groupId, d.artifactId, d.version));
+            followInjection(d);
+            linkShared(parent, d);
             return;
         }
 
+        String coordinate = d.getCoordinates();
+        CompletableFuture<List<Dependency>> flight = new CompletableFuture<>();
+        CompletableFuture<List<Dependency>> inFlight = dependencies.join(coordinate, flight);
+        List<Dependency> transitiveDependencies;
+        if (inFlight != null) {
+            logger.info(String.format("Dependency %s is being loaded by another thread, waiting...", coordinate));
+            transitiveDependencies = await(d, inFlight);
+            followInjection(d);
+        } else {
+            try {
+                transitiveDependencies = dependencies.contains(d) ? Collections.emptyList() : resolve(d, parent, pathCheck, locked);
+                flight.complete(transitiveDependencies);
+            } catch (InvalidDependencyException | UnknownDependencyException | RuntimeException e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                dependencies.land(coordinate, flight);
+            }
+        }
+        linkShared(parent, d);
+
+        for (Dependency transitiveDependency : transitiveDependencies) {
+            load(transitiveDependency, d, pathCheck, null);
+        }
+    }
+
+    /**
+     * Resolves the version range or dynamic version of a dependency, see {@link VersionResolver}.
+     *
+     * @param d      the dependency with the dynamic version
+     * @param parent the dependency that requested {@code d}, or {@code null}
+     * @return {@code d} with the resolved version
+     * @throws UnknownDependencyException if no version matches
+     */
+    @NotNull Dependency resolveVersion(@NotNull Dependency d, @Nullable Dependency parent) throws UnknownDependencyException {
+        Span span = metrics.start(d, parent, Phase.METADATA_LOOKUP);
+        try {
+            return d.withVersion(versionResolver.resolve(d));
+        } catch (IOException e) {
+            span.fail(e);
+            throw new UnknownDependencyException(e, "Unable to resolve the version " + d.version + " of " + d.groupId + ":" + d.artifactId);
+        } catch (RuntimeException e) {
+            span.fail(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Fetches, injects and registers a dependency. Called by the leader of the flight of the dependency only.
+     *
+     * @param d         the dependency to load
+     * @param parent    the dependency that requested {@code d}, or {@code null}
+     * @param pathCheck flag indicating whether to check if the dependency is already in the class path
+     * @param locked    the lock entry of {@code d}, or {@code null} if {@code d} is not locked
+     * @return the transitive dependencies of {@code d}, always empty for locked dependencies
+     */
+    private @NotNull List<Dependency> resolve(@NotNull Dependency d, @Nullable Dependency parent, boolean pathCheck, @Nullable LibraryLock.Entry locked) throws InvalidDependencyException, UnknownDependencyException {
+        Fetched fetched = fetch(d, parent, locked);
+        install(d, parent, pathCheck, fetched);
+        return fetched.dependencies;
+    }
+
+    /**
+     * Downloads and slims a dependency and reads the dependencies declared in its pom, without injecting it.
+     *
+     * @param d      the dependency to fetch
+     * @param parent the dependency that requested {@code d}, or {@code null}
+     * @param locked the lock entry of {@code d}, or {@code null} if {@code d} is not locked
+     * @return the jar to inject and the transitive dependencies of {@code d}, always empty for locked dependencies
+     */
+    @NotNull Fetched fetch(@NotNull Dependency d, @Nullable Dependency parent, @Nullable LibraryLock.Entry locked) throws UnknownDependencyException {
         logger.info(String.format("Loading dependency %s:%s:%s from %s", d.groupId, d.artifactId, d.version, d.repoUrl));
+        libraryCache.touch(d);
 
-        String name = d.artifactId + "-" + d.version;
+        String name = d.getBaseName();
 
-        File saveLocationDir = new File(getLibFolder(), d.groupId.replace(".", File.separator) + File.separator + d.artifactId.replace(".", File.separator) + File.separator + d.version);
+        File saveLocationDir = new File(getLibFolder(), d.getLocalPath());
 
         if (!saveLocationDir.exists()) {
             logger.info(String.format("Creating directory for dependency %s:%s:%s from %s", d.groupId, d.artifactId, d.version, d.repoUrl));
@@ -258,75 +674,581 @@ public final class LibraryLoader {
         }
 
         File saveLocation = new File(saveLocationDir, name + ".jar");
+        boolean cached = saveLocation.exists() && verifyCached(d, saveLocation, locked);
+        metrics.recordCacheLookup(d, cached);
+        if (!cached) {
+            logger.info("Dependency '" + name + "' does not exist in the libraries folder. Attempting to download...");
+            download(d, parent, saveLocation, locked);
+            logger.info("Dependency '" + name + "' successfully downloaded.");
+        }
+
         if (!saveLocation.exists()) {
+            throw new UnknownDependencyException("Unable to download '" + d + "' dependency.");
+        }
 
-            try {
-                logger.info("Dependency '" + name + "' does not exist in the libraries folder. Attempting to download...");
-                URL url = d.url();
+        File classPathJar = slim(d, parent, saveLocation);
 
-                RelocatedDependency relocatedDependency = d instanceof RelocatedDependency ? (RelocatedDependency) d : null;
+        // a fresh download is indexed here, a cached jar reuses the index stored next to it
+        ClassIndex classIndex = indexClasses(d, classPathJar);
 
-                try (InputStream is = url.openStream()) {
-                    if (relocatedDependency != null) {
-                        Path tempFilePath = Files.createTempFile(relocatedDependency.artifactId + "-" + relocatedDependency.version, ".tmp");
+        if (locked != null) {
+            // the lock lists the whole closure
+            return new Fetched(classPathJar, classIndex, Collections.emptyList());
+        }
 
-                        Files.copy(is, tempFilePath, StandardCopyOption.REPLACE_EXISTING);
+        // a classified artifact shares the pom of the main artifact
+        File pomLocation = new File(saveLocationDir, d.artifactId + "-" + d.version + ".pom");
+        if (pomLocation.isFile()) {
+            Span span = metrics.start(d, parent, Phase.POM_PARSE);
+            try (InputStream is = Files.newInputStream(pomLocation.toPath())) {
+                return new Fetched(classPathJar, classIndex, readPomDependencies(d, is, logger));
+            } catch (IOException | SAXException | ParserConfigurationException | RuntimeException e) {
+                span.fail(e);
+                logger.warning("Ignoring unreadable pom " + pomLocation + ": " + e);
+            } finally {
+                span.end();
+            }
+        }
 
-                        JarRelocator relocator = new JarRelocator(tempFilePath.toFile(), saveLocation, relocatedDependency.getRelocations());
+        RemoteRepository pomRepository = findPom(d, parent);
+        if (pomRepository != null) {
+            try {
+                return new Fetched(classPathJar, classIndex, parsePomDependencies(d, parent, pomRepository.getUrl(), pomLocation));
+            } catch (IOException | SAXException | ParserConfigurationException e) {
+                logger.warning("Failed to parse pom for dependency " + d);
+            }
+        }
+        return new Fetched(classPathJar, classIndex, Collections.emptyList());
+    }
 
-                        try {
-                            relocator.run();
-                        } catch (IOException e) {
-                            throw new UnknownDependencyException(e, "Unable to relocate" + d + "' dependency.");
+    /**
+     * Injects and registers a fetched dependency, unless it duplicates the classes of the loaded libraries and the
+     * conflict policy skips it.
+     *
+     * @param d         the dependency
+     * @param parent    the dependency that requested {@code d}, or {@code null}
+     * @param pathCheck flag indicating whether to check if the dependency is already in the class path
+     * @param fetched   the fetched dependency
+     */
+    private void install(@NotNull Dependency d, @Nullable Dependency parent, boolean pathCheck, @NotNull Fetched fetched) throws InvalidDependencyException {
+        File classPathJar = fetched.jar;
+        ClassIndex classIndex = fetched.index;
+        if (classIndex == null || checkClassConflicts(d, classIndex)) {
+            try {
+                if (pathCheck & (this.classLoaderAccess.contains(classPathJar.toURI().toURL()) | this.classLoaderAccess.contains(d))) {
+                    throw new InvalidDependencyException("Dependency " + d + " is already in the class path.");
+                }
+                LoadBatch batch = currentLoad.get();
+                if (batch != null && batch.layer) {
+                    batch.add(d, classPathJar, classIndex);
+                    pendingInjections.put(d.getCoordinates(), batch.injected);
+                } else if (shareLibraries) {
+                    Span span = metrics.start(d, parent, Phase.CLASSPATH_INJECTION);
+                    try {
+                        SharedLibraryRegistry.SharedLibrary shared = SharedLibraryRegistry.getInstance().acquire(d, classPathJar, this.classLoaderAccess.getClassLoader(), logger);
+                        sharedClassLoader.add(d, shared);
+                        // a pipeline installs the dependencies first
+                        for (Dependency dependency : fetched.dependencies) {
+                            linkShared(d, dependency);
                         }
-                    } else {
-                        Files.copy(is, saveLocation.toPath());
+                    } catch (Exception e) {
+                        span.fail(e);
+                        throw e;
+                    } finally {
+                        span.end();
+                    }
+                } else if (batch != null && batch.merge) {
+                    batch.add(d, classPathJar, classIndex);
+                    pendingInjections.put(d.getCoordinates(), batch.injected);
+                } else {
+                    Span span = metrics.start(d, parent, Phase.CLASSPATH_INJECTION);
+                    try {
+                        this.classLoaderAccess.add(classPathJar.toURI().toURL());
+                    } catch (Exception e) {
+                        span.fail(e);
+                        throw e;
+                    } finally {
+                        span.end();
                     }
                 }
+            } catch (InvalidDependencyException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvalidDependencyException("Unable to load '" + classPathJar + "' dependency.", e);
+            }
+            // a batched jar is registered right away, so that the later jars of the batch are checked against it,
+            // and unregistered again if the batch cannot be injected
+            if (classIndex != null) {
+                classConflicts.register(d, classIndex);
+            }
+            logger.info("Loaded dependency '" + d.getBaseName() + "' successfully.");
+        }
 
-            } catch (IOException e) {
-                throw new UnknownDependencyException(e, "Unable to download '" + d + "' dependency.");
+        dependencies.add(d);
+    }
+
+    /**
+     * Injects and registers a dependency fetched by a {@link LoadPipeline}, on its own: it is never merged, and it
+     * becomes a module layer of its own if the module layer class path is enabled.
+     *
+     * @param d         the dependency
+     * @param parent    the dependency that requested {@code d}, or {@code null}
+     * @param pathCheck flag indicating whether to check if the dependency is already in the class path
+     * @param fetched   the fetched dependency
+     */
+    void installNow(@NotNull Dependency d, @Nullable Dependency parent, boolean pathCheck, @NotNull Fetched fetched) throws InvalidDependencyException {
+        LoadBatch outer = currentLoad.get();
+        LoadBatch batch = new LoadBatch(false, moduleLayerClassPath != null && moduleLayerClassPath.isEnabled());
+        currentLoad.set(batch);
+        try {
+            install(d, parent, pathCheck, fetched);
+        } finally {
+            if (outer == null) {
+                currentLoad.remove();
+            } else {
+                currentLoad.set(outer);
             }
+        }
+        inject(batch);
+    }
 
-            logger.info("Dependency '" + name + "' successfully downloaded.");
+    /**
+     * Returns the jar to put on the class path, slimming the jar if entry points were declared for the dependency.
+     * The original jar is used if slimming fails.
+     *
+     * @param d      the dependency
+     * @param parent the dependency that requested {@code d}, or {@code null}
+     * @param jar    the downloaded jar
+     * @return the slimmed or the original jar
+     */
+    private @NotNull File slim(@NotNull Dependency d, @Nullable Dependency parent, @NotNull File jar) {
+        if (!jarSlimmer.isSlimmed(d)) {
+            return jar;
         }
+        Span span = metrics.start(d, parent, Phase.SLIMMING);
+        try {
+            File slimmed = jarSlimmer.slim(d, jar);
+            span.end(slimmed.length());
+            return slimmed;
+        } catch (IOException | RuntimeException e) {
+            span.fail(e);
+            logger.warning("Unable to slim '" + d + "' dependency, loading the whole jar: " + e);
+            return jar;
+        }
+    }
 
-        if (!saveLocation.exists()) {
-            throw new UnknownDependencyException("Unable to download '" + d + "' dependency.");
+    /**
+     * Returns the class index of a jar, unless the conflict policy is {@link ClassConflictAnalyzer.Policy#IGNORE}.
+     *
+     * @param d   the dependency
+     * @param jar the jar of the dependency
+     * @return the index, or {@code null} if conflicts are ignored or the jar cannot be indexed
+     */
+    private @Nullable ClassIndex indexClasses(@NotNull Dependency d, @NotNull File jar) {
+        if (classConflicts.getPolicy() == ClassConflictAnalyzer.Policy.IGNORE) {
+            return null;
+        }
+        try {
+            return ClassIndex.of(jar);
+        } catch (IOException e) {
+            logger.warning("Unable to index the classes of '" + d + "' dependency: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Reports the classes and packages a jar shares with the loaded libraries and applies the conflict policy.
+     *
+     * @param d     the dependency
+     * @param index the class index of its jar
+     * @return {@code true} if the jar should be injected, {@code false} if it is redundant and skipped
+     * @throws InvalidDependencyException if the jar duplicates classes and the policy is {@link ClassConflictAnalyzer.Policy#FAIL}
+     */
+    private boolean checkClassConflicts(@NotNull Dependency d, @NotNull ClassIndex index) throws InvalidDependencyException {
+        ClassConflicts conflicts = classConflicts.check(d, index);
+        if (conflicts.isEmpty()) {
+            return true;
+        }
+        if (conflicts.getDuplicateClasses() == 0) {
+            logger.info("Split packages: " + conflicts);
+            return true;
+        }
+        ClassConflictAnalyzer.Policy policy = classConflicts.getPolicy();
+        if (policy == ClassConflictAnalyzer.Policy.FAIL) {
+            throw new InvalidDependencyException("Duplicate classes: " + conflicts);
+        }
+        if (policy == ClassConflictAnalyzer.Policy.SKIP_REDUNDANT && conflicts.isRedundant()) {
+            logger.warning("Skipping redundant dependency, " + conflicts);
+            return false;
+        }
+        logger.warning("Duplicate classes: " + conflicts);
+        return true;
+    }
+
+    /**
+     * Links the shared library of a dependency to the shared library of a dependency it depends on, if both are
+     * shared by this loader. See {@link SharedLibraryRegistry#link(SharedLibraryRegistry.SharedClassLoader, SharedLibraryRegistry.SharedLibrary, SharedLibraryRegistry.SharedLibrary, Logger)}.
+     *
+     * @param dependent  the dependency that depends on {@code dependency}, or {@code null}
+     * @param dependency the dependency
+     */
+    private void linkShared(@Nullable Dependency dependent, @NotNull Dependency dependency) {
+        SharedLibraryRegistry.SharedLibrary from = dependent == null ? null : sharedClassLoader.get(dependent);
+        SharedLibraryRegistry.SharedLibrary to = sharedClassLoader.get(dependency);
+        if (from != null && to != null) {
+            SharedLibraryRegistry.getInstance().link(sharedClassLoader, from, to, logger);
+        }
+    }
+
+    /**
+     * Makes the current load wait for the injection of a dependency that the load of another thread added to its
+     * batch. The flight of a dependency lands once it is resolved, but a batched jar is only on the class path once
+     * the outermost load call of its batch returns.
+     *
+     * @param d the dependency
+     */
+    private void followInjection(@NotNull Dependency d) throws InvalidDependencyException {
+        CompletableFuture<Void> injection = pendingInjections.get(d.getCoordinates());
+        if (injection == null) {
+            return;
+        }
+        LoadBatch batch = currentLoad.get();
+        if (batch == null) {
+            awaitInjection(d, injection);
+        } else if (injection != batch.injected) {
+            // waited for in finish, after the own batch is injected, so two batches never wait for each other
+            batch.follow(d, injection);
+        }
+    }
+
+    /**
+     * Returns the injection of a dependency that the load of another thread added to its batch, see
+     * {@link #followInjection(Dependency)}.
+     *
+     * @param d the dependency
+     * @return the injection, or {@code null} if the dependency is not waiting in a batch
+     */
+    @Nullable CompletableFuture<Void> pendingInjection(@NotNull Dependency d) {
+        return pendingInjections.get(d.getCoordinates());
+    }
+
+    private void awaitInjection(@NotNull Dependency d, @NotNull CompletableFuture<Void> injection) throws InvalidDependencyException {
+        try {
+            injection.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidDependencyException("Interrupted while waiting for the injection of '" + d + "' dependency.", e);
+        } catch (ExecutionException e) {
+            throw new InvalidDependencyException("Unable to load '" + d + "' dependency.", e.getCause());
         }
+    }
 
+    /**
+     * Waits for the flight of a dependency led by another thread.
+     *
+     * @param d      the dependency
+     * @param flight the flight
+     * @return the transitive dependencies of {@code d}
+     */
+    private @NotNull List<Dependency> await(@NotNull Dependency d, @NotNull CompletableFuture<List<Dependency>> flight) throws InvalidDependencyException, UnknownDependencyException {
         try {
-            if (pathCheck & (this.classLoaderAccess.contains(saveLocation.toURI().toURL()) | this.classLoaderAccess.contains(d))) {
-                throw new InvalidDependencyException("Dependency " + d + " is already in the class path.");
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownDependencyException(e, "Interrupted while waiting for '" + d + "' dependency.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InvalidDependencyException) {
+                throw new InvalidDependencyException("Unable to load '" + d + "' dependency.", e.getCause());
             }
-            this.classLoaderAccess.add(saveLocation.toURI().toURL());
-        } catch (Exception e) {
-            throw new InvalidDependencyException("Unable to load '" + saveLocation + "' dependency.", e);
+            throw new UnknownDependencyException(e.getCause(), "Unable to load '" + d + "' dependency.");
         }
+    }
 
-        logger.info("Loaded dependency '" + name + "' successfully.");
-        dependencyList.add(d);
 
-        if (d.hasPom()) {
+    /**
+     * Downloads a dependency from the first candidate repository that hosts it.
+     * Requests are retried by the {@link RepositoryConnector}. A transfer that breaks off or fails
+     * verification is not retried against the same repository, the next candidate is tried instead.
+     *
+     * @param d            the dependency to download
+     * @param parent       the dependency that requested {@code d}, or {@code null}
+     * @param saveLocation the file to save the dependency to
+     * @param locked       the lock entry of {@code d}, or {@code null}. Its URL is used for its repository and its checksum is verified
+     * @throws UnknownDependencyException if no repository could provide the dependency
+     */
+    private void download(@NotNull Dependency d, @Nullable Dependency parent, @NotNull File saveLocation, @Nullable LibraryLock.Entry locked) throws UnknownDependencyException {
+        List<RemoteRepository> candidates = repositoryRouter.candidates(d);
+        IOException failure;
+        do {
+            RepositoryConnector.Response response;
             try {
-                List<Dependency> transitiveDependencies = parsePomDependencies(d, d.repoUrl);
+                response = repositoryConnector.request("GET", d, candidates, repository -> {
+                    if (locked != null && locked.isCurrentPlatform() && locked.getUrl().startsWith(repository.getUrl())) {
+                        return new URL(locked.getUrl());
+                    }
+                    Span span = metrics.start(d, parent, repository.getUrl(), Phase.METADATA_LOOKUP);
+                    try {
+                        return resolveUrl(d, repository);
+                    } catch (IOException | RuntimeException e) {
+                        span.fail(e);
+                        throw e;
+                    } finally {
+                        span.end();
+                    }
+                });
+            } catch (IOException e) {
+                // every remaining candidate was tried and retried already
+                failure = e;
+                break;
+            }
 
-                for (Dependency transitiveDependency : transitiveDependencies) {
-                    load(transitiveDependency, pathCheck);
+            try (RepositoryConnector.Response r = response) {
+                save(d, parent, r, saveLocation, locked == null || !locked.isCurrentPlatform() ? null : locked.getSha1());
+                return;
+            } catch (IOException e) {
+                repositoryRouter.recordFailure(response.getRepository());
+                logger.warning("Unable to download '" + d + "' dependency from " + response.getRepository().getUrl() + ": " + e);
+                failure = e;
+                candidates = new ArrayList<>(candidates.subList(candidates.indexOf(response.getRepository()) + 1, candidates.size()));
+                try {
+                    Files.deleteIfExists(saveLocation.toPath());
+                } catch (IOException ignored) {
                 }
-            } catch (IOException | SAXException | ParserConfigurationException e) {
-                logger.warning("Failed to parse pom for dependency " + d);
             }
+        } while (!candidates.isEmpty());
+        throw new UnknownDependencyException(failure, "Unable to download '" + d + "' dependency.");
+    }
+
+    /**
+     * Resolves the artifact URL of a dependency through the metadata cache.
+     *
+     * @param d          the dependency
+     * @param repository the repository
+     * @return the artifact URL
+     * @throws MalformedURLException if the URL cannot be constructed
+     */
+    private @NotNull URL resolveUrl(@NotNull Dependency d, @NotNull RemoteRepository repository) throws MalformedURLException {
+        byte[] metadata;
+        try {
+            metadata = metadataCache.get(d.getMetadataUrl(repository.getUrl()), d.isSnapshot());
+        } catch (IOException e) {
+            metadata = null;
+        }
+        return d.url(repository.getUrl(), metadata == null ? null : new ByteArrayInputStream(metadata));
+    }
+
+    /**
+     * Checks a cached jar against the checksum of its lock entry. A jar that does not match, e.g. one left
+     * truncated by a process that was killed while writing it, is deleted together with its slimmed copy.
+     * Relocated jars are not checked, the lock records the checksum of the artifact before relocation.
+     *
+     * @param d            the dependency
+     * @param saveLocation the cached jar
+     * @param locked       the lock entry of {@code d}, or {@code null}
+     * @return {@code true} if the cached jar can be used, {@code false} if it has to be downloaded again
+     */
+    private boolean verifyCached(@NotNull Dependency d, @NotNull File saveLocation, @Nullable LibraryLock.Entry locked) {
+        if (locked == null || !locked.isCurrentPlatform() || locked.getSha1() == null || d instanceof RelocatedDependency) {
+            return true;
+        }
+        try {
+            String actual = Bytes.hex(Bytes.sha1(saveLocation.toPath()));
+            if (actual.equalsIgnoreCase(locked.getSha1())) {
+                return true;
+            }
+            logger.warning("Cached '" + d + "' dependency does not match its lock, expected " + locked.getSha1() + " but was " + actual + ". Downloading it again...");
+        } catch (IOException e) {
+            logger.warning("Unable to verify the cached '" + d + "' dependency, downloading it again: " + e);
+        }
+        try {
+            File slimmed = jarSlimmer.slimmedJar(d, saveLocation);
+            if (!slimmed.equals(saveLocation)) {
+                Files.deleteIfExists(slimmed.toPath());
+            }
+            Files.deleteIfExists(saveLocation.toPath());
+        } catch (IOException e) {
+            // the download replaces the jar anyway
+            logger.warning("Unable to delete the cached '" + d + "' dependency: " + e);
+        }
+        return false;
+    }
+
+    /**
+     * Writes a response to a temporary file next to the save location and moves it into place once it is
+     * complete and verified, so that the save location never holds a partial jar.
+     */
+    private void save(@NotNull Dependency d, @Nullable Dependency parent, @NotNull RepositoryConnector.Response response, @NotNull File saveLocation, @Nullable String sha1) throws IOException, UnknownDependencyException {
+        RelocatedDependency relocatedDependency = d instanceof RelocatedDependency ? (RelocatedDependency) d : null;
+
+        MessageDigest digest = null;
+        if (sha1 != null) {
+            digest = Bytes.sha1();
+        }
+
+        // next to the library, so that the move into place stays on the same file system
+        Path folder = saveLocation.getParentFile().toPath();
+        Path tempFilePath = Files.createTempFile(folder, d.artifactId + "-" + d.version, ".tmp");
+        try {
+            download(d, parent, response, tempFilePath, digest, sha1);
+            if (relocatedDependency == null) {
+                FileTransfers.move(tempFilePath, saveLocation.toPath());
+                return;
+            }
+
+            Path relocatedPath = Files.createTempFile(folder, d.artifactId + "-" + d.version, ".relocated.tmp");
+            try {
+                JarRelocator relocator = new JarRelocator(tempFilePath.toFile(), relocatedPath.toFile(), relocatedDependency.getRelocations());
+
+                Span span = metrics.start(d, parent, Phase.RELOCATION);
+                try {
+                    relocator.run();
+                } catch (IOException | RuntimeException e) {
+                    span.fail(e);
+                    throw new UnknownDependencyException(e, "Unable to relocate '" + d + "' dependency.");
+                } finally {
+                    span.end();
+                }
+                FileTransfers.move(relocatedPath, saveLocation.toPath());
+            } finally {
+                Files.deleteIfExists(relocatedPath);
+            }
+        } finally {
+            Files.deleteIfExists(tempFilePath);
+        }
+    }
+
+    /**
+     * Transfers and verifies the body of a response, as the download phase of a dependency.
+     */
+    private void download(@NotNull Dependency d, @Nullable Dependency parent, @NotNull RepositoryConnector.Response response, @NotNull Path target, @Nullable MessageDigest digest, @Nullable String sha1) throws IOException {
+        Span span = metrics.start(d, parent, response.getRepository().getUrl(), Phase.DOWNLOAD);
+        try {
+            long bytes = transfer(response, target, digest);
+            verify(d, digest, sha1);
+            span.end(bytes);
+        } catch (IOException | RuntimeException e) {
+            span.fail(e);
+            throw e;
         }
     }
 
-    private @NotNull List<Dependency> parsePomDependencies(@NotNull Dependency d, String repository) throws IOException, SAXException, ParserConfigurationException {
-        List<Dependency> dependencies = new ArrayList<>();
+    /**
+     * Copies the body of a response into a file. Artifacts of {@code file:} repositories are copied file to file,
+     * everything else is streamed through a channel into a file preallocated from the {@code Content-Length}.
+     *
+     * @param response the response
+     * @param target   the target file
+     * @param digest   the digest to update, or {@code null}
+     * @return the number of copied bytes
+     * @throws IOException if the transfer fails or is shorter than announced
+     */
+    private static long transfer(@NotNull RepositoryConnector.Response response, @NotNull Path target, @Nullable MessageDigest digest) throws IOException {
+        URL url = response.getUrl();
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return FileTransfers.copy(Paths.get(url.toURI()), target, digest);
+            } catch (URISyntaxException | IllegalArgumentException ignored) {
+                // not a plain path, fall back to the stream
+            }
+        }
+        return FileTransfers.copy(Channels.newChannel(response.getInputStream()), response.getConnection().getContentLengthLong(), target, digest);
+    }
+
+    private static void verify(@NotNull Dependency d, @Nullable MessageDigest digest, @Nullable String sha1) throws IOException {
+        if (digest == null || sha1 == null) {
+            return;
+        }
+        String actual = Bytes.hex(digest.digest());
+        if (!actual.equalsIgnoreCase(sha1)) {
+            throw new IOException("Checksum mismatch for '" + d + "' dependency, expected " + sha1 + " but was " + actual);
+        }
+    }
+
+    /**
+     * Finds the first candidate repository that hosts the pom of a dependency.
+     *
+     * @param d      the dependency
+     * @param parent the dependency that requested {@code d}, or {@code null}
+     * @return the repository, or {@code null} if no repository hosts a pom for the dependency
+     */
+    private @Nullable RemoteRepository findPom(@NotNull Dependency d, @Nullable Dependency parent) {
+        Span span = metrics.start(d, parent, Phase.POM_FETCH);
+        try (RepositoryConnector.Response response = repositoryConnector.request("HEAD", d, repositoryRouter.candidates(d), repository -> d.getPomUrl(repository.getUrl()))) {
+            return response.getRepository();
+        } catch (FileNotFoundException e) {
+            span.fail(e);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            span.fail(e);
+            logger.warning("Unable to look up the pom of '" + d + "' dependency: " + e);
+            return null;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Fetches and parses the pom of a dependency.
+     * Package-private so the JMH benchmarks can measure it in isolation.
+     *
+     * @param d          the dependency whose pom should be parsed
+     * @param parent     the dependency that requested {@code d}, or {@code null}
+     * @param repository the repository to fetch the pom from
+     * @return the dependencies declared in the pom, inheriting the repository declared by {@code d}
+     */
+    @NotNull List<Dependency> parsePomDependencies(@NotNull Dependency d, @Nullable Dependency parent, String repository) throws IOException, SAXException, ParserConfigurationException {
+        return parsePomDependencies(d, parent, repository, null);
+    }
+
+    private @NotNull List<Dependency> parsePomDependencies(@NotNull Dependency d, @Nullable Dependency parent, String repository, @Nullable File pomLocation) throws IOException, SAXException, ParserConfigurationException {
+        Span span = metrics.start(d, parent, repository, Phase.POM_FETCH);
+        byte[] pom;
+        try (InputStream is = repositoryConnector.openStream(d.getPomUrl(repository))) {
+            pom = Bytes.readFully(is);
+            span.end(pom.length);
+        } catch (IOException | RuntimeException e) {
+            span.fail(e);
+            throw e;
+        }
+
+        if (pomLocation != null) {
+            // keep the pom next to the jar, later starts and bundles read it from there
+            try {
+                Path temp = Files.createTempFile(pomLocation.getParentFile().toPath(), pomLocation.getName(), ".tmp");
+                Files.write(temp, pom);
+                FileTransfers.move(temp, pomLocation.toPath());
+            } catch (IOException e) {
+                logger.warning("Unable to store the pom of '" + d + "' dependency: " + e);
+            }
+        }
+
+        span = metrics.start(d, parent, Phase.POM_PARSE);
+        try {
+            return readPomDependencies(d, new ByteArrayInputStream(pom), logger);
+        } catch (IOException | SAXException | ParserConfigurationException | RuntimeException e) {
+            span.fail(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Parses the dependencies declared in a pom.
+     *
+     * @param d      the dependency the pom belongs to
+     * @param pom    the pom
+     * @param logger the logger for dependencies that cannot be parsed
+     * @return the dependencies declared in the pom, inheriting the repository declared by {@code d}
+     */
+    public static @NotNull List<Dependency> readPomDependencies(@NotNull Dependency d, @NotNull InputStream pom, @NotNull Logger logger) throws IOException, SAXException, ParserConfigurationException {
+        List<Dependency> declared = new ArrayList<>();
 
         DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
         DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dBuilder.parse(d.getPomUrl().openStream());
+        Document doc = dBuilder.parse(pom);
         doc.getDocumentElement().normalize();
+        Map<String, String> properties = readPomProperties(doc.getDocumentElement());
 
         NodeList dependencyNodes = doc.getElementsByTagName("dependency");
         for (int i = 0; i < dependencyNodes.getLength(); i++) {
@@ -338,28 +1260,113 @@ public final class LibraryLoader {
                 Node versionNode = dependencyElement.getElementsByTagName("version").item(0);
 
                 if (groupIdNode == null || artifactIdNode == null || versionNode == null) {
-                    this.logger.warning("Failed to parse pom for dependency " + d);
-                    this.logger.warning("Dependency: " + groupIdNode + ":" + artifactIdNode + ":" + versionNode);
+                    logger.warning("Failed to parse pom for dependency " + d);
+                    logger.warning("Dependency: " + groupIdNode + ":" + artifactIdNode + ":" + versionNode);
+                    continue;
+                }
+
+                String groupId = interpolate(groupIdNode.getTextContent(), properties);
+                String artifactId = interpolate(artifactIdNode.getTextContent(), properties);
+                String version = interpolate(versionNode.getTextContent(), properties);
+
+                if (groupId == null || artifactId == null || version == null) {
+                    logger.warning("Failed to parse pom for dependency " + d);
+                    logger.warning("Dependency: " + groupId + ":" + artifactId + ":" + version);
+                    continue;
+                }
+                if (groupId.contains("${") || artifactId.contains("${") || version.contains("${")) {
+                    logger.warning("Skipping dependency " + groupId + ":" + artifactId + ":" + version + " of " + d + ", its pom uses an undefined property");
                     continue;
                 }
 
-                String groupId = groupIdNode.getTextContent();
-                String artifactId = artifactIdNode.getTextContent();
-                String version = versionNode.getTextContent();
+                Node classifierNode = dependencyElement.getElementsByTagName("classifier").item(0);
+                String classifier = classifierNode == null ? null : interpolate(classifierNode.getTextContent(), properties);
+                Dependency transitiveDependency = new Dependency(groupId.trim(), artifactId.trim(), version.trim(), d.repoUrl, classifier == null ? null : classifier.trim());
+
+                declared.add(transitiveDependency);
+            }
+        }
+
+        return declared;
+    }
+
+    /**
+     * Reads the properties a pom can refer to in its dependencies: its {@code <properties>} and the project
+     * coordinates, which fall back to the {@code <parent>} coordinates. Properties of the parent pom are not read.
+     */
+    private static @NotNull Map<String, String> readPomProperties(@NotNull Element project) {
+        Map<String, String> properties = new HashMap<>();
+        Element parent = child(project, "parent");
+        for (String coordinate : new String[]{"groupId", "artifactId", "version"}) {
+            Element parentValue = parent == null ? null : child(parent, coordinate);
+            if (parentValue != null) {
+                properties.put("project.parent." + coordinate, parentValue.getTextContent().trim());
+                properties.put("parent." + coordinate, parentValue.getTextContent().trim());
+            }
+            Element value = child(project, coordinate);
+            String resolved = value != null ? value.getTextContent().trim() : parentValue != null ? parentValue.getTextContent().trim() : null;
+            if (resolved != null) {
+                properties.put("project." + coordinate, resolved);
+                properties.put("pom." + coordinate, resolved);
+            }
+        }
+        Element declared = child(project, "properties");
+        if (declared != null) {
+            NodeList nodes = declared.getChildNodes();
+            for (int i = 0; i < nodes.getLength(); i++) {
+                if (nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
+                    Element property = (Element) nodes.item(i);
+                    properties.put(property.getTagName(), property.getTextContent().trim());
+                }
+            }
+        }
+        return properties;
+    }
+
+    private static @Nullable Element child(@NotNull Element element, @NotNull String name) {
+        NodeList nodes = element.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE && name.equals(((Element) node).getTagName())) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
 
-                if (groupId == null || artifactId == null || version == null) {
-                    this.logger.warning("Failed to parse pom for dependency " + d);
-                    this.logger.warning("Dependency: " + groupId + ":" + artifactId + ":" + version);
-                    continue;
+    /**
+     * Replaces the {@code ${name}} references of a pom value, including references within property values.
+     * Undefined references are kept.
+     */
+    @Contract("null, _ -> null; !null, _ -> !null")
+    private static @Nullable String interpolate(@Nullable String value, @NotNull Map<String, String> properties) {
+        if (value == null) {
+            return null;
+        }
+        String result = value;
+        // bounded, so properties that refer to each other cannot loop
+        for (int depth = 0; depth < 8 && result.contains("${"); depth++) {
+            StringBuilder builder = new StringBuilder();
+            int index = 0;
+            boolean replaced = false;
+            while (true) {
+                int start = result.indexOf("${", index);
+                int end = start < 0 ? -1 : result.indexOf('}', start);
+                if (end < 0) {
+                    builder.append(result, index, result.length());
+                    break;
                 }
-
-                Dependency transitiveDependency = new Dependency(groupId, artifactId, version, repository);
-
-                dependencies.add(transitiveDependency);
+                String property = properties.get(result.substring(start + 2, end));
+                builder.append(result, index, start).append(property == null ? result.substring(start, end + 1) : property);
+                replaced |= property != null;
+                index = end + 1;
+            }
+            result = builder.toString();
+            if (!replaced) {
+                break;
             }
         }
-
-        return dependencies;
+        return result;
     }
 
     /**
@@ -368,8 +1375,7 @@ public final class LibraryLoader {
      * @throws InvalidDependencyException if the dependency is not loaded or cannot be unloaded
      */
     public void unloadAll() throws InvalidDependencyException {
-        List<Dependency> dependencies = new ArrayList<>(dependencyList);
-        for (Dependency d : dependencies) {
+        for (Dependency d : dependencies.list()) {
             unload(d);
         }
     }
@@ -381,17 +1387,20 @@ public final class LibraryLoader {
      * @throws InvalidDependencyException if the dependency is not loaded or cannot be unloaded
      */
     public void unload(Dependency d) throws InvalidDependencyException {
-        if (!dependencyList.contains(d)) {
+        Dependency loaded = dependencies.get(d);
+        if (loaded == null) {
             logger.warning(String.format("Dependency %s:%s:%s is not loaded!", d.groupId, d.artifactId, d.version));
             return;
         }
+        // the loaded dependency may have been loaded through another repository
+        d = loaded;
 
         logger.info(String.format("Unloading dependency %s:%s:%s", d.groupId, d.artifactId, d.version));
 
 
-        String name = d.artifactId + "-" + d.version;
+        String name = d.getBaseName();
 
-        File saveLocationDir = new File(getLibFolder(), d.groupId.replace(".", File.separator) + File.separator + d.artifactId.replace(".", File.separator) + File.separator + d.version);
+        File saveLocationDir = new File(getLibFolder(), d.getLocalPath());
 
         if (!saveLocationDir.exists()) {
             throw new InvalidDependencyException(String.format("The directory for dependency %s:%s:%s does not exists!!", d.groupId, d.artifactId, d.version));
@@ -402,14 +1411,33 @@ public final class LibraryLoader {
             throw new InvalidDependencyException("Unable to unload '" + d + "' dependency.");
         }
 
+        boolean released = true;
         try {
-            this.classLoaderAccess.remove(saveLocation.toURI().toURL());
+            SharedLibraryRegistry.SharedLibrary shared = sharedClassLoader.remove(d);
+            File merged = mergedJars.remove(d);
+            // a layer is not on the class path, it is dropped with its last library
+            boolean layered = moduleLayerClassPath != null && moduleLayerClassPath.release(d);
+            if (shared != null) {
+                // the jar may be shared from this library folder
+                released = SharedLibraryRegistry.getInstance().release(shared);
+            } else if (merged == null && !layered) {
+                this.classLoaderAccess.remove(saveLocation.toURI().toURL());
+                this.classLoaderAccess.remove(jarSlimmer.slimmedJar(d, saveLocation).toURI().toURL());
+            } else if (merged != null && !mergedJars.containsValue(merged)) {
+                // the last library of the merged jar
+                this.classLoaderAccess.remove(merged.toURI().toURL());
+                mergedClassPath.release(merged);
+            }
         } catch (Exception e) {
             throw new InvalidDependencyException("Unable to unload dependency " + d, e);
         }
+        classConflicts.unregister(d);
 
         logger.info(String.format("Unloaded dependency %s:%s:%s successfully", d.groupId, d.artifactId, d.version));
-        dependencyList.remove(d);
+        dependencies.remove(d);
+        if (released) {
+            libraryCache.release(d);
+        }
     }
 
     /**
@@ -426,13 +1454,255 @@ public final class LibraryLoader {
     }
 
     /**
-     * Returns the list of loaded dependencies.
+     * Extracts an offline bundle, written by {@code java -jar LibraryLoader.jar pack}, into the library folder.
+     * Load the returned lock afterwards to start without a single repository request:
+     * {@code loader.load(loader.unpackBundle(bundle), false)}.
+     *
+     * @param bundle the bundle
+     * @return the lock of the bundled libraries
+     * @throws IOException if the bundle cannot be read or a file does not match its checksum
+     */
+    public @NotNull LibraryLock unpackBundle(@NotNull File bundle) throws IOException {
+        LibraryLock lock;
+        try (InputStream is = Files.newInputStream(bundle.toPath())) {
+            lock = LibraryBundle.unpack(is, getLibFolder(), logger);
+        }
+        for (LibraryLock.Entry entry : lock.getEntries()) {
+            libraryCache.pin(entry.toDependency());
+        }
+        return lock;
+    }
+
+    /**
+     * Returns the router that selects the repository of every request.
+     * Use it to add repositories and mirrors to this loader.
+     *
+     * @return the repository router of this loader
+     */
+    public @NotNull RepositoryRouter getRepositoryRouter() {
+        return repositoryRouter;
+    }
+
+    /**
+     * Returns the timeouts, retries and hedging of the repository requests of this loader.
+     *
+     * @return the connection settings of this loader
+     */
+    public @NotNull ConnectionSettings getConnectionSettings() {
+        return connectionSettings;
+    }
+
+    /**
+     * Returns the analyzer of the classes shared by the loaded libraries.
+     * Use it to choose whether redundant jars are loaded, skipped or rejected.
+     *
+     * @return the class conflict analyzer of this loader
+     */
+    public @NotNull ClassConflictAnalyzer getClassConflictAnalyzer() {
+        return classConflicts;
+    }
+
+    /**
+     * Returns whether the libraries loaded from now on are shared with the other loaders of this JVM.
+     *
+     * @return {@code true} if the libraries are shared
+     */
+    public boolean isShareLibraries() {
+        return shareLibraries;
+    }
+
+    /**
+     * Returns the class loader of the libraries this loader shares: it finds the classes of the class loader of this
+     * loader, then of the shared libraries in load order. Shared libraries are not added to the class loader of this
+     * loader, use this class loader to reach them.
+     *
+     * @return the shared class loader
+     */
+    public @NotNull ClassLoader getSharedClassLoader() {
+        return sharedClassLoader;
+    }
+
+    /**
+     * Shares the libraries loaded from now on with the other loaders of this JVM that enabled sharing, disabled by
+     * default. A shared library gets a class loader of its own, once per identical jar, instead of being added to the
+     * class loader of this loader. Reach the shared libraries through {@link #getSharedClassLoader()}.
+     * See {@link SharedLibraryRegistry} for the details.
+     *
+     * @param shareLibraries {@code true} to share the libraries
+     */
+    public void setShareLibraries(boolean shareLibraries) {
+        this.shareLibraries = shareLibraries;
+    }
+
+    /**
+     * Returns the cache of the library folder. Use it to set a size or age quota, enforced with least recently used
+     * eviction after every load. Loaded libraries and the libraries of loaded locks and bundles are never evicted.
+     *
+     * @return the library cache of this loader
+     */
+    public @NotNull LibraryCache getLibraryCache() {
+        return libraryCache;
+    }
+
+    /**
+     * Returns the version resolver of this loader. Version ranges and the {@code LATEST} and {@code RELEASE}
+     * versions are resolved against the library folder first and looked up in the background.
+     *
+     * @return the version resolver of this loader
+     */
+    public @NotNull VersionResolver getVersionResolver() {
+        return versionResolver;
+    }
+
+    /**
+     * Returns the merged class path of this loader, disabled by default.
+     * Enable it to load the libraries of every load call from one merged jar.
+     *
+     * @return the merged class path of this loader
+     */
+    public @NotNull MergedClassPath getMergedClassPath() {
+        return mergedClassPath;
+    }
+
+    /**
+     * Returns the module layer class path of this loader, disabled by default.
+     * Enable it to load the libraries of every load call as a module layer instead of adding them to the class path.
+     *
+     * @return the module layer class path of this loader, or {@code null} before Java 9
+     */
+    public @Nullable ModuleLayerClassPath getModuleLayerClassPath() {
+        return moduleLayerClassPath;
+    }
+
+    /**
+     * Returns the slimmer of the libraries that declare entry points with {@link MavenLibrary#keep()}.
+     * Use it to add entry points programmatically and to declare classes that are only loaded reflectively.
+     *
+     * @return the jar slimmer of this loader
+     */
+    public @NotNull JarSlimmer getJarSlimmer() {
+        return jarSlimmer;
+    }
+
+    /**
+     * Returns the cache of the {@code maven-metadata.xml} lookups, stored in the {@code metadata} folder
+     * of the data folder. Use it to configure the time to live of cached and missing metadata.
+     *
+     * @return the metadata cache of this loader
+     */
+    public @NotNull MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * Returns the per-phase timers and counters of this loader.
+     * Use {@link LoaderMetrics#registerMBean(String)} to expose them through JMX.
+     *
+     * @return the metrics of this loader
+     */
+    public @NotNull LoaderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts collecting a timeline of every dependency phase, parented to the dependency that requested it.
+     * The timeline can be written with {@link #exportTrace()}.
+     *
+     * @return the exporter collecting the timeline
+     */
+    public synchronized @NotNull ChromeTraceExporter enableTraceExport() {
+        if (traceExporter == null) {
+            traceExporter = new ChromeTraceExporter();
+            metrics.addListener(traceExporter);
+        }
+        return traceExporter;
+    }
+
+    /**
+     * Writes the collected timeline as a Chrome trace-format JSON file into the data folder.
+     *
+     * @return the written file
+     * @throws IOException           if the file cannot be written
+     * @throws IllegalStateException if trace export was not enabled with {@link #enableTraceExport()}
+     */
+    public @NotNull File exportTrace() throws IOException {
+        ChromeTraceExporter exporter = traceExporter;
+        if (exporter == null) {
+            throw new IllegalStateException("Trace export is not enabled");
+        }
+        return exporter.write(dataFolder);
+    }
+
+    /**
+     * Returns a snapshot of the loaded dependencies, in load order.
      *
      * @return the list of loaded dependencies
      */
-    @Contract(pure = true)
-    public @NotNull @UnmodifiableView List<Dependency> getDependencyList() {
-        return Collections.unmodifiableList(dependencyList);
+    public @NotNull @Unmodifiable List<Dependency> getDependencyList() {
+        return dependencies.list();
+    }
+
+    /**
+     * A load run by {@link #outermost(LoadAction)}.
+     */
+    @FunctionalInterface
+    private interface LoadAction {
+        void run() throws InvalidDependencyException, UnknownDependencyException;
+    }
+
+    /**
+     * A downloaded dependency that is not injected yet.
+     */
+    static final class Fetched {
+        private final File jar;
+        private final @Nullable ClassIndex index;
+        private final List<Dependency> dependencies;
+
+        private Fetched(@NotNull File jar, @Nullable ClassIndex index, @NotNull List<Dependency> dependencies) {
+            this.jar = jar;
+            this.index = index;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Returns the dependencies declared in the pom of the dependency.
+         *
+         * @return the transitive dependencies, always empty for locked dependencies
+         */
+        @NotNull List<Dependency> getDependencies() {
+            return dependencies;
+        }
+    }
+
+    /**
+     * The outermost load call of a thread with, if it merges or defines a module layer, the dependencies and jars it
+     * resolved in class path order.
+     */
+    private static final class LoadBatch {
+        private final boolean merge;
+        private final boolean layer;
+        private final List<Dependency> dependencies = new ArrayList<>();
+        private final List<File> jars = new ArrayList<>();
+        private final List<Dependency> indexed = new ArrayList<>();
+        private final CompletableFuture<Void> injected = new CompletableFuture<>();
+        private final Map<Dependency, CompletableFuture<Void>> followed = new LinkedHashMap<>();
+
+        private LoadBatch(boolean merge, boolean layer) {
+            this.merge = merge;
+            this.layer = layer;
+        }
+
+        private synchronized void add(@NotNull Dependency d, @NotNull File jar, @Nullable ClassIndex index) {
+            dependencies.add(d);
+            jars.add(jar);
+            if (index != null) {
+                indexed.add(d);
+            }
+        }
+
+        private synchronized void follow(@NotNull Dependency d, @NotNull CompletableFuture<Void> injection) {
+            followed.put(d, injection);
+        }
     }
 
     /**
@@ -441,11 +1711,23 @@ public final class LibraryLoader {
     @NotNull
     public static class Dependency {
 
+        private static final Pattern URL_SCHEME = Pattern.compile("[a-zA-Z][a-zA-Z0-9+.-]*://");
+
         public final String groupId;
         public final String artifactId;
         public final String version;
         public final String repoUrl;
 
+        /**
+         * The classifier of the artifact for the current platform, or {@code null} for the main artifact.
+         */
+        public final @Nullable String classifier;
+
+        /**
+         * The classifier as declared, before the platform placeholders were replaced.
+         */
+        private final @Nullable String declaredClassifier;
+
         /**
          * Constructs a new Dependency with the given group ID, artifact ID, version, and repository URL.
          *
@@ -455,10 +1737,69 @@ public final class LibraryLoader {
          * @param repoUrl    the URL of the repository where the dependency is hosted
          */
         public Dependency(String groupId, String artifactId, String version, String repoUrl) {
+            this(groupId, artifactId, version, repoUrl, null);
+        }
+
+        /**
+         * Constructs a new Dependency on a classified artifact, e.g. the native library of a platform.
+         * The classifier may contain the placeholders of {@link Platform}, which are replaced with the current platform,
+         * e.g. {@code natives-${os.detected.classifier}}.
+         *
+         * @param groupId    the group ID of the dependency
+         * @param artifactId the artifact ID of the dependency
+         * @param version    the version of the dependency
+         * @param repoUrl    the URL of the repository where the dependency is hosted
+         * @param classifier the classifier of the artifact, or {@code null} or empty for the main artifact
+         */
+        public Dependency(String groupId, String artifactId, String version, String repoUrl, @Nullable String classifier) {
             this.groupId = notNull("groupId", groupId);
             this.artifactId = notNull("artifactId", artifactId);
             this.version = notNull("version", version);
             this.repoUrl = notNull("repoUrl", repoUrl);
+            this.declaredClassifier = classifier == null || classifier.isEmpty() ? null : classifier;
+            this.classifier = this.declaredClassifier == null ? null : Platform.current().resolve(this.declaredClassifier);
+        }
+
+        /**
+         * Returns the classifier as declared, which may contain platform placeholders.
+         *
+         * @return the declared classifier, or {@code null} for the main artifact
+         */
+        public @Nullable String getDeclaredClassifier() {
+            return declaredClassifier;
+        }
+
+        /**
+         * Returns the coordinates of this dependency, {@code groupId:artifactId:version[:classifier]}.
+         *
+         * @return the coordinates
+         */
+        public @NotNull String getCoordinates() {
+            return groupId + ":" + artifactId + ":" + version + (classifier == null ? "" : ":" + classifier);
+        }
+
+        /**
+         * Returns the name of the artifact file without extension, {@code artifactId-version[-classifier]}.
+         *
+         * @return the base name of the jar
+         */
+        public @NotNull String getBaseName() {
+            return artifactId + "-" + version + (classifier == null ? "" : "-" + classifier);
+        }
+
+        /**
+         * Returns this dependency with another version, e.g. the version a version range resolved to.
+         *
+         * @param version the version
+         * @return a new Dependency on the same artifact
+         */
+        @Contract("_ -> new")
+        public @NotNull Dependency withVersion(@NotNull String version) {
+            return new Dependency(groupId, artifactId, version, repoUrl, declaredClassifier);
+        }
+
+        private @NotNull String jarName(@NotNull String fileVersion) {
+            return artifactId + "-" + fileVersion + (classifier == null ? "" : "-" + classifier) + ".jar";
         }
 
         /**
@@ -469,16 +1810,54 @@ public final class LibraryLoader {
          */
         @Contract(" -> new")
         public @NotNull URL url() throws MalformedURLException {
-            String repo = this.repoUrl;
+            return url(this.repoUrl);
+        }
+
+        /**
+         * Retrieves the URL for the artifact in the given Maven repository.
+         *
+         * @param repository the base URL of the repository
+         * @return A new {@link URL} representing the artifact's location.
+         * @throws MalformedURLException If the URL cannot be constructed due to malformed input.
+         */
+        @Contract("_ -> new")
+        public @NotNull URL url(@NotNull String repository) throws MalformedURLException {
+            URLConnection connection;
+            try {
+                connection = getMetadataUrl(repository).openConnection();
+            } catch (IOException e) {
+                return url(repository, null);
+            }
+            ConnectionSettings.applyDefaults(connection);
+            try (InputStream is = connection.getInputStream()) {
+                return url(repository, is);
+            } catch (IOException e) {
+                return url(repository, null);
+            }
+        }
+
+        /**
+         * Retrieves the URL for the artifact in the given Maven repository from already fetched metadata.
+         *
+         * @param repository the base URL of the repository
+         * @param metadata   the version level {@code maven-metadata.xml}, or {@code null} if the repository does not have it
+         * @return A new {@link URL} representing the artifact's location.
+         * @throws MalformedURLException If the URL cannot be constructed due to malformed input.
+         */
+        @Contract("_, _ -> new")
+        public @NotNull URL url(@NotNull String repository, @Nullable InputStream metadata) throws MalformedURLException {
+            String repo = repository;
             if (!repo.endsWith("/")) {
                 repo += "/";
             }
-            String metadataUrl = String.format("%s/%s/%s/%s/maven-metadata.xml", repo, this.groupId.replace(".", "/"), this.artifactId, this.version);
 
-            try (InputStream is = new URL(metadataUrl).openStream()) {
+            try {
+                if (metadata == null) {
+                    throw new FileNotFoundException("maven-metadata.xml");
+                }
                 DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
                 DocumentBuilder db = dbf.newDocumentBuilder();
-                Document doc = db.parse(is);
+                Document doc = db.parse(metadata);
 
                 NodeList versionNodes = doc.getElementsByTagName("version");
                 if (versionNodes.getLength() > 0) {
@@ -491,23 +1870,25 @@ public final class LibraryLoader {
                         for (int i = 0; i < snapshotVersionNodes.getLength(); i++) {
                             Element snapshotVersionElement = (Element) snapshotVersionNodes.item(i);
                             String extension = snapshotVersionElement.getElementsByTagName("extension").item(0).getTextContent();
-                            if ("jar".equals(extension)) {
+                            Node classifierNode = snapshotVersionElement.getElementsByTagName("classifier").item(0);
+                            String snapshotClassifier = classifierNode == null ? null : classifierNode.getTextContent();
+                            if ("jar".equals(extension) && Objects.equals(this.classifier, snapshotClassifier)) {
                                 String jarValue = snapshotVersionElement.getElementsByTagName("value").item(0).getTextContent();
 
-                                String jarFileName = String.format("%s-%s.jar", this.artifactId, jarValue);
-                                return new URL(String.format("%s/%s/%s/%s/%s", repo, this.groupId.replace(".", "/"), this.artifactId, this.version, jarFileName));
+                                String jarFileName = jarName(jarValue);
+                                return new URL(String.format("%s%s/%s/%s/%s", repo, this.groupId.replace(".", "/"), this.artifactId, this.version, jarFileName));
                             }
                         }
                     } else {
-                        String jarFileName = String.format("%s-%s.jar", this.artifactId, latestVersion);
-                        return new URL(String.format("%s/%s/%s/%s", repo, this.groupId.replace(".", "/"), this.artifactId, jarFileName));
+                        String jarFileName = jarName(latestVersion);
+                        return new URL(String.format("%s%s/%s/%s/%s", repo, this.groupId.replace(".", "/"), this.artifactId, latestVersion, jarFileName));
                     }
                 }
             } catch (Exception e) {
                 try {
-                    repo += "%s/%s/%s/%s-%s.jar";
+                    repo += "%s/%s/%s/%s";
 
-                    String url = String.format(repo, this.groupId.replace(".", "/"), this.artifactId, this.version, this.artifactId, this.version);
+                    String url = String.format(repo, this.groupId.replace(".", "/"), this.artifactId, this.version, jarName(this.version));
                     return new URL(url);
                 } catch (Exception ignored) {
                     throw new RuntimeException("Unable to determine correct URL from Maven repository metadata.", e);
@@ -517,17 +1898,47 @@ public final class LibraryLoader {
             throw new MalformedURLException("Unable to determine correct URL from Maven repository metadata.");
         }
 
+        /**
+         * Retrieves the URL of the version level {@code maven-metadata.xml} of this dependency.
+         *
+         * @param repository the base URL of the repository
+         * @return URL of the metadata
+         * @throws MalformedURLException if the URL is malformed
+         */
+        public @NotNull URL getMetadataUrl(@NotNull String repository) throws MalformedURLException {
+            return new URL(String.format("%s%s/%s/%s/maven-metadata.xml",
+                    repository.endsWith("/") ? repository : repository + "/", this.groupId.replace(".", "/"),
+                    this.artifactId, this.version));
+        }
+
+        /**
+         * Checks if this dependency is a {@code -SNAPSHOT} version.
+         *
+         * @return true if this is a snapshot version
+         */
+        public boolean isSnapshot() {
+            return this.version.endsWith("-SNAPSHOT");
+        }
+
         /**
          * Checks if a pom exists for this dependency.
          *
          * @return true if a pom exists, false otherwise
          */
         public boolean hasPom() {
-            String pomUrl = String.format("%s/%s/%s/%s/%s-%s.pom",
-                    this.repoUrl, this.groupId.replace(".", "/"),
-                    this.artifactId, this.version, this.artifactId, this.version);
+            return hasPom(this.repoUrl);
+        }
+
+        /**
+         * Checks if a pom exists for this dependency in the given repository.
+         *
+         * @param repository the base URL of the repository
+         * @return true if a pom exists, false otherwise
+         */
+        public boolean hasPom(@NotNull String repository) {
             try {
-                HttpURLConnection connection = (HttpURLConnection) new URL(pomUrl).openConnection();
+                HttpURLConnection connection = (HttpURLConnection) getPomUrl(repository).openConnection();
+                ConnectionSettings.applyDefaults(connection);
                 connection.setRequestMethod("HEAD");
                 int responseCode = connection.getResponseCode();
                 return responseCode == HttpURLConnection.HTTP_OK;
@@ -536,6 +1947,16 @@ public final class LibraryLoader {
             }
         }
 
+        /**
+         * Returns the folder of this dependency relative to {@link LibraryLoader#getLibFolder()},
+         * {@code groupId/artifactId/version} with dots replaced by slashes.
+         *
+         * @return the relative folder, separated by {@code /}
+         */
+        public @NotNull String getLocalPath() {
+            return groupId.replace('.', '/') + "/" + artifactId.replace('.', '/') + "/" + version;
+        }
+
         /**
          * Retrieves the URL for the pom of this dependency.
          *
@@ -543,8 +1964,19 @@ public final class LibraryLoader {
          * @throws MalformedURLException if the URL is malformed
          */
         public URL getPomUrl() throws MalformedURLException {
-            return new URL(String.format("%s/%s/%s/%s/%s-%s.pom",
-                    this.repoUrl, this.groupId.replace(".", "/"),
+            return getPomUrl(this.repoUrl);
+        }
+
+        /**
+         * Retrieves the URL for the pom of this dependency in the given repository.
+         *
+         * @param repository the base URL of the repository
+         * @return URL of the pom
+         * @throws MalformedURLException if the URL is malformed
+         */
+        public URL getPomUrl(@NotNull String repository) throws MalformedURLException {
+            return new URL(String.format("%s%s/%s/%s/%s-%s.pom",
+                    repository.endsWith("/") ? repository : repository + "/", this.groupId.replace(".", "/"),
                     this.artifactId, this.version, this.artifactId, this.version));
         }
 
@@ -559,7 +1991,13 @@ public final class LibraryLoader {
             if (this == o) return true;
             if (!(o instanceof Dependency)) return false;
             Dependency that = (Dependency) o;
-            return groupId.equals(that.groupId) && artifactId.equals(that.artifactId) && version.equals(that.version) && repoUrl.equals(that.repoUrl);
+            return groupId.equals(that.groupId) && artifactId.equals(that.artifactId) && version.equals(that.version) && repoUrl.equals(that.repoUrl)
+                    && Objects.equals(classifier, that.classifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(groupId, artifactId, version, repoUrl, classifier);
         }
 
         /**
@@ -573,7 +2011,64 @@ public final class LibraryLoader {
                     "groupId=" + this.groupId + ", " +
                     "artifactId=" + this.artifactId + ", " +
                     "version=" + this.version + ", " +
-                    "repoUrl=" + this.repoUrl + ")";
+                    "repoUrl=" + this.repoUrl +
+                    (this.classifier == null ? "" : ", classifier=" + this.classifier) + ")";
+        }
+
+        /**
+         * Creates the dependency declared by a {@link MavenLibrary} annotation.
+         *
+         * @param lib the annotation
+         * @return a {@link RelocatedDependency} if the annotation declares relocations, a Dependency otherwise
+         */
+        @Contract("_ -> new")
+        public static @NotNull Dependency fromAnnotation(@NotNull MavenLibrary lib) {
+            Dependency d;
+            if (lib.groupId().isEmpty() && lib.artifactId().isEmpty() && lib.version().isEmpty()) {
+                d = fromCoordinates(lib.value(), lib.repo().value());
+            } else {
+                d = new Dependency(lib.groupId(), lib.artifactId(), lib.version(), lib.repo().value(), null);
+            }
+            String classifier = lib.classifier().isEmpty() ? d.declaredClassifier : lib.classifier();
+
+            if (lib.relocations().length == 0) {
+                return new Dependency(d.groupId, d.artifactId, d.version, d.repoUrl, classifier);
+            }
+            List<Relocation> relocations = new ArrayList<>();
+            for (Relocate relocate : lib.relocations()) {
+                relocations.add(new Relocation(relocate.pattern(), relocate.relocatedPattern()));
+            }
+            return new RelocatedDependency(d.groupId, d.artifactId, d.version, d.repoUrl, classifier, relocations);
+        }
+
+        /**
+         * Parses coordinates of the form {@code groupId:artifactId:version[:classifier][:repository]}.
+         *
+         * @param coordinates       the coordinates
+         * @param defaultRepository the repository if the coordinates do not declare one
+         * @return a new Dependency
+         */
+        @Contract("_, _ -> new")
+        public static @NotNull Dependency fromCoordinates(@NotNull String coordinates, @NotNull String defaultRepository) {
+            String[] dependency = coordinates.split(":", 4);
+            if (dependency.length < 3) {
+                throw new IllegalArgumentException("Invalid library declaration '" + coordinates + "', expected groupId:artifactId:version[:classifier][:repository]");
+            }
+            String classifier = null;
+            String repoUrl = defaultRepository;
+            if (dependency.length == 4) {
+                String rest = dependency[3];
+                if (URL_SCHEME.matcher(rest).lookingAt()) {
+                    repoUrl = rest;
+                } else {
+                    int separator = rest.indexOf(':');
+                    classifier = separator < 0 ? rest : rest.substring(0, separator);
+                    if (separator >= 0) {
+                        repoUrl = rest.substring(separator + 1);
+                    }
+                }
+            }
+            return new Dependency(dependency[0], dependency[1], dependency[2], repoUrl, classifier);
         }
 
         /**
@@ -589,6 +2084,11 @@ public final class LibraryLoader {
             String groupId = arguments[0].substring(arguments[0].indexOf("=") + 1);
             String artifactId = arguments[1].substring(arguments[1].indexOf("=") + 1);
             String version = arguments[2].substring(arguments[2].indexOf("=") + 1);
+            if (arguments.length > 4) {
+                String repoUrl = arguments[3].substring(arguments[3].indexOf("=") + 1);
+                String classifier = arguments[4].substring(arguments[4].indexOf("=") + 1, arguments[4].lastIndexOf(")"));
+                return new Dependency(groupId, artifactId, version, repoUrl, classifier);
+            }
             String repoUrl = arguments[3].substring(arguments[3].indexOf("=") + 1, arguments[3].lastIndexOf(")"));
 
             return new Dependency(groupId, artifactId, version, repoUrl);
@@ -618,7 +2118,21 @@ public final class LibraryLoader {
          * @param relocations the list of relocations for class relocation
          */
         public RelocatedDependency(String groupId, String artifactId, String version, String repoUrl, List<Relocation> relocations) {
-            super(groupId, artifactId, version, repoUrl);
+            this(groupId, artifactId, version, repoUrl, null, relocations);
+        }
+
+        /**
+         * Constructs a new RelocatedDependency on a classified artifact.
+         *
+         * @param groupId     the group ID of the dependency
+         * @param artifactId  the artifact ID of the dependency
+         * @param version     the version of the dependency
+         * @param repoUrl     the URL of the repository where the dependency is hosted
+         * @param classifier  the classifier of the artifact, or {@code null} or empty for the main artifact
+         * @param relocations the list of relocations for class relocation
+         */
+        public RelocatedDependency(String groupId, String artifactId, String version, String repoUrl, @Nullable String classifier, List<Relocation> relocations) {
+            super(groupId, artifactId, version, repoUrl, classifier);
             this.relocations = notNull("relocations", relocations);
         }
 
@@ -630,6 +2144,11 @@ public final class LibraryLoader {
         public List<Relocation> getRelocations() {
             return relocations;
         }
+
+        @Override
+        public @NotNull Dependency withVersion(@NotNull String version) {
+            return new RelocatedDependency(groupId, artifactId, version, repoUrl, getDeclaredClassifier(), relocations);
+        }
     }
 
     @Contract(pure = true)
@@ -637,7 +2156,7 @@ public final class LibraryLoader {
     public @NotNull String toString() {
         return "LibraryLoader{" +
                 "dataFolder=" + dataFolder +
-                ", dependencyList=" + dependencyList +
+                ", dependencyList=" + getDependencyList() +
                 '}';
     }
 
@@ -0,0 +1,625 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.LibraryLoader.Fetched;
+import com.georgev22.libraryloader.annotations.MavenLibrary;
+import com.georgev22.libraryloader.exceptions.InvalidDependencyException;
+import com.georgev22.libraryloader.exceptions.UnknownDependencyException;
+import com.georgev22.libraryloader.lock.LibraryLock;
+import com.georgev22.libraryloader.version.VersionRange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Loads a dependency graph progressively, created by {@link LibraryLoader#pipeline(boolean, int)}.
+ *
+ * <p>Unlike the load methods of {@link LibraryLoader}, which return once the whole tree of a library is loaded, a
+ * pipeline downloads the graph in parallel and injects every library as soon as it and its own dependencies are
+ * downloaded, slimmed and relocated, dependencies first. Every library has a future that completes when it is
+ * usable, i.e. when it and all of its dependencies are injected, so a subsystem can start as soon as its own
+ * libraries are ready while the rest of the graph is still loading.</p>
+ *
+ * <p>Downloads are scheduled by priority. A library inherits the highest priority of the libraries that depend on
+ * it, so the whole tree of a critical library is downloaded before the libraries of lower priority that are waiting.
+ * Libraries of the same priority are downloaded in the order they were discovered.</p>
+ *
+ * <p>Libraries are added to the class path one by one: the merged class path does not apply to a pipeline, and
+ * every library becomes a module layer of its own if the module layer class path is enabled. A library that is
+ * already being loaded by another load call of the loader is not downloaded twice.</p>
+ */
+public final class LoadPipeline {
+
+    /**
+     * The default number of libraries fetched at the same time.
+     */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private final LibraryLoader loader;
+    private final DependencyRegistry registry;
+    private final Logger logger;
+    private final boolean pathCheck;
+    private final ThreadPoolExecutor executor;
+    private final PriorityBlockingQueue<Node> queue = new PriorityBlockingQueue<>();
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final Object installLock = new Object();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private boolean started = false;
+    private int pending = 0;
+    private @Nullable Throwable failure;
+
+    LoadPipeline(@NotNull LibraryLoader loader, @NotNull DependencyRegistry registry, @NotNull Logger logger, boolean pathCheck, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.loader = loader;
+        this.registry = registry;
+        this.logger = logger;
+        this.pathCheck = pathCheck;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "LibraryLoader-pipeline-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Adds a library with the default priority, {@code 0}.
+     *
+     * @param d the library
+     * @return the future of the library, see {@link #whenReady(Dependency)}
+     * @throws IllegalStateException if the pipeline is finished
+     */
+    public @NotNull CompletableFuture<Dependency> add(@NotNull Dependency d) {
+        return add(d, 0);
+    }
+
+    /**
+     * Adds a library. If the library is already part of the pipeline its priority is raised.
+     *
+     * @param d        the library
+     * @param priority the priority of the library and its dependencies, higher is downloaded first
+     * @return the future of the library, see {@link #whenReady(Dependency)}
+     * @throws IllegalStateException if the pipeline is finished
+     */
+    public synchronized @NotNull CompletableFuture<Dependency> add(@NotNull Dependency d, int priority) {
+        Node node = node(d, null, null, priority);
+        raise(node, priority);
+        return node.ready;
+    }
+
+    /**
+     * Adds the libraries of a lock. No pom is resolved, every library of the runtime closure is listed in the lock.
+     *
+     * @param lock     the lock
+     * @param priority the priority of the libraries, higher is downloaded first
+     * @return a future that completes when every library of the lock is ready
+     * @throws IllegalStateException if the pipeline is finished
+     */
+    public synchronized @NotNull CompletableFuture<Void> add(@NotNull LibraryLock lock, int priority) {
+        Map<String, Node> locked = new HashMap<>();
+        List<CompletableFuture<Dependency>> futures = new ArrayList<>();
+        for (LibraryLock.Entry entry : lock.getEntries()) {
+            Dependency d = entry.toDependency();
+            loader.getLibraryCache().pin(d);
+            Node parent = entry.getParent() == null ? null : locked.get(entry.getParent());
+            Node node = node(d, parent == null ? null : parent.dependency, entry, priority);
+            locked.put(entry.getCoordinates(), node);
+            if (parent != null && parent.locked != null && node != parent && !parent.lockChildren.contains(node)) {
+                parent.lockChildren.add(node);
+            }
+            raise(node, priority);
+            futures.add(node.ready);
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Adds the libraries declared by the {@link MavenLibrary} annotations of a class, or by its lock if it has one,
+     * e.g. the libraries of one subsystem.
+     *
+     * @param clazz    the class
+     * @param priority the priority of the libraries, higher is downloaded first
+     * @return a future that completes when every library of the class is ready
+     * @throws IllegalStateException if the pipeline is finished
+     */
+    public @NotNull CompletableFuture<Void> add(@NotNull Class<?> clazz, int priority) {
+        MavenLibrary[] libs = clazz.getDeclaredAnnotationsByType(MavenLibrary.class);
+        List<Dependency> declared = loader.declare(libs);
+
+        LibraryLock lock;
+        try {
+            lock = LibraryLock.find(clazz);
+        } catch (IOException e) {
+            logger.warning("Ignoring unreadable library lock of " + clazz.getName() + ": " + e);
+            lock = null;
+        }
+        if (lock != null) {
+            return add(lock, priority);
+        }
+
+        List<CompletableFuture<Dependency>> futures = new ArrayList<>();
+        synchronized (this) {
+            for (Dependency d : declared) {
+                futures.add(add(d, priority));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Raises the priority of a library of the pipeline and of its dependencies. Libraries that are already being
+     * downloaded are not affected.
+     *
+     * @param d        the library
+     * @param priority the priority
+     * @return {@code false} if the library is not part of the pipeline
+     */
+    public synchronized boolean prioritize(@NotNull Dependency d, int priority) {
+        Node node = nodes.get(d.getCoordinates());
+        if (node == null) {
+            return false;
+        }
+        raise(node, priority);
+        return true;
+    }
+
+    /**
+     * Starts downloading. Libraries added before are scheduled by priority, libraries added later are scheduled
+     * immediately.
+     *
+     * @return this pipeline
+     */
+    public @NotNull LoadPipeline start() {
+        boolean finished;
+        synchronized (this) {
+            if (started) {
+                return this;
+            }
+            started = true;
+            for (Node node : nodes.values()) {
+                if (node.state == State.NEW) {
+                    enqueue(node);
+                }
+            }
+            finished = pending == 0;
+        }
+        if (finished) {
+            finish();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the future of a library of the pipeline, which completes when the library and all of its dependencies
+     * are injected, or completes exceptionally with an {@link InvalidDependencyException} or an
+     * {@link UnknownDependencyException} if the library or one of its dependencies cannot be loaded.
+     * Dependent actions run on a thread of the pipeline and should not block.
+     *
+     * @param d the library, also a transitive dependency that was discovered already
+     * @return the future, or {@code null} if the library is not part of the pipeline
+     */
+    public synchronized @Nullable CompletableFuture<Dependency> whenReady(@NotNull Dependency d) {
+        Node node = nodes.get(d.getCoordinates());
+        return node == null ? null : node.ready;
+    }
+
+    /**
+     * Returns the future of the whole pipeline, which completes when every library is ready or failed, exceptionally
+     * with the first failure.
+     *
+     * @return the future
+     */
+    public @NotNull CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Starts the pipeline if needed and waits until every library is ready or failed.
+     *
+     * @throws InvalidDependencyException if a dependency is already in the class path or cannot be injected
+     * @throws UnknownDependencyException if a dependency cannot be downloaded, or the wait is interrupted
+     */
+    public void await() throws InvalidDependencyException, UnknownDependencyException {
+        start();
+        try {
+            completion.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownDependencyException(e, "Interrupted while waiting for the load pipeline.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InvalidDependencyException) {
+                throw new InvalidDependencyException("Unable to load the dependencies of the pipeline.", e.getCause());
+            }
+            throw new UnknownDependencyException(e.getCause(), "Unable to load the dependencies of the pipeline.");
+        }
+    }
+
+    /**
+     * Returns the node of a library, creating and scheduling it if it is new. Called with the lock held.
+     */
+    private @NotNull Node node(@NotNull Dependency d, @Nullable Dependency parent, @Nullable LibraryLock.Entry locked, int priority) {
+        String coordinates = d.getCoordinates();
+        Node node = nodes.get(coordinates);
+        if (node != null) {
+            return node;
+        }
+        if (completion.isDone()) {
+            throw new IllegalStateException("The load pipeline is finished");
+        }
+        node = new Node(d, parent, locked, priority, sequence.incrementAndGet());
+        nodes.put(coordinates, node);
+        pending++;
+        if (started) {
+            enqueue(node);
+        }
+        return node;
+    }
+
+    private void enqueue(@NotNull Node node) {
+        node.state = State.QUEUED;
+        queue.add(node);
+        executor.execute(this::fetchNext);
+    }
+
+    /**
+     * Raises the priority of a node and of the dependencies it discovered. Called with the lock held.
+     */
+    private void raise(@NotNull Node node, int priority) {
+        Deque<Node> work = new ArrayDeque<>();
+        work.add(node);
+        while ((node = work.poll()) != null) {
+            if (priority <= node.priority) {
+                continue;
+            }
+            // the queue is ordered by priority, so a queued node is moved
+            if (node.state == State.QUEUED && queue.remove(node)) {
+                node.priority = priority;
+                queue.add(node);
+            } else {
+                node.priority = priority;
+            }
+            work.addAll(node.children);
+            work.addAll(node.lockChildren);
+        }
+    }
+
+    /**
+     * Fetches the queued library of the highest priority. Runs once per queued library.
+     */
+    private void fetchNext() {
+        Node node = queue.poll();
+        if (node == null) {
+            return;
+        }
+        synchronized (this) {
+            node.state = State.FETCHING;
+        }
+        if (node.locked == null && VersionRange.isDynamic(node.dependency.version)) {
+            try {
+                node.resolved = loader.resolveVersion(node.dependency, node.parent);
+            } catch (UnknownDependencyException | RuntimeException e) {
+                fail(node, e);
+                return;
+            }
+        }
+        Dependency d = node.resolved;
+        if (registry.contains(d)) {
+            logger.warning(String.format("Dependency %s:%s:%s is already loaded!", d.groupId, d.artifactId, d.version));
+            loadedElsewhere(node, Collections.emptyList());
+            return;
+        }
+
+        String coordinates = d.getCoordinates();
+        CompletableFuture<List<Dependency>> flight = new CompletableFuture<>();
+        CompletableFuture<List<Dependency>> inFlight = registry.join(coordinates, flight);
+        if (inFlight != null) {
+            logger.info(String.format("Dependency %s is being loaded by another thread, waiting...", coordinates));
+            inFlight.whenCompleteAsync((transitive, error) -> {
+                if (error != null) {
+                    fail(node, error instanceof InvalidDependencyException || error instanceof UnknownDependencyException
+                            ? error : new UnknownDependencyException(error, "Unable to load '" + d + "' dependency."));
+                } else {
+                    loadedElsewhere(node, transitive);
+                }
+            }, executor);
+            return;
+        }
+        if (registry.contains(d)) {
+            flight.complete(Collections.emptyList());
+            registry.land(coordinates, flight);
+            loadedElsewhere(node, Collections.emptyList());
+            return;
+        }
+
+        node.flight = flight;
+        Fetched fetched;
+        try {
+            fetched = loader.fetch(d, node.parent, node.locked);
+        } catch (UnknownDependencyException | RuntimeException e) {
+            fail(node, e);
+            return;
+        }
+        fetched(node, fetched, fetched.getDependencies());
+    }
+
+    /**
+     * Links a library that another load call of the loader registered to its dependencies, once it is injected.
+     * The load call may have added it to a batch that is only injected when the load call returns.
+     *
+     * @param node       the node of the library
+     * @param transitive the dependencies declared in its pom
+     */
+    private void loadedElsewhere(@NotNull Node node, @NotNull List<Dependency> transitive) {
+        Dependency d = node.resolved;
+        CompletableFuture<Void> injection = loader.pendingInjection(d);
+        if (injection == null) {
+            fetched(node, null, transitive);
+            return;
+        }
+        injection.whenCompleteAsync((injected, error) -> {
+            if (error != null) {
+                fail(node, new InvalidDependencyException("Unable to load '" + d + "' dependency.", error));
+            } else {
+                fetched(node, null, transitive);
+            }
+        }, executor);
+    }
+
+    /**
+     * Links a fetched library to its dependencies, and installs it if they are all ready.
+     *
+     * @param node       the node of the library
+     * @param fetched    the fetched library, or {@code null} if it was loaded by another load call
+     * @param transitive the dependencies declared in its pom
+     */
+    private void fetched(@NotNull Node node, @Nullable Fetched fetched, @NotNull List<Dependency> transitive) {
+        Throwable failed = null;
+        boolean ready;
+        synchronized (this) {
+            node.fetched = fetched;
+            node.state = State.WAITING;
+            List<Node> dependencies = new ArrayList<>(node.lockChildren);
+            if (node.locked == null) {
+                for (Dependency dependency : transitive) {
+                    dependencies.add(node(dependency, node.resolved, null, node.priority));
+                }
+            }
+            for (Node dependency : dependencies) {
+                if (dependency == node || reaches(dependency, node)) {
+                    // a cycle, the dependency cannot be injected first
+                    continue;
+                }
+                raise(dependency, node.priority);
+                if (dependency.state == State.READY) {
+                    continue;
+                }
+                if (dependency.state == State.FAILED) {
+                    failed = dependency.failure;
+                    break;
+                }
+                node.children.add(dependency);
+                dependency.dependents.add(node);
+            }
+            ready = failed == null && node.children.isEmpty();
+            if (ready) {
+                node.state = State.INSTALLING;
+            }
+        }
+        if (failed != null) {
+            fail(node, dependencyFailure(node.dependency, failed));
+        } else if (ready) {
+            install(node);
+        }
+    }
+
+    /**
+     * Returns whether a node depends on another, through the dependencies that are not ready. Called with the lock held.
+     */
+    private static boolean reaches(@NotNull Node from, @NotNull Node to) {
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> work = new ArrayDeque<>();
+        work.add(from);
+        Node node;
+        while ((node = work.poll()) != null) {
+            if (node == to) {
+                return true;
+            }
+            if (visited.add(node)) {
+                work.addAll(node.children);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Installs a library whose dependencies are ready, then the libraries that were only waiting for it.
+     */
+    private void install(@NotNull Node first) {
+        Deque<Node> work = new ArrayDeque<>();
+        work.add(first);
+        Node node;
+        while ((node = work.poll()) != null) {
+            Dependency d = node.resolved;
+            try {
+                if (node.fetched != null) {
+                    synchronized (installLock) {
+                        loader.installNow(d, node.parent, pathCheck, node.fetched);
+                    }
+                }
+            } catch (InvalidDependencyException | RuntimeException e) {
+                fail(node, e);
+                continue;
+            }
+            if (node.flight != null) {
+                node.flight.complete(node.fetched == null ? Collections.emptyList() : node.fetched.getDependencies());
+                registry.land(d.getCoordinates(), node.flight);
+            }
+
+            boolean finished;
+            synchronized (this) {
+                node.state = State.READY;
+                node.fetched = null;
+                for (Node dependent : node.dependents) {
+                    dependent.children.remove(node);
+                    if (dependent.state == State.WAITING && dependent.children.isEmpty()) {
+                        dependent.state = State.INSTALLING;
+                        work.add(dependent);
+                    }
+                }
+                node.dependents.clear();
+                finished = --pending == 0 && started;
+            }
+            node.ready.complete(d);
+            if (finished) {
+                finish();
+            }
+        }
+    }
+
+    /**
+     * Fails a library and the libraries that depend on it.
+     */
+    private void fail(@NotNull Node first, @NotNull Throwable cause) {
+        logger.warning("Unable to load dependency " + first.dependency + ": " + cause);
+        Deque<Node> work = new ArrayDeque<>();
+        Deque<Throwable> causes = new ArrayDeque<>();
+        work.add(first);
+        causes.add(cause);
+        Node node;
+        while ((node = work.poll()) != null) {
+            Throwable error = causes.poll();
+            boolean finished;
+            synchronized (this) {
+                if (node.state == State.READY || node.state == State.FAILED) {
+                    continue;
+                }
+                node.state = State.FAILED;
+                node.failure = error;
+                node.fetched = null;
+                if (failure == null) {
+                    failure = error;
+                }
+                for (Node dependent : node.dependents) {
+                    work.add(dependent);
+                    causes.add(dependencyFailure(dependent.dependency, error));
+                }
+                node.dependents.clear();
+                finished = --pending == 0 && started;
+            }
+            if (node.flight != null) {
+                node.flight.completeExceptionally(error);
+                registry.land(node.resolved.getCoordinates(), node.flight);
+            }
+            node.ready.completeExceptionally(error);
+            if (finished) {
+                finish();
+            }
+        }
+    }
+
+    private void finish() {
+        Throwable failed;
+        synchronized (this) {
+            failed = failure;
+        }
+        try {
+            loader.getLibraryCache().enforce();
+        } finally {
+            if (failed == null) {
+                completion.complete(null);
+            } else {
+                completion.completeExceptionally(failed);
+            }
+        }
+    }
+
+    private static @NotNull Throwable dependencyFailure(@NotNull Dependency d, @NotNull Throwable cause) {
+        if (cause instanceof InvalidDependencyException) {
+            return new InvalidDependencyException("Unable to load a dependency of '" + d + "'.", cause);
+        }
+        return new UnknownDependencyException(cause, "Unable to load a dependency of '" + d + "'.");
+    }
+
+    @Override
+    public synchronized String toString() {
+        Map<State, Integer> states = new LinkedHashMap<>();
+        for (Node node : nodes.values()) {
+            states.merge(node.state, 1, Integer::sum);
+        }
+        return "LoadPipeline{" +
+                "libraries=" + nodes.size() +
+                ", states=" + states +
+                ", started=" + started +
+                '}';
+    }
+
+    private enum State {
+        NEW, QUEUED, FETCHING, WAITING, INSTALLING, READY, FAILED
+    }
+
+    /**
+     * A library of the pipeline. Its mutable state is guarded by the pipeline, except its priority, which is only
+     * changed while the node is not queued.
+     */
+    private static final class Node implements Comparable<Node> {
+        private final Dependency dependency;
+        /**
+         * The dependency with its version range or dynamic version resolved, the dependency itself otherwise.
+         */
+        private volatile Dependency resolved;
+        private final @Nullable Dependency parent;
+        private final @Nullable LibraryLock.Entry locked;
+        private final long sequence;
+        private final CompletableFuture<Dependency> ready = new CompletableFuture<>();
+        private final Set<Node> children = new LinkedHashSet<>();
+        private final List<Node> lockChildren = new ArrayList<>();
+        private final List<Node> dependents = new ArrayList<>();
+        private volatile int priority;
+        private State state = State.NEW;
+        private @Nullable Fetched fetched;
+        private @Nullable CompletableFuture<List<Dependency>> flight;
+        private @Nullable Throwable failure;
+
+        private Node(@NotNull Dependency dependency, @Nullable Dependency parent, @Nullable LibraryLock.Entry locked, int priority, long sequence) {
+            this.dependency = dependency;
+            this.resolved = dependency;
+            this.parent = parent;
+            this.locked = locked;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(@NotNull Node other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.exceptions.InvalidDependencyException;
+import com.georgev22.libraryloader.io.Bytes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * JVM-wide registry of the libraries shared by the {@link LibraryLoader} instances that enabled
+ * {@link LibraryLoader#setShareLibraries(boolean) sharing}.
+ *
+ * <p>Every shared library has a class loader of its own, holding only its jar. Identical jars, after relocation and
+ * slimming, are identified by their SHA-1 and get one class loader per parent class loader, so the consumers of the
+ * same library share its classes instead of each defining a copy. The class loader of a library finds classes in
+ * its parent, the parent of the class loader of its first consumer, then in its jar, then in the libraries it
+ * depends on. Its classes cannot see the classes of its consumers.</p>
+ *
+ * <p>The libraries a shared library is linked to are part of what is shared. A consumer that resolves a dependency
+ * of a shared library to another jar than its other consumers did, e.g. because it loaded another version, gets a
+ * class loader of its own for the library, linked to its own dependencies, and so do the libraries of the consumer
+ * that depend on it. Consumers that resolve the same jars keep sharing one class loader.</p>
+ *
+ * <p>Consumers reach their shared libraries through {@link LibraryLoader#getSharedClassLoader()}. Shared libraries
+ * are not added to any existing class loader, so they never shadow the classes of other consumers, and two shared
+ * libraries may define the same classes. A library is reference counted and its class loader is closed when its
+ * last consumer unloads it, after which its classes can be garbage collected.</p>
+ */
+public final class SharedLibraryRegistry {
+
+    private static final SharedLibraryRegistry INSTANCE = new SharedLibraryRegistry();
+
+    private final Map<ClassLoader, Map<String, List<SharedLibrary>>> libraries = new HashMap<>();
+    private final Map<String, String> digests = new HashMap<>();
+
+    private SharedLibraryRegistry() {
+    }
+
+    /**
+     * Returns the registry of this JVM.
+     *
+     * @return the registry
+     */
+    public static @NotNull SharedLibraryRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Defines the class loader of a shared library, or takes a reference to it if an identical jar is already shared
+     * with the same parent. Link it to the libraries it depends on with {@link #link(SharedClassLoader, SharedLibrary, SharedLibrary, Logger)}.
+     *
+     * @param d        the library
+     * @param jar      the jar of the library
+     * @param consumer the class loader of the consumer
+     * @param logger   the logger of the consumer
+     * @return the shared library, to {@link #release(SharedLibrary) release} when the consumer unloads it
+     * @throws InvalidDependencyException if the jar cannot be read
+     */
+    public synchronized @NotNull SharedLibrary acquire(@NotNull Dependency d, @NotNull File jar, @NotNull ClassLoader consumer,
+                                                       @NotNull Logger logger) throws InvalidDependencyException {
+        String digest;
+        URL url;
+        try {
+            digest = digest(jar);
+            url = jar.toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new InvalidDependencyException("Unable to load '" + jar + "' dependency.", e);
+        } catch (IOException e) {
+            throw new InvalidDependencyException("Unable to read '" + jar + "'.", e);
+        }
+
+        ClassLoader parent = consumer.getParent();
+        List<SharedLibrary> variants = libraries.computeIfAbsent(parent, key -> new HashMap<>())
+                .computeIfAbsent(digest, key -> new ArrayList<>());
+        SharedLibrary library;
+        if (!variants.isEmpty()) {
+            library = variants.get(0);
+            library.references++;
+            logger.info(String.format("Sharing dependency %s:%s:%s from %s with %d consumers", d.groupId, d.artifactId, d.version, library.jar, library.references));
+        } else {
+            library = new SharedLibrary(d, jar, digest, new LibraryClassLoader(d, url, parent));
+            variants.add(library);
+            logger.info(String.format("Shared dependency %s:%s:%s with its own class loader", d.groupId, d.artifactId, d.version));
+        }
+        return library;
+    }
+
+    /**
+     * Links a shared library of a consumer to a library it depends on, so that its classes see the classes of the
+     * dependency. If other consumers share the library and it is not linked to the same dependency for them, the
+     * consumer gets a class loader of its own for the library instead, and so do its libraries that depend on it.
+     * The class loaders of the consumer are replaced in {@code consumer}.
+     *
+     * @param consumer   the shared class loader of the consumer
+     * @param dependent  the shared library of the consumer that depends on {@code dependency}
+     * @param dependency the shared library of the consumer it depends on
+     * @param logger     the logger of the consumer
+     */
+    public synchronized void link(@NotNull SharedClassLoader consumer, @NotNull SharedLibrary dependent,
+                                  @NotNull SharedLibrary dependency, @NotNull Logger logger) {
+        Deque<SharedLibrary[]> work = new ArrayDeque<>();
+        work.add(new SharedLibrary[]{dependent, dependency});
+        SharedLibrary[] link;
+        while ((link = work.poll()) != null) {
+            SharedLibrary from = link[0];
+            SharedLibrary to = link[1];
+            String artifact = artifact(to.dependency);
+            if (from == to || from.references == 0 || from.links.get(artifact) == to) {
+                continue;
+            }
+            if (from.references == 1) {
+                from.link(artifact, to);
+                continue;
+            }
+
+            // the other consumers of the library did not link it to this jar
+            Map<String, SharedLibrary> links = new HashMap<>(from.links);
+            links.put(artifact, to);
+            List<SharedLibrary> variants = libraries.get(from.classLoader.getParent()).get(from.digest);
+            SharedLibrary own = null;
+            for (SharedLibrary variant : variants) {
+                if (variant.links.equals(links)) {
+                    own = variant;
+                }
+            }
+            if (own != null) {
+                own.references++;
+            } else {
+                own = new SharedLibrary(from.dependency, from.jar, from.digest,
+                        new LibraryClassLoader(from.dependency, from.classLoader.getURLs()[0], from.classLoader.getParent()));
+                for (Map.Entry<String, SharedLibrary> entry : links.entrySet()) {
+                    own.link(entry.getKey(), entry.getValue());
+                }
+                variants.add(own);
+            }
+            logger.info(String.format("Dependency %s:%s:%s depends on another %s than its other consumers, using a class loader of its own",
+                    from.dependency.groupId, from.dependency.artifactId, from.dependency.version, artifact));
+            consumer.replace(from, own);
+            String replaced = artifact(from.dependency);
+            for (SharedLibrary library : consumer.libraries) {
+                if (library.links.get(replaced) == from) {
+                    work.add(new SharedLibrary[]{library, own});
+                }
+            }
+            // still referenced by the other consumers
+            release(from);
+        }
+    }
+
+    /**
+     * Releases a reference to a shared library. The class loader of the library is closed when its last reference
+     * is released.
+     *
+     * @param library the shared library
+     * @return {@code true} if the class loader of the library was closed
+     */
+    public synchronized boolean release(@NotNull SharedLibrary library) {
+        if (library.references == 0) {
+            return false;
+        }
+        if (--library.references > 0) {
+            return false;
+        }
+        Map<String, List<SharedLibrary>> shared = libraries.get(library.classLoader.getParent());
+        List<SharedLibrary> variants = shared == null ? null : shared.get(library.digest);
+        if (variants == null || !variants.remove(library)) {
+            return false;
+        }
+        if (variants.isEmpty()) {
+            shared.remove(library.digest);
+        }
+        if (shared.isEmpty()) {
+            libraries.remove(library.classLoader.getParent());
+        }
+        for (List<SharedLibrary> dependents : shared.values()) {
+            for (SharedLibrary dependent : dependents) {
+                dependent.unlink(library);
+            }
+        }
+        try {
+            library.classLoader.close();
+        } catch (IOException ignored) {
+            // the jar file is closed when the class loader is collected
+        }
+        return true;
+    }
+
+    /**
+     * Returns the libraries shared in this JVM.
+     *
+     * @return the shared libraries
+     */
+    public synchronized @NotNull @Unmodifiable List<SharedLibrary> getLibraries() {
+        List<SharedLibrary> shared = new ArrayList<>();
+        for (Map<String, List<SharedLibrary>> byDigest : libraries.values()) {
+            for (List<SharedLibrary> variants : byDigest.values()) {
+                shared.addAll(variants);
+            }
+        }
+        return Collections.unmodifiableList(shared);
+    }
+
+    /**
+     * Returns the artifact of a library regardless of its version, {@code groupId:artifactId[:classifier]}.
+     */
+    private static @NotNull String artifact(@NotNull Dependency d) {
+        return d.groupId + ":" + d.artifactId + (d.classifier == null ? "" : ":" + d.classifier);
+    }
+
+    private @NotNull String digest(@NotNull File jar) throws IOException {
+        String source = jar.getAbsolutePath() + "\t" + jar.length() + "\t" + jar.lastModified();
+        String digest = digests.get(source);
+        if (digest != null) {
+            return digest;
+        }
+        digest = Bytes.hex(Bytes.sha1(jar.toPath()));
+        digests.put(source, digest);
+        return digest;
+    }
+
+    /**
+     * The class loader of a shared library: its parent, then its jar, then the class loaders of the libraries it
+     * depends on.
+     */
+    private static final class LibraryClassLoader extends URLClassLoader {
+
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        private final Dependency dependency;
+        private final List<LibraryClassLoader> dependencies = new CopyOnWriteArrayList<>();
+
+        private LibraryClassLoader(@NotNull Dependency dependency, @NotNull URL url, @Nullable ClassLoader parent) {
+            super(new URL[]{url}, parent);
+            this.dependency = dependency;
+        }
+
+        private void link(@NotNull LibraryClassLoader dependency) {
+            if (!dependencies.contains(dependency)) {
+                dependencies.add(dependency);
+            }
+        }
+
+        private void unlink(@NotNull LibraryClassLoader dependency) {
+            dependencies.remove(dependency);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            Class<?> found = find(name, new HashSet<>());
+            if (found == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return found;
+        }
+
+        @Override
+        public URL findResource(String name) {
+            return findResource(name, new HashSet<>());
+        }
+
+        private @Nullable URL findResource(@NotNull String name, @NotNull Set<LibraryClassLoader> visited) {
+            if (!visited.add(this)) {
+                return null;
+            }
+            URL url = super.findResource(name);
+            if (url != null) {
+                return url;
+            }
+            for (LibraryClassLoader library : dependencies) {
+                url = library.findResource(name, visited);
+                if (url != null) {
+                    return url;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Finds a class in the jar of this library, then in its dependencies, visiting every library once.
+         */
+        private @Nullable Class<?> find(@NotNull String name, @NotNull Set<LibraryClassLoader> visited) {
+            if (!visited.add(this)) {
+                return null;
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> found = findLoadedClass(name);
+                if (found != null) {
+                    return found;
+                }
+                try {
+                    return super.findClass(name);
+                } catch (ClassNotFoundException ignored) {
+                    // not in this jar
+                }
+            }
+            for (LibraryClassLoader library : dependencies) {
+                Class<?> found = library.find(name, visited);
+                if (found != null) {
+                    return found;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "LibraryClassLoader{" +
+                    "dependency=" + dependency.groupId + ":" + dependency.artifactId + ":" + dependency.version +
+                    '}';
+        }
+    }
+
+    /**
+     * The class loader a consumer reaches its shared libraries through: the class loader of the consumer, then its
+     * shared libraries in load order. Use it to look classes up, e.g. with {@link Class#forName(String, boolean, ClassLoader)}
+     * or {@link java.util.ServiceLoader#load(Class, ClassLoader)}, or as the parent of the class loader of the code that
+     * uses the libraries.
+     */
+    public static final class SharedClassLoader extends ClassLoader {
+
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        private final List<SharedLibrary> libraries = new CopyOnWriteArrayList<>();
+        private final Map<String, SharedLibrary> byCoordinates = new ConcurrentHashMap<>();
+
+        SharedClassLoader(@NotNull ClassLoader consumer) {
+            super(consumer);
+        }
+
+        void add(@NotNull Dependency d, @NotNull SharedLibrary library) {
+            byCoordinates.put(d.getCoordinates(), library);
+            libraries.add(library);
+        }
+
+        @Nullable SharedLibrary get(@NotNull Dependency d) {
+            return byCoordinates.get(d.getCoordinates());
+        }
+
+        @Nullable SharedLibrary remove(@NotNull Dependency d) {
+            SharedLibrary library = byCoordinates.remove(d.getCoordinates());
+            if (library != null) {
+                libraries.remove(library);
+            }
+            return library;
+        }
+
+        /**
+         * Replaces a library with the class loader of its own the consumer got, keeping the load order.
+         */
+        private void replace(@NotNull SharedLibrary library, @NotNull SharedLibrary own) {
+            byCoordinates.replaceAll((coordinates, shared) -> shared == library ? own : shared);
+            int index = libraries.indexOf(library);
+            if (index >= 0) {
+                libraries.set(index, own);
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            for (SharedLibrary library : libraries) {
+                try {
+                    return library.classLoader.loadClass(name);
+                } catch (ClassNotFoundException ignored) {
+                    // not in this library
+                }
+            }
+            throw new ClassNotFoundException(name);
+        }
+
+        @Override
+        protected URL findResource(String name) {
+            for (SharedLibrary library : libraries) {
+                URL url = library.classLoader.getResource(name);
+                if (url != null) {
+                    return url;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A jar shared by one or more consumers.
+     */
+    public static final class SharedLibrary {
+        private final Dependency dependency;
+        private final File jar;
+        private final String digest;
+        private final LibraryClassLoader classLoader;
+        /**
+         * The libraries this library is linked to by artifact, guarded by the registry.
+         */
+        private final Map<String, SharedLibrary> links = new HashMap<>();
+        private int references = 1;
+
+        private SharedLibrary(@NotNull Dependency dependency, @NotNull File jar, @NotNull String digest, @NotNull LibraryClassLoader classLoader) {
+            this.dependency = dependency;
+            this.jar = jar;
+            this.digest = digest;
+            this.classLoader = classLoader;
+        }
+
+        private void link(@NotNull String artifact, @NotNull SharedLibrary library) {
+            SharedLibrary previous = links.put(artifact, library);
+            if (previous != null) {
+                classLoader.unlink(previous.classLoader);
+            }
+            classLoader.link(library.classLoader);
+        }
+
+        private void unlink(@NotNull SharedLibrary library) {
+            if (links.values().remove(library)) {
+                classLoader.unlink(library.classLoader);
+            }
+        }
+
+        /**
+         * Returns the dependency of the consumer that shared the library first.
+         *
+         * @return the dependency
+         */
+        public @NotNull Dependency getDependency() {
+            return dependency;
+        }
+
+        /**
+         * Returns the jar of the class loader of the library, in the library folder of the consumer that shared it first.
+         *
+         * @return the jar
+         */
+        public @NotNull File getJar() {
+            return jar;
+        }
+
+        /**
+         * Returns the SHA-1 of the jar, which identifies the library.
+         *
+         * @return the hex encoded SHA-1
+         */
+        public @NotNull String getDigest() {
+            return digest;
+        }
+
+        /**
+         * Returns the class loader of the library, closed once the library is released by its last consumer.
+         *
+         * @return the class loader
+         */
+        public @NotNull ClassLoader getClassLoader() {
+            return classLoader;
+        }
+
+        /**
+         * Returns the number of consumers of the library.
+         *
+         * @return the number of references
+         */
+        public int getReferences() {
+            synchronized (INSTANCE) {
+                return references;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "SharedLibrary{" +
+                    "dependency=" + dependency.groupId + ":" + dependency.artifactId + ":" + dependency.version +
+                    ", jar=" + jar +
+                    ", references=" + getReferences() +
+                    '}';
+        }
+    }
+}
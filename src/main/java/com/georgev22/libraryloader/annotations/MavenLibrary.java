@@ -65,6 +65,16 @@ public @interface MavenLibrary {
     @NotNull
     String version() default "";
 
+    /**
+     * The classifier of the artifact, e.g. the native library of a platform. It may contain the placeholders of
+     * {@link com.georgev22.libraryloader.platform.Platform}, e.g. {@code ${os.detected.classifier}}, to select the
+     * artifact of the current operating system and architecture.
+     *
+     * @return the classifier of the artifact, empty for the main artifact
+     */
+    @NotNull
+    String classifier() default "";
+
     /**
      * The repo where the library can be obtained from
      *
@@ -73,4 +83,31 @@ public @interface MavenLibrary {
     @NotNull
     Repository repo() default @Repository("https://repo1.maven.org/maven2");
 
+    /**
+     * Additional repositories the library and its transitive dependencies can be obtained from.
+     * They are added to the repositories of the loader and tried after {@link #repo()}.
+     *
+     * @return the additional repositories
+     */
+    @NotNull
+    Repository[] repositories() default {};
+
+    /**
+     * Package relocations applied to the library, not to its transitive dependencies.
+     *
+     * @return the relocations
+     */
+    @NotNull
+    Relocate[] relocations() default {};
+
+    /**
+     * The classes or packages of the library used by the application, e.g. {@code com.google.common.collect.*}.
+     * When set, the classes that cannot be reached from them are removed from the loaded jar.
+     *
+     * @return the entry points of the library
+     * @see com.georgev22.libraryloader.classpath.JarSlimmer
+     */
+    @NotNull
+    String[] keep() default {};
+
 }
\ No newline at end of file
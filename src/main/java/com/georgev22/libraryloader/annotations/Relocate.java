@@ -0,0 +1,31 @@
+package com.georgev22.libraryloader.annotations;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.annotation.*;
+
+/**
+ * Represents a package relocation applied to a library when it is downloaded.
+ */
+@Documented
+@Target({})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Relocate {
+
+    /**
+     * Gets the package to relocate, e.g. {@code com.google.gson}.
+     *
+     * @return the package to relocate
+     */
+    @NotNull
+    String pattern();
+
+    /**
+     * Gets the package the classes are relocated to.
+     *
+     * @return the relocated package
+     */
+    @NotNull
+    String relocatedPattern();
+
+}
@@ -0,0 +1,141 @@
+package com.georgev22.libraryloader.bundle;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.annotations.MavenLibrary;
+import com.georgev22.libraryloader.lock.ClosureResolver;
+import com.georgev22.libraryloader.lock.LibraryLock;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Command line entry point of the shaded jar, packs and unpacks {@link LibraryBundle}s.
+ *
+ * <pre>
+ * java -jar LibraryLoader.jar pack &lt;bundle&gt; [--lock &lt;file&gt;]... [--classpath &lt;path&gt;] [--class &lt;name&gt;]...
+ *                                  [--repository &lt;url&gt;]... [groupId:artifactId:version[:classifier][:repository]]...
+ * java -jar LibraryLoader.jar unpack &lt;bundle&gt; &lt;data folder&gt;
+ * </pre>
+ *
+ * <p>{@code --class} reads the lock generated by the annotation processor for the class, or resolves its
+ * {@code @MavenLibrary} annotations if it has none. Coordinates are resolved with their transitive dependencies.</p>
+ */
+public final class BundleTool {
+
+    private static final Logger LOGGER = Logger.getLogger(BundleTool.class.getSimpleName());
+
+    private BundleTool() {
+    }
+
+    /**
+     * Packs or unpacks a bundle, see the usage above. Exits with status {@code 2} on invalid arguments and
+     * {@code 1} if the bundle cannot be packed or unpacked.
+     *
+     * @param args the command and its arguments
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length >= 2 && "pack".equals(args[0])) {
+                pack(args);
+            } else if (args.length == 3 && "unpack".equals(args[0])) {
+                try (InputStream is = Files.newInputStream(new File(args[1]).toPath())) {
+                    LibraryLock lock = LibraryBundle.unpack(is, new File(args[2], "libraries"), LOGGER);
+                    System.out.println("Unpacked " + lock.getEntries().size() + " libraries into " + new File(args[2], "libraries"));
+                }
+            } else {
+                usage();
+                System.exit(2);
+            }
+        } catch (IOException | ReflectiveOperationException | IllegalArgumentException e) {
+            System.err.println("Error: " + e);
+            System.exit(1);
+        }
+    }
+
+    private static void pack(String @NotNull [] args) throws IOException, ReflectiveOperationException {
+        File bundle = new File(args[1]);
+        List<LibraryLock> locks = new ArrayList<>();
+        List<String> classes = new ArrayList<>();
+        List<String> coordinates = new ArrayList<>();
+        List<String> repositories = new ArrayList<>();
+        List<URL> classpath = new ArrayList<>();
+
+        for (int i = 2; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--") && i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + arg);
+            }
+            switch (arg) {
+                case "--lock":
+                    try (InputStream is = Files.newInputStream(new File(args[++i]).toPath())) {
+                        locks.add(LibraryLock.read(is));
+                    }
+                    break;
+                case "--class":
+                    classes.add(args[++i]);
+                    break;
+                case "--classpath":
+                    for (String path : args[++i].split(File.pathSeparator)) {
+                        classpath.add(new File(path).toURI().toURL());
+                    }
+                    break;
+                case "--repository":
+                    repositories.add(args[++i]);
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    coordinates.add(arg);
+            }
+        }
+
+        if (!classes.isEmpty()) {
+            try (URLClassLoader classLoader = new URLClassLoader(classpath.toArray(new URL[0]), BundleTool.class.getClassLoader())) {
+                for (String name : classes) {
+                    Class<?> clazz = Class.forName(name, false, classLoader);
+                    LibraryLock lock = LibraryLock.find(clazz);
+                    locks.add(lock != null ? lock : ClosureResolver.resolve(clazz.getDeclaredAnnotationsByType(MavenLibrary.class), LOGGER));
+                }
+            }
+        }
+        if (!coordinates.isEmpty()) {
+            ClosureResolver resolver = new ClosureResolver(repositories, LOGGER);
+            for (String coordinate : coordinates) {
+                resolver.resolve(Dependency.fromCoordinates(coordinate, "https://repo1.maven.org/maven2"), null, Collections.emptyMap());
+            }
+            locks.add(resolver.toLock());
+        }
+        if (locks.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to pack");
+        }
+
+        Map<String, LibraryLock.Entry> entries = new LinkedHashMap<>();
+        for (LibraryLock lock : locks) {
+            for (LibraryLock.Entry entry : lock.getEntries()) {
+                entries.putIfAbsent(entry.getCoordinates(), entry);
+            }
+        }
+        LibraryLock merged = new LibraryLock(new ArrayList<>(entries.values()));
+        LibraryBundle.pack(merged, bundle, LOGGER);
+        System.out.println("Packed " + merged.getEntries().size() + " libraries into " + bundle + " (" + bundle.length() + " bytes)");
+    }
+
+    private static void usage() {
+        System.err.println("Usage:");
+        System.err.println("  pack <bundle> [--lock <file>]... [--classpath <path>] [--class <name>]...");
+        System.err.println("       [--repository <url>]... [groupId:artifactId:version[:classifier][:repository]]...");
+        System.err.println("  unpack <bundle> <data folder>");
+    }
+}
@@ -0,0 +1,255 @@
+package com.georgev22.libraryloader.bundle;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.io.Bytes;
+import com.georgev22.libraryloader.io.FileTransfers;
+import com.georgev22.libraryloader.platform.Platform;
+import com.georgev22.libraryloader.lock.LibraryLock;
+import com.georgev22.libraryloader.repository.ConnectionSettings;
+import me.lucko.jarrelocator.JarRelocator;
+import me.lucko.jarrelocator.Relocation;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * An offline bundle of libraries: one archive holding every jar and pom of a {@link LibraryLock} in the layout of
+ * {@link com.georgev22.libraryloader.LibraryLoader#getLibFolder()}, together with the lock itself.
+ *
+ * <p>The archive is a zip file of stored entries. The first entry is the index with the path, size and SHA-1 of
+ * every file, the second one is the lock. A bundle is therefore extracted in one sequential pass, verifying every
+ * file while it is streamed. Relocated libraries are stored relocated, exactly as the loader caches them.</p>
+ */
+public final class LibraryBundle {
+
+    /**
+     * The name of the index entry.
+     */
+    public static final String INDEX = "bundle.properties";
+
+    /**
+     * The name of the lock entry.
+     */
+    public static final String LOCK = "lock.properties";
+
+    /**
+     * The folder of the library entries.
+     */
+    public static final String LIBRARIES = "libraries/";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private LibraryBundle() {
+    }
+
+    /**
+     * Downloads every library of a lock and writes the bundle.
+     *
+     * @param lock   the libraries to bundle
+     * @param bundle the bundle file to write
+     * @param logger the logger
+     * @throws IOException if a library cannot be downloaded or does not match its checksum
+     */
+    public static void pack(@NotNull LibraryLock lock, @NotNull File bundle, @NotNull Logger logger) throws IOException {
+        Path staging = Files.createTempDirectory("libraryloader-bundle");
+        try {
+            List<String> paths = new ArrayList<>();
+            for (LibraryLock.Entry entry : lock.getEntries()) {
+                // the artifact the lock was resolved for
+                Dependency d = entry.toDependency(entry.getPlatform() == null ? Platform.current() : Platform.parse(entry.getPlatform()));
+                String base = LIBRARIES + d.getLocalPath() + "/" + d.getBaseName();
+                String pom = LIBRARIES + d.getLocalPath() + "/" + d.artifactId + "-" + d.version + ".pom";
+
+                Path jar = staging.resolve(base + ".jar");
+                Files.createDirectories(jar.getParent());
+                Path raw = entry.getRelocations().isEmpty() ? jar : staging.resolve(base + ".jar.raw");
+                try (InputStream is = open(new URL(entry.getUrl()))) {
+                    MessageDigest digest = Bytes.sha1();
+                    FileTransfers.copy(Channels.newChannel(is), -1, raw, digest);
+                    if (entry.getSha1() != null && !entry.getSha1().equalsIgnoreCase(Bytes.hex(digest.digest()))) {
+                        throw new IOException("Checksum mismatch for " + entry.getCoordinates());
+                    }
+                }
+                if (raw != jar) {
+                    List<Relocation> relocations = new ArrayList<>();
+                    for (Map.Entry<String, String> relocation : entry.getRelocations().entrySet()) {
+                        relocations.add(new Relocation(relocation.getKey(), relocation.getValue()));
+                    }
+                    new JarRelocator(raw.toFile(), jar.toFile(), relocations).run();
+                    Files.delete(raw);
+                }
+                paths.add(base + ".jar");
+
+                // a classified artifact shares the pom of the main artifact
+                if (!paths.contains(pom)) {
+                    try (InputStream is = open(d.getPomUrl(entry.getRepository()))) {
+                        FileTransfers.copy(Channels.newChannel(is), -1, staging.resolve(pom), null);
+                        paths.add(pom);
+                    } catch (FileNotFoundException e) {
+                        logger.fine("No pom for " + entry.getCoordinates());
+                    }
+                }
+                logger.info("Bundled " + entry.getCoordinates());
+            }
+
+            ByteArrayOutputStream lockBytes = new ByteArrayOutputStream();
+            lock.write(lockBytes);
+
+            Properties index = new Properties();
+            index.setProperty("version", Integer.toString(FORMAT_VERSION));
+            for (int i = 0; i < paths.size(); i++) {
+                Path file = staging.resolve(paths.get(i));
+                index.setProperty(i + ".path", paths.get(i));
+                index.setProperty(i + ".size", Long.toString(Files.size(file)));
+                index.setProperty(i + ".sha1", Bytes.hex(Bytes.sha1(file)));
+            }
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            index.store(indexBytes, "LibraryLoader bundle index");
+
+            File parent = bundle.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create " + parent);
+            }
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(bundle.toPath()))) {
+                zip.setMethod(ZipOutputStream.STORED);
+                writeStored(zip, INDEX, indexBytes.toByteArray());
+                writeStored(zip, LOCK, lockBytes.toByteArray());
+                for (String path : paths) {
+                    writeStored(zip, path, Files.readAllBytes(staging.resolve(path)));
+                }
+            }
+        } finally {
+            delete(staging);
+        }
+    }
+
+    /**
+     * Extracts a bundle into a library folder in a single sequential pass.
+     * Files that already exist with the indexed size are kept.
+     *
+     * @param bundle    the bundle
+     * @param libFolder the library folder, see {@link com.georgev22.libraryloader.LibraryLoader#getLibFolder()}
+     * @param logger    the logger
+     * @return the lock of the bundled libraries
+     * @throws IOException if the bundle cannot be read, is not a bundle, or a file does not match its checksum
+     */
+    public static @NotNull LibraryLock unpack(@NotNull InputStream bundle, @NotNull File libFolder, @NotNull Logger logger) throws IOException {
+        ZipInputStream zip = new ZipInputStream(bundle);
+        ZipEntry entry = zip.getNextEntry();
+        if (entry == null || !INDEX.equals(entry.getName())) {
+            throw new IOException("Not a library bundle, the first entry must be " + INDEX);
+        }
+        Properties index = new Properties();
+        index.load(zip);
+        if (!Integer.toString(FORMAT_VERSION).equals(index.getProperty("version"))) {
+            throw new IOException("Unsupported bundle version " + index.getProperty("version"));
+        }
+        Properties files = new Properties();
+        for (int i = 0; index.containsKey(i + ".path"); i++) {
+            files.setProperty(index.getProperty(i + ".path"), index.getProperty(i + ".size") + ":" + index.getProperty(i + ".sha1"));
+        }
+
+        entry = zip.getNextEntry();
+        if (entry == null || !LOCK.equals(entry.getName())) {
+            throw new IOException("Not a library bundle, the second entry must be " + LOCK);
+        }
+        LibraryLock lock = LibraryLock.read(new ByteArrayInputStream(Bytes.readFully(zip)));
+
+        Path root = libFolder.toPath().toAbsolutePath().normalize();
+        int extracted = 0;
+        int kept = 0;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            String name = entry.getName();
+            String indexed = files.getProperty(name);
+            if (indexed == null || !name.startsWith(LIBRARIES)) {
+                throw new IOException("Unexpected bundle entry " + name);
+            }
+            long size = Long.parseLong(indexed.substring(0, indexed.indexOf(':')));
+            String sha1 = indexed.substring(indexed.indexOf(':') + 1);
+
+            Path target = root.resolve(name.substring(LIBRARIES.length())).normalize();
+            if (!target.startsWith(root)) {
+                throw new IOException("Bundle entry " + name + " escapes the library folder");
+            }
+            if (Files.isRegularFile(target) && Files.size(target) == size && sha1.equalsIgnoreCase(Bytes.hex(Bytes.sha1(target)))) {
+                kept++;
+                continue;
+            }
+
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                MessageDigest digest = Bytes.sha1();
+                FileTransfers.copy(Channels.newChannel(zip), size, temp, digest);
+                if (!sha1.equalsIgnoreCase(Bytes.hex(digest.digest()))) {
+                    throw new IOException("Checksum mismatch for bundle entry " + name);
+                }
+                FileTransfers.move(temp, target);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            extracted++;
+        }
+        logger.info("Extracted " + extracted + " files from the library bundle, " + kept + " were already present");
+        return lock;
+    }
+
+    private static void writeStored(@NotNull ZipOutputStream zip, @NotNull String name, byte @NotNull [] bytes) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCompressedSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+
+    private static @NotNull InputStream open(@NotNull URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        ConnectionSettings.applyDefaults(connection);
+        if (connection instanceof HttpURLConnection) {
+            int status = ((HttpURLConnection) connection).getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+                throw new FileNotFoundException(url.toExternalForm());
+            }
+        }
+        return connection.getInputStream();
+    }
+
+    private static void delete(@NotNull Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
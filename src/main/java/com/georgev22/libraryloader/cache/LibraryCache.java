@@ -0,0 +1,338 @@
+package com.georgev22.libraryloader.cache;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the library folder within a size and age quota by evicting the least recently used libraries.
+ *
+ * <p>Every {@code groupId/artifactId/version} folder has an entry with its last use and size, kept in an index
+ * file in the library folder, so enforcing the quota does not walk the folder. The folder is only scanned once,
+ * when there is no index yet. Libraries that were used by this loader and not unloaded since, and libraries
+ * pinned by a lock, are never evicted.</p>
+ */
+public final class LibraryCache {
+
+    /**
+     * The name of the index file in the library folder.
+     */
+    public static final String INDEX = ".cache-index.properties";
+
+    private final File libFolder;
+    private final Logger logger;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Set<String>> active = new HashMap<>();
+    private final Set<String> pinned = new HashSet<>();
+    private final Set<String> dirty = new HashSet<>();
+    private boolean loaded = false;
+
+    private volatile long maxBytes = 0;
+    private volatile long maxAgeMillis = 0;
+
+    /**
+     * Creates a library cache.
+     *
+     * @param libFolder the library folder
+     * @param logger    the logger
+     */
+    public LibraryCache(@NotNull File libFolder, @NotNull Logger logger) {
+        this.libFolder = libFolder;
+        this.logger = logger;
+    }
+
+    /**
+     * Records the use of a library, which protects it from eviction until it is {@link #release(Dependency) released}.
+     *
+     * @param d the library
+     */
+    public synchronized void touch(@NotNull Dependency d) {
+        load();
+        String path = d.getLocalPath();
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            entries.put(path, new Entry(System.currentTimeMillis(), -1));
+        } else {
+            entry.lastUsed = System.currentTimeMillis();
+        }
+        // the main and the classified artifacts of a version share the folder
+        active.computeIfAbsent(path, key -> new HashSet<>()).add(d.getCoordinates());
+        dirty.add(path);
+    }
+
+    /**
+     * Records that a library is no longer used by this loader, so it may be evicted.
+     *
+     * @param d the library
+     */
+    public synchronized void release(@NotNull Dependency d) {
+        Set<String> users = active.get(d.getLocalPath());
+        if (users != null && users.remove(d.getCoordinates()) && users.isEmpty()) {
+            active.remove(d.getLocalPath());
+        }
+    }
+
+    /**
+     * Pins a library, e.g. because a lock lists it. Pinned libraries are never evicted.
+     *
+     * @param d the library
+     */
+    public synchronized void pin(@NotNull Dependency d) {
+        pinned.add(d.getLocalPath());
+    }
+
+    /**
+     * Updates the sizes of the used libraries, evicts the least recently used libraries that exceed the quota and
+     * stores the index.
+     *
+     * @return the evicted library folders, relative to the library folder
+     */
+    public synchronized @NotNull @Unmodifiable List<String> enforce() {
+        load();
+        for (String path : dirty) {
+            Entry entry = entries.get(path);
+            if (entry != null) {
+                entry.bytes = size(new File(libFolder, path));
+            }
+        }
+        dirty.clear();
+
+        List<String> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += Math.max(0, entry.bytes);
+        }
+        long freed = 0;
+
+        List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastUsed));
+        for (Map.Entry<String, Entry> candidate : candidates) {
+            boolean expired = maxAgeMillis > 0 && now - candidate.getValue().lastUsed > maxAgeMillis;
+            boolean oversized = maxBytes > 0 && total > maxBytes;
+            if (!expired && !oversized) {
+                // the remaining libraries are newer and the size only decreases
+                break;
+            }
+            String path = candidate.getKey();
+            if (active.containsKey(path) || pinned.contains(path)) {
+                continue;
+            }
+            long bytes = Math.max(0, candidate.getValue().bytes);
+            if (!delete(path)) {
+                continue;
+            }
+            entries.remove(path);
+            total -= bytes;
+            freed += bytes;
+            evicted.add(path);
+        }
+        if (!evicted.isEmpty()) {
+            logger.info("Evicted " + evicted.size() + " libraries (" + freed + " bytes) from the library cache, " + total + " bytes are left");
+        }
+        store();
+        return Collections.unmodifiableList(evicted);
+    }
+
+    /**
+     * Returns the size of the library folder as last recorded by {@link #enforce()}.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSizeBytes() {
+        load();
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += Math.max(0, entry.bytes);
+        }
+        return total;
+    }
+
+    /**
+     * Returns whether a quota is set.
+     *
+     * @return {@code true} if a size or age quota is set
+     */
+    public boolean hasQuota() {
+        return maxBytes > 0 || maxAgeMillis > 0;
+    }
+
+    /**
+     * Returns the size quota of the library folder.
+     *
+     * @return the maximum size in bytes, {@code 0} for no limit
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the size quota of the library folder, disabled by default.
+     *
+     * @param maxBytes the maximum size in bytes, {@code 0} for no limit
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Returns how long an unused library is kept.
+     *
+     * @return the maximum time since the last use in milliseconds, {@code 0} for no limit
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * Sets how long an unused library is kept, disabled by default.
+     *
+     * @param maxAge the maximum time since the last use, {@code 0} for no limit
+     * @param unit   the unit of {@code maxAge}
+     */
+    public void setMaxAge(long maxAge, @NotNull TimeUnit unit) {
+        this.maxAgeMillis = Math.max(0, unit.toMillis(maxAge));
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File index = new File(libFolder, INDEX);
+        if (index.isFile()) {
+            Properties properties = new Properties();
+            try (InputStream is = Files.newInputStream(index.toPath())) {
+                properties.load(is);
+                for (String path : properties.stringPropertyNames()) {
+                    String[] value = properties.getProperty(path).split(",", 2);
+                    entries.put(path, new Entry(Long.parseLong(value[0]), Long.parseLong(value[1])));
+                }
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.warning("Rebuilding the unreadable library cache index: " + e);
+                entries.clear();
+            }
+        }
+        scan();
+    }
+
+    /**
+     * Finds the library folders, the folders holding jars, of a library folder without index.
+     */
+    private void scan() {
+        if (!libFolder.isDirectory()) {
+            return;
+        }
+        Path root = libFolder.toPath();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path jar : (Iterable<Path>) paths.filter(path -> path.getFileName().toString().endsWith(".jar"))::iterator) {
+                Path folder = jar.getParent();
+                String path = root.relativize(folder).toString().replace(File.separatorChar, '/');
+                if (path.isEmpty() || entries.containsKey(path)) {
+                    continue;
+                }
+                long lastUsed = 0;
+                File[] files = folder.toFile().listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        lastUsed = Math.max(lastUsed, file.lastModified());
+                    }
+                }
+                entries.put(path, new Entry(lastUsed, size(folder.toFile())));
+            }
+        } catch (IOException e) {
+            logger.warning("Unable to scan the library folder: " + e);
+        }
+    }
+
+    private void store() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().lastUsed + "," + entry.getValue().bytes);
+        }
+        try {
+            if (!libFolder.isDirectory() && !libFolder.mkdirs()) {
+                throw new IOException("Unable to create " + libFolder);
+            }
+            Path temp = Files.createTempFile(libFolder.toPath(), INDEX, ".tmp");
+            try {
+                try (OutputStream os = Files.newOutputStream(temp)) {
+                    properties.store(os, "LibraryLoader cache index: last use,size");
+                }
+                Files.move(temp, new File(libFolder, INDEX).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.warning("Unable to store the library cache index: " + e);
+        }
+    }
+
+    /**
+     * Deletes the files of a library folder, then the folders left empty up to the library folder.
+     */
+    private boolean delete(@NotNull String path) {
+        File folder = new File(libFolder, path);
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && !file.delete()) {
+                    logger.warning("Unable to evict " + file);
+                    return false;
+                }
+            }
+        }
+        for (File parent = folder; parent != null && !parent.equals(libFolder); parent = parent.getParentFile()) {
+            String[] left = parent.list();
+            if (left == null || left.length > 0 || !parent.delete()) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private static long size(@NotNull File folder) {
+        long size = 0;
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    size += file.length();
+                }
+            }
+        }
+        return size;
+    }
+
+    private static final class Entry {
+        private long lastUsed;
+        private long bytes;
+
+        private Entry(long lastUsed, long bytes) {
+            this.lastUsed = lastUsed;
+            this.bytes = bytes;
+        }
+    }
+}
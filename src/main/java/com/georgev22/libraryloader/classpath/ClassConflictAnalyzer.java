@@ -0,0 +1,167 @@
+package com.georgev22.libraryloader.classpath;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Detects libraries that ship the same classes, e.g. shaded copies, {@code -all} jars or two versions of a library,
+ * and packages split across libraries.
+ *
+ * <p>Every injected jar is registered with its {@link ClassIndex}. Before a jar is injected it is checked against
+ * the registered ones and the {@link Policy} decides whether it is loaded.</p>
+ */
+public final class ClassConflictAnalyzer {
+
+    /**
+     * What the loader does with a jar that duplicates classes of the loaded libraries.
+     */
+    public enum Policy {
+
+        /**
+         * Jars are neither indexed nor checked. This is the default, indexing reads the central directory of
+         * every loaded jar.
+         */
+        IGNORE,
+
+        /**
+         * Conflicts are logged and the jar is loaded.
+         */
+        WARN,
+
+        /**
+         * Conflicts are logged, jars whose classes are all on the class path already are not injected.
+         */
+        SKIP_REDUNDANT,
+
+        /**
+         * Loading a jar that duplicates any class fails.
+         */
+        FAIL
+    }
+
+    private final Map<String, Dependency> classOwners = new HashMap<>();
+    private final Map<String, Set<Dependency>> packageOwners = new HashMap<>();
+    private final Map<Dependency, ClassIndex> indexes = new LinkedHashMap<>();
+
+    private volatile Policy policy = Policy.IGNORE;
+
+    /**
+     * Checks a jar against the registered libraries.
+     *
+     * @param d     the dependency of the jar
+     * @param index the class index of the jar
+     * @return the conflicts, empty if there are none
+     */
+    public synchronized @NotNull ClassConflicts check(@NotNull Dependency d, @NotNull ClassIndex index) {
+        Map<Dependency, Integer> duplicates = new LinkedHashMap<>();
+        int duplicateClasses = 0;
+        long duplicateBytes = 0;
+        Set<String> duplicatedPackages = new LinkedHashSet<>();
+        for (Map.Entry<String, Long> entry : index.getClasses().entrySet()) {
+            Dependency owner = classOwners.get(entry.getKey());
+            if (owner != null && !owner.equals(d)) {
+                duplicates.merge(owner, 1, Integer::sum);
+                duplicateClasses++;
+                duplicateBytes += entry.getValue();
+                duplicatedPackages.add(ClassIndex.packageOf(entry.getKey()));
+            }
+        }
+
+        Map<String, Set<Dependency>> splitPackages = new TreeMap<>();
+        for (String pkg : index.getPackages()) {
+            Set<Dependency> owners = packageOwners.get(pkg);
+            if (owners == null || duplicatedPackages.contains(pkg)) {
+                continue;
+            }
+            Set<Dependency> others = new LinkedHashSet<>(owners);
+            others.remove(d);
+            if (!others.isEmpty()) {
+                splitPackages.put(pkg, others);
+            }
+        }
+        return new ClassConflicts(d, index, duplicates, duplicateClasses, duplicateBytes, splitPackages);
+    }
+
+    /**
+     * Registers the classes of an injected jar. Classes that are already registered keep their first owner,
+     * which is the copy the class loader finds first.
+     *
+     * @param d     the dependency of the jar
+     * @param index the class index of the jar
+     */
+    public synchronized void register(@NotNull Dependency d, @NotNull ClassIndex index) {
+        if (indexes.put(d, index) != null) {
+            return;
+        }
+        for (String name : index.getClasses().keySet()) {
+            classOwners.putIfAbsent(name, d);
+        }
+        for (String pkg : index.getPackages()) {
+            packageOwners.computeIfAbsent(pkg, key -> new LinkedHashSet<>()).add(d);
+        }
+    }
+
+    /**
+     * Unregisters the classes of a removed jar.
+     *
+     * @param d the dependency of the jar
+     */
+    public synchronized void unregister(@NotNull Dependency d) {
+        ClassIndex index = indexes.remove(d);
+        if (index == null) {
+            return;
+        }
+        for (String name : index.getClasses().keySet()) {
+            if (d.equals(classOwners.get(name))) {
+                classOwners.remove(name);
+                // hand the class over to the next registered copy
+                for (Map.Entry<Dependency, ClassIndex> entry : indexes.entrySet()) {
+                    if (entry.getValue().getClasses().containsKey(name)) {
+                        classOwners.put(name, entry.getKey());
+                        break;
+                    }
+                }
+            }
+        }
+        for (String pkg : index.getPackages()) {
+            Set<Dependency> owners = packageOwners.get(pkg);
+            if (owners != null && owners.remove(d) && owners.isEmpty()) {
+                packageOwners.remove(pkg);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of registered jars.
+     *
+     * @return the number of jars
+     */
+    public synchronized int size() {
+        return indexes.size();
+    }
+
+    /**
+     * Returns what the loader does with jars that duplicate classes.
+     *
+     * @return the policy
+     */
+    public @NotNull Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Sets what the loader does with jars that duplicate classes, {@link Policy#IGNORE} by default.
+     *
+     * @param policy the policy
+     */
+    public void setPolicy(@NotNull Policy policy) {
+        this.policy = policy;
+    }
+}
@@ -0,0 +1,130 @@
+package com.georgev22.libraryloader.classpath;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The classes and packages a jar shares with the libraries that are already on the class path.
+ */
+public final class ClassConflicts {
+
+    private final Dependency dependency;
+    private final ClassIndex index;
+    private final Map<Dependency, Integer> duplicates;
+    private final int duplicateClasses;
+    private final long duplicateBytes;
+    private final Map<String, Set<Dependency>> splitPackages;
+
+    ClassConflicts(@NotNull Dependency dependency, @NotNull ClassIndex index, @NotNull Map<Dependency, Integer> duplicates,
+                   int duplicateClasses, long duplicateBytes, @NotNull Map<String, Set<Dependency>> splitPackages) {
+        this.dependency = dependency;
+        this.index = index;
+        this.duplicates = Collections.unmodifiableMap(duplicates);
+        this.duplicateClasses = duplicateClasses;
+        this.duplicateBytes = duplicateBytes;
+        this.splitPackages = Collections.unmodifiableMap(splitPackages);
+    }
+
+    /**
+     * Returns the analyzed dependency.
+     *
+     * @return the dependency
+     */
+    public @NotNull Dependency getDependency() {
+        return dependency;
+    }
+
+    /**
+     * Returns the class index of the analyzed jar.
+     *
+     * @return the index
+     */
+    public @NotNull ClassIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the loaded libraries that already provide classes of the jar, with the number of shared classes.
+     *
+     * @return the number of shared classes by library
+     */
+    public @NotNull @Unmodifiable Map<Dependency, Integer> getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Returns the number of classes of the jar that are already on the class path.
+     *
+     * @return the number of duplicate classes
+     */
+    public int getDuplicateClasses() {
+        return duplicateClasses;
+    }
+
+    /**
+     * Returns the uncompressed size of the classes of the jar that are already on the class path.
+     *
+     * @return the size in bytes
+     */
+    public long getDuplicateBytes() {
+        return duplicateBytes;
+    }
+
+    /**
+     * Returns the packages, in internal form, that the jar shares with loaded libraries without duplicating classes.
+     *
+     * @return the loaded libraries by split package
+     */
+    public @NotNull @Unmodifiable Map<String, Set<Dependency>> getSplitPackages() {
+        return splitPackages;
+    }
+
+    /**
+     * Returns whether every class of the jar is already on the class path.
+     *
+     * @return {@code true} if the jar adds no class
+     */
+    public boolean isRedundant() {
+        return !index.getClasses().isEmpty() && duplicateClasses == index.getClasses().size();
+    }
+
+    /**
+     * Returns whether the jar shares neither classes nor packages with the loaded libraries.
+     *
+     * @return {@code true} if there is no conflict
+     */
+    public boolean isEmpty() {
+        return duplicateClasses == 0 && splitPackages.isEmpty();
+    }
+
+    @Override
+    public @NotNull String toString() {
+        StringBuilder builder = new StringBuilder(coordinates(dependency));
+        if (duplicateClasses > 0) {
+            builder.append(" duplicates ").append(duplicateClasses).append(" of ").append(index.getClasses().size())
+                    .append(" classes (").append(duplicateBytes).append(" of ").append(index.getBytes()).append(" bytes) of");
+            for (Map.Entry<Dependency, Integer> entry : duplicates.entrySet()) {
+                builder.append(' ').append(coordinates(entry.getKey())).append(" (").append(entry.getValue()).append(')');
+            }
+        }
+        if (!splitPackages.isEmpty()) {
+            builder.append(duplicateClasses > 0 ? " and splits " : " splits ").append(splitPackages.size()).append(" packages:");
+            for (Map.Entry<String, Set<Dependency>> entry : splitPackages.entrySet()) {
+                builder.append(' ').append(entry.getKey().replace('/', '.')).append(" with");
+                for (Dependency owner : entry.getValue()) {
+                    builder.append(' ').append(coordinates(owner));
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private static @NotNull String coordinates(@NotNull Dependency d) {
+        return d.getCoordinates();
+    }
+}
@@ -0,0 +1,181 @@
+package com.georgev22.libraryloader.classpath;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The class entries of a jar with their uncompressed sizes.
+ *
+ * <p>An index is built from the central directory of the jar, no class is decompressed, and is stored next to the
+ * jar as {@code <jar>.classes}. The stored index is reused as long as the size and modification time of the jar
+ * are unchanged, so warm starts do not open the jar at all.</p>
+ */
+public final class ClassIndex {
+
+    /**
+     * The extension of a stored index, appended to the name of the jar.
+     */
+    public static final String EXTENSION = ".classes";
+
+    private static final String HEADER = "# libraryloader class index v1 ";
+
+    private final Map<String, Long> classes;
+    private final Set<String> packages;
+    private final long bytes;
+
+    private ClassIndex(@NotNull Map<String, Long> classes) {
+        this.classes = Collections.unmodifiableMap(classes);
+        Set<String> packages = new HashSet<>();
+        long bytes = 0;
+        for (Map.Entry<String, Long> entry : classes.entrySet()) {
+            packages.add(packageOf(entry.getKey()));
+            bytes += entry.getValue();
+        }
+        this.packages = Collections.unmodifiableSet(packages);
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the index of a jar, reading the stored index if it is up to date and building and storing it otherwise.
+     *
+     * @param jar the jar
+     * @return the index
+     * @throws IOException if the jar cannot be read
+     */
+    public static @NotNull ClassIndex of(@NotNull File jar) throws IOException {
+        Path stored = new File(jar.getParentFile(), jar.getName() + EXTENSION).toPath();
+        String header = HEADER + jar.length() + " " + jar.lastModified();
+        ClassIndex index = read(stored, header);
+        if (index == null) {
+            index = build(jar);
+            try {
+                index.write(stored, header);
+            } catch (IOException ignored) {
+                // the index is an optimization, it is rebuilt next time
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Builds the index of a jar from its central directory.
+     * Entries under {@code META-INF/} and {@code module-info.class} are ignored.
+     *
+     * @param jar the jar
+     * @return the index
+     * @throws IOException if the jar cannot be read
+     */
+    public static @NotNull ClassIndex build(@NotNull File jar) throws IOException {
+        Map<String, Long> classes = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+                    continue;
+                }
+                classes.put(name, Math.max(0, entry.getSize()));
+            }
+        }
+        return new ClassIndex(classes);
+    }
+
+    private static @Nullable ClassIndex read(@NotNull Path stored, @NotNull String header) {
+        if (!Files.isRegularFile(stored)) {
+            return null;
+        }
+        Map<String, Long> classes = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(stored, StandardCharsets.UTF_8)) {
+            if (!header.equals(reader.readLine())) {
+                return null;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.lastIndexOf(' ');
+                if (separator <= 0) {
+                    return null;
+                }
+                classes.put(line.substring(0, separator), Long.parseLong(line.substring(separator + 1)));
+            }
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+        return new ClassIndex(classes);
+    }
+
+    private void write(@NotNull Path stored, @NotNull String header) throws IOException {
+        Path temp = Files.createTempFile(stored.getParent(), stored.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(header);
+                writer.newLine();
+                for (Map.Entry<String, Long> entry : classes.entrySet()) {
+                    writer.write(entry.getKey());
+                    writer.write(' ');
+                    writer.write(Long.toString(entry.getValue()));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, stored, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns the package of a class entry.
+     *
+     * @param entry the entry, e.g. {@code com/example/Foo.class}
+     * @return the package in internal form, e.g. {@code com/example}, or an empty string for the default package
+     */
+    static @NotNull String packageOf(@NotNull String entry) {
+        int slash = entry.lastIndexOf('/');
+        return slash < 0 ? "" : entry.substring(0, slash);
+    }
+
+    /**
+     * Returns the class entries with their uncompressed sizes.
+     *
+     * @return the class entries, e.g. {@code com/example/Foo.class}
+     */
+    public @NotNull @Unmodifiable Map<String, Long> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Returns the packages of the class entries in internal form.
+     *
+     * @return the packages
+     */
+    public @NotNull @Unmodifiable Set<String> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Returns the uncompressed size of all class entries.
+     *
+     * @return the size in bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
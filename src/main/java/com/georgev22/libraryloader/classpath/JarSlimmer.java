@@ -0,0 +1,357 @@
+package com.georgev22.libraryloader.classpath;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.io.Bytes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+import org.objectweb.asm.ClassReader;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Removes the classes of a jar that cannot be reached from its entry points.
+ *
+ * <p>Starting from the root classes, every class referenced from the constant pool of a reachable class is reachable
+ * too: super types, field and method descriptors, signatures, annotations, and string constants naming a class of
+ * the jar, which covers most {@code Class.forName} lookups. Providers listed in {@code META-INF/services} are always
+ * kept. Classes that are only found by reflection with computed names must be declared as reflection roots.</p>
+ *
+ * <p>Roots are class names ({@code com.example.Foo}), packages ({@code com.example.*}) or packages with their
+ * sub packages ({@code com.example.**}). The slimmed jar is cached next to the original one as
+ * {@code <name>-slim-<hash>.jar}, keyed by the roots and the original jar, which is kept.</p>
+ */
+public final class JarSlimmer {
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private final Map<String, Set<String>> roots = new ConcurrentHashMap<>();
+    private final Set<String> reflectionRoots = new CopyOnWriteArraySet<>();
+
+    /**
+     * Adds entry points of a library, which enables slimming for it. Roots apply to every version of the library.
+     *
+     * @param d     the library
+     * @param roots the classes or packages used by the application
+     */
+    public void addRoots(@NotNull Dependency d, @NotNull String @NotNull ... roots) {
+        if (roots.length > 0) {
+            this.roots.computeIfAbsent(key(d), k -> new CopyOnWriteArraySet<>()).addAll(Arrays.asList(roots));
+        }
+    }
+
+    /**
+     * Adds roots that are kept in every slimmed library, e.g. classes that are only loaded reflectively.
+     *
+     * @param roots the classes or packages to keep
+     */
+    public void addReflectionRoots(@NotNull String @NotNull ... roots) {
+        reflectionRoots.addAll(Arrays.asList(roots));
+    }
+
+    /**
+     * Returns the roots of a library, including the reflection roots.
+     *
+     * @param d the library
+     * @return the roots, empty if the library is not slimmed
+     */
+    public @NotNull @Unmodifiable Set<String> getRoots(@NotNull Dependency d) {
+        Set<String> declared = roots.get(key(d));
+        if (declared == null || declared.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> all = new TreeSet<>(declared);
+        all.addAll(reflectionRoots);
+        return Collections.unmodifiableSet(all);
+    }
+
+    /**
+     * Returns whether a library is slimmed.
+     *
+     * @param d the library
+     * @return {@code true} if roots were added for the library
+     */
+    public boolean isSlimmed(@NotNull Dependency d) {
+        Set<String> declared = roots.get(key(d));
+        return declared != null && !declared.isEmpty();
+    }
+
+    /**
+     * Returns the jar that is put on the class path for a library: the slimmed jar if the library is slimmed,
+     * the original jar otherwise. The slimmed jar may not exist yet.
+     *
+     * @param d   the library
+     * @param jar the original jar
+     * @return the jar to load
+     */
+    public @NotNull File slimmedJar(@NotNull Dependency d, @NotNull File jar) {
+        Set<String> roots = getRoots(d);
+        if (roots.isEmpty()) {
+            return jar;
+        }
+        return new File(jar.getParentFile(), baseName(jar) + "-slim-" + hash(roots, jar) + ".jar");
+    }
+
+    /**
+     * Returns the slimmed jar of a library, writing it if it is not cached yet.
+     * Slimmed jars of previous roots are deleted.
+     *
+     * @param d   the library
+     * @param jar the original jar
+     * @return the jar to load, the original jar if the library is not slimmed
+     * @throws IOException if the jar cannot be read or the slimmed jar cannot be written
+     */
+    public @NotNull File slim(@NotNull Dependency d, @NotNull File jar) throws IOException {
+        File slimmed = slimmedJar(d, jar);
+        if (slimmed.equals(jar) || slimmed.isFile()) {
+            return slimmed;
+        }
+
+        Path temp = Files.createTempFile(jar.getParentFile().toPath(), slimmed.getName(), ".tmp");
+        try {
+            try (ZipFile zip = new ZipFile(jar); OutputStream os = Files.newOutputStream(temp)) {
+                write(zip, reachable(zip, getRoots(d)), os);
+            }
+            Files.move(temp, slimmed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(jar.getParentFile().toPath(), baseName(jar) + "-slim-*.jar")) {
+            for (Path path : stale) {
+                if (!path.getFileName().toString().equals(slimmed.getName())) {
+                    Files.deleteIfExists(path);
+                    Files.deleteIfExists(path.resolveSibling(path.getFileName() + ClassIndex.EXTENSION));
+                }
+            }
+        }
+        return slimmed;
+    }
+
+    /**
+     * Computes the classes of a jar that are reachable from roots.
+     *
+     * @param zip   the jar
+     * @param roots the root classes and packages
+     * @return the reachable class entries, e.g. {@code com/example/Foo.class}
+     * @throws IOException if the jar cannot be read
+     */
+    public static @NotNull Set<String> reachable(@NotNull ZipFile zip, @NotNull Collection<String> roots) throws IOException {
+        Set<String> classes = new HashSet<>();
+        Set<String> versions = new TreeSet<>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (!name.endsWith(".class")) {
+                continue;
+            }
+            if (!name.startsWith("META-INF/")) {
+                classes.add(name.substring(0, name.length() - ".class".length()));
+            } else if (name.startsWith(VERSIONS) && name.indexOf('/', VERSIONS.length()) > 0) {
+                versions.add(name.substring(0, name.indexOf('/', VERSIONS.length()) + 1));
+            }
+        }
+
+        Deque<String> queue = new ArrayDeque<>();
+        for (String root : roots) {
+            String internal = root.replace('.', '/');
+            if (internal.endsWith("/**")) {
+                String prefix = internal.substring(0, internal.length() - 2);
+                classes.stream().filter(name -> name.startsWith(prefix)).forEach(queue::add);
+            } else if (internal.endsWith("/*")) {
+                String pkg = internal.substring(0, internal.length() - 2);
+                classes.stream().filter(name -> ClassIndex.packageOf(name).equals(pkg)).forEach(queue::add);
+            } else if (classes.contains(internal)) {
+                queue.add(internal);
+            }
+        }
+        for (String provider : serviceProviders(zip)) {
+            if (classes.contains(provider)) {
+                queue.add(provider);
+            }
+        }
+
+        Set<String> reachable = new HashSet<>();
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            if (!reachable.add(name)) {
+                continue;
+            }
+            Set<String> references = new HashSet<>(references(zip, name + ".class"));
+            for (String version : versions) {
+                references.addAll(references(zip, version + name + ".class"));
+            }
+            for (String referenced : references) {
+                if (classes.contains(referenced) && !reachable.contains(referenced)) {
+                    queue.add(referenced);
+                }
+            }
+        }
+
+        Set<String> entryNames = new LinkedHashSet<>();
+        for (String name : reachable) {
+            entryNames.add(name + ".class");
+        }
+        return entryNames;
+    }
+
+    /**
+     * Collects the class names that may be referenced by a class: every UTF-8 constant as an internal name,
+     * as a binary name, and every {@code L<name>;} in it.
+     */
+    private static @NotNull Set<String> references(@NotNull ZipFile zip, @NotNull String entryName) throws IOException {
+        ZipEntry entry = zip.getEntry(entryName);
+        if (entry == null) {
+            return Collections.emptySet();
+        }
+        byte[] bytes;
+        try (InputStream is = zip.getInputStream(entry)) {
+            bytes = Bytes.readFully(is, entry.getSize());
+        }
+
+        ClassReader reader;
+        try {
+            reader = new ClassReader(bytes);
+        } catch (IllegalArgumentException e) {
+            // not a class file, nothing it references can be known
+            return Collections.emptySet();
+        }
+        Set<String> references = new HashSet<>();
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0 || bytes[offset - 1] != CONSTANT_UTF8) {
+                continue;
+            }
+            int length = ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+            String value = new DataInputStream(new ByteArrayInputStream(bytes, offset, length + 2)).readUTF();
+            references.add(value);
+            references.add(value.replace('.', '/'));
+            for (int start = value.indexOf('L'); start >= 0; start = value.indexOf('L', start + 1)) {
+                int end = start + 1;
+                while (end < value.length() && value.charAt(end) != ';' && value.charAt(end) != '<') {
+                    end++;
+                }
+                if (end < value.length()) {
+                    references.add(value.substring(start + 1, end));
+                }
+            }
+        }
+        return references;
+    }
+
+    private static @NotNull Set<String> serviceProviders(@NotNull ZipFile zip) throws IOException {
+        Set<String> providers = new HashSet<>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory() || !entry.getName().startsWith("META-INF/services/")) {
+                continue;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    String provider = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                    if (!provider.isEmpty()) {
+                        providers.add(provider.replace('.', '/'));
+                    }
+                }
+            }
+        }
+        return providers;
+    }
+
+    /**
+     * Writes the reachable classes and every resource of a jar. Multi-release variants of reachable classes are kept,
+     * signature files are dropped since the signatures no longer match.
+     */
+    private static void write(@NotNull ZipFile zip, @NotNull Set<String> reachable, @NotNull OutputStream os) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(os)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (isSignature(name)) {
+                    continue;
+                }
+                if (name.endsWith(".class") && !name.endsWith("module-info.class")) {
+                    String base = name.startsWith(VERSIONS) ? name.substring(name.indexOf('/', VERSIONS.length()) + 1) : name;
+                    if (!reachable.contains(base)) {
+                        continue;
+                    }
+                }
+                ZipEntry copy = new ZipEntry(name);
+                copy.setTime(entry.getTime());
+                out.putNextEntry(copy);
+                if (!entry.isDirectory()) {
+                    try (InputStream is = zip.getInputStream(entry)) {
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = is.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    static boolean isSignature(@NotNull String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) >= 0) {
+            return false;
+        }
+        return name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC");
+    }
+
+    private static @NotNull String key(@NotNull Dependency d) {
+        return d.groupId + ":" + d.artifactId + (d.classifier == null ? "" : ":" + d.classifier);
+    }
+
+    private static @NotNull String baseName(@NotNull File jar) {
+        String name = jar.getName();
+        return name.endsWith(".jar") ? name.substring(0, name.length() - ".jar".length()) : name;
+    }
+
+    /**
+     * Hashes the roots and the size and modification time of the jar, so a downloaded jar is slimmed again.
+     */
+    private static @NotNull String hash(@NotNull Set<String> roots, @NotNull File jar) {
+        MessageDigest digest = Bytes.sha1();
+        digest.update((jar.length() + ":" + jar.lastModified() + "\n").getBytes(StandardCharsets.UTF_8));
+        for (String root : roots) {
+            digest.update(root.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return Bytes.hex(digest.digest(), 4);
+    }
+}
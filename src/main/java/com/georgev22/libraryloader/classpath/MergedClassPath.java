@@ -0,0 +1,349 @@
+package com.georgev22.libraryloader.classpath;
+
+import com.georgev22.libraryloader.io.Bytes;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Merges the jars of a load into one composite jar, so the class loader keeps one open jar file and one central
+ * directory instead of one per library, and a class lookup no longer walks the jars one by one.
+ *
+ * <p>Entries are merged in class path order and the first copy of an entry wins, like on the class path.
+ * {@code META-INF/services} files are concatenated, signatures and {@code META-INF/INDEX.LIST} are dropped, and the
+ * manifest is replaced by one that only keeps {@code Multi-Release}. Entries are stored uncompressed, so classes are
+ * read without inflating them.</p>
+ *
+ * <p>A merged jar is cached by the list of its jars, their sizes and modification times. When the list changes, the
+ * cached merged jar of the longest unchanged prefix is reused and only the remaining jars are added to it.
+ * Merged jars that are not on the class path are deleted by {@link #evict(long, long)} once one of their jars is
+ * gone, or to stay within the quota of the library cache.</p>
+ */
+public final class MergedClassPath {
+
+    private static final String PREFIX = "merged-";
+    private static final String SERVICES = "META-INF/services/";
+
+    private final File folder;
+    private final Logger logger;
+    private final Set<File> inUse = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean enabled = false;
+
+    /**
+     * Creates a merged class path.
+     *
+     * @param folder the folder of the merged jars
+     * @param logger the logger
+     */
+    public MergedClassPath(@NotNull File folder, @NotNull Logger logger) {
+        this.folder = folder;
+        this.logger = logger;
+    }
+
+    /**
+     * Returns the merged jar of jars, writing it if it is not cached yet.
+     *
+     * @param jars the jars in class path order
+     * @return the merged jar
+     * @throws IOException if a jar cannot be read or the merged jar cannot be written
+     */
+    public synchronized @NotNull File merge(@NotNull List<File> jars) throws IOException {
+        List<String> sources = new ArrayList<>();
+        for (File jar : jars) {
+            sources.add(jar.getAbsolutePath() + "\t" + jar.length() + "\t" + jar.lastModified());
+        }
+        String name = PREFIX + hash(sources);
+        File merged = new File(folder, name + ".jar");
+        Path list = new File(folder, name + ".list").toPath();
+        if (merged.isFile() && Files.isRegularFile(list)) {
+            // the list records the last use, the jar keeps its modification time for its class index
+            if (!list.toFile().setLastModified(System.currentTimeMillis())) {
+                logger.fine("Unable to record the use of " + merged);
+            }
+            inUse.add(merged);
+            return merged;
+        }
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Unable to create " + folder);
+        }
+
+        File base = null;
+        int reused = 0;
+        try (DirectoryStream<Path> lists = Files.newDirectoryStream(folder.toPath(), PREFIX + "*.list")) {
+            for (Path candidate : lists) {
+                List<String> lines = Files.readAllLines(candidate, StandardCharsets.UTF_8);
+                String candidateName = candidate.getFileName().toString();
+                File candidateJar = new File(folder, candidateName.substring(0, candidateName.length() - ".list".length()) + ".jar");
+                if (lines.size() > reused && lines.size() < sources.size() && sources.subList(0, lines.size()).equals(lines) && candidateJar.isFile()) {
+                    base = candidateJar;
+                    reused = lines.size();
+                }
+            }
+        }
+        List<File> inputs = new ArrayList<>();
+        if (base != null) {
+            inputs.add(base);
+        }
+        inputs.addAll(jars.subList(reused, jars.size()));
+
+        long start = System.nanoTime();
+        Path temp = Files.createTempFile(folder.toPath(), name, ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(temp)) {
+                write(inputs, os);
+            }
+            Files.move(temp, merged.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Path tempList = Files.createTempFile(folder.toPath(), name, ".tmp");
+            Files.write(tempList, sources, StandardCharsets.UTF_8);
+            Files.move(tempList, list, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.info("Merged " + jars.size() + " libraries into " + merged.getName() + (base == null ? "" : ", reusing " + reused + " from " + base.getName())
+                + " in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+
+        if (base != null && !inUse.contains(base)) {
+            // superseded by the new merged jar
+            delete(base);
+        }
+        inUse.add(merged);
+        return merged;
+    }
+
+    /**
+     * Marks a merged jar as no longer on the class path, so it may be replaced by a later merge.
+     *
+     * @param merged the merged jar
+     */
+    public void release(@NotNull File merged) {
+        inUse.remove(merged);
+    }
+
+    /**
+     * Deletes the merged jars that are not on the class path and are stale, i.e. one of their jars changed or is gone,
+     * or were not used within {@code maxAgeMillis}. Then deletes the least recently used ones until the remaining
+     * merged jars take at most {@code maxBytes}.
+     *
+     * @param maxBytes     the size the merged jars may take, {@link Long#MAX_VALUE} for no limit
+     * @param maxAgeMillis the maximum time since the last use, {@code 0} for no limit
+     * @return the deleted merged jars
+     */
+    public synchronized @NotNull List<File> evict(long maxBytes, long maxAgeMillis) {
+        List<File> evicted = new ArrayList<>();
+        if (!folder.isDirectory()) {
+            return evicted;
+        }
+        List<File> candidates = new ArrayList<>();
+        long total = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> lists = Files.newDirectoryStream(folder.toPath(), PREFIX + "*.list")) {
+            for (Path list : lists) {
+                String name = list.getFileName().toString();
+                File merged = new File(folder, name.substring(0, name.length() - ".list".length()) + ".jar");
+                if (inUse.contains(merged)) {
+                    total += merged.length();
+                    continue;
+                }
+                long lastUsed = list.toFile().lastModified();
+                if ((maxAgeMillis > 0 && now - lastUsed > maxAgeMillis) || isStale(list)) {
+                    delete(merged);
+                    evicted.add(merged);
+                    continue;
+                }
+                candidates.add(merged);
+                total += merged.length();
+            }
+        } catch (IOException e) {
+            logger.warning("Unable to list the merged jars: " + e);
+            return evicted;
+        }
+
+        candidates.sort(Comparator.comparingLong(merged -> listOf(merged).lastModified()));
+        for (File merged : candidates) {
+            if (total <= maxBytes) {
+                break;
+            }
+            total -= merged.length();
+            delete(merged);
+            evicted.add(merged);
+        }
+        if (!evicted.isEmpty()) {
+            logger.info("Deleted " + evicted.size() + " merged jars, " + total + " bytes are left");
+        }
+        return evicted;
+    }
+
+    private static boolean isStale(@NotNull Path list) throws IOException {
+        for (String line : Files.readAllLines(list, StandardCharsets.UTF_8)) {
+            String[] source = line.split("\t");
+            if (source.length != 3) {
+                return true;
+            }
+            File jar = new File(source[0]);
+            if (!jar.isFile() || !source[1].equals(Long.toString(jar.length())) || !source[2].equals(Long.toString(jar.lastModified()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private @NotNull File listOf(@NotNull File merged) {
+        return new File(folder, merged.getName().substring(0, merged.getName().length() - ".jar".length()) + ".list");
+    }
+
+    private static void write(@NotNull List<File> inputs, @NotNull OutputStream os) throws IOException {
+        Set<String> written = new HashSet<>();
+        Map<String, Set<String>> services = new LinkedHashMap<>();
+        boolean multiRelease = false;
+
+        List<JarFile> jars = new ArrayList<>();
+        try {
+            for (File input : inputs) {
+                JarFile jar = new JarFile(input, false);
+                jars.add(jar);
+                Manifest manifest = jar.getManifest();
+                multiRelease |= manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
+            }
+
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            if (multiRelease) {
+                manifest.getMainAttributes().putValue("Multi-Release", "true");
+            }
+            try (JarOutputStream out = new JarOutputStream(os)) {
+                ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+                manifest.write(manifestBytes);
+                writeStored(out, JarFile.MANIFEST_NAME, manifestBytes.toByteArray());
+                written.add(JarFile.MANIFEST_NAME);
+
+                for (JarFile jar : jars) {
+                    Enumeration<JarEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        JarEntry entry = entries.nextElement();
+                        String name = entry.getName();
+                        if (entry.isDirectory() || JarSlimmer.isSignature(name) || "META-INF/INDEX.LIST".equals(name) || "module-info.class".equals(name)) {
+                            continue;
+                        }
+                        if (name.startsWith(SERVICES) && name.length() > SERVICES.length()) {
+                            Set<String> providers = services.computeIfAbsent(name, key -> new LinkedHashSet<>());
+                            for (String line : new String(read(jar, entry), StandardCharsets.UTF_8).split("\\R")) {
+                                String provider = line.trim();
+                                if (!provider.isEmpty()) {
+                                    providers.add(provider);
+                                }
+                            }
+                            continue;
+                        }
+                        if (written.add(name)) {
+                            writeStored(out, name, read(jar, entry));
+                        }
+                    }
+                }
+
+                for (Map.Entry<String, Set<String>> service : services.entrySet()) {
+                    writeStored(out, service.getKey(), (String.join("\n", service.getValue()) + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } finally {
+            for (JarFile jar : jars) {
+                jar.close();
+            }
+        }
+    }
+
+    private static void writeStored(@NotNull JarOutputStream out, @NotNull String name, byte @NotNull [] bytes) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        JarEntry entry = new JarEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCompressedSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static byte @NotNull [] read(@NotNull JarFile jar, @NotNull JarEntry entry) throws IOException {
+        try (InputStream is = jar.getInputStream(entry)) {
+            return Bytes.readFully(is, entry.getSize());
+        }
+    }
+
+    private void delete(@NotNull File merged) {
+        String name = merged.getName().substring(0, merged.getName().length() - ".jar".length());
+        try {
+            Files.deleteIfExists(merged.toPath());
+            Files.deleteIfExists(new File(folder, name + ".list").toPath());
+            Files.deleteIfExists(new File(folder, merged.getName() + ClassIndex.EXTENSION).toPath());
+        } catch (IOException e) {
+            logger.fine("Unable to delete " + merged + ": " + e);
+        }
+    }
+
+    private static @NotNull String hash(@NotNull List<String> sources) {
+        MessageDigest digest = Bytes.sha1();
+        for (String source : sources) {
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return Bytes.hex(digest.digest(), 8);
+    }
+
+    /**
+     * Returns the folder of the merged jars.
+     *
+     * @return the folder
+     */
+    public @NotNull File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Returns whether the libraries of a load call are merged into one jar.
+     *
+     * @return {@code true} if the merged class path is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables the merged class path, disabled by default. When enabled, the libraries of every load call are merged
+     * into one jar that is added to the class path when the call returns.
+     *
+     * @param enabled {@code true} to merge the libraries of a load
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
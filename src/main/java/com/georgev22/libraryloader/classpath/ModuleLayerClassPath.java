@@ -0,0 +1,151 @@
+package com.georgev22.libraryloader.classpath;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.File;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Loads libraries as modules of a {@code java.lang.ModuleLayer} instead of adding them to the class path of a class
+ * loader, without reflective access to JDK internals.
+ *
+ * <p>The jars of every load call become one layer, as their explicit modules, or as automatic modules if they have
+ * no {@code module-info}. The modules of a layer share one class loader, whose parent is the class loader of the
+ * {@link com.georgev22.libraryloader.LibraryLoader}, and can read the modules of the layers defined before. Classes are
+ * found through the package to module map of the JDK, so a lookup does not depend on the number of jars.</p>
+ *
+ * <p>The libraries are not visible to the class loader of the loader. Use {@link #loadClass(String)}, the
+ * {@link #getLayers() layers}, e.g. with {@code ServiceLoader.load(ModuleLayer, Class)}, or create the class
+ * loader of the code that uses them with the class loader of a layer as parent. A layer is dropped, and can be
+ * garbage collected with its classes, once all of its libraries are unloaded and every layer defined after it has
+ * been dropped.</p>
+ *
+ * <p>Module layers need Java 9 or later, see {@link #isSupported()}. This class does not refer to the module system
+ * itself, so it loads on Java 8, where {@link #create(ClassLoader, Logger)} returns {@code null}. A jar whose file
+ * name does not give a valid automatic module name is named after its coordinates. Jars that split a package with
+ * another module cannot be loaded this way.</p>
+ */
+public abstract class ModuleLayerClassPath {
+
+    private static final String IMPLEMENTATION = "com.georgev22.libraryloader.classpath.JdkModuleLayerClassPath";
+    private static final boolean SUPPORTED;
+
+    static {
+        boolean supported;
+        try {
+            Class.forName("java.lang.ModuleLayer", false, ModuleLayerClassPath.class.getClassLoader());
+            supported = true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            supported = false;
+        }
+        SUPPORTED = supported;
+    }
+
+    private volatile boolean enabled = false;
+
+    ModuleLayerClassPath() {
+    }
+
+    /**
+     * Returns whether module layers are available on this runtime.
+     *
+     * @return {@code true} on Java 9 and later
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Creates a module layer class path.
+     *
+     * @param parent the parent class loader of the layers
+     * @param logger the logger
+     * @return the module layer class path, or {@code null} if module layers are not {@link #isSupported() supported}
+     */
+    public static @Nullable ModuleLayerClassPath create(@NotNull ClassLoader parent, @NotNull Logger logger) {
+        if (!SUPPORTED) {
+            return null;
+        }
+        try {
+            return (ModuleLayerClassPath) Class.forName(IMPLEMENTATION, true, ModuleLayerClassPath.class.getClassLoader())
+                    .getDeclaredConstructor(ClassLoader.class, Logger.class)
+                    .newInstance(parent, logger);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warning("Module layers are not available: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Defines a layer with the jars of some libraries, on top of the layers defined before.
+     *
+     * @param dependencies the libraries
+     * @param jars         the jars of the libraries
+     * @throws RuntimeException a {@code FindException} if a jar cannot be a module, a {@code ResolutionException} if
+     *                          the modules cannot be resolved, e.g. because of a split package, or a
+     *                          {@code LayerInstantiationException} if the layer cannot be created
+     */
+    public abstract void define(@NotNull List<Dependency> dependencies, @NotNull List<File> jars);
+
+    /**
+     * Releases a library. Layers whose libraries are all released are dropped, newest first.
+     *
+     * @param d the library
+     * @return {@code true} if the library was in a layer
+     */
+    public abstract boolean release(@NotNull Dependency d);
+
+    /**
+     * Returns whether a library was loaded into a layer and not released since.
+     *
+     * @param d the library
+     * @return {@code true} if a layer holds the library
+     */
+    public abstract boolean contains(@NotNull Dependency d);
+
+    /**
+     * Loads a class of a module of the layers.
+     *
+     * @param name the binary name of the class
+     * @return the class
+     * @throws ClassNotFoundException if no module of the layers has the package of the class
+     */
+    public abstract @NotNull Class<?> loadClass(@NotNull String name) throws ClassNotFoundException;
+
+    /**
+     * Returns the layers, oldest first.
+     *
+     * @return the layers, each a {@code java.lang.ModuleLayer}
+     */
+    public abstract @NotNull @Unmodifiable List<?> getLayers();
+
+    /**
+     * Returns the newest layer.
+     *
+     * @return the newest layer, a {@code java.lang.ModuleLayer}, or {@code null} if there is none
+     */
+    public abstract @Nullable Object getLayer();
+
+    /**
+     * Returns whether libraries are loaded as module layers.
+     *
+     * @return {@code true} if the libraries of every load call become one layer
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables loading libraries as module layers, disabled by default. When enabled, the libraries of every load call
+     * become one layer, and they are neither shared nor merged.
+     *
+     * @param enabled {@code true} to load libraries as module layers
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
@@ -0,0 +1,121 @@
+package com.georgev22.libraryloader.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stream reading, SHA-1 and hex helpers shared by the loader, the caches and the tools.
+ */
+public final class Bytes {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Bytes() {
+    }
+
+    /**
+     * Reads a stream to its end. The stream is not closed.
+     *
+     * @param is the stream
+     * @return the bytes read
+     * @throws IOException if the stream cannot be read
+     */
+    public static byte @NotNull [] readFully(@NotNull InputStream is) throws IOException {
+        return readFully(is, -1);
+    }
+
+    /**
+     * Reads a stream to its end. The stream is not closed.
+     *
+     * @param is       the stream
+     * @param expected the expected number of bytes, e.g. the size of a zip entry, or {@code -1} if unknown
+     * @return the bytes read
+     * @throws IOException if the stream cannot be read
+     */
+    public static byte @NotNull [] readFully(@NotNull InputStream is, long expected) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(expected > 0 && expected < Integer.MAX_VALUE ? (int) expected : 8192);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns a new SHA-1 digest.
+     *
+     * @return the digest
+     */
+    public static @NotNull MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implements SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the SHA-1 of a stream, read to its end. The stream is not closed.
+     *
+     * @param is the stream
+     * @return the SHA-1
+     * @throws IOException if the stream cannot be read
+     */
+    public static byte @NotNull [] sha1(@NotNull InputStream is) throws IOException {
+        MessageDigest digest = sha1();
+        byte[] buffer = new byte[65536];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Returns the SHA-1 of a file.
+     *
+     * @param file the file
+     * @return the SHA-1
+     * @throws IOException if the file cannot be read
+     */
+    public static byte @NotNull [] sha1(@NotNull Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            return sha1(is);
+        }
+    }
+
+    /**
+     * Encodes bytes as lower case hex.
+     *
+     * @param bytes the bytes
+     * @return the hex string, two characters per byte
+     */
+    public static @NotNull String hex(byte @NotNull [] bytes) {
+        return hex(bytes, bytes.length);
+    }
+
+    /**
+     * Encodes the first bytes of an array as lower case hex, e.g. to shorten a digest in a file name.
+     *
+     * @param bytes  the bytes
+     * @param length the number of bytes to encode
+     * @return the hex string, two characters per byte
+     */
+    public static @NotNull String hex(byte @NotNull [] bytes, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,122 @@
+package com.georgev22.libraryloader.io;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Channel based file transfers.
+ *
+ * <p>Remote streams are copied through a large, per-thread direct buffer into a {@link FileChannel} whose size is
+ * preallocated from the expected length, which keeps the number of copies and system calls per megabyte low.
+ * File to file copies use {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} so the
+ * kernel can copy without moving the bytes through the heap.</p>
+ */
+public final class FileTransfers {
+
+    /**
+     * The size of the direct transfer buffers.
+     */
+    public static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private FileTransfers() {
+    }
+
+    /**
+     * Copies a channel into a file, replacing the file. The source channel is not closed.
+     *
+     * @param source         the source channel
+     * @param expectedLength the expected number of bytes, e.g. the {@code Content-Length}, or {@code -1} if unknown
+     * @param target         the target file
+     * @param digest         a digest updated with every copied byte, or {@code null}
+     * @return the number of copied bytes
+     * @throws IOException if the copy fails, or the source ends before {@code expectedLength} bytes
+     */
+    public static long copy(@NotNull ReadableByteChannel source, long expectedLength, @NotNull Path target, @Nullable MessageDigest digest) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+            if (expectedLength > 0) {
+                file.setLength(expectedLength);
+            }
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = BUFFERS.get();
+            ((Buffer) buffer).clear();
+            long position = 0;
+            while (source.read(buffer) != -1) {
+                ((Buffer) buffer).flip();
+                if (digest != null) {
+                    digest.update(buffer.duplicate());
+                }
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                ((Buffer) buffer).clear();
+            }
+            if (expectedLength > 0 && position < expectedLength) {
+                throw new EOFException("Expected " + expectedLength + " bytes but the stream ended after " + position);
+            }
+            file.setLength(position);
+            return position;
+        }
+    }
+
+    /**
+     * Moves a completely written file into place, replacing the target. The move is atomic where the file system
+     * supports it, so readers of the target never see a partial file.
+     *
+     * @param source the written file, in the same folder as the target
+     * @param target the target file
+     * @throws IOException if the file cannot be moved
+     */
+    public static void move(@NotNull Path source, @NotNull Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Copies a file into another one, replacing it.
+     * Without a digest the copy is done with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+     *
+     * @param source the source file
+     * @param target the target file
+     * @param digest a digest updated with every copied byte, or {@code null}
+     * @return the number of copied bytes
+     * @throws IOException if the copy fails
+     */
+    public static long copy(@NotNull Path source, @NotNull Path target, @Nullable MessageDigest digest) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (digest != null) {
+                return copy(in, in.size(), target, digest);
+            }
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, out);
+                    if (transferred <= 0) {
+                        throw new EOFException("Unable to transfer " + source + " after " + position + " bytes");
+                    }
+                    position += transferred;
+                }
+                return position;
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.georgev22.libraryloader.lock;
+
+import com.georgev22.libraryloader.LibraryLoader;
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.annotations.MavenLibrary;
+import com.georgev22.libraryloader.annotations.Relocate;
+import com.georgev22.libraryloader.annotations.Repository;
+import com.georgev22.libraryloader.io.Bytes;
+import com.georgev22.libraryloader.platform.Platform;
+import com.georgev22.libraryloader.repository.ConnectionSettings;
+import com.georgev22.libraryloader.version.VersionRange;
+import com.georgev22.libraryloader.version.VersionResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Resolves the runtime closure of a set of declared libraries the same way {@link LibraryLoader} does at
+ * runtime: depth-first, in declaration order, transitive dependencies inheriting the repository of the
+ * library that declares them, every coordinate once. Used by the annotation processor and the bundle tool.
+ */
+public final class ClosureResolver {
+
+    private final List<String> repositories;
+    private final Logger logger;
+
+    private final List<LibraryLock.Entry> entries = new ArrayList<>();
+    private final Set<String> resolved = new HashSet<>();
+
+    /**
+     * Creates a resolver.
+     *
+     * @param repositories additional repositories tried after the repository of every library
+     * @param logger       the logger
+     */
+    public ClosureResolver(@NotNull List<String> repositories, @NotNull Logger logger) {
+        this.repositories = repositories;
+        this.logger = logger;
+    }
+
+    /**
+     * Resolves the libraries declared by {@link MavenLibrary} annotations.
+     *
+     * @param libs   the annotations
+     * @param logger the logger
+     * @return the lock of the runtime closure
+     * @throws IOException if a library is not found in any repository
+     */
+    public static @NotNull LibraryLock resolve(@NotNull MavenLibrary[] libs, @NotNull Logger logger) throws IOException {
+        List<String> repositories = new ArrayList<>();
+        for (MavenLibrary lib : libs) {
+            for (Repository repository : lib.repositories()) {
+                repositories.add(repository.value());
+            }
+        }
+
+        ClosureResolver resolver = new ClosureResolver(repositories, logger);
+        for (MavenLibrary lib : libs) {
+            Map<String, String> relocations = new LinkedHashMap<>();
+            for (Relocate relocate : lib.relocations()) {
+                relocations.put(relocate.pattern(), relocate.relocatedPattern());
+            }
+            resolver.resolve(Dependency.fromAnnotation(lib), null, relocations);
+        }
+        return resolver.toLock();
+    }
+
+    /**
+     * Resolves a library and its transitive dependencies.
+     *
+     * @param d           the library
+     * @param parent      the coordinates of the library that declares {@code d}, or {@code null}
+     * @param relocations the package relocations of {@code d}
+     * @throws IOException if the library is not found in any repository
+     */
+    public void resolve(@NotNull Dependency d, @Nullable String parent, @NotNull Map<String, String> relocations) throws IOException {
+        if (VersionRange.isDynamic(d.version)) {
+            // the lock pins the version the range resolves to now
+            d = d.withVersion(newestVersion(d));
+        }
+        String coordinates = d.getCoordinates();
+        if (!resolved.add(coordinates)) {
+            return;
+        }
+        String classifier = d.getDeclaredClassifier();
+        String platform = classifier != null && Platform.isPlatformSpecific(classifier) ? Platform.current().getClassifier() : null;
+
+        String found = null;
+        FileNotFoundException failure = null;
+        for (String repository : candidates(d)) {
+            try {
+                URL url = d.url(repository);
+                LibraryLock.Entry entry = new LibraryLock.Entry(d.groupId, d.artifactId, d.version, classifier, platform, repository, url.toExternalForm(), sha1(url), parent, relocations);
+                entries.add(entry);
+                // the lock refers to the declared classifier
+                coordinates = entry.getCoordinates();
+                found = repository;
+                break;
+            } catch (FileNotFoundException e) {
+                failure = e;
+            }
+        }
+        if (found == null) {
+            throw new IOException("No repository hosts " + coordinates, failure);
+        }
+
+        for (Dependency transitive : pomDependencies(d, found)) {
+            resolve(transitive, coordinates, Collections.emptyMap());
+        }
+    }
+
+    /**
+     * Returns the lock of everything resolved so far.
+     *
+     * @return the lock
+     */
+    public @NotNull LibraryLock toLock() {
+        return new LibraryLock(entries);
+    }
+
+    /**
+     * Resolves a version range or dynamic version against the versions every candidate repository has.
+     */
+    private @NotNull String newestVersion(@NotNull Dependency d) throws IOException {
+        VersionRange range;
+        try {
+            range = VersionRange.parse(d.version);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        Set<String> versions = new LinkedHashSet<>();
+        for (String repository : candidates(d)) {
+            try (InputStream is = open(VersionResolver.getMetadataUrl(d, repository))) {
+                versions.addAll(VersionResolver.readVersions(is));
+            } catch (FileNotFoundException ignored) {
+                // the repository does not host the library
+            }
+        }
+        String version = range.select(versions);
+        if (version == null) {
+            throw new IOException("No version of " + d.groupId + ":" + d.artifactId + " matches " + range + ", available versions: " + versions);
+        }
+        logger.info("Resolved " + d.groupId + ":" + d.artifactId + ":" + d.version + " to " + version);
+        return version;
+    }
+
+    private @NotNull Set<String> candidates(@NotNull Dependency d) {
+        Set<String> candidates = new LinkedHashSet<>();
+        candidates.add(normalize(d.repoUrl));
+        for (String repository : repositories) {
+            candidates.add(normalize(repository));
+        }
+        return candidates;
+    }
+
+    private @NotNull List<Dependency> pomDependencies(@NotNull Dependency d, @NotNull String repository) throws IOException {
+        try (InputStream is = open(d.getPomUrl(repository))) {
+            return LibraryLoader.readPomDependencies(d, is, logger);
+        } catch (FileNotFoundException e) {
+            return Collections.emptyList();
+        } catch (SAXException | ParserConfigurationException e) {
+            logger.warning("Failed to parse pom for dependency " + d);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns the SHA-1 checksum of an artifact, from its {@code .sha1} file if the repository has one,
+     * by downloading the artifact otherwise.
+     */
+    private @NotNull String sha1(@NotNull URL url) throws IOException {
+        try (InputStream is = open(new URL(url.toExternalForm() + ".sha1"))) {
+            String checksum = new String(Bytes.readFully(is), StandardCharsets.US_ASCII).trim();
+            int end = checksum.indexOf(' ');
+            checksum = end < 0 ? checksum : checksum.substring(0, end);
+            if (checksum.length() == 40) {
+                return checksum.toLowerCase();
+            }
+        } catch (FileNotFoundException ignored) {
+        }
+
+        try (InputStream is = open(url)) {
+            return Bytes.hex(Bytes.sha1(is));
+        }
+    }
+
+    private static @NotNull InputStream open(@NotNull URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        ConnectionSettings.applyDefaults(connection);
+        if (connection instanceof HttpURLConnection) {
+            int status = ((HttpURLConnection) connection).getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+                throw new FileNotFoundException(url.toExternalForm());
+            }
+        }
+        return connection.getInputStream();
+    }
+
+    private static @NotNull String normalize(@NotNull String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+}
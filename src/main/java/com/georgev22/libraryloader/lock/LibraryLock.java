@@ -0,0 +1,363 @@
+package com.georgev22.libraryloader.lock;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.LibraryLoader.RelocatedDependency;
+import com.georgev22.libraryloader.platform.Platform;
+import me.lucko.jarrelocator.Relocation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The fully resolved runtime closure of the {@code @MavenLibrary} annotations of a class, generated at
+ * build time by the {@link com.georgev22.libraryloader.processor.MavenLibraryProcessor}.
+ *
+ * <p>A lock holds, in load order, the coordinates, repository, artifact URL, SHA-1 checksum and relocations
+ * of every library. {@link com.georgev22.libraryloader.LibraryLoader#loadAll(Class, boolean)} loads a lock
+ * instead of reading the annotations and resolving poms whenever the class has one.</p>
+ */
+public final class LibraryLock {
+
+    /**
+     * The folder of the lock resources.
+     */
+    public static final String FOLDER = "META-INF/libraryloader/";
+
+    /**
+     * The format version written by this class.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private final List<Entry> entries;
+
+    /**
+     * Creates a lock.
+     *
+     * @param entries the entries, in load order
+     */
+    public LibraryLock(@NotNull List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * Returns the name of the lock resource of a class.
+     *
+     * @param className the binary name of the class
+     * @return the resource name
+     */
+    public static @NotNull String resourceName(@NotNull String className) {
+        return FOLDER + className + ".properties";
+    }
+
+    /**
+     * Reads the lock of a class from its class loader.
+     *
+     * @param clazz the class
+     * @return the lock, or {@code null} if the class has no lock
+     * @throws IOException if the lock exists but cannot be read
+     */
+    public static @Nullable LibraryLock find(@NotNull Class<?> clazz) throws IOException {
+        ClassLoader classLoader = clazz.getClassLoader();
+        String name = resourceName(clazz.getName());
+        InputStream is = classLoader == null ? ClassLoader.getSystemResourceAsStream(name) : classLoader.getResourceAsStream(name);
+        if (is == null) {
+            return null;
+        }
+        try (InputStream in = is) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a lock.
+     *
+     * @param is the input stream
+     * @return the lock
+     * @throws IOException if the stream cannot be read or is not a lock of a supported version
+     */
+    public static @NotNull LibraryLock read(@NotNull InputStream is) throws IOException {
+        Properties properties = new Properties();
+        properties.load(is);
+        String version = properties.getProperty("version");
+        // version 1 has no classifiers
+        if (!"1".equals(version) && !Integer.toString(FORMAT_VERSION).equals(version)) {
+            throw new IOException("Unsupported lock version " + version);
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; properties.containsKey(i + ".coordinates"); i++) {
+            String[] coordinates = properties.getProperty(i + ".coordinates").split(":", 4);
+            if (coordinates.length < 3) {
+                throw new IOException("Invalid coordinates of entry " + i);
+            }
+            Map<String, String> relocations = new LinkedHashMap<>();
+            String relocated = properties.getProperty(i + ".relocations", "");
+            for (String relocation : relocated.isEmpty() ? new String[0] : relocated.split(",")) {
+                String[] patterns = relocation.split(">", 2);
+                if (patterns.length < 2) {
+                    throw new IOException("Invalid relocation of entry " + i + ": " + relocation);
+                }
+                relocations.put(patterns[0], patterns[1]);
+            }
+            entries.add(new Entry(coordinates[0], coordinates[1], coordinates[2],
+                    coordinates.length == 4 ? coordinates[3] : null, properties.getProperty(i + ".platform"),
+                    required(properties, i + ".repository"), required(properties, i + ".url"),
+                    properties.getProperty(i + ".sha1"), properties.getProperty(i + ".parent"), relocations));
+        }
+        return new LibraryLock(entries);
+    }
+
+    /**
+     * Writes this lock.
+     *
+     * @param os the output stream
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(@NotNull OutputStream os) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", Integer.toString(FORMAT_VERSION));
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            properties.setProperty(i + ".coordinates", entry.getCoordinates());
+            properties.setProperty(i + ".repository", entry.repository);
+            properties.setProperty(i + ".url", entry.url);
+            if (entry.platform != null) {
+                properties.setProperty(i + ".platform", entry.platform);
+            }
+            if (entry.sha1 != null) {
+                properties.setProperty(i + ".sha1", entry.sha1);
+            }
+            if (entry.parent != null) {
+                properties.setProperty(i + ".parent", entry.parent);
+            }
+            if (!entry.relocations.isEmpty()) {
+                StringBuilder relocations = new StringBuilder();
+                for (Map.Entry<String, String> relocation : entry.relocations.entrySet()) {
+                    if (relocations.length() > 0) {
+                        relocations.append(',');
+                    }
+                    relocations.append(relocation.getKey()).append('>').append(relocation.getValue());
+                }
+                properties.setProperty(i + ".relocations", relocations.toString());
+            }
+        }
+        properties.store(os, "Generated by LibraryLoader, do not edit");
+    }
+
+    /**
+     * Returns the entries of this lock, in load order.
+     *
+     * @return the entries
+     */
+    public @NotNull @Unmodifiable List<Entry> getEntries() {
+        return entries;
+    }
+
+    private static @NotNull String required(@NotNull Properties properties, @NotNull String key) throws IOException {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IOException("Missing " + key);
+        }
+        return value;
+    }
+
+    /**
+     * A resolved library.
+     */
+    public static final class Entry {
+
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final String classifier;
+        private final String platform;
+        private final String repository;
+        private final String url;
+        private final String sha1;
+        private final String parent;
+        private final Map<String, String> relocations;
+
+        /**
+         * Creates an entry.
+         *
+         * @param groupId     the group ID
+         * @param artifactId  the artifact ID
+         * @param version     the version
+         * @param repository  the base URL of the repository the library was resolved from
+         * @param url         the URL of the artifact
+         * @param sha1        the SHA-1 checksum of the artifact, or {@code null} if unknown
+         * @param parent      the coordinates of the library that declared this one, or {@code null} if it was declared by an annotation
+         * @param relocations the package relocations, pattern to relocated pattern
+         */
+        public Entry(@NotNull String groupId, @NotNull String artifactId, @NotNull String version,
+                     @NotNull String repository, @NotNull String url, @Nullable String sha1,
+                     @Nullable String parent, @NotNull Map<String, String> relocations) {
+            this(groupId, artifactId, version, null, null, repository, url, sha1, parent, relocations);
+        }
+
+        /**
+         * Creates an entry of a classified artifact.
+         *
+         * @param groupId     the group ID
+         * @param artifactId  the artifact ID
+         * @param version     the version
+         * @param classifier  the classifier as declared, possibly with platform placeholders, or {@code null} for the main artifact
+         * @param platform    the platform the URL and checksum were resolved for if the classifier has platform placeholders, {@code null} otherwise
+         * @param repository  the base URL of the repository the library was resolved from
+         * @param url         the URL of the artifact
+         * @param sha1        the SHA-1 checksum of the artifact, or {@code null} if unknown
+         * @param parent      the coordinates of the library that declared this one, or {@code null} if it was declared by an annotation
+         * @param relocations the package relocations, pattern to relocated pattern
+         */
+        public Entry(@NotNull String groupId, @NotNull String artifactId, @NotNull String version,
+                     @Nullable String classifier, @Nullable String platform,
+                     @NotNull String repository, @NotNull String url, @Nullable String sha1,
+                     @Nullable String parent, @NotNull Map<String, String> relocations) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.classifier = classifier == null || classifier.isEmpty() ? null : classifier;
+            this.platform = platform;
+            this.repository = repository;
+            this.url = url;
+            this.sha1 = sha1;
+            this.parent = parent;
+            this.relocations = Collections.unmodifiableMap(new LinkedHashMap<>(relocations));
+        }
+
+        /**
+         * Returns the coordinates of the library.
+         *
+         * @return the coordinates, {@code groupId:artifactId:version}, followed by {@code :classifier} if the entry has one
+         */
+        public @NotNull String getCoordinates() {
+            return groupId + ":" + artifactId + ":" + version + (classifier == null ? "" : ":" + classifier);
+        }
+
+        /**
+         * Returns the classifier of the artifact as declared, possibly with platform placeholders.
+         *
+         * @return the classifier, or {@code null} for the main artifact
+         */
+        public @Nullable String getClassifier() {
+            return classifier;
+        }
+
+        /**
+         * Returns the platform the URL and checksum were resolved for.
+         *
+         * @return the platform classifier, e.g. {@code linux-x86_64}, or {@code null} if the classifier has no platform placeholders
+         */
+        public @Nullable String getPlatform() {
+            return platform;
+        }
+
+        /**
+         * Returns whether the URL and checksum of this entry are those of the artifact of the current platform,
+         * which is always the case unless the classifier has platform placeholders.
+         *
+         * @return {@code true} if the URL and checksum apply to this JVM
+         */
+        public boolean isCurrentPlatform() {
+            return platform == null || platform.equals(Platform.current().getClassifier());
+        }
+
+        /**
+         * Returns the base URL of the repository the library was resolved from.
+         *
+         * @return the repository URL
+         */
+        public @NotNull String getRepository() {
+            return repository;
+        }
+
+        /**
+         * Returns the URL of the artifact.
+         *
+         * @return the artifact URL
+         */
+        public @NotNull String getUrl() {
+            return url;
+        }
+
+        /**
+         * Returns the SHA-1 checksum of the artifact.
+         *
+         * @return the checksum, or {@code null} if unknown
+         */
+        public @Nullable String getSha1() {
+            return sha1;
+        }
+
+        /**
+         * Returns the coordinates of the library that declared this one.
+         *
+         * @return the coordinates, or {@code null} if the library was declared by an annotation
+         */
+        public @Nullable String getParent() {
+            return parent;
+        }
+
+        /**
+         * Returns the package relocations of the library.
+         *
+         * @return the relocations, pattern to relocated pattern
+         */
+        public @NotNull @Unmodifiable Map<String, String> getRelocations() {
+            return relocations;
+        }
+
+        /**
+         * Creates the dependency of this entry.
+         *
+         * @return a {@link RelocatedDependency} if the entry has relocations, a {@link Dependency} otherwise
+         */
+        public @NotNull Dependency toDependency() {
+            return toDependency(Platform.current());
+        }
+
+        /**
+         * Creates the dependency of this entry on a platform.
+         *
+         * @param platform the platform that selects the classifier
+         * @return a {@link RelocatedDependency} if the entry has relocations, a {@link Dependency} otherwise
+         */
+        public @NotNull Dependency toDependency(@NotNull Platform platform) {
+            String classifier = this.classifier == null || platform.equals(Platform.current()) ? this.classifier : platform.resolve(this.classifier);
+            if (relocations.isEmpty()) {
+                return new Dependency(groupId, artifactId, version, repository, classifier);
+            }
+            List<Relocation> relocations = new ArrayList<>();
+            for (Map.Entry<String, String> relocation : this.relocations.entrySet()) {
+                relocations.add(new Relocation(relocation.getKey(), relocation.getValue()));
+            }
+            return new RelocatedDependency(groupId, artifactId, version, repository, classifier, relocations);
+        }
+
+        @Override
+        public String toString() {
+            return "LibraryLock.Entry{" +
+                    "coordinates=" + getCoordinates() +
+                    ", url=" + url +
+                    ", sha1=" + sha1 +
+                    '}';
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LibraryLock{" +
+                "entries=" + entries +
+                '}';
+    }
+}
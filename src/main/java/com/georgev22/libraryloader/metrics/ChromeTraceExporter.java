@@ -0,0 +1,183 @@
+package com.georgev22.libraryloader.metrics;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A {@link LoaderMetricsListener} that collects every {@link PhaseSample} and writes them
+ * as a Chrome trace-format JSON file, viewable in {@code chrome://tracing} or Perfetto.
+ *
+ * <p>Every phase becomes a complete event on the thread that executed it. A failed phase
+ * carries its exception in the {@code failure} argument. Each dependency is linked to the
+ * dependency that requested it by a flow event, drawn from the parent span that was running
+ * when the dependency was first seen to the first span of the dependency, so the resolution
+ * tree can be followed across threads.</p>
+ */
+public final class ChromeTraceExporter implements LoaderMetricsListener {
+
+    private final long originNanos = System.nanoTime();
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPhase(@NotNull PhaseSample sample) {
+        Thread thread = Thread.currentThread();
+        threadNames.putIfAbsent(thread.getId(), thread.getName());
+        entries.add(new Entry(sample, thread.getId()));
+    }
+
+    /**
+     * Writes the collected spans to {@code trace-<timestamp>.json} in the given folder.
+     *
+     * @param folder the folder to write the trace to
+     * @return the written file
+     * @throws IOException if the file cannot be written
+     */
+    public @NotNull File write(@NotNull File folder) throws IOException {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Unable to create " + folder);
+        }
+        File file = new File(folder, "trace-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json");
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            write(writer);
+        }
+        return file;
+    }
+
+    /**
+     * Writes the collected spans as a Chrome trace-format JSON object.
+     *
+     * @param writer the writer
+     * @throws IOException if writing fails
+     */
+    public void write(@NotNull Writer writer) throws IOException {
+        List<String> events = new ArrayList<>();
+        for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+            events.add("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + thread.getKey()
+                    + ",\"args\":{\"name\":" + quote(thread.getValue()) + "}}");
+        }
+        Map<String, List<Entry>> byDependency = new HashMap<>();
+        for (Entry entry : entries) {
+            byDependency.computeIfAbsent(coordinates(entry.sample.getDependency()), k -> new ArrayList<>()).add(entry);
+            PhaseSample sample = entry.sample;
+            Dependency parent = sample.getParent();
+            Throwable failure = sample.getFailure();
+            events.add("{\"name\":" + quote(coordinates(sample.getDependency()) + " " + sample.getPhase().name().toLowerCase())
+                    + ",\"cat\":" + quote(sample.getPhase().name())
+                    + ",\"ph\":\"X\",\"pid\":1,\"tid\":" + entry.threadId
+                    + ",\"ts\":" + (sample.getStartNanos() - originNanos) / 1000
+                    + ",\"dur\":" + sample.getDurationNanos() / 1000
+                    + ",\"args\":{\"dependency\":" + quote(coordinates(sample.getDependency()))
+                    + ",\"parent\":" + quote(parent == null ? "" : coordinates(parent))
+                    + ",\"repository\":" + quote(sample.getRepository())
+                    + ",\"bytes\":" + sample.getBytes()
+                    + (failure == null ? "" : ",\"failure\":" + quote(failure.toString())) + "}}");
+        }
+        long flowId = 0;
+        for (List<Entry> spans : byDependency.values()) {
+            Entry first = Collections.min(spans, Comparator.comparingLong(e -> e.sample.getStartNanos()));
+            Dependency parent = first.sample.getParent();
+            if (parent == null) {
+                continue;
+            }
+            List<Entry> parentSpans = byDependency.get(coordinates(parent));
+            if (parentSpans == null) {
+                continue;
+            }
+            Entry origin = null;
+            for (Entry candidate : parentSpans) {
+                if (candidate.sample.getStartNanos() <= first.sample.getStartNanos()
+                        && (origin == null || candidate.sample.getStartNanos() > origin.sample.getStartNanos())) {
+                    origin = candidate;
+                }
+            }
+            if (origin == null) {
+                continue;
+            }
+            flowId++;
+            String name = quote(coordinates(first.sample.getDependency()));
+            events.add("{\"name\":" + name + ",\"cat\":\"dependency\",\"ph\":\"s\",\"id\":" + flowId
+                    + ",\"pid\":1,\"tid\":" + origin.threadId
+                    + ",\"ts\":" + (origin.sample.getStartNanos() - originNanos) / 1000 + "}");
+            events.add("{\"name\":" + name + ",\"cat\":\"dependency\",\"ph\":\"f\",\"bp\":\"e\",\"id\":" + flowId
+                    + ",\"pid\":1,\"tid\":" + first.threadId
+                    + ",\"ts\":" + (first.sample.getStartNanos() - originNanos) / 1000 + "}");
+        }
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+        for (int i = 0; i < events.size(); i++) {
+            writer.write(events.get(i));
+            writer.write(i + 1 < events.size() ? ",\n" : "\n");
+        }
+        writer.write("]}\n");
+    }
+
+    /**
+     * Discards all collected spans.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private static @NotNull String coordinates(@NotNull Dependency dependency) {
+        return dependency.groupId + ":" + dependency.artifactId + ":" + dependency.version;
+    }
+
+    private static @NotNull String quote(@NotNull String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static final class Entry {
+        private final PhaseSample sample;
+        private final long threadId;
+
+        private Entry(PhaseSample sample, long threadId) {
+            this.sample = sample;
+            this.threadId = threadId;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.georgev22.libraryloader.metrics;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URL;
+
+/**
+ * Emits the custom Java Flight Recorder events of the library loader.
+ *
+ * <p>The event classes, {@code DependencyPhaseEvent} and {@code ClassPathEvent}, are compiled for Java 11 and only
+ * loaded when {@code jdk.jfr} is present, so the loader keeps working on runtimes without Flight Recorder.</p>
+ */
+public final class FlightRecorderSupport {
+
+    private static final @Nullable Events EVENTS;
+
+    static {
+        Events events;
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderSupport.class.getClassLoader());
+            events = (Events) Class.forName("com.georgev22.libraryloader.metrics.JfrEvents", true, FlightRecorderSupport.class.getClassLoader())
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // no jdk.jfr, or the Flight Recorder of Java 8, which cannot load the Java 11 event classes
+            events = null;
+        }
+        EVENTS = events;
+    }
+
+    private FlightRecorderSupport() {
+    }
+
+    /**
+     * Returns whether Java Flight Recorder events can be emitted on this runtime.
+     *
+     * @return {@code true} if {@code jdk.jfr} is available
+     */
+    public static boolean isAvailable() {
+        return EVENTS != null;
+    }
+
+    static @Nullable Object beginPhase() {
+        return EVENTS == null ? null : EVENTS.beginPhase();
+    }
+
+    static void commitPhase(@Nullable Object event, @NotNull Dependency dependency, @Nullable Dependency parent, @NotNull String repository, @NotNull Phase phase, long bytes, @Nullable Throwable failure) {
+        if (event != null && EVENTS != null) {
+            EVENTS.commitPhase(event, dependency, parent, repository, phase, bytes, failure);
+        }
+    }
+
+    /**
+     * Begins a {@code ClassPathEvent}.
+     *
+     * @return the event to pass to {@link #commitClassPathChange(Object, String, URL, ClassLoader)},
+     * or {@code null} if Flight Recorder is not available
+     */
+    public static @Nullable Object beginClassPathChange() {
+        return EVENTS == null ? null : EVENTS.beginClassPathChange();
+    }
+
+    /**
+     * Commits a {@code ClassPathEvent} started with {@link #beginClassPathChange()}.
+     *
+     * @param event       the event, may be {@code null}
+     * @param action      the action, {@code add} or {@code remove}
+     * @param url         the URL that was added or removed
+     * @param classLoader the class loader whose class path changed
+     */
+    public static void commitClassPathChange(@Nullable Object event, @NotNull String action, @NotNull URL url, @NotNull ClassLoader classLoader) {
+        if (event != null && EVENTS != null) {
+            EVENTS.commitClassPathChange(event, action, url, classLoader);
+        }
+    }
+
+    /**
+     * Begins and commits the events, implemented with {@code jdk.jfr} by {@code JfrEvents}.
+     */
+    interface Events {
+
+        @NotNull Object beginPhase();
+
+        void commitPhase(@NotNull Object event, @NotNull Dependency dependency, @Nullable Dependency parent, @NotNull String repository, @NotNull Phase phase, long bytes, @Nullable Throwable failure);
+
+        @NotNull Object beginClassPathChange();
+
+        void commitClassPathChange(@NotNull Object event, @NotNull String action, @NotNull URL url, @NotNull ClassLoader classLoader);
+    }
+}
@@ -0,0 +1,376 @@
+package com.georgev22.libraryloader.metrics;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects per-phase timers and counters of a {@link com.georgev22.libraryloader.LibraryLoader}.
+ *
+ * <p>The metrics can be exposed through JMX with {@link #registerMBean(String)} and observed
+ * with a {@link LoaderMetricsListener}. All methods are safe to call from multiple threads.</p>
+ */
+public final class LoaderMetrics implements LoaderMetricsMXBean {
+
+    /**
+     * The JMX domain the metrics are registered under.
+     */
+    public static final String JMX_DOMAIN = "com.georgev22.libraryloader";
+
+    private final Map<Phase, LongAdder> phaseCounts = new EnumMap<>(Phase.class);
+    private final Map<Phase, LongAdder> phaseNanos = new EnumMap<>(Phase.class);
+    private final Map<Phase, LongAdder> phaseFailures = new EnumMap<>(Phase.class);
+
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final Map<String, LongAdder> repositoryNanos = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> dependencyNanos = new ConcurrentHashMap<>();
+
+    private final List<LoaderMetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Logger logger;
+
+    private volatile ObjectName objectName;
+
+    /**
+     * Creates a new metrics instance.
+     *
+     * @param logger the logger used to report failing listeners
+     */
+    public LoaderMetrics(@NotNull Logger logger) {
+        this.logger = logger;
+        for (Phase phase : Phase.values()) {
+            phaseCounts.put(phase, new LongAdder());
+            phaseNanos.put(phase, new LongAdder());
+            phaseFailures.put(phase, new LongAdder());
+        }
+    }
+
+    /**
+     * Records a completed phase and notifies the listeners.
+     *
+     * @param sample the sample to record
+     */
+    public void record(@NotNull PhaseSample sample) {
+        phaseCounts.get(sample.getPhase()).increment();
+        phaseNanos.get(sample.getPhase()).add(sample.getDurationNanos());
+        if (sample.isFailed()) {
+            phaseFailures.get(sample.getPhase()).increment();
+        }
+        if (sample.getPhase() == Phase.DOWNLOAD) {
+            bytesDownloaded.add(sample.getBytes());
+        }
+        if (sample.getPhase() != Phase.CLASSPATH_INJECTION && sample.getPhase() != Phase.RELOCATION && sample.getPhase() != Phase.SLIMMING) {
+            repositoryNanos.computeIfAbsent(sample.getRepository(), k -> new LongAdder()).add(sample.getDurationNanos());
+        }
+        dependencyNanos.computeIfAbsent(key(sample.getDependency()), k -> new LongAdder()).add(sample.getDurationNanos());
+
+        for (LoaderMetricsListener listener : listeners) {
+            try {
+                listener.onPhase(sample);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Metrics listener " + listener + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Starts a span for a phase of a dependency load.
+     *
+     * @param dependency the dependency
+     * @param parent     the dependency that requested {@code dependency}, or {@code null}
+     * @param phase      the phase
+     * @return the running span, to be completed with {@link Span#end(long)} or {@link Span#fail(Throwable)}
+     */
+    public @NotNull Span start(@NotNull Dependency dependency, @Nullable Dependency parent, @NotNull Phase phase) {
+        return new Span(this, dependency, parent, dependency.repoUrl, phase);
+    }
+
+    /**
+     * Starts a span for a phase of a dependency load that is executed against a specific repository.
+     *
+     * @param dependency the dependency
+     * @param parent     the dependency that requested {@code dependency}, or {@code null}
+     * @param repository the repository the phase is executed against
+     * @param phase      the phase
+     * @return the running span, to be completed with {@link Span#end(long)} or {@link Span#fail(Throwable)}
+     */
+    public @NotNull Span start(@NotNull Dependency dependency, @Nullable Dependency parent, @NotNull String repository, @NotNull Phase phase) {
+        return new Span(this, dependency, parent, repository, phase);
+    }
+
+    /**
+     * Records a lookup of a dependency in the libraries folder.
+     *
+     * @param dependency the dependency
+     * @param hit        {@code true} if the dependency was already present
+     */
+    public void recordCacheLookup(@NotNull Dependency dependency, boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+        for (LoaderMetricsListener listener : listeners) {
+            try {
+                listener.onCacheLookup(dependency, hit);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Metrics listener " + listener + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(@NotNull LoaderMetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(@NotNull LoaderMetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers these metrics to the platform {@link MBeanServer} as
+     * {@code com.georgev22.libraryloader:type=LibraryLoader,name=<name>}.
+     *
+     * @param name the name of the loader, e.g. the plugin name
+     * @return the object name the metrics were registered under
+     * @throws IllegalStateException if the MBean could not be registered
+     */
+    public synchronized @NotNull ObjectName registerMBean(@NotNull String name) {
+        if (objectName != null) {
+            return objectName;
+        }
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=LibraryLoader,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+            return objectName;
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException |
+                 NotCompliantMBeanException e) {
+            throw new IllegalStateException("Unable to register metrics MBean " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters these metrics from the platform {@link MBeanServer} if they were registered.
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (InstanceNotFoundException | MBeanRegistrationException e) {
+            logger.log(Level.WARNING, "Unable to unregister metrics MBean " + objectName, e);
+        }
+        objectName = null;
+    }
+
+    /**
+     * Returns how many times a phase was recorded.
+     *
+     * @param phase the phase
+     * @return the number of recorded samples
+     */
+    public long getCount(@NotNull Phase phase) {
+        return phaseCounts.get(phase).sum();
+    }
+
+    /**
+     * Returns how many times a phase failed. Failed phases are included in {@link #getCount(Phase)}.
+     *
+     * @param phase the phase
+     * @return the number of failed samples
+     */
+    public long getFailureCount(@NotNull Phase phase) {
+        return phaseFailures.get(phase).sum();
+    }
+
+    /**
+     * Returns the total time spent in a phase.
+     *
+     * @param phase the phase
+     * @param unit  the unit of the returned time
+     * @return the total time in the given unit
+     */
+    public long getTime(@NotNull Phase phase, @NotNull TimeUnit unit) {
+        return unit.convert(phaseNanos.get(phase).sum(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getMetadataLookupCount() {
+        return getCount(Phase.METADATA_LOOKUP);
+    }
+
+    @Override
+    public long getMetadataLookupTimeMillis() {
+        return getTime(Phase.METADATA_LOOKUP, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getPomFetchCount() {
+        return getCount(Phase.POM_FETCH);
+    }
+
+    @Override
+    public long getPomFetchTimeMillis() {
+        return getTime(Phase.POM_FETCH, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getPomParseCount() {
+        return getCount(Phase.POM_PARSE);
+    }
+
+    @Override
+    public long getPomParseTimeMillis() {
+        return getTime(Phase.POM_PARSE, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getDownloadCount() {
+        return getCount(Phase.DOWNLOAD);
+    }
+
+    @Override
+    public long getDownloadTimeMillis() {
+        return getTime(Phase.DOWNLOAD, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getRelocationCount() {
+        return getCount(Phase.RELOCATION);
+    }
+
+    @Override
+    public long getRelocationTimeMillis() {
+        return getTime(Phase.RELOCATION, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getClassPathInjectionCount() {
+        return getCount(Phase.CLASSPATH_INJECTION);
+    }
+
+    @Override
+    public long getClassPathInjectionTimeMillis() {
+        return getTime(Phase.CLASSPATH_INJECTION, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return bytesDownloaded.sum();
+    }
+
+    @Override
+    public long getDownloadThroughputBytesPerSecond() {
+        long nanos = phaseNanos.get(Phase.DOWNLOAD).sum();
+        if (nanos == 0) {
+            return 0;
+        }
+        return (long) (bytesDownloaded.sum() / (nanos / 1_000_000_000D));
+    }
+
+    @Override
+    public long getFailedPhaseCount() {
+        long failures = 0;
+        for (LongAdder adder : phaseFailures.values()) {
+            failures += adder.sum();
+        }
+        return failures;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRepositoryTimesMillis() {
+        Map<String, Long> times = new TreeMap<>();
+        repositoryNanos.forEach((repository, nanos) -> times.put(repository, TimeUnit.NANOSECONDS.toMillis(nanos.sum())));
+        return times;
+    }
+
+    @Override
+    public String getSlowestDependency() {
+        Map.Entry<String, Long> slowest = slowestDependency();
+        return slowest == null ? "" : slowest.getKey();
+    }
+
+    @Override
+    public long getSlowestDependencyTimeMillis() {
+        Map.Entry<String, Long> slowest = slowestDependency();
+        return slowest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(slowest.getValue());
+    }
+
+    @Override
+    public void reset() {
+        phaseCounts.values().forEach(LongAdder::reset);
+        phaseNanos.values().forEach(LongAdder::reset);
+        phaseFailures.values().forEach(LongAdder::reset);
+        bytesDownloaded.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        repositoryNanos.clear();
+        dependencyNanos.clear();
+    }
+
+    private Map.Entry<String, Long> slowestDependency() {
+        Map.Entry<String, Long> slowest = null;
+        for (Map.Entry<String, LongAdder> entry : dependencyNanos.entrySet()) {
+            long nanos = entry.getValue().sum();
+            if (slowest == null || nanos > slowest.getValue()) {
+                slowest = new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), nanos);
+            }
+        }
+        return slowest;
+    }
+
+    private static @NotNull String key(@NotNull Dependency dependency) {
+        return dependency.groupId + ":" + dependency.artifactId + ":" + dependency.version;
+    }
+
+    @Override
+    public String toString() {
+        return "LoaderMetrics{" +
+                "bytesDownloaded=" + bytesDownloaded +
+                ", cacheHits=" + cacheHits +
+                ", cacheMisses=" + cacheMisses +
+                ", objectName=" + objectName +
+                '}';
+    }
+}
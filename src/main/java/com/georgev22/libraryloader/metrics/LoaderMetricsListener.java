@@ -0,0 +1,29 @@
+package com.georgev22.libraryloader.metrics;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener notified by {@link LoaderMetrics} about every recorded phase and cache lookup.
+ *
+ * <p>Listeners are called on the thread that loads the dependency and should return quickly.</p>
+ */
+public interface LoaderMetricsListener {
+
+    /**
+     * Called when a phase of a dependency load completes.
+     *
+     * @param sample the recorded sample
+     */
+    default void onPhase(@NotNull PhaseSample sample) {
+    }
+
+    /**
+     * Called when the libraries folder is checked for a dependency.
+     *
+     * @param dependency the dependency
+     * @param hit        {@code true} if the dependency was already present in the libraries folder
+     */
+    default void onCacheLookup(@NotNull Dependency dependency, boolean hit) {
+    }
+}
@@ -0,0 +1,76 @@
+package com.georgev22.libraryloader.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX management interface of {@link LoaderMetrics}.
+ *
+ * <p>All times are reported in milliseconds.</p>
+ */
+public interface LoaderMetricsMXBean {
+
+    long getMetadataLookupCount();
+
+    long getMetadataLookupTimeMillis();
+
+    long getPomFetchCount();
+
+    long getPomFetchTimeMillis();
+
+    long getPomParseCount();
+
+    long getPomParseTimeMillis();
+
+    long getDownloadCount();
+
+    long getDownloadTimeMillis();
+
+    long getRelocationCount();
+
+    long getRelocationTimeMillis();
+
+    long getClassPathInjectionCount();
+
+    long getClassPathInjectionTimeMillis();
+
+    long getBytesDownloaded();
+
+    /**
+     * Returns the average download throughput.
+     *
+     * @return the throughput in bytes per second, or {@code 0} if nothing was downloaded
+     */
+    long getDownloadThroughputBytesPerSecond();
+
+    /**
+     * Returns how many phases failed, e.g. transfers that broke off and checksum mismatches.
+     *
+     * @return the number of failed phases
+     */
+    long getFailedPhaseCount();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    /**
+     * Returns the total time spent on network phases per repository.
+     *
+     * @return repository URL to time in milliseconds
+     */
+    Map<String, Long> getRepositoryTimesMillis();
+
+    /**
+     * Returns the dependency whose phases took the longest in total.
+     *
+     * @return the slowest dependency, or an empty string if nothing was recorded
+     */
+    String getSlowestDependency();
+
+    long getSlowestDependencyTimeMillis();
+
+    /**
+     * Resets all counters.
+     */
+    void reset();
+}
@@ -0,0 +1,43 @@
+package com.georgev22.libraryloader.metrics;
+
+/**
+ * The phases a dependency goes through while it is being loaded by the
+ * {@link com.georgev22.libraryloader.LibraryLoader}.
+ */
+public enum Phase {
+
+    /**
+     * Looking up {@code maven-metadata.xml} to determine the artifact URL.
+     */
+    METADATA_LOOKUP,
+
+    /**
+     * Fetching the pom of the dependency from the repository.
+     */
+    POM_FETCH,
+
+    /**
+     * Parsing the pom of the dependency to discover transitive dependencies.
+     */
+    POM_PARSE,
+
+    /**
+     * Downloading the artifact to the libraries folder.
+     */
+    DOWNLOAD,
+
+    /**
+     * Relocating the classes of a downloaded artifact.
+     */
+    RELOCATION,
+
+    /**
+     * Removing the classes of an artifact that are unreachable from its entry points.
+     */
+    SLIMMING,
+
+    /**
+     * Adding the artifact to the class path of the class loader.
+     */
+    CLASSPATH_INJECTION
+}
@@ -0,0 +1,137 @@
+package com.georgev22.libraryloader.metrics;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A single timed {@link Phase} of a dependency load.
+ */
+public final class PhaseSample {
+
+    private final Dependency dependency;
+    private final Dependency parent;
+    private final String repository;
+    private final Phase phase;
+    private final long startNanos;
+    private final long durationNanos;
+    private final long bytes;
+    private final @Nullable Throwable failure;
+
+    /**
+     * Creates a new sample of a phase that may have failed.
+     *
+     * @param dependency    the dependency the phase was executed for
+     * @param parent        the dependency that requested {@code dependency}, or {@code null} if it was requested directly
+     * @param repository    the repository the phase was executed against
+     * @param phase         the phase
+     * @param startNanos    the {@link System#nanoTime()} the phase started at
+     * @param durationNanos the duration of the phase in nanoseconds
+     * @param bytes         the bytes transferred during the phase, or {@code 0}
+     * @param failure       the reason the phase failed, or {@code null} if it completed
+     */
+    public PhaseSample(@NotNull Dependency dependency, @Nullable Dependency parent, @NotNull String repository, @NotNull Phase phase, long startNanos, long durationNanos, long bytes, @Nullable Throwable failure) {
+        this.dependency = dependency;
+        this.parent = parent;
+        this.repository = repository;
+        this.phase = phase;
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
+        this.bytes = bytes;
+        this.failure = failure;
+    }
+
+    /**
+     * Returns the dependency the phase was executed for.
+     *
+     * @return the dependency
+     */
+    public @NotNull Dependency getDependency() {
+        return dependency;
+    }
+
+    /**
+     * Returns the dependency that requested this dependency in the dependency graph.
+     *
+     * @return the requesting dependency, or {@code null} if the dependency was requested directly
+     */
+    public @Nullable Dependency getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the repository the phase was executed against.
+     * This is not necessarily the repository declared by the dependency.
+     *
+     * @return the repository URL
+     */
+    public @NotNull String getRepository() {
+        return repository;
+    }
+
+    /**
+     * Returns the phase of this sample.
+     *
+     * @return the phase
+     */
+    public @NotNull Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} the phase started at.
+     *
+     * @return the start time in nanoseconds
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Returns the duration of the phase.
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Returns the bytes transferred during the phase.
+     *
+     * @return the transferred bytes, or {@code 0} if the phase does not transfer any data
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns why the phase failed.
+     *
+     * @return the failure, or {@code null} if the phase completed
+     */
+    public @Nullable Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns whether the phase failed.
+     *
+     * @return {@code true} if the phase failed, see {@link #getFailure()}
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    @Override
+    public String toString() {
+        return "PhaseSample{" +
+                "dependency=" + dependency +
+                ", parent=" + parent +
+                ", phase=" + phase +
+                ", durationNanos=" + durationNanos +
+                ", bytes=" + bytes +
+                (failure == null ? "" : ", failure=" + failure) +
+                '}';
+    }
+}
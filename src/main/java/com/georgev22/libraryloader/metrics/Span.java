@@ -0,0 +1,70 @@
+package com.georgev22.libraryloader.metrics;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A running {@link Phase} of a dependency load.
+ *
+ * <p>Spans are created with {@link LoaderMetrics#start(Dependency, Dependency, String, Phase)} and must be
+ * completed with {@link #end(long)}, or with {@link #fail(Throwable)} if the phase failed. Ending a span records it
+ * to the metrics and, when Java Flight Recorder is available, commits a {@link DependencyPhaseEvent}. A span is
+ * recorded once, later calls are ignored, so a span can also be ended in a {@code finally} block.</p>
+ */
+public final class Span {
+
+    private final LoaderMetrics metrics;
+    private final Dependency dependency;
+    private final Dependency parent;
+    private final String repository;
+    private final Phase phase;
+    private final Object event;
+    private final long startNanos;
+    private boolean ended;
+
+    Span(@NotNull LoaderMetrics metrics, @NotNull Dependency dependency, @Nullable Dependency parent, @NotNull String repository, @NotNull Phase phase) {
+        this.metrics = metrics;
+        this.dependency = dependency;
+        this.parent = parent;
+        this.repository = repository;
+        this.phase = phase;
+        this.event = FlightRecorderSupport.beginPhase();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends this span.
+     *
+     * @param bytes the bytes transferred during the phase, or {@code 0}
+     */
+    public void end(long bytes) {
+        end(bytes, null);
+    }
+
+    /**
+     * Ends this span without transferred bytes.
+     */
+    public void end() {
+        end(0, null);
+    }
+
+    /**
+     * Ends this span as failed.
+     *
+     * @param failure the reason the phase failed
+     */
+    public void fail(@NotNull Throwable failure) {
+        end(0, failure);
+    }
+
+    private void end(long bytes, @Nullable Throwable failure) {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        long duration = System.nanoTime() - startNanos;
+        FlightRecorderSupport.commitPhase(event, dependency, parent, repository, phase, bytes, failure);
+        metrics.record(new PhaseSample(dependency, parent, repository, phase, startNanos, duration, bytes, failure));
+    }
+}
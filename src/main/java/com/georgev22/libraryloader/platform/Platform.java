@@ -0,0 +1,222 @@
+package com.georgev22.libraryloader.platform;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/**
+ * An operating system and architecture, used to select the native artifact of a library.
+ *
+ * <p>Names are normalized the way the {@code os-maven-plugin} does, e.g. {@code linux-x86_64},
+ * {@code osx-aarch_64} or {@code windows-x86_32}, which is the classifier scheme of e.g. Netty's native transports.
+ * A classifier may contain the following placeholders, replaced by {@link #resolve(String)}:</p>
+ * <ul>
+ *     <li>{@value #OS_NAME}, the operating system, e.g. {@code linux}</li>
+ *     <li>{@value #OS_ARCH}, the architecture, e.g. {@code x86_64}</li>
+ *     <li>{@value #OS_CLASSIFIER}, both, e.g. {@code linux-x86_64}</li>
+ *     <li>{@value #LWJGL_NATIVES}, the classifier scheme of LWJGL, e.g. {@code natives-linux} or {@code natives-macos-arm64}</li>
+ * </ul>
+ */
+public final class Platform {
+
+    public static final String OS_NAME = "${os.detected.name}";
+    public static final String OS_ARCH = "${os.detected.arch}";
+    public static final String OS_CLASSIFIER = "${os.detected.classifier}";
+    public static final String LWJGL_NATIVES = "${lwjgl.natives}";
+
+    private static final String UNKNOWN = "unknown";
+    private static final Platform CURRENT = new Platform(normalizeOs(System.getProperty("os.name", "")), normalizeArch(System.getProperty("os.arch", "")));
+
+    private final String os;
+    private final String arch;
+
+    /**
+     * Creates a platform.
+     *
+     * @param os   the normalized operating system, e.g. {@code linux}
+     * @param arch the normalized architecture, e.g. {@code x86_64}
+     */
+    public Platform(@NotNull String os, @NotNull String arch) {
+        this.os = os;
+        this.arch = arch;
+    }
+
+    /**
+     * Returns the platform of this JVM.
+     *
+     * @return the current platform
+     */
+    public static @NotNull Platform current() {
+        return CURRENT;
+    }
+
+    /**
+     * Parses a platform classifier, see {@link #getClassifier()}.
+     *
+     * @param classifier the classifier, e.g. {@code linux-x86_64}
+     * @return the platform
+     */
+    @Contract("_ -> new")
+    public static @NotNull Platform parse(@NotNull String classifier) {
+        int separator = classifier.indexOf('-');
+        if (separator <= 0 || separator == classifier.length() - 1) {
+            throw new IllegalArgumentException("Invalid platform " + classifier + ", expected os-arch");
+        }
+        return new Platform(classifier.substring(0, separator), classifier.substring(separator + 1));
+    }
+
+    /**
+     * Returns whether a classifier contains a platform placeholder.
+     *
+     * @param classifier the classifier
+     * @return {@code true} if the classifier depends on the platform
+     */
+    public static boolean isPlatformSpecific(@NotNull String classifier) {
+        return classifier.contains(OS_NAME) || classifier.contains(OS_ARCH) || classifier.contains(OS_CLASSIFIER) || classifier.contains(LWJGL_NATIVES);
+    }
+
+    /**
+     * Replaces the platform placeholders of a classifier.
+     *
+     * @param classifier the classifier
+     * @return the classifier of this platform
+     */
+    public @NotNull String resolve(@NotNull String classifier) {
+        if (!classifier.contains("${")) {
+            return classifier;
+        }
+        return classifier.replace(OS_CLASSIFIER, getClassifier())
+                .replace(OS_NAME, os)
+                .replace(OS_ARCH, arch)
+                .replace(LWJGL_NATIVES, getLwjglClassifier());
+    }
+
+    /**
+     * Returns the normalized operating system.
+     *
+     * @return the operating system, e.g. {@code linux}
+     */
+    public @NotNull String getOs() {
+        return os;
+    }
+
+    /**
+     * Returns the normalized architecture.
+     *
+     * @return the architecture, e.g. {@code x86_64}
+     */
+    public @NotNull String getArch() {
+        return arch;
+    }
+
+    /**
+     * Returns the classifier of this platform, {@code os-arch}.
+     *
+     * @return the classifier
+     */
+    public @NotNull String getClassifier() {
+        return os + "-" + arch;
+    }
+
+    private @NotNull String getLwjglClassifier() {
+        String lwjglOs = "osx".equals(os) ? "macos" : os;
+        switch (arch) {
+            case "x86_64":
+                return "natives-" + lwjglOs;
+            case "aarch_64":
+                return "natives-" + lwjglOs + "-arm64";
+            case "arm_32":
+                return "natives-" + lwjglOs + "-arm32";
+            case "x86_32":
+                return "natives-" + lwjglOs + "-x86";
+            case "ppcle_64":
+                return "natives-" + lwjglOs + "-ppc64le";
+            default:
+                return "natives-" + lwjglOs + "-" + arch;
+        }
+    }
+
+    private static @NotNull String normalizeOs(@NotNull String value) {
+        String name = normalize(value);
+        if (name.startsWith("linux")) {
+            return "linux";
+        }
+        if (name.startsWith("macosx") || name.startsWith("osx") || name.startsWith("darwin")) {
+            return "osx";
+        }
+        if (name.startsWith("windows")) {
+            return "windows";
+        }
+        if (name.startsWith("freebsd")) {
+            return "freebsd";
+        }
+        if (name.startsWith("openbsd")) {
+            return "openbsd";
+        }
+        if (name.startsWith("netbsd")) {
+            return "netbsd";
+        }
+        if (name.startsWith("solaris") || name.startsWith("sunos")) {
+            return "sunos";
+        }
+        if (name.startsWith("aix")) {
+            return "aix";
+        }
+        return UNKNOWN;
+    }
+
+    private static @NotNull String normalizeArch(@NotNull String value) {
+        String arch = normalize(value);
+        if (arch.matches("^(x8664|amd64|ia32e|em64t|x64)$")) {
+            return "x86_64";
+        }
+        if (arch.matches("^(x8632|x86|i[3-6]86|ia32|x32)$")) {
+            return "x86_32";
+        }
+        if (arch.equals("aarch64") || arch.equals("arm64")) {
+            return "aarch_64";
+        }
+        if (arch.matches("^(arm|arm32)$")) {
+            return "arm_32";
+        }
+        if (arch.equals("ppc64le")) {
+            return "ppcle_64";
+        }
+        if (arch.equals("ppc64")) {
+            return "ppc_64";
+        }
+        if (arch.equals("s390x")) {
+            return "s390_64";
+        }
+        if (arch.equals("riscv64")) {
+            return "riscv64";
+        }
+        if (arch.equals("loongarch64")) {
+            return "loongarch_64";
+        }
+        return UNKNOWN;
+    }
+
+    private static @NotNull String normalize(@NotNull String value) {
+        return value.toLowerCase(Locale.US).replaceAll("[^a-z0-9]+", "");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Platform)) return false;
+        Platform that = (Platform) o;
+        return os.equals(that.os) && arch.equals(that.arch);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClassifier().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getClassifier();
+    }
+}
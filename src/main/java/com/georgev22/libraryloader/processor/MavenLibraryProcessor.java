@@ -0,0 +1,102 @@
+package com.georgev22.libraryloader.processor;
+
+import com.georgev22.libraryloader.annotations.MavenLibrary;
+import com.georgev22.libraryloader.lock.ClosureResolver;
+import com.georgev22.libraryloader.lock.LibraryLock;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Resolves the {@link MavenLibrary} annotations of every class at build time and writes a {@link LibraryLock}
+ * resource next to the class, which {@link com.georgev22.libraryloader.LibraryLoader#loadAll(Class, boolean)}
+ * loads instead of resolving poms at runtime.
+ *
+ * <p>The processor is registered in the library jar, so it is discovered by every compilation that has the library
+ * on its class path. It does nothing unless resolution is switched on, because resolving needs access to the
+ * repositories while compiling. Enable it with {@code annotationProcessor 'com.georgev22:libraryloader:<version>'}
+ * and {@code -Alibraryloader.resolve=true}. Options:</p>
+ * <ul>
+ *     <li>{@code -Alibraryloader.resolve=true} resolves the libraries at build time, by default they are
+ *     resolved at runtime</li>
+ *     <li>{@code -Alibraryloader.failOnError=true} fails the compilation if a library cannot be resolved,
+ *     by default a warning is printed and the libraries are resolved at runtime</li>
+ * </ul>
+ */
+@SupportedAnnotationTypes({
+        "com.georgev22.libraryloader.annotations.MavenLibrary",
+        "com.georgev22.libraryloader.annotations.MavenLibraries"
+})
+@SupportedOptions({MavenLibraryProcessor.RESOLVE_OPTION, MavenLibraryProcessor.FAIL_ON_ERROR_OPTION})
+public final class MavenLibraryProcessor extends AbstractProcessor {
+
+    static final String RESOLVE_OPTION = "libraryloader.resolve";
+    static final String FAIL_ON_ERROR_OPTION = "libraryloader.failOnError";
+
+    private final Logger logger = Logger.getLogger(MavenLibraryProcessor.class.getSimpleName());
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (annotations.isEmpty() || !Boolean.parseBoolean(processingEnv.getOptions().get(RESOLVE_OPTION))) {
+            return false;
+        }
+
+        Set<TypeElement> types = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element instanceof TypeElement) {
+                    types.add((TypeElement) element);
+                }
+            }
+        }
+        for (TypeElement type : types) {
+            process(type);
+        }
+        return false;
+    }
+
+    private void process(@NotNull TypeElement type) {
+        LibraryLock lock;
+        try {
+            lock = ClosureResolver.resolve(type.getAnnotationsByType(MavenLibrary.class), logger);
+        } catch (IOException | IllegalArgumentException e) {
+            boolean fail = Boolean.parseBoolean(processingEnv.getOptions().get(FAIL_ON_ERROR_OPTION));
+            processingEnv.getMessager().printMessage(fail ? Diagnostic.Kind.ERROR : Diagnostic.Kind.WARNING,
+                    "Unable to resolve the libraries of " + type.getQualifiedName() + ", they will be resolved at runtime: " + e, type);
+            return;
+        }
+
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", LibraryLock.resourceName(className), type);
+            try (OutputStream os = resource.openOutputStream()) {
+                lock.write(os);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write the library lock of " + type.getQualifiedName() + ": " + e, type);
+            return;
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "Resolved " + lock.getEntries().size() + " libraries for " + type.getQualifiedName());
+    }
+}
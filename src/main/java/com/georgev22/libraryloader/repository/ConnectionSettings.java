@@ -0,0 +1,195 @@
+package com.georgev22.libraryloader.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URLConnection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeouts, retry and hedging settings of the requests sent to repositories.
+ *
+ * <p>Every request gets a connect and read timeout. Transient failures (connection errors, timeouts,
+ * {@code 408}, {@code 429} and {@code 5xx} responses) are retried with exponential backoff and jitter.
+ * When hedging is enabled, a request that is slower than the configured latency percentile of its
+ * repository is duplicated to the next candidate repository and the first response wins.</p>
+ */
+public final class ConnectionSettings {
+
+    /**
+     * Connect timeout used when no settings are available, e.g. by {@link com.georgev22.libraryloader.LibraryLoader.Dependency#hasPom()}.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Read timeout used when no settings are available, e.g. by {@link com.georgev22.libraryloader.LibraryLoader.Dependency#hasPom()}.
+     */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
+
+    private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+
+    private volatile int maxRetries = 2;
+    private volatile long initialBackoffMillis = 250;
+    private volatile long maxBackoffMillis = 5_000;
+
+    private volatile boolean hedging = false;
+    private volatile double hedgePercentile = 0.95D;
+    private volatile long minHedgeDelayMillis = 50;
+    private volatile long defaultHedgeDelayMillis = 1_000;
+
+    /**
+     * Applies the timeouts to a connection.
+     *
+     * @param connection the connection
+     */
+    public void apply(@NotNull URLConnection connection) {
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+    }
+
+    /**
+     * Applies the default timeouts to a connection.
+     *
+     * @param connection the connection
+     */
+    public static void applyDefaults(@NotNull URLConnection connection) {
+        connection.setConnectTimeout(DEFAULT_CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Returns the delay before a retry.
+     *
+     * @param retry the retry, starting at {@code 1}
+     * @return the delay in milliseconds, including up to 20% jitter
+     */
+    public long backoffMillis(int retry) {
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retry - 1, 20));
+        return backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+    }
+
+    /**
+     * Returns the connect timeout of every request.
+     *
+     * @return the connect timeout in milliseconds
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Returns the read timeout of every request, the maximum time between two received packets.
+     *
+     * @return the read timeout in milliseconds
+     */
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * Sets the connect and read timeout of every request.
+     *
+     * @param connectTimeout the connect timeout
+     * @param readTimeout    the read timeout, the maximum time between two received packets
+     * @param unit           the unit of both timeouts
+     */
+    public void setTimeouts(long connectTimeout, long readTimeout, @NotNull TimeUnit unit) {
+        this.connectTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, unit.toMillis(connectTimeout));
+        this.readTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, unit.toMillis(readTimeout));
+    }
+
+    /**
+     * Returns how often a request that failed transiently is retried against the same repository.
+     *
+     * @return the number of retries, {@code 0} if retries are disabled
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets how often a request that failed transiently is retried against the same repository.
+     *
+     * @param maxRetries     the number of retries, {@code 0} disables retries
+     * @param initialBackoff the delay before the first retry, doubled for every further retry
+     * @param maxBackoff     the maximum delay between two retries
+     * @param unit           the unit of both delays
+     */
+    public void setRetries(int maxRetries, long initialBackoff, long maxBackoff, @NotNull TimeUnit unit) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries can not be negative");
+        }
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = unit.toMillis(initialBackoff);
+        this.maxBackoffMillis = unit.toMillis(maxBackoff);
+    }
+
+    /**
+     * Returns whether a duplicate request is sent to the next repository when a request is slow.
+     *
+     * @return {@code true} if hedged requests are enabled
+     */
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    /**
+     * Returns the latency percentile of the repository after which a duplicate request is sent.
+     *
+     * @return the percentile, between {@code 0} and {@code 1}
+     */
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * Enables or disables hedged requests.
+     *
+     * @param hedging    whether to send a duplicate request to the next repository when a request is slow
+     * @param percentile the latency percentile of the repository, between {@code 0} and {@code 1},
+     *                   after which the duplicate request is sent
+     */
+    public void setHedging(boolean hedging, double percentile) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        }
+        this.hedging = hedging;
+        this.hedgePercentile = percentile;
+    }
+
+    /**
+     * Sets the bounds of the hedge delay.
+     *
+     * @param minDelay     the minimum delay before a duplicate request is sent
+     * @param defaultDelay the delay used while a repository has too few latency samples
+     * @param unit         the unit of both delays
+     */
+    public void setHedgeDelays(long minDelay, long defaultDelay, @NotNull TimeUnit unit) {
+        this.minHedgeDelayMillis = unit.toMillis(minDelay);
+        this.defaultHedgeDelayMillis = unit.toMillis(defaultDelay);
+    }
+
+    /**
+     * Returns the time to wait for a repository before a hedged request is sent.
+     *
+     * @param repository the repository
+     * @return the delay in nanoseconds
+     */
+    public long hedgeDelayNanos(@NotNull RemoteRepository repository) {
+        long percentile = repository.getLatencyPercentileNanos(hedgePercentile);
+        long delay = percentile < 0 ? TimeUnit.MILLISECONDS.toNanos(defaultHedgeDelayMillis) : percentile;
+        return Math.max(delay, TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMillis));
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionSettings{" +
+                "connectTimeoutMillis=" + connectTimeoutMillis +
+                ", readTimeoutMillis=" + readTimeoutMillis +
+                ", maxRetries=" + maxRetries +
+                ", hedging=" + hedging +
+                ", hedgePercentile=" + hedgePercentile +
+                '}';
+    }
+}
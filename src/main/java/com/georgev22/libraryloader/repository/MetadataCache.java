@@ -0,0 +1,282 @@
+package com.georgev22.libraryloader.repository;
+
+import com.georgev22.libraryloader.io.Bytes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Caches {@code maven-metadata.xml} lookups in memory and on disk.
+ *
+ * <p>Cached metadata is served without a request while it is younger than its time to live, and is
+ * revalidated with {@code If-None-Match}/{@code If-Modified-Since} afterwards, so an unchanged file
+ * costs a {@code 304 Not Modified}. Missing metadata is remembered as well, so lookups that are known
+ * to {@code 404}, like the version level metadata of release versions, are skipped entirely.</p>
+ */
+public final class MetadataCache {
+
+    private static final String BODY_SUFFIX = ".xml";
+    private static final String ENTRY_SUFFIX = ".properties";
+
+    private final File folder;
+    private final ConnectionSettings settings;
+    private final Logger logger;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private volatile long releaseTtlMillis = TimeUnit.DAYS.toMillis(7);
+    private volatile long snapshotTtlMillis = TimeUnit.DAYS.toMillis(1);
+    private volatile long missingReleaseTtlMillis = TimeUnit.DAYS.toMillis(30);
+    private volatile long missingSnapshotTtlMillis = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Creates a metadata cache that persists its entries to the given folder.
+     *
+     * @param folder   the folder to store the metadata in
+     * @param settings the timeouts of the metadata requests
+     * @param logger   the logger
+     */
+    public MetadataCache(@NotNull File folder, @NotNull ConnectionSettings settings, @NotNull Logger logger) {
+        this.folder = folder;
+        this.settings = settings;
+        this.logger = logger;
+    }
+
+    /**
+     * Sets how long metadata of release versions is served without revalidation.
+     *
+     * @param ttl  the time to live
+     * @param unit the unit of {@code ttl}
+     */
+    public void setReleaseTtl(long ttl, @NotNull TimeUnit unit) {
+        this.releaseTtlMillis = unit.toMillis(ttl);
+    }
+
+    /**
+     * Sets how long metadata of {@code -SNAPSHOT} versions is served without revalidation,
+     * the equivalent of the Maven update policy. {@code 0} revalidates on every lookup.
+     *
+     * @param ttl  the time to live
+     * @param unit the unit of {@code ttl}
+     */
+    public void setSnapshotTtl(long ttl, @NotNull TimeUnit unit) {
+        this.snapshotTtlMillis = unit.toMillis(ttl);
+    }
+
+    /**
+     * Sets how long a missing metadata file is remembered.
+     *
+     * @param releaseTtl  the time to live for release versions
+     * @param snapshotTtl the time to live for {@code -SNAPSHOT} versions
+     * @param unit        the unit of both values
+     */
+    public void setMissingTtl(long releaseTtl, long snapshotTtl, @NotNull TimeUnit unit) {
+        this.missingReleaseTtlMillis = unit.toMillis(releaseTtl);
+        this.missingSnapshotTtlMillis = unit.toMillis(snapshotTtl);
+    }
+
+    /**
+     * Returns the metadata at the given URL.
+     *
+     * @param url      the URL of the {@code maven-metadata.xml}
+     * @param snapshot whether the metadata belongs to a {@code -SNAPSHOT} version
+     * @return the metadata, or {@code null} if the repository does not have it
+     * @throws IOException if the metadata cannot be fetched and nothing is cached
+     */
+    public byte @Nullable [] get(@NotNull URL url, boolean snapshot) throws IOException {
+        return snapshot ? get(url, snapshotTtlMillis, missingSnapshotTtlMillis) : get(url, releaseTtlMillis, missingReleaseTtlMillis);
+    }
+
+    /**
+     * Returns the metadata at the given URL, served from the cache while it is younger than the given time to live.
+     * Used for metadata with an update policy of its own, like the artifact level metadata of dynamic versions.
+     *
+     * @param url              the URL of the {@code maven-metadata.xml}
+     * @param ttlMillis        how long existing metadata is served without revalidation, {@code 0} to always revalidate
+     * @param missingTtlMillis how long missing metadata is remembered
+     * @return the metadata, or {@code null} if the repository does not have it
+     * @throws IOException if the metadata cannot be fetched and nothing is cached
+     */
+    public byte @Nullable [] get(@NotNull URL url, long ttlMillis, long missingTtlMillis) throws IOException {
+        String key = url.toExternalForm();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = read(key);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (entry != null && now - entry.fetchedAt < (entry.body == null ? missingTtlMillis : ttlMillis)) {
+            return entry.body;
+        }
+
+        Entry fetched;
+        try {
+            fetched = fetch(url, entry, now);
+        } catch (IOException e) {
+            if (entry != null) {
+                logger.warning("Unable to revalidate " + url + ", using cached metadata: " + e);
+                return entry.body;
+            }
+            throw e;
+        }
+        entries.put(key, fetched);
+        write(key, fetched, fetched != entry && fetched.body != null);
+        return fetched.body;
+    }
+
+    /**
+     * Forgets every cached entry, in memory and on disk.
+     */
+    public void clear() {
+        entries.clear();
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.warning("Unable to delete " + file);
+                }
+            }
+        }
+    }
+
+    private @NotNull Entry fetch(@NotNull URL url, @Nullable Entry cached, long now) throws IOException {
+        URLConnection connection = url.openConnection();
+        settings.apply(connection);
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            if (cached != null && cached.body != null) {
+                if (cached.etag != null) {
+                    http.setRequestProperty("If-None-Match", cached.etag);
+                }
+                if (cached.lastModified > 0) {
+                    http.setIfModifiedSince(cached.lastModified);
+                }
+            }
+            try {
+                int status = http.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                    cached.fetchedAt = now;
+                    return cached;
+                }
+                if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+                    return new Entry(null, null, 0, now);
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Unexpected response " + status + " for " + url);
+                }
+                try (InputStream is = http.getInputStream()) {
+                    return new Entry(Bytes.readFully(is), http.getHeaderField("ETag"), http.getLastModified(), now);
+                }
+            } finally {
+                http.disconnect();
+            }
+        }
+
+        try (InputStream is = connection.getInputStream()) {
+            return new Entry(Bytes.readFully(is), null, connection.getLastModified(), now);
+        } catch (FileNotFoundException e) {
+            return new Entry(null, null, 0, now);
+        }
+    }
+
+    private @Nullable Entry read(@NotNull String key) {
+        String name = fileName(key);
+        File entryFile = new File(folder, name + ENTRY_SUFFIX);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+        try {
+            Properties properties = new Properties();
+            try (InputStream is = Files.newInputStream(entryFile.toPath())) {
+                properties.load(is);
+            }
+            if (!key.equals(properties.getProperty("url"))) {
+                return null;
+            }
+            byte[] body = null;
+            if (!Boolean.parseBoolean(properties.getProperty("missing"))) {
+                body = Files.readAllBytes(new File(folder, name + BODY_SUFFIX).toPath());
+            }
+            return new Entry(body, properties.getProperty("etag"),
+                    Long.parseLong(properties.getProperty("lastModified", "0")),
+                    Long.parseLong(properties.getProperty("fetchedAt", "0")));
+        } catch (IOException | NumberFormatException e) {
+            logger.warning("Ignoring unreadable metadata cache entry " + entryFile + ": " + e);
+            return null;
+        }
+    }
+
+    private void write(@NotNull String key, @NotNull Entry entry, boolean writeBody) {
+        if (!folder.exists() && !folder.mkdirs()) {
+            logger.warning("Unable to create metadata cache folder " + folder);
+            return;
+        }
+        String name = fileName(key);
+        try {
+            if (writeBody) {
+                File body = new File(folder, name + BODY_SUFFIX + ".tmp");
+                Files.write(body.toPath(), entry.body);
+                Files.move(body.toPath(), new File(folder, name + BODY_SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Properties properties = new Properties();
+            properties.setProperty("url", key);
+            properties.setProperty("missing", Boolean.toString(entry.body == null));
+            if (entry.etag != null) {
+                properties.setProperty("etag", entry.etag);
+            }
+            properties.setProperty("lastModified", Long.toString(entry.lastModified));
+            properties.setProperty("fetchedAt", Long.toString(entry.fetchedAt));
+            File entryFile = new File(folder, name + ENTRY_SUFFIX + ".tmp");
+            try (OutputStream os = Files.newOutputStream(entryFile.toPath())) {
+                properties.store(os, null);
+            }
+            Files.move(entryFile.toPath(), new File(folder, name + ENTRY_SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warning("Unable to persist metadata cache entry for " + key + ": " + e);
+        }
+    }
+
+    private static @NotNull String fileName(@NotNull String key) {
+        return Bytes.hex(Bytes.sha1().digest(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static final class Entry {
+        private final byte[] body;
+        private final String etag;
+        private final long lastModified;
+        private volatile long fetchedAt;
+
+        private Entry(byte[] body, String etag, long lastModified, long fetchedAt) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MetadataCache{" +
+                "folder=" + folder +
+                ", entries=" + entries.size() +
+                '}';
+    }
+}
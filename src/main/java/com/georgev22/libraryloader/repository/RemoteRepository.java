@@ -0,0 +1,315 @@
+package com.georgev22.libraryloader.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A remote Maven repository together with the latency and success rate observed for it.
+ *
+ * <p>Every repository has a circuit breaker. After a number of consecutive failures the circuit opens and
+ * no requests are routed to the repository. Once the open duration has passed the circuit is half-open and
+ * a single request probes the repository while the others skip it: a success closes the circuit, a failure opens
+ * it again.</p>
+ */
+public final class RemoteRepository {
+
+    /**
+     * Weight of the newest sample in the latency moving average.
+     */
+    private static final double ALPHA = 0.3D;
+
+    /**
+     * Default number of consecutive failures after which the circuit opens.
+     */
+    static final int DEFAULT_FAILURE_THRESHOLD = 3;
+
+    /**
+     * Default time after which an open circuit becomes half-open.
+     */
+    static final long DEFAULT_OPEN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Number of latency samples kept for percentiles.
+     */
+    private static final int SAMPLES = 64;
+
+    /**
+     * Minimum number of latency samples before percentiles are reported.
+     */
+    private static final int MIN_SAMPLES = 8;
+
+    /**
+     * The state of the circuit breaker of a repository.
+     */
+    public enum CircuitState {
+        /**
+         * Requests are routed to the repository.
+         */
+        CLOSED,
+        /**
+         * The repository failed repeatedly, no requests are routed to it.
+         */
+        OPEN,
+        /**
+         * The open duration has passed, a single request at a time probes the repository.
+         */
+        HALF_OPEN
+    }
+
+    private final String url;
+    private final int order;
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong lastFailureNanos = new AtomicLong();
+    /**
+     * The {@link System#nanoTime()} the running probe of a half-open circuit started at, {@code 0} if none is running.
+     */
+    private final AtomicLong probeNanos = new AtomicLong();
+    private volatile double latencyNanos = -1;
+
+    private final long[] samples = new long[SAMPLES];
+    private int sampleCount;
+
+    private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private volatile long openNanos = DEFAULT_OPEN_NANOS;
+
+    RemoteRepository(@NotNull String url, int order) {
+        this.url = normalize(url);
+        this.order = order;
+    }
+
+    /**
+     * Returns the URL of this repository, always ending with a slash.
+     *
+     * @return the repository URL
+     */
+    public @NotNull String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the position of this repository in the order it was declared.
+     *
+     * @return the declaration order
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Returns the exponentially weighted moving average of the request latency.
+     *
+     * @return the average latency in nanoseconds, or {@code -1} if no request succeeded yet
+     */
+    public long getLatencyNanos() {
+        return (long) latencyNanos;
+    }
+
+    /**
+     * Returns a percentile of the latency of the recent successful requests.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 1}
+     * @return the latency in nanoseconds, or {@code -1} if too few requests succeeded yet
+     */
+    public long getLatencyPercentileNanos(double percentile) {
+        long[] sorted;
+        synchronized (samples) {
+            if (sampleCount < MIN_SAMPLES) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, Math.min(sampleCount, SAMPLES));
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Returns the number of successful requests.
+     *
+     * @return the number of successes
+     */
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    /**
+     * Returns the number of failed requests, e.g. connection failures or server errors.
+     *
+     * @return the number of failures
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Returns the number of requests for files the repository does not have.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns whether a request to this repository was answered, i.e. whether a file was served or reported missing.
+     *
+     * @return {@code true} if the repository was requested before
+     */
+    public boolean isMeasured() {
+        return successes.sum() + misses.sum() > 0;
+    }
+
+    /**
+     * Returns the share of answered requests for which this repository had the file, smoothed so that a
+     * single miss does not rule a repository out.
+     *
+     * @return the hit rate between {@code 0} and {@code 1}, {@code 0.5} if nothing was requested yet
+     */
+    public double getHitRate() {
+        long successes = this.successes.sum();
+        return (successes + 1D) / (successes + misses.sum() + 2D);
+    }
+
+    /**
+     * Returns the expected time to get a file from this repository: the average latency of a successful
+     * request divided by the hit rate. A repository that is fast but rarely has the file ranks behind a
+     * slower repository that usually has it.
+     *
+     * @return the expected cost in nanoseconds, {@link Long#MAX_VALUE} if no request succeeded yet
+     */
+    public long getExpectedCostNanos() {
+        double latency = latencyNanos;
+        return latency < 0 ? Long.MAX_VALUE : (long) (latency / getHitRate());
+    }
+
+    /**
+     * Returns the share of requests that succeeded.
+     *
+     * @return the success rate between {@code 0} and {@code 1}, {@code 1} if nothing was requested yet
+     */
+    public double getSuccessRate() {
+        long successes = this.successes.sum();
+        long total = successes + this.failures.sum();
+        return total == 0 ? 1D : (double) successes / total;
+    }
+
+    /**
+     * Returns the state of the circuit breaker of this repository.
+     *
+     * @return the circuit state
+     */
+    public @NotNull CircuitState getCircuitState() {
+        if (consecutiveFailures.get() < failureThreshold) {
+            return CircuitState.CLOSED;
+        }
+        return System.nanoTime() - lastFailureNanos.get() > openNanos ? CircuitState.HALF_OPEN : CircuitState.OPEN;
+    }
+
+    /**
+     * Returns whether requests should be routed to this repository, i.e. whether its circuit is not open.
+     *
+     * @return {@code true} if the repository is healthy
+     */
+    public boolean isHealthy() {
+        return getCircuitState() != CircuitState.OPEN;
+    }
+
+    /**
+     * Acquires the permission to send a request to this repository. A closed circuit admits every request and an
+     * open circuit none. A half-open circuit admits a single probe until its outcome is recorded, or until it has run
+     * for longer than the open duration, e.g. because it was abandoned by a hedged request.
+     *
+     * @return {@code true} if the request may be sent
+     */
+    boolean tryAcquire() {
+        CircuitState state = getCircuitState();
+        if (state != CircuitState.HALF_OPEN) {
+            return state == CircuitState.CLOSED;
+        }
+        long now = System.nanoTime();
+        long probe = probeNanos.get();
+        return (probe == 0 || now - probe > openNanos) && probeNanos.compareAndSet(probe, now == 0 ? 1 : now);
+    }
+
+    void setCircuitBreaker(int failureThreshold, long openNanos) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+    }
+
+    /**
+     * Records a successful request.
+     *
+     * @param nanos the latency of the request
+     */
+    public void recordSuccess(long nanos) {
+        successes.increment();
+        consecutiveFailures.set(0);
+        probeNanos.set(0);
+        double current = latencyNanos;
+        latencyNanos = current < 0 ? nanos : current + ALPHA * (nanos - current);
+        synchronized (samples) {
+            samples[sampleCount++ % SAMPLES] = nanos;
+            if (sampleCount == 2 * SAMPLES) {
+                sampleCount = SAMPLES;
+            }
+        }
+    }
+
+    /**
+     * Records a request for a file the repository does not have.
+     * Misses lower the hit rate but are not failures of the repository.
+     */
+    public void recordMiss() {
+        misses.increment();
+        // the repository answered, so a probe of a half-open circuit succeeded
+        consecutiveFailures.set(0);
+        probeNanos.set(0);
+    }
+
+    /**
+     * Records a failed request, e.g. a connection failure or a server error.
+     * Missing artifacts are not failures of the repository, see {@link #recordMiss()}.
+     */
+    public void recordFailure() {
+        failures.increment();
+        consecutiveFailures.incrementAndGet();
+        lastFailureNanos.set(System.nanoTime());
+        probeNanos.set(0);
+    }
+
+    static @NotNull String normalize(@NotNull String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RemoteRepository)) return false;
+        return url.equals(((RemoteRepository) o).url);
+    }
+
+    @Override
+    public int hashCode() {
+        return url.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteRepository{" +
+                "url=" + url +
+                ", latencyMillis=" + TimeUnit.NANOSECONDS.toMillis(getLatencyNanos()) +
+                ", successRate=" + getSuccessRate() +
+                ", hitRate=" + getHitRate() +
+                ", circuit=" + getCircuitState() +
+                '}';
+    }
+}
@@ -0,0 +1,447 @@
+package com.georgev22.libraryloader.repository;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Sends requests to repositories with timeouts, retries, optional hedging, and the circuit breakers
+ * of the {@link RepositoryRouter}.
+ */
+public final class RepositoryConnector {
+
+    private final ConnectionSettings settings;
+    private final RepositoryRouter router;
+    private final Logger logger;
+
+    private volatile ExecutorService hedgeExecutor;
+
+    /**
+     * Creates a new connector.
+     *
+     * @param settings the connection settings
+     * @param router   the router whose repositories are updated with the request outcomes
+     * @param logger   the logger
+     */
+    public RepositoryConnector(@NotNull ConnectionSettings settings, @NotNull RepositoryRouter router, @NotNull Logger logger) {
+        this.settings = settings;
+        this.router = router;
+        this.logger = logger;
+    }
+
+    /**
+     * Builds the URL of a request for a repository.
+     */
+    @FunctionalInterface
+    public interface RequestTarget {
+
+        /**
+         * Returns the URL to request from a repository.
+         *
+         * @param repository the repository
+         * @return the URL
+         * @throws IOException if the URL cannot be determined
+         */
+        @NotNull URL url(@NotNull RemoteRepository repository) throws IOException;
+    }
+
+    /**
+     * Sends a request to the first candidate repository that has the requested file.
+     *
+     * @param method     the HTTP method, {@code GET} or {@code HEAD}
+     * @param dependency the dependency the request belongs to
+     * @param candidates the candidate repositories, best first
+     * @param target     builds the URL for a repository
+     * @return the response, which must be closed
+     * @throws FileNotFoundException if no candidate has the file
+     * @throws IOException           if every candidate that could have the file failed
+     */
+    public @NotNull Response request(@NotNull String method, @NotNull Dependency dependency, @NotNull List<RemoteRepository> candidates, @NotNull RequestTarget target) throws IOException {
+        if (candidates.isEmpty()) {
+            throw new IOException("No repository is available for " + dependency + ", every circuit breaker is open");
+        }
+        if (settings.isHedging() && candidates.size() > 1) {
+            return hedged(method, dependency, candidates, target);
+        }
+
+        Failures failures = new Failures();
+        for (RemoteRepository repository : candidates) {
+            if (!repository.tryAcquire()) {
+                // half-open and already probed by another request
+                continue;
+            }
+            try {
+                Response response = attempt(method, repository, target);
+                router.recordSuccess(repository, dependency, response.latencyNanos);
+                return response;
+            } catch (FileNotFoundException e) {
+                router.recordMiss(repository);
+                failures.notFound(e);
+            } catch (IOException e) {
+                // a timeout is a failure of the repository, only an interrupt aborts the request
+                if (e instanceof InterruptedIOException && Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                router.recordFailure(repository);
+                logger.warning("Request for " + dependency + " to " + repository.getUrl() + " failed: " + e);
+                failures.error(e);
+            }
+        }
+        throw failures.get(dependency);
+    }
+
+    /**
+     * Opens a single URL with timeouts and retries, without routing.
+     *
+     * @param url the URL
+     * @return the input stream of the response
+     * @throws IOException if the request fails
+     */
+    public @NotNull InputStream openStream(@NotNull URL url) throws IOException {
+        IOException failure = null;
+        for (int attempt = 0; attempt <= settings.getMaxRetries(); attempt++) {
+            backoff(attempt);
+            URLConnection connection = url.openConnection();
+            settings.apply(connection);
+            try {
+                if (connection instanceof HttpURLConnection) {
+                    HttpURLConnection http = (HttpURLConnection) connection;
+                    int status = http.getResponseCode();
+                    if (status < 200 || status >= 300) {
+                        http.disconnect();
+                        if (isTransient(status)) {
+                            failure = new IOException("HTTP " + status + " from " + url);
+                            continue;
+                        }
+                        throw new FileNotFoundException(url + " (HTTP " + status + ")");
+                    }
+                }
+                return connection.getInputStream();
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (InterruptedIOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                failure = e;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    private @NotNull Response attempt(@NotNull String method, @NotNull RemoteRepository repository, @NotNull RequestTarget target) throws IOException {
+        URL url = target.url(repository);
+        IOException failure = null;
+        for (int attempt = 0; attempt <= settings.getMaxRetries(); attempt++) {
+            backoff(attempt);
+            long start = System.nanoTime();
+            URLConnection connection = url.openConnection();
+            settings.apply(connection);
+            try {
+                InputStream stream = null;
+                if (connection instanceof HttpURLConnection) {
+                    HttpURLConnection http = (HttpURLConnection) connection;
+                    http.setRequestMethod(method);
+                    int status = http.getResponseCode();
+                    if (status < 200 || status >= 300) {
+                        http.disconnect();
+                        if (isTransient(status)) {
+                            failure = new IOException("HTTP " + status + " from " + url);
+                            continue;
+                        }
+                        throw new FileNotFoundException(url + " (HTTP " + status + ")");
+                    }
+                    if (!"HEAD".equals(method)) {
+                        stream = http.getInputStream();
+                    }
+                } else {
+                    stream = connection.getInputStream();
+                    if ("HEAD".equals(method)) {
+                        stream.close();
+                        stream = null;
+                    }
+                }
+                return new Response(repository, url, connection, stream, System.nanoTime() - start);
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (InterruptedIOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                failure = e;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    private @NotNull Response hedged(@NotNull String method, @NotNull Dependency dependency, @NotNull List<RemoteRepository> candidates, @NotNull RequestTarget target) throws IOException {
+        CompletionService<Response> completion = new ExecutorCompletionService<>(hedgeExecutor());
+        Map<Future<Response>, RemoteRepository> running = new HashMap<>();
+        AtomicBoolean settled = new AtomicBoolean();
+        Failures failures = new Failures();
+
+        int next = admitted(candidates, 0);
+        if (next == candidates.size()) {
+            throw failures.get(dependency);
+        }
+        RemoteRepository latest = candidates.get(next++);
+        running.put(completion.submit(() -> settle(attempt(method, latest, target), settled)), latest);
+        RemoteRepository hedgeTarget = latest;
+        try {
+            while (!running.isEmpty()) {
+                Future<Response> done;
+                if (next < candidates.size()) {
+                    done = completion.poll(settings.hedgeDelayNanos(hedgeTarget), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        next = admitted(candidates, next);
+                        if (next < candidates.size()) {
+                            RemoteRepository hedge = candidates.get(next++);
+                            logger.fine("Hedging request for " + dependency + " to " + hedge.getUrl());
+                            running.put(completion.submit(() -> settle(attempt(method, hedge, target), settled)), hedge);
+                            hedgeTarget = hedge;
+                        }
+                        continue;
+                    }
+                } else {
+                    done = completion.take();
+                }
+
+                RemoteRepository repository = running.remove(done);
+                try {
+                    Response response = done.get();
+                    if (response != null) {
+                        router.recordSuccess(repository, dependency, response.latencyNanos);
+                        return response;
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof FileNotFoundException) {
+                        router.recordMiss(repository);
+                        failures.notFound((FileNotFoundException) cause);
+                    } else {
+                        router.recordFailure(repository);
+                        logger.warning("Request for " + dependency + " to " + repository.getUrl() + " failed: " + cause);
+                        failures.error(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+                    }
+                    if (running.isEmpty()) {
+                        next = admitted(candidates, next);
+                        if (next < candidates.size()) {
+                            RemoteRepository fallback = candidates.get(next++);
+                            running.put(completion.submit(() -> settle(attempt(method, fallback, target), settled)), fallback);
+                            hedgeTarget = fallback;
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + dependency);
+        } finally {
+            // the losing requests close their own responses once they complete
+            settled.set(true);
+        }
+        throw failures.get(dependency);
+    }
+
+    /**
+     * Returns the index of the first candidate from {@code next} on that admits a request.
+     */
+    private static int admitted(@NotNull List<RemoteRepository> candidates, int next) {
+        while (next < candidates.size() && !candidates.get(next).tryAcquire()) {
+            next++;
+        }
+        return next;
+    }
+
+    private static @Nullable Response settle(@NotNull Response response, @NotNull AtomicBoolean settled) {
+        if (settled.compareAndSet(false, true)) {
+            return response;
+        }
+        response.close();
+        return null;
+    }
+
+    private void backoff(int attempt) throws InterruptedIOException {
+        if (attempt == 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(settings.backoffMillis(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off");
+        }
+    }
+
+    private static boolean isTransient(int status) {
+        return status == 408 || status == 429 || status >= 500;
+    }
+
+    private @NotNull ExecutorService hedgeExecutor() {
+        ExecutorService executor = hedgeExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = hedgeExecutor;
+                if (executor == null) {
+                    AtomicInteger threads = new AtomicInteger();
+                    executor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "LibraryLoader-hedge-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    hedgeExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Stops the threads used for hedged requests.
+     */
+    public void shutdown() {
+        ExecutorService executor = hedgeExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+            hedgeExecutor = null;
+        }
+    }
+
+    /**
+     * A successful response of a repository.
+     */
+    public static final class Response implements Closeable {
+
+        private final RemoteRepository repository;
+        private final URL url;
+        private final URLConnection connection;
+        private final InputStream stream;
+        private final long latencyNanos;
+
+        private Response(RemoteRepository repository, URL url, URLConnection connection, InputStream stream, long latencyNanos) {
+            this.repository = repository;
+            this.url = url;
+            this.connection = connection;
+            this.stream = stream;
+            this.latencyNanos = latencyNanos;
+        }
+
+        /**
+         * Returns the repository that answered the request.
+         *
+         * @return the repository
+         */
+        public @NotNull RemoteRepository getRepository() {
+            return repository;
+        }
+
+        /**
+         * Returns the URL that was requested.
+         *
+         * @return the URL
+         */
+        public @NotNull URL getUrl() {
+            return url;
+        }
+
+        /**
+         * Returns the connection of the request, e.g. to read its headers.
+         *
+         * @return the connection
+         */
+        public @NotNull URLConnection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Returns the body of the response.
+         *
+         * @return the body
+         * @throws IllegalStateException if the response of a {@code HEAD} request has no body
+         */
+        public @NotNull InputStream getInputStream() {
+            if (stream == null) {
+                throw new IllegalStateException("The response has no body");
+            }
+            return stream;
+        }
+
+        /**
+         * Returns the time until the response headers were received.
+         *
+         * @return the latency in nanoseconds
+         */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        @Override
+        public void close() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static final class Failures {
+        private IOException error;
+        private FileNotFoundException notFound;
+
+        private void notFound(FileNotFoundException e) {
+            if (notFound == null) {
+                notFound = e;
+            }
+        }
+
+        private void error(IOException e) {
+            if (error == null) {
+                error = e;
+            } else {
+                error.addSuppressed(e);
+            }
+        }
+
+        private IOException get(Dependency dependency) {
+            if (error == null && notFound == null) {
+                return new IOException("No repository is available for " + dependency + ", every half-open repository is being probed");
+            }
+            return error != null ? error : notFound;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryConnector{" +
+                "settings=" + settings +
+                '}';
+    }
+}
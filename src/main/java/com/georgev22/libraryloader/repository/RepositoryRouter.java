@@ -0,0 +1,209 @@
+package com.georgev22.libraryloader.repository;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.UnmodifiableView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes dependency requests over an ordered set of repositories.
+ *
+ * <p>The repository declared by a dependency is always a candidate, followed by the repositories of the loader.
+ * Repositories can be replaced by mirrors. Candidates are ordered by their expected cost, the latency of successful
+ * requests divided by the share of requests the repository had the file for, so that a repository answering quickly
+ * with "not found" does not outrank the repository that hosts the artifacts. Repositories with an open
+ * circuit breaker are skipped, and the repository that last served a {@code groupId} is tried first for every
+ * later dependency of that group.</p>
+ */
+public final class RepositoryRouter {
+
+    /**
+     * Mirror key that matches every repository.
+     */
+    public static final String ALL = "*";
+
+    private final List<RemoteRepository> repositories = new CopyOnWriteArrayList<>();
+    private final Map<String, RemoteRepository> known = new ConcurrentHashMap<>();
+    private final Map<String, String> mirrors = new ConcurrentHashMap<>();
+    private final Map<String, RemoteRepository> groupRepositories = new ConcurrentHashMap<>();
+
+    private volatile int failureThreshold = RemoteRepository.DEFAULT_FAILURE_THRESHOLD;
+    private volatile long openNanos = RemoteRepository.DEFAULT_OPEN_NANOS;
+
+    /**
+     * Adds a repository to the end of the ordered set of repositories.
+     *
+     * @param url the base URL of the repository
+     * @return the repository
+     */
+    public @NotNull RemoteRepository addRepository(@NotNull String url) {
+        RemoteRepository repository = repository(url);
+        if (!repositories.contains(repository)) {
+            repositories.add(repository);
+        }
+        return repository;
+    }
+
+    /**
+     * Registers a mirror. Requests for any of the mirrored repositories are sent to the mirror instead.
+     *
+     * @param mirrorUrl the base URL of the mirror
+     * @param mirrorOf  the base URLs of the mirrored repositories, or {@link #ALL} to mirror every repository
+     */
+    public void addMirror(@NotNull String mirrorUrl, @NotNull String... mirrorOf) {
+        for (String url : mirrorOf) {
+            mirrors.put(ALL.equals(url) ? ALL : RemoteRepository.normalize(url), RemoteRepository.normalize(mirrorUrl));
+        }
+    }
+
+    /**
+     * Configures the circuit breaker of every repository.
+     *
+     * @param failureThreshold the number of consecutive failures after which the circuit opens
+     * @param openDuration     the time after which an open circuit lets a probe request through
+     * @param unit             the unit of {@code openDuration}
+     */
+    public void setCircuitBreaker(int failureThreshold, long openDuration, @NotNull TimeUnit unit) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = unit.toNanos(openDuration);
+        for (RemoteRepository repository : known.values()) {
+            repository.setCircuitBreaker(this.failureThreshold, this.openNanos);
+        }
+    }
+
+    /**
+     * Returns the repositories of the loader, in declaration order.
+     *
+     * @return the repositories
+     */
+    public @NotNull @UnmodifiableView List<RemoteRepository> getRepositories() {
+        return Collections.unmodifiableList(repositories);
+    }
+
+    /**
+     * Returns every repository a request was routed to, including declared and mirror repositories.
+     *
+     * @return the known repositories
+     */
+    public @NotNull Collection<RemoteRepository> getKnownRepositories() {
+        return Collections.unmodifiableCollection(known.values());
+    }
+
+    /**
+     * Returns the repositories to try for a dependency, best candidate first.
+     * Repositories whose circuit breaker is open are not candidates.
+     *
+     * @param dependency the dependency
+     * @return the candidate repositories, empty if every circuit is open
+     */
+    public @NotNull List<RemoteRepository> candidates(@NotNull Dependency dependency) {
+        Set<RemoteRepository> declared = new LinkedHashSet<>();
+        declared.add(mirrored(dependency.repoUrl));
+        for (RemoteRepository repository : repositories) {
+            declared.add(mirrored(repository.getUrl()));
+        }
+
+        List<RemoteRepository> healthy = new ArrayList<>();
+        for (RemoteRepository repository : declared) {
+            if (repository.isHealthy()) {
+                healthy.add(repository);
+            }
+        }
+        // unmeasured repositories sort first so that every repository gets measured once
+        healthy.sort(Comparator.comparing(RemoteRepository::isMeasured)
+                .thenComparingLong(RemoteRepository::getExpectedCostNanos)
+                .thenComparingInt(RemoteRepository::getOrder));
+
+        List<RemoteRepository> candidates = new ArrayList<>(declared.size());
+        RemoteRepository remembered = groupRepositories.get(dependency.groupId);
+        if (remembered != null && remembered.isHealthy() && declared.contains(remembered)) {
+            candidates.add(remembered);
+        }
+        for (RemoteRepository repository : healthy) {
+            if (!candidates.contains(repository)) {
+                candidates.add(repository);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Records that a repository served a dependency.
+     *
+     * @param repository the repository
+     * @param dependency the dependency
+     * @param nanos      the latency of the request
+     */
+    public void recordSuccess(@NotNull RemoteRepository repository, @NotNull Dependency dependency, long nanos) {
+        repository.recordSuccess(nanos);
+        groupRepositories.put(dependency.groupId, repository);
+    }
+
+    /**
+     * Records that a repository does not have a requested file.
+     *
+     * @param repository the repository
+     */
+    public void recordMiss(@NotNull RemoteRepository repository) {
+        repository.recordMiss();
+    }
+
+    /**
+     * Records that a request to a repository failed.
+     *
+     * @param repository the repository
+     */
+    public void recordFailure(@NotNull RemoteRepository repository) {
+        repository.recordFailure();
+    }
+
+    /**
+     * Returns the repository that last served a group.
+     *
+     * @param groupId the group id
+     * @return the repository, or {@code null} if no dependency of the group was served yet
+     */
+    public @Nullable RemoteRepository getRepository(@NotNull String groupId) {
+        return groupRepositories.get(groupId);
+    }
+
+    private @NotNull RemoteRepository mirrored(@NotNull String url) {
+        String normalized = RemoteRepository.normalize(url);
+        String mirror = mirrors.get(normalized);
+        if (mirror == null) {
+            mirror = mirrors.get(ALL);
+        }
+        return repository(mirror == null ? normalized : mirror);
+    }
+
+    private @NotNull RemoteRepository repository(@NotNull String url) {
+        return known.computeIfAbsent(RemoteRepository.normalize(url), key -> {
+            RemoteRepository repository = new RemoteRepository(key, known.size());
+            repository.setCircuitBreaker(failureThreshold, openNanos);
+            return repository;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryRouter{" +
+                "repositories=" + repositories +
+                ", mirrors=" + mirrors +
+                '}';
+    }
+}
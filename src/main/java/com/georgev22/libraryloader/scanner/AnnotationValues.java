@@ -0,0 +1,113 @@
+package com.georgev22.libraryloader.scanner;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An annotation instance backed by the values read from a class file. Attributes that are not in the class file
+ * return their default value, like the annotations returned by reflection.
+ */
+final class AnnotationValues implements InvocationHandler {
+
+    private final Class<? extends Annotation> type;
+    private final Map<String, Object> values;
+
+    private AnnotationValues(@NotNull Class<? extends Annotation> type, @NotNull Map<String, Object> values) {
+        this.type = type;
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+    }
+
+    /**
+     * Creates an annotation instance.
+     *
+     * @param type   the annotation type
+     * @param values the values of the attributes, by name
+     * @param <A>    the annotation type
+     * @return the annotation
+     */
+    static <A extends Annotation> @NotNull A create(@NotNull Class<A> type, @NotNull Map<String, Object> values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new AnnotationValues(type, values)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, @NotNull Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "annotationType":
+                return type;
+            case "equals":
+                return args != null && args.length == 1 && equalTo(proxy, args[0]);
+            case "hashCode":
+                return hash(proxy);
+            case "toString":
+                return toString(proxy);
+            default:
+                return value(method);
+        }
+    }
+
+    private @NotNull Object value(@NotNull Method method) {
+        Object value = values.get(method.getName());
+        if (value == null) {
+            value = method.getDefaultValue();
+        }
+        if (value != null && value.getClass().isArray() && Array.getLength(value) > 0) {
+            // like reflection, every call returns a new array
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        }
+        return Objects.requireNonNull(value, method.getName());
+    }
+
+    private boolean equalTo(@NotNull Object proxy, Object other) throws ReflectiveOperationException {
+        if (proxy == other) {
+            return true;
+        }
+        if (!type.isInstance(other)) {
+            return false;
+        }
+        for (Method method : type.getDeclaredMethods()) {
+            if (!Objects.deepEquals(value(method), method.invoke(other))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hash(@NotNull Object proxy) {
+        // the contract of Annotation#hashCode
+        int hash = 0;
+        for (Method method : type.getDeclaredMethods()) {
+            Object value = value(method);
+            int valueHash = value.getClass().isArray() ? Arrays.deepHashCode(new Object[]{value}) - 31 : value.hashCode();
+            hash += (127 * method.getName().hashCode()) ^ valueHash;
+        }
+        return hash;
+    }
+
+    private @NotNull String toString(@NotNull Object proxy) {
+        StringBuilder builder = new StringBuilder("@").append(type.getName()).append('(');
+        boolean first = true;
+        for (Method method : type.getDeclaredMethods()) {
+            if (!first) {
+                builder.append(", ");
+            }
+            first = false;
+            Object value = value(method);
+            builder.append(method.getName()).append('=')
+                    .append(value.getClass().isArray() ? Arrays.deepToString(new Object[]{value}).replaceAll("^\\[|]$", "") : value);
+        }
+        return builder.append(')').toString();
+    }
+}
@@ -0,0 +1,378 @@
+package com.georgev22.libraryloader.scanner;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.annotations.MavenLibraries;
+import com.georgev22.libraryloader.annotations.MavenLibrary;
+import com.georgev22.libraryloader.annotations.Relocate;
+import com.georgev22.libraryloader.annotations.Repository;
+import com.georgev22.libraryloader.io.Bytes;
+import com.georgev22.libraryloader.version.MavenVersion;
+import com.georgev22.libraryloader.version.VersionRange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads {@link MavenLibrary} declarations from class files without loading the classes.
+ *
+ * <p>Classes, directories and whole jars can be scanned, e.g. every module of an application at boot, and the
+ * declarations of all scanned classes are merged into one list, with every library once, that
+ * {@link com.georgev22.libraryloader.LibraryLoader#loadAll(LibraryScanner, boolean)} loads in one batch.
+ * Declarations of the same library, i.e. the same {@code groupId:artifactId:classifier} and relocations, are merged
+ * whatever their versions and repositories: the newest version wins, their repositories are combined, and their entry
+ * points are combined unless one of them keeps the whole library. Two different version ranges or dynamic versions of
+ * one library cannot be ordered and are rejected.</p>
+ *
+ * <p>Class files are only parsed if their constant pool refers to the annotations, so scanning a jar mostly costs
+ * reading it.</p>
+ */
+public final class LibraryScanner {
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final String LIBRARY = Type.getDescriptor(MavenLibrary.class);
+    private static final String LIBRARIES = Type.getDescriptor(MavenLibraries.class);
+    private static final byte[] LIBRARY_BYTES = LIBRARY.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LIBRARIES_BYTES = LIBRARIES.getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, List<MavenLibrary>> declarations = new LinkedHashMap<>();
+    private final Map<String, MavenLibrary> libraries = new LinkedHashMap<>();
+    private int scannedClasses = 0;
+
+    /**
+     * Scans a jar, a directory of class files or a single class file.
+     *
+     * @param file the jar, directory or class file
+     * @throws IOException if the file cannot be read
+     */
+    public void scan(@NotNull File file) throws IOException {
+        if (file.isDirectory()) {
+            try (Stream<Path> paths = Files.walk(file.toPath())) {
+                for (Path path : (Iterable<Path>) paths.filter(path -> path.getFileName().toString().endsWith(".class"))::iterator) {
+                    scan(Files.readAllBytes(path));
+                }
+            }
+        } else if (file.getName().endsWith(".class")) {
+            scan(Files.readAllBytes(file.toPath()));
+        } else {
+            try (ZipFile zip = new ZipFile(file)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    // multi-release variants declare the same annotations as their base class
+                    if (entry.isDirectory() || !name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+                        continue;
+                    }
+                    try (InputStream is = zip.getInputStream(entry)) {
+                        scan(is);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans a class file.
+     *
+     * @param classFile the class file
+     * @return the libraries declared by the class
+     * @throws IOException if the stream cannot be read
+     */
+    public @NotNull @Unmodifiable List<MavenLibrary> scan(@NotNull InputStream classFile) throws IOException {
+        return scan(Bytes.readFully(classFile));
+    }
+
+    /**
+     * Scans a class file.
+     *
+     * @param classFile the class file
+     * @return the libraries declared by the class
+     * @throws IllegalArgumentException if the class declares a library with invalid coordinates
+     */
+    public synchronized @NotNull @Unmodifiable List<MavenLibrary> scan(byte @NotNull [] classFile) {
+        scannedClasses++;
+        ClassReader reader;
+        try {
+            reader = new ClassReader(classFile);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            // not a class file
+            return Collections.emptyList();
+        }
+        if (!refersToAnnotations(reader, classFile)) {
+            return Collections.emptyList();
+        }
+
+        List<MavenLibrary> declared = new ArrayList<>();
+        String[] className = new String[1];
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                className[0] = name.replace('/', '.');
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                if (LIBRARY.equals(descriptor)) {
+                    return new Collector<>(MavenLibrary.class, declared::add);
+                }
+                if (LIBRARIES.equals(descriptor)) {
+                    return new Collector<>(MavenLibraries.class, libraries -> declared.addAll(Arrays.asList(libraries.value())));
+                }
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        if (declared.isEmpty()) {
+            return Collections.emptyList();
+        }
+        for (MavenLibrary lib : declared) {
+            String key;
+            try {
+                key = key(lib);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid library declaration of " + className[0] + ": " + e.getMessage(), e);
+            }
+            MavenLibrary known = libraries.get(key);
+            if (known == null) {
+                libraries.put(key, lib);
+            } else if (newest(known, lib, className[0]) == known) {
+                libraries.put(key, merge(known, lib));
+            } else {
+                libraries.put(key, merge(lib, known));
+            }
+        }
+        List<MavenLibrary> result = Collections.unmodifiableList(declared);
+        declarations.put(className[0], result);
+        return result;
+    }
+
+    /**
+     * Returns the libraries declared by the scanned classes, every library once, in declaration order.
+     *
+     * @return the merged declarations
+     */
+    public synchronized @NotNull @Unmodifiable List<MavenLibrary> getLibraries() {
+        return Collections.unmodifiableList(new ArrayList<>(libraries.values()));
+    }
+
+    /**
+     * Returns the libraries declared by each scanned class that declares any.
+     *
+     * @return the declarations by binary class name
+     */
+    public synchronized @NotNull @Unmodifiable Map<String, List<MavenLibrary>> getDeclarations() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(declarations));
+    }
+
+    /**
+     * Returns the number of class files scanned.
+     *
+     * @return the number of scanned classes
+     */
+    public synchronized int getScannedClasses() {
+        return scannedClasses;
+    }
+
+    private static boolean refersToAnnotations(@NotNull ClassReader reader, byte @NotNull [] bytes) {
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0 || bytes[offset - 1] != CONSTANT_UTF8) {
+                continue;
+            }
+            int length = ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+            if (matches(bytes, offset + 2, length, LIBRARY_BYTES) || matches(bytes, offset + 2, length, LIBRARIES_BYTES)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(byte @NotNull [] bytes, int offset, int length, byte @NotNull [] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the identity of a declaration: the library without its version and repository, and its relocations,
+     * since differently relocated copies of a library are different jars.
+     */
+    private static @NotNull String key(@NotNull MavenLibrary lib) {
+        Dependency d = Dependency.fromAnnotation(lib);
+        StringBuilder key = new StringBuilder(d.groupId).append(':').append(d.artifactId).append(':');
+        if (d.classifier != null) {
+            key.append(d.classifier);
+        }
+        for (Relocate relocate : lib.relocations()) {
+            key.append(' ').append(relocate.pattern()).append('>').append(relocate.relocatedPattern());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the declaration with the newer version of two declarations of one library.
+     *
+     * @throws IllegalArgumentException if the versions differ and one of them is a version range or dynamic version
+     */
+    private static @NotNull MavenLibrary newest(@NotNull MavenLibrary first, @NotNull MavenLibrary second, @NotNull String className) {
+        Dependency firstDependency = Dependency.fromAnnotation(first);
+        String firstVersion = firstDependency.version;
+        String secondVersion = Dependency.fromAnnotation(second).version;
+        if (firstVersion.equals(secondVersion)) {
+            return first;
+        }
+        if (VersionRange.isDynamic(firstVersion) || VersionRange.isDynamic(secondVersion)) {
+            throw new IllegalArgumentException("Conflicting versions " + firstVersion + " and " + secondVersion + " of "
+                    + firstDependency.groupId + ":" + firstDependency.artifactId + ", declared again by " + className);
+        }
+        return MavenVersion.parse(secondVersion).compareTo(MavenVersion.parse(firstVersion)) > 0 ? second : first;
+    }
+
+    /**
+     * Merges two declarations of one library, keeping the version, the repository and the other values of the first.
+     */
+    private static @NotNull MavenLibrary merge(@NotNull MavenLibrary first, @NotNull MavenLibrary second) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Method method : MavenLibrary.class.getDeclaredMethods()) {
+            try {
+                values.put(method.getName(), method.invoke(first));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        Map<String, Repository> repositories = new LinkedHashMap<>();
+        for (Repository repository : first.repositories()) {
+            repositories.putIfAbsent(repository.value(), repository);
+        }
+        if (!second.repo().value().equals(first.repo().value())) {
+            repositories.putIfAbsent(second.repo().value(), second.repo());
+        }
+        for (Repository repository : second.repositories()) {
+            repositories.putIfAbsent(repository.value(), repository);
+        }
+        values.put("repositories", repositories.values().toArray(new Repository[0]));
+
+        if (first.keep().length == 0 || second.keep().length == 0) {
+            // one of them uses the whole library
+            values.put("keep", new String[0]);
+        } else {
+            Set<String> keep = new LinkedHashSet<>(Arrays.asList(first.keep()));
+            keep.addAll(Arrays.asList(second.keep()));
+            values.put("keep", keep.toArray(new String[0]));
+        }
+        return AnnotationValues.create(MavenLibrary.class, values);
+    }
+
+    /**
+     * Collects the values of an annotation, creating the annotation instance when its end is visited.
+     */
+    private static final class Collector<A extends Annotation> extends AnnotationVisitor {
+        private final Class<A> type;
+        private final Consumer<A> consumer;
+        private final Map<String, Object> values = new LinkedHashMap<>();
+
+        private Collector(@NotNull Class<A> type, @NotNull Consumer<A> consumer) {
+            super(Opcodes.ASM9);
+            this.type = type;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            values.put(name, value);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+            Class<?> attributeType = attributeType(name);
+            if (attributeType == null || !attributeType.isAnnotation()) {
+                return null;
+            }
+            return new Collector<>(attributeType.asSubclass(Annotation.class), annotation -> values.put(name, annotation));
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            Class<?> attributeType = attributeType(name);
+            if (attributeType == null || !attributeType.isArray()) {
+                return null;
+            }
+            Class<?> componentType = attributeType.getComponentType();
+            List<Object> elements = new ArrayList<>();
+            return new AnnotationVisitor(Opcodes.ASM9) {
+                @Override
+                public void visit(String elementName, Object value) {
+                    elements.add(value);
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String elementName, String descriptor) {
+                    if (!componentType.isAnnotation()) {
+                        return null;
+                    }
+                    return new Collector<>(componentType.asSubclass(Annotation.class), elements::add);
+                }
+
+                @Override
+                public void visitEnd() {
+                    Object array = Array.newInstance(componentType, elements.size());
+                    for (int i = 0; i < elements.size(); i++) {
+                        Array.set(array, i, elements.get(i));
+                    }
+                    values.put(name, array);
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            consumer.accept(AnnotationValues.create(type, values));
+        }
+
+        /**
+         * Returns the type of an attribute, or {@code null} if the annotation of this version has no such attribute.
+         */
+        private @Nullable Class<?> attributeType(@NotNull String name) {
+            try {
+                return type.getMethod(name).getReturnType();
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+}
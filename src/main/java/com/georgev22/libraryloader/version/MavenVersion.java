@@ -0,0 +1,211 @@
+package com.georgev22.libraryloader.version;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A version ordered the way Maven orders versions.
+ *
+ * <p>A version is split into numbers and qualifiers at dots, hyphens and transitions between digits and letters.
+ * Numbers are compared numerically, and missing trailing parts count as {@code 0}, so {@code 1}, {@code 1.0} and
+ * {@code 1.0.0} are equal. Well-known qualifiers are ordered
+ * {@code alpha < beta < milestone < rc < snapshot < (release) < sp}, where {@code a}, {@code b}, {@code m} and
+ * {@code cr} are aliases and {@code ga}, {@code final} and {@code release} are the release itself. Other qualifiers
+ * come after {@code sp}, in alphabetical order, and a number other than {@code 0} is newer than any qualifier.</p>
+ */
+public final class MavenVersion implements Comparable<MavenVersion> {
+
+    private static final List<String> QUALIFIERS = Arrays.asList("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+    private static final int RELEASE = QUALIFIERS.indexOf("");
+
+    private final String value;
+    private final List<Item> items;
+
+    private MavenVersion(@NotNull String value, @NotNull List<Item> items) {
+        this.value = value;
+        this.items = items;
+    }
+
+    /**
+     * Parses a version. Every string is a valid version.
+     *
+     * @param version the version, e.g. {@code 1.2.0-rc1}
+     * @return the version
+     */
+    public static @NotNull MavenVersion parse(@NotNull String version) {
+        List<Item> items = new ArrayList<>();
+        String normalized = version.trim().toLowerCase(Locale.ROOT);
+        int start = 0;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean end = i == normalized.length();
+            char c = end ? 0 : normalized.charAt(i);
+            if (end || c == '.' || c == '-' || c == '_') {
+                add(items, normalized.substring(start, i), false);
+                start = i + 1;
+            } else if (i > start && Character.isDigit(c) != Character.isDigit(normalized.charAt(i - 1))) {
+                // 1.0rc1 is 1.0-rc-1, and a letter directly followed by a number is an alias, e.g. a1 is alpha-1
+                add(items, normalized.substring(start, i), Character.isDigit(c));
+                start = i;
+            }
+        }
+        // trailing zeros and release qualifiers do not change the version
+        int size = items.size();
+        while (size > 0 && items.get(size - 1).isNull()) {
+            size--;
+        }
+        return new MavenVersion(version, Collections.unmodifiableList(new ArrayList<>(items.subList(0, size))));
+    }
+
+    private static void add(@NotNull List<Item> items, @NotNull String token, boolean followedByDigit) {
+        if (token.isEmpty()) {
+            items.add(Item.ZERO);
+        } else if (Character.isDigit(token.charAt(0))) {
+            items.add(Item.number(token));
+        } else {
+            items.add(Item.qualifier(token, followedByDigit));
+        }
+    }
+
+    /**
+     * Returns whether this is a {@code -SNAPSHOT} version.
+     *
+     * @return {@code true} for snapshots
+     */
+    public boolean isSnapshot() {
+        return value.endsWith("-SNAPSHOT");
+    }
+
+    @Override
+    public int compareTo(@NotNull MavenVersion other) {
+        int length = Math.max(items.size(), other.items.size());
+        for (int i = 0; i < length; i++) {
+            Item left = i < items.size() ? items.get(i) : Item.ZERO;
+            Item right = i < other.items.size() ? other.items.get(i) : Item.ZERO;
+            int result = left.compareTo(right);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MavenVersion)) return false;
+        return items.equals(((MavenVersion) o).items);
+    }
+
+    @Override
+    public int hashCode() {
+        return items.hashCode();
+    }
+
+    /**
+     * Returns the version as parsed.
+     *
+     * @return the version
+     */
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    /**
+     * A number or a qualifier. Numbers are kept as strings without leading zeros, so they can be of any size.
+     */
+    private static final class Item implements Comparable<Item> {
+        private static final Item ZERO = new Item(true, "0", RELEASE);
+
+        private final boolean number;
+        private final String value;
+        private final int rank;
+
+        private Item(boolean number, @NotNull String value, int rank) {
+            this.number = number;
+            this.value = value;
+            this.rank = rank;
+        }
+
+        private static @NotNull Item number(@NotNull String token) {
+            int zeros = 0;
+            while (zeros < token.length() - 1 && token.charAt(zeros) == '0') {
+                zeros++;
+            }
+            return new Item(true, token.substring(zeros), RELEASE);
+        }
+
+        private static @NotNull Item qualifier(@NotNull String token, boolean followedByDigit) {
+            String qualifier = token;
+            if (followedByDigit && token.length() == 1) {
+                switch (token) {
+                    case "a":
+                        qualifier = "alpha";
+                        break;
+                    case "b":
+                        qualifier = "beta";
+                        break;
+                    case "m":
+                        qualifier = "milestone";
+                        break;
+                    default:
+                        break;
+                }
+            }
+            switch (qualifier) {
+                case "cr":
+                    qualifier = "rc";
+                    break;
+                case "ga":
+                case "final":
+                case "release":
+                    qualifier = "";
+                    break;
+                default:
+                    break;
+            }
+            int rank = QUALIFIERS.indexOf(qualifier);
+            return new Item(false, qualifier, rank < 0 ? QUALIFIERS.size() : rank);
+        }
+
+        private boolean isNull() {
+            return number ? "0".equals(value) : rank == RELEASE;
+        }
+
+        @Override
+        public int compareTo(@NotNull Item other) {
+            if (number && other.number) {
+                return value.length() != other.value.length() ? Integer.compare(value.length(), other.value.length()) : value.compareTo(other.value);
+            }
+            if (number != other.number) {
+                // a number is newer than a qualifier, except 0, which is the release itself
+                Item numberItem = number ? this : other;
+                Item qualifierItem = number ? other : this;
+                int result = numberItem.isNull() ? Integer.compare(RELEASE, qualifierItem.rank) : 1;
+                return number ? result : -result;
+            }
+            if (rank != other.rank) {
+                return Integer.compare(rank, other.rank);
+            }
+            return value.compareTo(other.value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Item)) return false;
+            Item item = (Item) o;
+            return compareTo(item) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return isNull() ? 0 : value.hashCode();
+        }
+    }
+}
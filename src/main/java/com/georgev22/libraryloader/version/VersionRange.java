@@ -0,0 +1,216 @@
+package com.georgev22.libraryloader.version;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A version requirement of a dependency: an exact version, a Maven version range or one of the {@code LATEST} and
+ * {@code RELEASE} keywords.
+ *
+ * <p>Ranges use the Maven syntax: {@code [1.2,2.0)} is {@code 1.2 <= v < 2.0}, {@code [1.5,)} is {@code v >= 1.5},
+ * {@code (,1.0]} is {@code v <= 1.0}, {@code [1.0]} is exactly {@code 1.0}, and ranges can be combined, e.g.
+ * {@code (,1.0],[1.2,)}. Like Maven, a range only contains {@code -SNAPSHOT} versions if one of its bounds is a
+ * snapshot. {@code LATEST} is the newest version and {@code RELEASE} the newest version that is not a snapshot.</p>
+ */
+public final class VersionRange {
+
+    public static final String LATEST = "LATEST";
+    public static final String RELEASE = "RELEASE";
+
+    private final String spec;
+    private final @Nullable MavenVersion exact;
+    private final List<Restriction> restrictions;
+    private final boolean snapshots;
+
+    private VersionRange(@NotNull String spec, @Nullable MavenVersion exact, @NotNull List<Restriction> restrictions, boolean snapshots) {
+        this.spec = spec;
+        this.exact = exact;
+        this.restrictions = restrictions;
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Returns whether a version of a dependency is dynamic, i.e. has to be resolved against the versions a repository
+     * has.
+     *
+     * @param version the version as declared
+     * @return {@code true} for ranges and the {@code LATEST} and {@code RELEASE} keywords
+     */
+    public static boolean isDynamic(@NotNull String version) {
+        String trimmed = version.trim();
+        return LATEST.equals(trimmed) || RELEASE.equals(trimmed) || trimmed.startsWith("[") || trimmed.startsWith("(");
+    }
+
+    /**
+     * Parses a version requirement.
+     *
+     * @param spec the version, range or keyword
+     * @return the requirement
+     * @throws IllegalArgumentException if the range is malformed
+     */
+    @Contract("_ -> new")
+    public static @NotNull VersionRange parse(@NotNull String spec) {
+        String trimmed = spec.trim();
+        if (LATEST.equals(trimmed)) {
+            return new VersionRange(trimmed, null, Collections.singletonList(Restriction.ANY), true);
+        }
+        if (RELEASE.equals(trimmed)) {
+            return new VersionRange(trimmed, null, Collections.singletonList(Restriction.ANY), false);
+        }
+        if (!isDynamic(trimmed)) {
+            return new VersionRange(trimmed, MavenVersion.parse(trimmed), Collections.emptyList(), true);
+        }
+
+        List<Restriction> restrictions = new ArrayList<>();
+        boolean snapshots = false;
+        String rest = trimmed;
+        while (!rest.isEmpty()) {
+            if (!rest.startsWith("[") && !rest.startsWith("(")) {
+                throw new IllegalArgumentException("Invalid version range " + spec + ", expected [ or ( at " + rest);
+            }
+            int close = indexOfClose(rest);
+            if (close < 0) {
+                throw new IllegalArgumentException("Invalid version range " + spec + ", unbalanced brackets");
+            }
+            Restriction restriction = Restriction.parse(rest.substring(0, close + 1), spec);
+            snapshots |= restriction.hasSnapshotBound();
+            restrictions.add(restriction);
+            rest = rest.substring(close + 1).trim();
+            if (rest.startsWith(",")) {
+                rest = rest.substring(1).trim();
+            }
+        }
+        return new VersionRange(trimmed, null, Collections.unmodifiableList(restrictions), snapshots);
+    }
+
+    private static int indexOfClose(@NotNull String range) {
+        for (int i = 1; i < range.length(); i++) {
+            char c = range.charAt(i);
+            if (c == ']' || c == ')') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether a version satisfies this requirement.
+     *
+     * @param version the version
+     * @return {@code true} if the version is allowed
+     */
+    public boolean contains(@NotNull String version) {
+        MavenVersion parsed = MavenVersion.parse(version);
+        if (exact != null) {
+            return exact.equals(parsed);
+        }
+        if (parsed.isSnapshot() && !snapshots) {
+            return false;
+        }
+        for (Restriction restriction : restrictions) {
+            if (restriction.contains(parsed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the newest version that satisfies this requirement.
+     *
+     * @param versions the available versions
+     * @return the newest allowed version, or {@code null} if none is allowed
+     */
+    public @Nullable String select(@NotNull Collection<String> versions) {
+        MavenVersion best = null;
+        for (String version : versions) {
+            if (!contains(version)) {
+                continue;
+            }
+            MavenVersion parsed = MavenVersion.parse(version);
+            if (best == null || parsed.compareTo(best) > 0) {
+                best = parsed;
+            }
+        }
+        return best == null ? null : best.toString();
+    }
+
+    /**
+     * Returns the requirement as declared.
+     *
+     * @return the version, range or keyword
+     */
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    /**
+     * One bracketed range. A missing bound is unbounded.
+     */
+    private static final class Restriction {
+        private static final Restriction ANY = new Restriction(null, false, null, false);
+
+        private final @Nullable MavenVersion lower;
+        private final boolean lowerInclusive;
+        private final @Nullable MavenVersion upper;
+        private final boolean upperInclusive;
+
+        private Restriction(@Nullable MavenVersion lower, boolean lowerInclusive, @Nullable MavenVersion upper, boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        private static @NotNull Restriction parse(@NotNull String range, @NotNull String spec) {
+            boolean lowerInclusive = range.charAt(0) == '[';
+            boolean upperInclusive = range.charAt(range.length() - 1) == ']';
+            String bounds = range.substring(1, range.length() - 1).trim();
+            int comma = bounds.indexOf(',');
+            if (comma < 0) {
+                // [1.0] is exactly 1.0
+                if (!lowerInclusive || !upperInclusive || bounds.isEmpty()) {
+                    throw new IllegalArgumentException("Invalid version range " + spec + ", a single version must be in []");
+                }
+                MavenVersion version = MavenVersion.parse(bounds);
+                return new Restriction(version, true, version, true);
+            }
+            String lower = bounds.substring(0, comma).trim();
+            String upper = bounds.substring(comma + 1).trim();
+            if (upper.contains(",")) {
+                throw new IllegalArgumentException("Invalid version range " + spec + ", too many bounds in " + range);
+            }
+            Restriction restriction = new Restriction(lower.isEmpty() ? null : MavenVersion.parse(lower), lowerInclusive,
+                    upper.isEmpty() ? null : MavenVersion.parse(upper), upperInclusive);
+            if (restriction.lower != null && restriction.upper != null && restriction.lower.compareTo(restriction.upper) > 0) {
+                throw new IllegalArgumentException("Invalid version range " + spec + ", the lower bound is above the upper bound");
+            }
+            return restriction;
+        }
+
+        private boolean contains(@NotNull MavenVersion version) {
+            if (lower != null) {
+                int result = version.compareTo(lower);
+                if (result < 0 || (result == 0 && !lowerInclusive)) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int result = version.compareTo(upper);
+                return result < 0 || (result == 0 && upperInclusive);
+            }
+            return true;
+        }
+
+        private boolean hasSnapshotBound() {
+            return (lower != null && lower.isSnapshot()) || (upper != null && upper.isSnapshot());
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.georgev22.libraryloader.version;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.repository.MetadataCache;
+import com.georgev22.libraryloader.repository.RemoteRepository;
+import com.georgev22.libraryloader.repository.RepositoryRouter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Resolves the dynamic versions of dependencies, see {@link VersionRange}, cache first.
+ *
+ * <p>A dynamic version is resolved without a request if the library folder already holds a matching version, or if
+ * a matching version was recorded by an earlier resolution. The newest of them is used and the repositories are
+ * asked for newer matching versions in the background: a newer version is recorded, and used from the next start
+ * on, so dynamic versions add no round trip to the startup path. Only a dynamic version that nothing local matches
+ * waits for the artifact level {@code maven-metadata.xml} of the repositories, which is cached like the other
+ * metadata, for the {@link #setUpdateInterval(long, TimeUnit) update interval}.</p>
+ *
+ * <p>Recorded versions are stored in {@value #VERSIONS} in the library folder.</p>
+ */
+public final class VersionResolver {
+
+    private static final String VERSIONS = ".versions.properties";
+
+    private final File libFolder;
+    private final MetadataCache metadataCache;
+    private final RepositoryRouter repositoryRouter;
+    private final Logger logger;
+    private final Set<String> refreshed = ConcurrentHashMap.newKeySet();
+    private final Properties recorded = new Properties();
+    private boolean loaded = false;
+
+    private volatile long updateIntervalMillis = TimeUnit.DAYS.toMillis(1);
+    private volatile long missingTtlMillis = TimeUnit.HOURS.toMillis(1);
+    private volatile boolean backgroundRefresh = true;
+    private volatile ExecutorService refreshExecutor;
+
+    /**
+     * Creates a version resolver.
+     *
+     * @param libFolder        the library folder
+     * @param metadataCache    the cache of the repository metadata
+     * @param repositoryRouter the repositories
+     * @param logger           the logger
+     */
+    public VersionResolver(@NotNull File libFolder, @NotNull MetadataCache metadataCache, @NotNull RepositoryRouter repositoryRouter, @NotNull Logger logger) {
+        this.libFolder = libFolder;
+        this.metadataCache = metadataCache;
+        this.repositoryRouter = repositoryRouter;
+        this.logger = logger;
+    }
+
+    /**
+     * Resolves the version of a dependency.
+     *
+     * @param d the dependency
+     * @return the version to load, the version of {@code d} itself if it is not dynamic
+     * @throws IOException if the version range is invalid, or nothing local matches and no repository has a
+     *                     matching version
+     */
+    public @NotNull String resolve(@NotNull Dependency d) throws IOException {
+        if (!VersionRange.isDynamic(d.version)) {
+            return d.version;
+        }
+        VersionRange range;
+        try {
+            range = VersionRange.parse(d.version);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        String key = key(d);
+
+        List<String> local = localVersions(d);
+        String recordedVersion = getRecorded(key);
+        if (recordedVersion != null) {
+            local.add(recordedVersion);
+        }
+        String cached = range.select(local);
+        if (cached != null) {
+            logger.info(String.format("Resolved %s:%s:%s to %s without a lookup", d.groupId, d.artifactId, d.version, cached));
+            refreshLater(d, range, key, cached);
+            return cached;
+        }
+
+        String resolved = lookup(d, range);
+        record(key, resolved);
+        refreshed.add(key);
+        logger.info(String.format("Resolved %s:%s:%s to %s", d.groupId, d.artifactId, d.version, resolved));
+        return resolved;
+    }
+
+    /**
+     * Returns the version recorded for a dynamic version of a library.
+     *
+     * @param d the dependency with the dynamic version
+     * @return the recorded version, or {@code null} if none is recorded
+     */
+    public @Nullable String getRecorded(@NotNull Dependency d) {
+        return getRecorded(key(d));
+    }
+
+    /**
+     * Returns the versions of a library in the library folder.
+     *
+     * @param d the dependency, whose version is ignored
+     * @return the versions whose jar is in the library folder
+     */
+    public @NotNull @Unmodifiable List<String> getLocalVersions(@NotNull Dependency d) {
+        return Collections.unmodifiableList(localVersions(d));
+    }
+
+    /**
+     * Returns whether dynamic versions resolved without a lookup are looked up in the background.
+     *
+     * @return {@code true} if newer versions are looked up in the background
+     */
+    public boolean isBackgroundRefresh() {
+        return backgroundRefresh;
+    }
+
+    /**
+     * Sets whether dynamic versions resolved without a lookup are looked up in the background, to record newer
+     * matching versions for the next start. Enabled by default.
+     *
+     * @param backgroundRefresh {@code true} to look up newer versions in the background
+     */
+    public void setBackgroundRefresh(boolean backgroundRefresh) {
+        this.backgroundRefresh = backgroundRefresh;
+    }
+
+    /**
+     * Sets how long the artifact level metadata is served from the cache, the equivalent of the Maven update policy.
+     * One day by default.
+     *
+     * @param interval the update interval, {@code 0} to look up every time
+     * @param unit     the unit of {@code interval}
+     */
+    public void setUpdateInterval(long interval, @NotNull TimeUnit unit) {
+        this.updateIntervalMillis = Math.max(0, unit.toMillis(interval));
+    }
+
+    /**
+     * Stops the background lookups.
+     */
+    public void shutdown() {
+        ExecutorService executor = refreshExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+            refreshExecutor = null;
+        }
+    }
+
+    /**
+     * Reads the versions listed in an artifact level {@code maven-metadata.xml}.
+     *
+     * @param metadata the metadata
+     * @return the versions, in metadata order
+     * @throws IOException if the metadata cannot be parsed
+     */
+    public static @NotNull List<String> readVersions(@NotNull InputStream metadata) throws IOException {
+        Document document;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(metadata);
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("Unable to parse maven-metadata.xml", e);
+        }
+        List<String> versions = new ArrayList<>();
+        NodeList nodes = document.getElementsByTagName("versions");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            NodeList children = nodes.item(i).getChildNodes();
+            for (int j = 0; j < children.getLength(); j++) {
+                Node child = children.item(j);
+                if (child.getNodeType() == Node.ELEMENT_NODE && "version".equals(((Element) child).getTagName())) {
+                    String version = child.getTextContent().trim();
+                    if (!version.isEmpty()) {
+                        versions.add(version);
+                    }
+                }
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Returns the URL of the artifact level {@code maven-metadata.xml} of a library.
+     *
+     * @param d          the dependency, whose version is ignored
+     * @param repository the base URL of the repository
+     * @return the URL of the metadata
+     * @throws IOException if the URL is malformed
+     */
+    public static @NotNull URL getMetadataUrl(@NotNull Dependency d, @NotNull String repository) throws IOException {
+        return new URL(String.format("%s%s/%s/maven-metadata.xml",
+                repository.endsWith("/") ? repository : repository + "/", d.groupId.replace(".", "/"), d.artifactId));
+    }
+
+    /**
+     * Asks every candidate repository for the versions of a library.
+     *
+     * @return the newest matching version
+     */
+    private @NotNull String lookup(@NotNull Dependency d, @NotNull VersionRange range) throws IOException {
+        Set<String> versions = new LinkedHashSet<>();
+        IOException failure = null;
+        for (RemoteRepository repository : repositoryRouter.candidates(d)) {
+            try {
+                byte[] metadata = metadataCache.get(getMetadataUrl(d, repository.getUrl()), updateIntervalMillis, missingTtlMillis);
+                if (metadata != null) {
+                    versions.addAll(readVersions(new ByteArrayInputStream(metadata)));
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        String version = range.select(versions);
+        if (version == null) {
+            String message = String.format("No version of %s:%s matches %s", d.groupId, d.artifactId, range);
+            if (failure != null) {
+                throw new IOException(message, failure);
+            }
+            throw new FileNotFoundException(message + ", available versions: " + versions);
+        }
+        return version;
+    }
+
+    /**
+     * Looks up newer versions in the background, once per dynamic version and resolver.
+     */
+    private void refreshLater(@NotNull Dependency d, @NotNull VersionRange range, @NotNull String key, @NotNull String used) {
+        if (!backgroundRefresh || !refreshed.add(key)) {
+            return;
+        }
+        refreshExecutor().execute(() -> {
+            try {
+                String newest = lookup(d, range);
+                record(key, newest);
+                if (MavenVersion.parse(newest).compareTo(MavenVersion.parse(used)) > 0) {
+                    logger.info(String.format("Version %s of %s:%s matches %s, it will be used from the next start", newest, d.groupId, d.artifactId, d.version));
+                }
+            } catch (IOException e) {
+                logger.fine("Unable to look up newer versions of " + d + ": " + e);
+            }
+        });
+    }
+
+    private @NotNull ExecutorService refreshExecutor() {
+        ExecutorService executor = refreshExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = refreshExecutor;
+                if (executor == null) {
+                    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "LibraryLoader-version-refresh");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    threadPool.allowCoreThreadTimeOut(true);
+                    executor = threadPool;
+                    refreshExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the versions of a library whose jar, with the classifier of the dependency, is in the library folder.
+     */
+    private @NotNull List<String> localVersions(@NotNull Dependency d) {
+        List<String> versions = new ArrayList<>();
+        File artifactFolder = new File(libFolder, d.getLocalPath()).getParentFile();
+        File[] folders = artifactFolder.listFiles(File::isDirectory);
+        if (folders == null) {
+            return versions;
+        }
+        for (File folder : folders) {
+            String version = folder.getName();
+            if (!VersionRange.isDynamic(version) && new File(folder, d.withVersion(version).getBaseName() + ".jar").isFile()) {
+                versions.add(version);
+            }
+        }
+        return versions;
+    }
+
+    private static @NotNull String key(@NotNull Dependency d) {
+        return d.groupId + ":" + d.artifactId + ":" + d.version.trim();
+    }
+
+    private synchronized @Nullable String getRecorded(@NotNull String key) {
+        load();
+        return recorded.getProperty(key);
+    }
+
+    private synchronized void record(@NotNull String key, @NotNull String version) {
+        load();
+        if (version.equals(recorded.getProperty(key))) {
+            return;
+        }
+        recorded.setProperty(key, version);
+        try {
+            if (!libFolder.isDirectory() && !libFolder.mkdirs()) {
+                throw new IOException("Unable to create " + libFolder);
+            }
+            Path temp = Files.createTempFile(libFolder.toPath(), VERSIONS, ".tmp");
+            try {
+                try (OutputStream os = Files.newOutputStream(temp)) {
+                    recorded.store(os, "LibraryLoader resolved dynamic versions");
+                }
+                Files.move(temp, new File(libFolder, VERSIONS).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.warning("Unable to store the resolved versions: " + e);
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File file = new File(libFolder, VERSIONS);
+        if (!file.isFile()) {
+            return;
+        }
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            recorded.load(is);
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Ignoring the unreadable resolved versions: " + e);
+            recorded.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "VersionResolver{" +
+                "libFolder=" + libFolder +
+                ", backgroundRefresh=" + backgroundRefresh +
+                ", updateIntervalMillis=" + updateIntervalMillis +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package com.georgev22.libraryloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassLoaderAccessTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void keepsTheSignatureOfRemove() throws NoSuchMethodException {
+        // compiled callers link against void remove(URL)
+        assertEquals(void.class, ClassLoaderAccess.class.getMethod("remove", URL.class).getReturnType());
+    }
+
+    @Test
+    void closesTheLoaderOfAnOpenedJar() throws IOException {
+        LocalRepository repository = new LocalRepository(temp.resolve("repo"));
+        repository.artifact("lib", "1.0");
+        repository.artifact("other", "1.0");
+        URL lib = temp.resolve("repo/g/lib/1.0/lib-1.0.jar").toUri().toURL();
+        URL other = temp.resolve("repo/g/other/1.0/other-1.0.jar").toUri().toURL();
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[0], null)) {
+            ClassLoaderAccess access = new ClassLoaderAccess(classLoader);
+            access.add(lib);
+            access.add(other);
+            URL resource = classLoader.getResource(LocalRepository.classFile("lib"));
+            assertNotNull(resource);
+            try (InputStream is = resource.openStream()) {
+                assertTrue(is.read() >= 0);
+            }
+
+            assertTrue(access.removeAndClose(lib), "the class loader opened the jar");
+            assertFalse(access.removeAndClose(other), "the class loader never opened the jar");
+            assertNull(classLoader.getResource(LocalRepository.classFile("lib")));
+            assertFalse(access.contains(lib));
+        }
+        assertTrue(Files.deleteIfExists(temp.resolve("repo/g/lib/1.0/lib-1.0.jar")));
+    }
+}
@@ -0,0 +1,128 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DependencyRegistryTest {
+
+    private static final String REPO = "https://repo.example.com/";
+
+    @Test
+    void keepsLoadOrder() {
+        DependencyRegistry registry = new DependencyRegistry();
+        Dependency first = new Dependency("g", "b", "1.0", REPO);
+        Dependency second = new Dependency("g", "a", "1.0", REPO);
+        Dependency third = new Dependency("g", "c", "1.0", REPO);
+
+        assertTrue(registry.add(first));
+        assertTrue(registry.add(second));
+        assertTrue(registry.add(third));
+        assertFalse(registry.add(new Dependency("g", "b", "1.0", REPO)));
+
+        assertEquals(3, registry.size());
+        assertEquals(Arrays.asList(first, second, third), registry.list());
+        assertTrue(registry.remove(second));
+        assertFalse(registry.remove(second));
+        assertFalse(registry.contains(second));
+        assertEquals(Arrays.asList(first, third), registry.list());
+    }
+
+    @Test
+    void treatsTheRepositoryAsAHint() {
+        DependencyRegistry registry = new DependencyRegistry();
+        Dependency dependency = new Dependency("g", "a", "1.0", REPO);
+        Dependency mirrored = new Dependency("g", "a", "1.0", "https://mirror.example.com/");
+
+        assertTrue(registry.add(dependency));
+        assertTrue(registry.contains(mirrored));
+        assertFalse(registry.add(mirrored));
+        assertSame(dependency, registry.get(mirrored));
+        assertNull(registry.get(new Dependency("g", "a", "1.0", REPO, "sources")), "classifiers are part of the coordinates");
+
+        assertTrue(registry.remove(mirrored));
+        assertFalse(registry.contains(dependency));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void firstCallerLeadsTheFlight() {
+        DependencyRegistry registry = new DependencyRegistry();
+        CompletableFuture<List<Dependency>> leader = new CompletableFuture<>();
+        CompletableFuture<List<Dependency>> follower = new CompletableFuture<>();
+
+        assertNull(registry.join("g:a:1.0", leader));
+        assertSame(leader, registry.join("g:a:1.0", follower));
+        assertNull(registry.join("g:b:1.0", follower), "flights are per coordinate");
+    }
+
+    @Test
+    void landingEndsOnlyTheFlightOfTheLeader() {
+        DependencyRegistry registry = new DependencyRegistry();
+        CompletableFuture<List<Dependency>> leader = new CompletableFuture<>();
+        CompletableFuture<List<Dependency>> other = new CompletableFuture<>();
+        assertNull(registry.join("g:a:1.0", leader));
+
+        registry.land("g:a:1.0", other);
+        assertSame(leader, registry.join("g:a:1.0", other));
+
+        leader.complete(Collections.emptyList());
+        registry.land("g:a:1.0", leader);
+        assertNull(registry.join("g:a:1.0", other), "a new flight starts once the previous one landed");
+    }
+
+    @Test
+    void concurrentCallersShareOneFlight() throws Exception {
+        DependencyRegistry registry = new DependencyRegistry();
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<CompletableFuture<List<Dependency>>> flights = new ArrayList<>();
+            List<Future<CompletableFuture<List<Dependency>>>> joined = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                CompletableFuture<List<Dependency>> flight = new CompletableFuture<>();
+                flights.add(flight);
+                joined.add(executor.submit(() -> {
+                    start.await();
+                    return registry.join("g:a:1.0", flight);
+                }));
+            }
+            start.countDown();
+
+            CompletableFuture<List<Dependency>> leader = null;
+            List<CompletableFuture<List<Dependency>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                CompletableFuture<List<Dependency>> result = joined.get(i).get(10, TimeUnit.SECONDS);
+                if (result == null) {
+                    assertNull(leader, "only one caller leads");
+                    leader = flights.get(i);
+                } else {
+                    results.add(result);
+                }
+            }
+            assertEquals(threads - 1, results.size());
+            for (CompletableFuture<List<Dependency>> result : results) {
+                assertSame(leader, result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
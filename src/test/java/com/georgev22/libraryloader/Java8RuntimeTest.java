@@ -0,0 +1,100 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.metrics.FlightRecorderSupport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs the loader in a class loader that hides the APIs added after Java 8 that the loader uses when they are present,
+ * the way a Java 8 runtime does.
+ */
+class Java8RuntimeTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void loadsALibraryWithoutTheModuleSystemAndFlightRecorder() throws Exception {
+        LocalRepository repository = new LocalRepository(temp.resolve("repo"));
+        repository.artifact("lib", "1.0");
+
+        Java8ClassLoader java8 = new Java8ClassLoader(Java8RuntimeTest.class.getClassLoader());
+        assertThrows(ClassNotFoundException.class, () -> Class.forName("java.lang.ModuleLayer", false, java8));
+
+        URLClassLoader classLoader = new URLClassLoader(new URL[0], Java8RuntimeTest.class.getClassLoader());
+        Class<?> loaderClass = java8.loadClass(LibraryLoader.class.getName());
+        Object loader = loaderClass.getConstructor(URLClassLoader.class, File.class).newInstance(classLoader, temp.resolve("data").toFile());
+        assertNull(loaderClass.getMethod("getModuleLayerClassPath").invoke(loader));
+        assertEquals(false, java8.loadClass(FlightRecorderSupport.class.getName()).getMethod("isAvailable").invoke(null));
+
+        Class<?> dependencyClass = java8.loadClass(LibraryLoader.Dependency.class.getName());
+        Constructor<?> dependency = dependencyClass.getConstructor(String.class, String.class, String.class, String.class);
+        Object lib = dependency.newInstance(LocalRepository.GROUP_ID, "lib", "1.0", repository.url());
+        loaderClass.getMethod("load", dependencyClass, boolean.class).invoke(loader, lib, true);
+        assertEquals(1, ((List<?>) loaderClass.getMethod("getDependencyList").invoke(loader)).size());
+        Class.forName(LocalRepository.className("lib"), false, classLoader);
+    }
+
+    /**
+     * Defines the classes of the loader itself and fails to find the module system and {@code jdk.jfr}.
+     */
+    private static final class Java8ClassLoader extends ClassLoader {
+
+        private Java8ClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith("java.lang.module.") || name.startsWith("jdk.jfr.")
+                    || name.equals("java.lang.ModuleLayer") || name.startsWith("java.lang.ModuleLayer$")
+                    || name.equals("java.lang.Module")) {
+                throw new ClassNotFoundException(name);
+            }
+            if (!name.startsWith("com.georgev22.libraryloader.")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    loaded = define(name);
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+
+        private Class<?> define(String name) throws ClassNotFoundException {
+            try (InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                if (is == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, read);
+                }
+                return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.classpath.ModuleLayerClassPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class LibraryLoaderTest {
+
+    @TempDir
+    Path temp;
+
+    private LocalRepository repository;
+    private URLClassLoader classLoader;
+    private LibraryLoader loader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = new LocalRepository(temp.resolve("repo"));
+        classLoader = new URLClassLoader(new URL[0], LibraryLoaderTest.class.getClassLoader());
+        loader = new LibraryLoader(classLoader, temp.resolve("data").toFile(), Logger.getLogger(LibraryLoaderTest.class.getSimpleName()));
+    }
+
+    @Test
+    void loadsAndUnloadsALibrary() throws Exception {
+        repository.artifact("lib", "1.0");
+        Dependency lib = new Dependency("g", "lib", "1.0", repository.url());
+
+        loader.load(lib, true);
+        assertEquals(Collections.singletonList(lib), loader.getDependencyList());
+        assertSame(classLoader, Class.forName(LocalRepository.className("lib"), false, classLoader).getClassLoader());
+
+        loader.unload(lib);
+        assertTrue(loader.getDependencyList().isEmpty());
+        assertNull(classLoader.getResource(LocalRepository.classFile("lib")), "the jar is removed from the class path");
+    }
+
+    @Test
+    void loadsAndUnloadsALayeredLibrary() throws Exception {
+        assumeTrue(ModuleLayerClassPath.isSupported(), "module layers need Java 9");
+        ModuleLayerClassPath layers = loader.getModuleLayerClassPath();
+        assertNotNull(layers, "the module layer class path of Java 9");
+        layers.setEnabled(true);
+        repository.artifact("lib", "1.0");
+        Dependency lib = new Dependency("g", "lib", "1.0", repository.url());
+
+        loader.load(lib, true);
+        assertEquals(LocalRepository.className("lib"), layers.loadClass(LocalRepository.className("lib")).getName());
+        assertNull(classLoader.getResource(LocalRepository.classFile("lib")), "a layered jar is not on the class path");
+
+        loader.unload(lib);
+        assertTrue(loader.getDependencyList().isEmpty());
+        assertFalse(layers.contains(lib));
+        assertThrows(ClassNotFoundException.class, () -> layers.loadClass(LocalRepository.className("lib")));
+    }
+
+    @Test
+    void loadsACoordinateOnceForEveryRepository() throws Exception {
+        LocalRepository mirror = new LocalRepository(temp.resolve("mirror"));
+        repository.artifact("lib", "1.0");
+        mirror.artifact("lib", "1.0");
+        Dependency lib = new Dependency("g", "lib", "1.0", repository.url());
+        Dependency mirrored = new Dependency("g", "lib", "1.0", mirror.url());
+
+        loader.load(lib, true);
+        loader.load(mirrored, true);
+        assertEquals(Collections.singletonList(lib), loader.getDependencyList(), "the repository is only a hint");
+
+        loader.unload(mirrored);
+        assertTrue(loader.getDependencyList().isEmpty());
+        assertNull(classLoader.getResource(LocalRepository.classFile("lib")));
+    }
+}
@@ -0,0 +1,202 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.exceptions.UnknownDependencyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadPipelineTest {
+
+    @TempDir
+    Path temp;
+
+    private LocalRepository repository;
+    private URLClassLoader classLoader;
+    private LibraryLoader loader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = new LocalRepository(temp.resolve("repo"));
+        classLoader = new URLClassLoader(new URL[0], LoadPipelineTest.class.getClassLoader());
+        loader = new LibraryLoader(classLoader, temp.resolve("data").toFile(), Logger.getLogger(LoadPipelineTest.class.getSimpleName()));
+    }
+
+    @Test
+    void doesNothingUntilStarted() throws Exception {
+        repository.artifact("lib", "1.0");
+        LoadPipeline pipeline = loader.pipeline(false, 2);
+        CompletableFuture<Dependency> lib = pipeline.add(dependency("lib", "1.0"));
+
+        assertFalse(lib.isDone());
+        assertFalse(pipeline.getCompletion().isDone());
+        assertTrue(loader.getDependencyList().isEmpty());
+
+        pipeline.await();
+        assertEquals(dependency("lib", "1.0"), lib.get());
+        assertEquals(Collections.singletonList(dependency("lib", "1.0")), loader.getDependencyList());
+        assertTrue(visible("lib"));
+    }
+
+    @Test
+    void readiesDependenciesBeforeTheirDependents() throws Exception {
+        repository.artifact("lib", "1.0");
+        repository.artifact("app", "1.0", "lib:1.0");
+        LoadPipeline pipeline = loader.pipeline(false, 2);
+        Dependency lib = dependency("lib", "1.0");
+        AtomicBoolean libReadyFirst = new AtomicBoolean();
+        AtomicBoolean libVisibleFirst = new AtomicBoolean();
+        pipeline.add(dependency("app", "1.0")).thenAccept(d -> {
+            CompletableFuture<Dependency> future = pipeline.whenReady(lib);
+            libReadyFirst.set(future != null && future.isDone());
+            libVisibleFirst.set(visible("lib") && visible("app"));
+        });
+        pipeline.await();
+
+        assertNotNull(pipeline.whenReady(lib), "the dependency is discovered from the pom");
+        assertTrue(libReadyFirst.get());
+        assertTrue(libVisibleFirst.get(), "a ready library and its dependencies are on the class path");
+        assertEquals(Arrays.asList(lib, dependency("app", "1.0")), loader.getDependencyList());
+    }
+
+    @Test
+    void resolvesDynamicVersions() throws Exception {
+        repository.artifact("lib", "1.0");
+        repository.artifact("lib", "2.0");
+        repository.metadata("lib", "1.0", "2.0", "3.0-SNAPSHOT");
+        LoadPipeline pipeline = loader.pipeline(false, 2);
+        CompletableFuture<Dependency> lib = pipeline.add(dependency("lib", "[1.0,)"));
+        pipeline.await();
+
+        assertEquals("2.0", lib.get().version);
+        assertEquals(Collections.singletonList(dependency("lib", "2.0")), loader.getDependencyList());
+    }
+
+    @Test
+    void failsTheDependentsOfAMissingLibrary() throws Exception {
+        repository.artifact("lib", "1.0");
+        repository.artifact("app", "1.0", "missing:1.0");
+        LoadPipeline pipeline = loader.pipeline(false, 2);
+        CompletableFuture<Dependency> lib = pipeline.add(dependency("lib", "1.0"));
+        CompletableFuture<Dependency> app = pipeline.add(dependency("app", "1.0"));
+
+        assertThrows(UnknownDependencyException.class, pipeline::await);
+        assertEquals("lib", lib.get().artifactId, "independent libraries are still loaded");
+        ExecutionException failure = assertThrows(ExecutionException.class, app::get);
+        assertInstanceOf(UnknownDependencyException.class, failure.getCause());
+        CompletableFuture<Dependency> missing = pipeline.whenReady(dependency("missing", "1.0"));
+        assertNotNull(missing);
+        assertTrue(missing.isCompletedExceptionally());
+        assertTrue(pipeline.getCompletion().isCompletedExceptionally());
+        assertEquals(Collections.singletonList(dependency("lib", "1.0")), loader.getDependencyList());
+        assertFalse(visible("app"));
+    }
+
+    @Test
+    void waitsForTheBatchOfAnotherLoad() throws Exception {
+        repository.artifact("lib", "1.0");
+        loader.getMergedClassPath().setEnabled(true);
+        loader.getConnectionSettings().setTimeouts(5_000, 5_000, TimeUnit.MILLISECONDS);
+        CountDownLatch requested = new CountDownLatch(1);
+        List<Socket> connections = new ArrayList<>();
+        try (ServerSocket stalled = new ServerSocket(0)) {
+            Thread server = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket connection = stalled.accept();
+                        synchronized (connections) {
+                            connections.add(connection);
+                        }
+                        requested.countDown();
+                    }
+                } catch (IOException closed) {
+                    // the test is done
+                }
+            });
+            server.setDaemon(true);
+            server.start();
+
+            // the batch of this load is injected when it returns, after the stalled download
+            Dependency slow = new Dependency(LocalRepository.GROUP_ID, "slow", "1.0", "http://127.0.0.1:" + stalled.getLocalPort() + "/");
+            CompletableFuture<Void> load = CompletableFuture.runAsync(() -> {
+                try {
+                    loader.load(Arrays.asList(dependency("lib", "1.0"), slow), false);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertTrue(requested.await(10, TimeUnit.SECONDS), "the load reaches the stalled repository");
+            assertFalse(visible("lib"), "lib is waiting in the batch");
+
+            LoadPipeline pipeline = loader.pipeline(false, 1);
+            CompletableFuture<Boolean> visibleWhenReady = pipeline.add(dependency("lib", "1.0")).thenApply(d -> visible("lib"));
+            pipeline.start();
+
+            stalled.close();
+            synchronized (connections) {
+                for (Socket connection : connections) {
+                    connection.close();
+                }
+            }
+            assertThrows(ExecutionException.class, load::get, "the stalled library fails");
+            pipeline.await();
+            assertTrue(visibleWhenReady.get(), "lib is ready once its batch is injected");
+        }
+    }
+
+    @Test
+    void raisesThePriorityOfKnownLibrariesOnly() throws Exception {
+        repository.artifact("lib", "1.0");
+        LoadPipeline pipeline = loader.pipeline(false, 1);
+        Dependency lib = dependency("lib", "1.0");
+        pipeline.add(lib);
+
+        assertTrue(pipeline.prioritize(lib, 10));
+        assertFalse(pipeline.prioritize(dependency("other", "1.0"), 10));
+        assertNull(pipeline.whenReady(dependency("other", "1.0")));
+        pipeline.await();
+    }
+
+    @Test
+    void rejectsLibrariesOnceFinished() throws Exception {
+        LoadPipeline pipeline = loader.pipeline(false, 1);
+        pipeline.start();
+        assertTrue(pipeline.getCompletion().isDone(), "an empty pipeline finishes when started");
+
+        assertThrows(IllegalStateException.class, () -> pipeline.add(dependency("lib", "1.0")));
+        assertThrows(IllegalArgumentException.class, () -> loader.pipeline(false, 0));
+    }
+
+    private Dependency dependency(String artifactId, String version) {
+        return new Dependency(LocalRepository.GROUP_ID, artifactId, version, repository.url());
+    }
+
+    private boolean visible(String artifactId) {
+        return classLoader.getResource(LocalRepository.classFile(artifactId)) != null;
+    }
+}
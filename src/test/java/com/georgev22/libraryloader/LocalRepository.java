@@ -0,0 +1,136 @@
+package com.georgev22.libraryloader;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A Maven repository in a folder, reached through {@code file:} URLs, whose artifacts of group {@code g} each hold a
+ * single class, see {@link #className(String)}.
+ */
+final class LocalRepository {
+
+    static final String GROUP_ID = "g";
+
+    private final Path root;
+
+    LocalRepository(Path root) throws IOException {
+        this.root = Files.createDirectories(root);
+    }
+
+    /**
+     * Returns the URL of the repository.
+     */
+    String url() {
+        return root.toUri().toString();
+    }
+
+    /**
+     * Returns the binary name of the class of an artifact, e.g. {@code g.lib.Lib} for {@code lib}.
+     */
+    static String className(String artifactId) {
+        return GROUP_ID + "." + artifactId + "." + Character.toUpperCase(artifactId.charAt(0)) + artifactId.substring(1);
+    }
+
+    /**
+     * Returns the name of the class file of an artifact, e.g. {@code g/lib/Lib.class} for {@code lib}.
+     */
+    static String classFile(String artifactId) {
+        return className(artifactId).replace('.', '/') + ".class";
+    }
+
+    /**
+     * Publishes an artifact.
+     *
+     * @param artifactId   the artifact id
+     * @param version      the version
+     * @param dependencies the dependencies of the artifact, as {@code artifactId:version}
+     */
+    void artifact(String artifactId, String version, String... dependencies) throws IOException {
+        Files.createDirectories(root.resolve(GROUP_ID + "/" + artifactId + "/" + version));
+        writeJar(jar(artifactId, version), artifactId, null);
+
+        StringBuilder pom = new StringBuilder("<project><groupId>" + GROUP_ID + "</groupId><artifactId>" + artifactId
+                + "</artifactId><version>" + version + "</version><dependencies>");
+        for (String dependency : dependencies) {
+            String[] coordinates = dependency.split(":");
+            pom.append("<dependency><groupId>").append(GROUP_ID).append("</groupId><artifactId>").append(coordinates[0])
+                    .append("</artifactId><version>").append(coordinates[1]).append("</version></dependency>");
+        }
+        pom.append("</dependencies></project>");
+        Files.write(pom(artifactId, version), pom.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Replaces the jar of a published artifact with a jar that also holds a resource, {@code <artifactId>.txt}.
+     *
+     * @param content the content of the resource
+     */
+    void resource(String artifactId, String version, String content) throws IOException {
+        writeJar(jar(artifactId, version), artifactId, content);
+    }
+
+    /**
+     * Returns the jar of a published artifact.
+     */
+    Path jar(String artifactId, String version) {
+        return root.resolve(GROUP_ID + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + ".jar");
+    }
+
+    /**
+     * Returns the pom of a published artifact.
+     */
+    Path pom(String artifactId, String version) {
+        return root.resolve(GROUP_ID + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + ".pom");
+    }
+
+    /**
+     * Publishes the {@code maven-metadata.xml} of an artifact.
+     */
+    void metadata(String artifactId, String... versions) throws IOException {
+        StringBuilder metadata = new StringBuilder("<metadata><groupId>" + GROUP_ID + "</groupId><artifactId>" + artifactId
+                + "</artifactId><versioning><versions>");
+        for (String version : versions) {
+            metadata.append("<version>").append(version).append("</version>");
+        }
+        metadata.append("</versions></versioning></metadata>");
+        Path folder = Files.createDirectories(root.resolve(GROUP_ID + "/" + artifactId));
+        Files.write(folder.resolve("maven-metadata.xml"), metadata.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeJar(Path file, String artifactId, String resource) throws IOException {
+        try (OutputStream os = Files.newOutputStream(file);
+             JarOutputStream jar = new JarOutputStream(os)) {
+            jar.putNextEntry(new JarEntry(classFile(artifactId)));
+            jar.write(classBytes(className(artifactId).replace('.', '/')));
+            jar.closeEntry();
+            if (resource != null) {
+                jar.putNextEntry(new JarEntry(artifactId + ".txt"));
+                jar.write(resource.getBytes(StandardCharsets.UTF_8));
+                jar.closeEntry();
+            }
+        }
+    }
+
+    private static byte[] classBytes(String internalName) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(1, 1);
+        constructor.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
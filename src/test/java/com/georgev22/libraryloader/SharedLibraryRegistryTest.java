@@ -0,0 +1,93 @@
+package com.georgev22.libraryloader;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SharedLibraryRegistryTest {
+
+    @TempDir
+    Path temp;
+
+    private final List<LibraryLoader> loaders = new ArrayList<>();
+    private LocalRepository first;
+    private LocalRepository second;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // the same jar of x, depending on y:1.0, whose jar differs between the repositories
+        first = new LocalRepository(temp.resolve("first"));
+        first.artifact("y", "1.0");
+        first.resource("y", "1.0", "first");
+        first.artifact("x", "1.0", "y:1.0");
+        second = new LocalRepository(temp.resolve("second"));
+        second.artifact("y", "1.0");
+        second.resource("y", "1.0", "second");
+        second.artifact("x", "1.0", "y:1.0");
+        Files.copy(first.jar("x", "1.0"), second.jar("x", "1.0"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (LibraryLoader loader : loaders) {
+            loader.unloadAll();
+        }
+    }
+
+    @Test
+    void keepsTheDependenciesOfASharedLibraryPerConsumer() throws Exception {
+        LibraryLoader a = sharing("a", first);
+        LibraryLoader b = sharing("b", second);
+        LibraryLoader c = sharing("c", first);
+
+        // x is found before y, through the libraries x is linked to
+        assertEquals("first", read(a.getSharedClassLoader().getResource("y.txt")));
+        assertEquals("second", read(b.getSharedClassLoader().getResource("y.txt")));
+        assertEquals("first", read(c.getSharedClassLoader().getResource("y.txt")));
+
+        String x = LocalRepository.className("x");
+        ClassLoader sharedX = a.getSharedClassLoader().loadClass(x).getClassLoader();
+        assertSame(sharedX, c.getSharedClassLoader().loadClass(x).getClassLoader(), "the same dependencies share x");
+        assertNotEquals(sharedX, b.getSharedClassLoader().loadClass(x).getClassLoader());
+    }
+
+    private LibraryLoader sharing(String name, LocalRepository repository) throws Exception {
+        URLClassLoader classLoader = new URLClassLoader(new URL[0], SharedLibraryRegistryTest.class.getClassLoader());
+        LibraryLoader loader = new LibraryLoader(classLoader, temp.resolve(name).toFile(), Logger.getLogger(SharedLibraryRegistryTest.class.getSimpleName()));
+        loader.setShareLibraries(true);
+        loaders.add(loader);
+        loader.load(new Dependency(LocalRepository.GROUP_ID, "x", "1.0", repository.url()), false);
+        return loader;
+    }
+
+    private static String read(URL url) throws IOException {
+        try (InputStream is = url.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
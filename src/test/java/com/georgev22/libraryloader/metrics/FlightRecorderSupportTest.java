@@ -0,0 +1,29 @@
+package com.georgev22.libraryloader.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FlightRecorderSupportTest {
+
+    @Test
+    void emitsEventsWhenFlightRecorderIsPresent() throws Exception {
+        boolean jfr;
+        try {
+            Class.forName("jdk.jfr.Event");
+            jfr = !System.getProperty("java.specification.version").startsWith("1.");
+        } catch (ClassNotFoundException e) {
+            jfr = false;
+        }
+        assumeTrue(jfr, "the events need the Flight Recorder of Java 11");
+
+        assertTrue(FlightRecorderSupport.isAvailable(), "the Java 11 event classes are on the class path");
+        Object event = FlightRecorderSupport.beginClassPathChange();
+        assertNotNull(event, "an event is begun");
+        FlightRecorderSupport.commitClassPathChange(event, "add", new URL("file:/lib.jar"), getClass().getClassLoader());
+    }
+}
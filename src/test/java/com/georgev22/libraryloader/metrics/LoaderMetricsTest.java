@@ -0,0 +1,82 @@
+package com.georgev22.libraryloader.metrics;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoaderMetricsTest {
+
+    private final LoaderMetrics metrics = new LoaderMetrics(Logger.getLogger(LoaderMetricsTest.class.getSimpleName()));
+    private final Dependency dependency = new Dependency("g", "a", "1.0", "https://repo.example.com/");
+
+    @Test
+    void recordsEndedSpansOnce() {
+        List<PhaseSample> samples = new ArrayList<>();
+        metrics.addListener(new LoaderMetricsListener() {
+            @Override
+            public void onPhase(PhaseSample sample) {
+                samples.add(sample);
+            }
+        });
+
+        Span span = metrics.start(dependency, null, "https://mirror.example.com/", Phase.DOWNLOAD);
+        span.end(1024);
+        span.end(2048);
+
+        assertEquals(1, metrics.getCount(Phase.DOWNLOAD));
+        assertEquals(1024, metrics.getBytesDownloaded());
+        assertEquals(1, samples.size());
+        PhaseSample sample = samples.get(0);
+        assertSame(dependency, sample.getDependency());
+        assertNull(sample.getParent());
+        assertEquals("https://mirror.example.com/", sample.getRepository());
+        assertFalse(sample.isFailed());
+        assertTrue(metrics.getRepositoryTimesMillis().containsKey("https://mirror.example.com/"));
+    }
+
+    @Test
+    void countsFailedSpans() {
+        IOException failure = new IOException("unreachable");
+        Span span = metrics.start(dependency, null, Phase.POM_FETCH);
+        span.fail(failure);
+        span.end();
+
+        assertEquals(1, metrics.getCount(Phase.POM_FETCH));
+        assertEquals(1, metrics.getFailureCount(Phase.POM_FETCH));
+        assertEquals(1, metrics.getFailedPhaseCount());
+        assertEquals(0, metrics.getFailureCount(Phase.DOWNLOAD));
+    }
+
+    @Test
+    void keepsRecordingWhenAListenerFails() {
+        metrics.addListener(new LoaderMetricsListener() {
+            @Override
+            public void onPhase(PhaseSample sample) {
+                throw new IllegalStateException("broken listener");
+            }
+        });
+
+        metrics.start(dependency, null, Phase.RELOCATION).end();
+        metrics.recordCacheLookup(dependency, true);
+        metrics.recordCacheLookup(dependency, false);
+
+        assertEquals(1, metrics.getCount(Phase.RELOCATION));
+        assertEquals(1, metrics.getCacheHits());
+        assertEquals(1, metrics.getCacheMisses());
+        assertFalse(metrics.getRepositoryTimesMillis().containsKey(dependency.repoUrl), "relocation is not a repository phase");
+
+        metrics.reset();
+        assertEquals(0, metrics.getCount(Phase.RELOCATION));
+        assertEquals(0, metrics.getCacheHits());
+    }
+}
@@ -0,0 +1,106 @@
+package com.georgev22.libraryloader.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MetadataCacheTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @TempDir
+    Path temp;
+
+    private final Logger logger = Logger.getLogger(MetadataCacheTest.class.getSimpleName());
+    private Path metadata;
+    private URL url;
+    private File folder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        metadata = temp.resolve("repo/g/a/maven-metadata.xml");
+        Files.createDirectories(metadata.getParent());
+        url = metadata.toUri().toURL();
+        folder = temp.resolve("cache").toFile();
+    }
+
+    @Test
+    void servesMetadataWithinItsTtl() throws IOException {
+        MetadataCache cache = new MetadataCache(folder, new ConnectionSettings(), logger);
+        publish("1.0");
+        assertEquals("1.0", body(cache.get(url, DAY, DAY)));
+
+        publish("2.0");
+        assertEquals("1.0", body(cache.get(url, DAY, DAY)));
+        assertEquals("2.0", body(cache.get(url, 0, DAY)), "a ttl of 0 always revalidates");
+        assertEquals("2.0", body(cache.get(url, DAY, DAY)));
+    }
+
+    @Test
+    void remembersMissingMetadataForTheMissingTtl() throws IOException {
+        MetadataCache cache = new MetadataCache(folder, new ConnectionSettings(), logger);
+        assertNull(cache.get(url, DAY, DAY));
+
+        publish("1.0");
+        assertNull(cache.get(url, DAY, DAY));
+        assertNull(cache.get(url, 0, DAY), "the ttl of existing metadata does not apply to missing metadata");
+        assertEquals("1.0", body(cache.get(url, DAY, 0)));
+    }
+
+    @Test
+    void appliesTheSnapshotAndReleaseTtls() throws IOException {
+        MetadataCache cache = new MetadataCache(folder, new ConnectionSettings(), logger);
+        cache.setReleaseTtl(1, TimeUnit.DAYS);
+        cache.setSnapshotTtl(0, TimeUnit.MILLISECONDS);
+        publish("1.0");
+        assertEquals("1.0", body(cache.get(url, false)));
+
+        publish("2.0");
+        assertEquals("1.0", body(cache.get(url, false)));
+        assertEquals("2.0", body(cache.get(url, true)));
+    }
+
+    @Test
+    void appliesTheMissingTtls() throws IOException {
+        MetadataCache cache = new MetadataCache(folder, new ConnectionSettings(), logger);
+        cache.setMissingTtl(1, 0, TimeUnit.DAYS);
+        assertNull(cache.get(url, false));
+
+        publish("1.0");
+        assertNull(cache.get(url, false));
+        assertEquals("1.0", body(cache.get(url, true)));
+    }
+
+    @Test
+    void persistsEntriesAcrossInstances() throws IOException {
+        publish("1.0");
+        assertEquals("1.0", body(new MetadataCache(folder, new ConnectionSettings(), logger).get(url, DAY, DAY)));
+
+        publish("2.0");
+        MetadataCache reopened = new MetadataCache(folder, new ConnectionSettings(), logger);
+        assertEquals("1.0", body(reopened.get(url, DAY, DAY)));
+
+        reopened.clear();
+        assertEquals("2.0", body(new MetadataCache(folder, new ConnectionSettings(), logger).get(url, DAY, DAY)));
+    }
+
+    private void publish(String version) throws IOException {
+        Files.write(metadata, version.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String body(byte[] body) {
+        return body == null ? null : new String(body, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+package com.georgev22.libraryloader.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemoteRepositoryTest {
+
+    @Test
+    void opensTheCircuitAfterConsecutiveFailures() {
+        RemoteRepository repository = new RemoteRepository("https://repo.example.com", 0);
+        repository.setCircuitBreaker(2, TimeUnit.HOURS.toNanos(1));
+
+        repository.recordFailure();
+        assertEquals(RemoteRepository.CircuitState.CLOSED, repository.getCircuitState());
+        assertTrue(repository.tryAcquire());
+
+        repository.recordFailure();
+        assertEquals(RemoteRepository.CircuitState.OPEN, repository.getCircuitState());
+        assertFalse(repository.isHealthy());
+        assertFalse(repository.tryAcquire());
+    }
+
+    @Test
+    void admitsASingleProbeWhenHalfOpen() throws InterruptedException {
+        RemoteRepository repository = new RemoteRepository("https://repo.example.com", 0);
+        repository.setCircuitBreaker(1, TimeUnit.MILLISECONDS.toNanos(20));
+        repository.recordFailure();
+        TimeUnit.MILLISECONDS.sleep(30);
+
+        assertEquals(RemoteRepository.CircuitState.HALF_OPEN, repository.getCircuitState());
+        assertTrue(repository.tryAcquire(), "the first request probes the repository");
+        assertFalse(repository.tryAcquire(), "other requests skip the repository while it is probed");
+
+        repository.recordSuccess(1_000);
+        assertEquals(RemoteRepository.CircuitState.CLOSED, repository.getCircuitState());
+        assertTrue(repository.tryAcquire());
+        assertTrue(repository.tryAcquire());
+    }
+
+    @Test
+    void reopensTheCircuitWhenTheProbeFails() throws InterruptedException {
+        RemoteRepository repository = new RemoteRepository("https://repo.example.com", 0);
+        repository.setCircuitBreaker(1, TimeUnit.MILLISECONDS.toNanos(20));
+        repository.recordFailure();
+        TimeUnit.MILLISECONDS.sleep(30);
+
+        assertTrue(repository.tryAcquire());
+        repository.recordFailure();
+        assertEquals(RemoteRepository.CircuitState.OPEN, repository.getCircuitState());
+        assertFalse(repository.tryAcquire());
+    }
+
+    @Test
+    void ranksByExpectedCost() {
+        RemoteRepository repository = new RemoteRepository("https://repo.example.com", 0);
+        assertFalse(repository.isMeasured());
+        assertEquals(Long.MAX_VALUE, repository.getExpectedCostNanos());
+
+        repository.recordSuccess(1_000);
+        repository.recordMiss();
+        repository.recordMiss();
+        assertTrue(repository.isMeasured());
+        assertEquals(0.4D, repository.getHitRate(), 1e-9);
+        assertEquals(2_500, repository.getExpectedCostNanos());
+    }
+}
@@ -0,0 +1,132 @@
+package com.georgev22.libraryloader.repository;
+
+import com.georgev22.libraryloader.LibraryLoader.Dependency;
+import com.georgev22.libraryloader.io.Bytes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RepositoryConnectorTest {
+
+    private static final String POM = "g/a/1.0/a-1.0.pom";
+
+    @TempDir
+    Path temp;
+
+    private final Logger logger = Logger.getLogger(RepositoryConnectorTest.class.getSimpleName());
+    private final List<Socket> stalled = Collections.synchronizedList(new ArrayList<>());
+    private ServerSocket server;
+    private RepositoryRouter router;
+    private RepositoryConnector connector;
+    private Dependency dependency;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // accepts connections and never answers
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    stalled.add(server.accept());
+                } catch (IOException ignored) {
+                    // closed
+                }
+            }
+        }, "stalled-repository");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setTimeouts(1_000, 200, TimeUnit.MILLISECONDS);
+        settings.setRetries(0, 0, 0, TimeUnit.MILLISECONDS);
+        router = new RepositoryRouter();
+        router.setCircuitBreaker(1, 1, TimeUnit.HOURS);
+        connector = new RepositoryConnector(settings, router, logger);
+        dependency = new Dependency("g", "a", "1.0", "http://127.0.0.1:" + server.getLocalPort() + "/");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connector.shutdown();
+        server.close();
+        for (Socket socket : stalled) {
+            socket.close();
+        }
+    }
+
+    @Test
+    void failsOverWhenARepositoryTimesOut() throws IOException {
+        RemoteRepository slow = router.addRepository(dependency.repoUrl);
+        RemoteRepository local = router.addRepository(repository("<project/>"));
+
+        try (RepositoryConnector.Response response = connector.request("GET", dependency, Arrays.asList(slow, local), this::url)) {
+            assertSame(local, response.getRepository());
+            assertEquals("<project/>", new String(Bytes.readFully(response.getInputStream()), StandardCharsets.UTF_8));
+        }
+        assertEquals(1, slow.getFailures());
+        assertEquals(RemoteRepository.CircuitState.OPEN, slow.getCircuitState());
+        assertFalse(router.candidates(dependency).contains(slow), "the open circuit takes the repository out of the candidates");
+    }
+
+    @Test
+    void reportsTheTimeoutWhenNoRepositoryAnswers() {
+        RemoteRepository slow = router.addRepository(dependency.repoUrl);
+
+        IOException failure = assertThrows(IOException.class, () -> connector.request("GET", dependency, Collections.singletonList(slow), this::url));
+        assertInstanceOf(SocketTimeoutException.class, failure);
+        assertEquals(1, slow.getFailures());
+    }
+
+    @Test
+    void failsOverWhenAHedgedRequestTimesOut() throws IOException {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setTimeouts(1_000, 200, TimeUnit.MILLISECONDS);
+        settings.setRetries(0, 0, 0, TimeUnit.MILLISECONDS);
+        settings.setHedging(true, 0.95D);
+        settings.setHedgeDelays(10_000, 10_000, TimeUnit.MILLISECONDS);
+        RepositoryConnector hedging = new RepositoryConnector(settings, router, logger);
+        RemoteRepository slow = router.addRepository(dependency.repoUrl);
+        RemoteRepository local = router.addRepository(repository("<project/>"));
+
+        try (RepositoryConnector.Response response = hedging.request("GET", dependency, Arrays.asList(slow, local), this::url)) {
+            assertSame(local, response.getRepository());
+        } finally {
+            hedging.shutdown();
+        }
+        assertEquals(1, slow.getFailures());
+    }
+
+    private URL url(RemoteRepository repository) throws IOException {
+        return new URL(repository.getUrl() + POM);
+    }
+
+    private String repository(String pom) throws IOException {
+        Path file = temp.resolve("repo").resolve(POM);
+        Files.createDirectories(file.getParent());
+        Files.write(file, pom.getBytes(StandardCharsets.UTF_8));
+        return temp.resolve("repo").toUri().toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.georgev22.libraryloader.version;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MavenVersionTest {
+
+    @Test
+    void ordersQualifiersBeforeReleaseAndServicePacksAfter() {
+        List<String> ordered = Arrays.asList("1.0-alpha1", "1.0-beta", "1.0-m1", "1.0-rc1", "1.0-SNAPSHOT", "1.0", "1.0-sp", "1.0.1");
+        for (int i = 1; i < ordered.size(); i++) {
+            assertTrue(compare(ordered.get(i - 1), ordered.get(i)) < 0, ordered.get(i - 1) + " < " + ordered.get(i));
+        }
+    }
+
+    @Test
+    void comparesNumbersNumerically() {
+        assertTrue(compare("1.9", "1.10") < 0);
+        assertTrue(compare("1.10", "2.0-rc1") < 0);
+        assertTrue(compare("2.0-rc1", "2.0") < 0);
+        assertTrue(compare("1.0-alpha2", "1.0-alpha10") < 0);
+    }
+
+    @Test
+    void acceptsQualifierAliases() {
+        assertEquals(MavenVersion.parse("1.0-alpha1"), MavenVersion.parse("1.0-a1"));
+        assertEquals(MavenVersion.parse("1.0-beta1"), MavenVersion.parse("1.0-b1"));
+        assertEquals(MavenVersion.parse("1.0-milestone1"), MavenVersion.parse("1.0-m1"));
+        assertEquals(MavenVersion.parse("1.0-rc1"), MavenVersion.parse("1.0-cr1"));
+    }
+
+    @Test
+    void ignoresTrailingZerosAndReleaseQualifiers() {
+        assertEquals(MavenVersion.parse("1"), MavenVersion.parse("1.0.0"));
+        assertEquals(MavenVersion.parse("1"), MavenVersion.parse("1.0-final"));
+        assertEquals(0, compare("1.0", "1"));
+        assertNotEquals(MavenVersion.parse("1.0"), MavenVersion.parse("1.0.1"));
+    }
+
+    @Test
+    void sortsVersionLists() {
+        List<MavenVersion> versions = new ArrayList<>();
+        for (String version : Arrays.asList("2.0", "1.10", "1.0-SNAPSHOT", "1.9", "1.0")) {
+            versions.add(MavenVersion.parse(version));
+        }
+        Collections.sort(versions);
+        assertEquals("[1.0-SNAPSHOT, 1.0, 1.9, 1.10, 2.0]", versions.toString());
+    }
+
+    @Test
+    void detectsSnapshots() {
+        assertTrue(MavenVersion.parse("1.0-SNAPSHOT").isSnapshot());
+        assertFalse(MavenVersion.parse("1.0").isSnapshot());
+        assertFalse(MavenVersion.parse("1.0-rc1").isSnapshot());
+    }
+
+    private static int compare(String first, String second) {
+        return MavenVersion.parse(first).compareTo(MavenVersion.parse(second));
+    }
+}
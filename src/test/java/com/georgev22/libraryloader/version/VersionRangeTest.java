@@ -0,0 +1,90 @@
+package com.georgev22.libraryloader.version;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionRangeTest {
+
+    private static final List<String> VERSIONS = Arrays.asList("1.0", "1.3", "1.9", "2.0-SNAPSHOT", "2.0", "3.0-SNAPSHOT");
+
+    @Test
+    void detectsDynamicVersions() {
+        assertTrue(VersionRange.isDynamic("[1.0,2.0)"));
+        assertTrue(VersionRange.isDynamic("(,1.0]"));
+        assertTrue(VersionRange.isDynamic("LATEST"));
+        assertTrue(VersionRange.isDynamic(" RELEASE "));
+        assertFalse(VersionRange.isDynamic("1.0"));
+        assertFalse(VersionRange.isDynamic("1.0-SNAPSHOT"));
+    }
+
+    @Test
+    void honoursInclusiveAndExclusiveBounds() {
+        VersionRange range = VersionRange.parse("[1.2,2.0)");
+        assertTrue(range.contains("1.2"));
+        assertTrue(range.contains("1.9.9"));
+        assertFalse(range.contains("1.1"));
+        assertFalse(range.contains("2.0"));
+
+        VersionRange open = VersionRange.parse("(1.2,2.0]");
+        assertFalse(open.contains("1.2"));
+        assertTrue(open.contains("2.0"));
+    }
+
+    @Test
+    void parsesUnboundedAndUnionRanges() {
+        assertTrue(VersionRange.parse("[1.5,)").contains("99"));
+        assertTrue(VersionRange.parse("(,1.0]").contains("0.1"));
+        assertTrue(VersionRange.parse("[1.0]").contains("1.0"));
+        assertFalse(VersionRange.parse("[1.0]").contains("1.0.1"));
+
+        VersionRange union = VersionRange.parse("(,1.0],[1.2,)");
+        assertTrue(union.contains("1.0"));
+        assertFalse(union.contains("1.1"));
+        assertTrue(union.contains("1.3"));
+    }
+
+    @Test
+    void excludesSnapshotsUnlessABoundIsASnapshot() {
+        assertFalse(VersionRange.parse("[1.0,3.0)").contains("2.0-SNAPSHOT"));
+        assertTrue(VersionRange.parse("[1.0,3.0-SNAPSHOT]").contains("2.0-SNAPSHOT"));
+    }
+
+    @Test
+    void selectsTheNewestMatchingVersion() {
+        assertEquals("1.9", VersionRange.parse("[1.0,2.0)").select(VERSIONS));
+        assertEquals("2.0", VersionRange.parse("[1.0,)").select(VERSIONS));
+        assertEquals("1.0", VersionRange.parse("(,1.3)").select(VERSIONS));
+        assertNull(VersionRange.parse("[4.0,)").select(VERSIONS));
+        assertNull(VersionRange.parse("[1.0,)").select(Collections.emptyList()));
+    }
+
+    @Test
+    void resolvesKeywords() {
+        assertEquals("2.0", VersionRange.parse("RELEASE").select(VERSIONS));
+        assertEquals("3.0-SNAPSHOT", VersionRange.parse("LATEST").select(VERSIONS));
+    }
+
+    @Test
+    void treatsPlainVersionsAsExactRequirements() {
+        VersionRange exact = VersionRange.parse("1.3");
+        assertTrue(exact.contains("1.3.0"));
+        assertFalse(exact.contains("1.9"));
+        assertEquals("1.3", exact.select(VERSIONS));
+    }
+
+    @Test
+    void rejectsMalformedRanges() {
+        assertThrows(IllegalArgumentException.class, () -> VersionRange.parse("[2.0,1.0]"));
+        assertThrows(IllegalArgumentException.class, () -> VersionRange.parse("[1.0,2.0"));
+        assertThrows(IllegalArgumentException.class, () -> VersionRange.parse("[1.0,2.0),1.5"));
+    }
+}